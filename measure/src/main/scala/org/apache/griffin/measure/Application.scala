@@ -22,11 +22,13 @@ import scala.reflect.ClassTag
 import scala.util.{Failure, Success, Try}
 
 import org.apache.griffin.measure.configuration.dqdefinition.{DQConfig, EnvConfig, GriffinConfig, Param}
-import org.apache.griffin.measure.configuration.dqdefinition.reader.ParamReaderFactory
+import org.apache.griffin.measure.configuration.dqdefinition.reader.{ParamJsonReader, ParamReaderFactory}
 import org.apache.griffin.measure.configuration.enums._
+import org.apache.griffin.measure.datasource.SharedDataFrames
 import org.apache.griffin.measure.launch.DQApp
 import org.apache.griffin.measure.launch.batch.BatchDQApp
 import org.apache.griffin.measure.launch.streaming.StreamingDQApp
+import org.apache.griffin.measure.utils.JsonUtil
 
 
 /**
@@ -54,6 +56,13 @@ object Application extends Loggable {
         error(ex.getMessage, ex)
         sys.exit(-2)
     }
+    // a json array of measures is coalesced into this application
+    if (dqParamFile.trim.startsWith("[")) {
+      if (!runAll(envParam, dqParamFile)) {
+        sys.exit(-5)
+      }
+      return
+    }
     val dqParam = readParamFile[DQConfig](dqParamFile) match {
       case Success(p) => p
       case Failure(ex) =>
@@ -118,6 +127,69 @@ object Application extends Loggable {
     }
   }
 
+  /**
+    * Run a batch measure in the spark session of the current JVM, like a
+    * warm livy interactive session. Unlike main, it never exits the JVM
+    * and leaves the spark session open for the next measure.
+    *
+    * @return true if the measure succeeds
+    */
+  def runInSession(envParamFile: String, dqParamFile: String): Boolean = {
+    val allParam: GriffinConfig = GriffinConfig(
+      readParamFile[EnvConfig](envParamFile).get,
+      readParamFile[DQConfig](dqParamFile).get)
+    val procType = ProcessType(allParam.getDqConfig.getProcType)
+    if (procType != BatchProcessType) {
+      throw new IllegalArgumentException(
+        s"${procType} is unsupported in a shared session!")
+    }
+    val dqApp = BatchDQApp(allParam)
+    dqApp.init.get
+    dqApp.run.get
+  }
+
+  /**
+    * Run coalesced batch measures in one application. Measures reading the
+    * same connector and time slice share its data frame, so it is scanned once.
+    *
+    * @return true if all measures succeed
+    */
+  private def runAll(envParam: EnvConfig, dqParamList: String): Boolean = {
+    val dqParams = JsonUtil.fromJson[Seq[Any]](dqParamList).map { param =>
+      ParamJsonReader(JsonUtil.toJson(param)).readConfig[DQConfig] match {
+        case Success(p) => p
+        case Failure(ex) =>
+          error(ex.getMessage, ex)
+          sys.exit(-2)
+      }
+    }
+    SharedDataFrames.enable()
+    startup
+    val dqApps = dqParams.map(dqParam => BatchDQApp(GriffinConfig(envParam, dqParam)))
+    val results = dqParams.map(_.getName).zip(dqApps).map { case (name, dqApp) =>
+      val result = for {
+        _ <- dqApp.init
+        success <- dqApp.run
+      } yield success
+      result match {
+        case Success(success) =>
+          info(s"process ${name} run result: " + (if (success) "success" else "failed"))
+          success
+        case Failure(ex) =>
+          error(s"process ${name} run error: ${ex.getMessage}", ex)
+          false
+      }
+    }
+    SharedDataFrames.clear()
+    // all measures share one spark session, which is closed once at last
+    dqApps.lastOption.foreach(_.close match {
+      case Success(_) => info("process end success")
+      case Failure(ex) => error(s"process end error: ${ex.getMessage}", ex)
+    })
+    shutdown
+    results.forall(success => success)
+  }
+
   def readParamFile[T <: Param](file: String)(implicit m : ClassTag[T]): Try[T] = {
     val paramReader = ParamReaderFactory.getParamReader(file)
     paramReader.readConfig[T]
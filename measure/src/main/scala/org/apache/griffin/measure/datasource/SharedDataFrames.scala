@@ -0,0 +1,59 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+package org.apache.griffin.measure.datasource
+
+import scala.collection.mutable.{Map => MutableMap}
+
+import org.apache.spark.sql.DataFrame
+import org.apache.spark.storage.StorageLevel
+
+import org.apache.griffin.measure.Loggable
+
+/**
+  * data frames shared by coalesced measures running in one application,
+  * so that a connector and time slice used by several measures is scanned once
+  */
+object SharedDataFrames extends Loggable {
+
+  private val frames: MutableMap[String, DataFrame] = MutableMap()
+  private var enabled: Boolean = false
+
+  def enable(): Unit = synchronized {
+    enabled = true
+  }
+
+  /**
+    * @param key  query of the data frame, like the sql of a hive connector
+    * @param load loads the data frame if it is not shared yet
+    */
+  def getOrLoad(key: String)(load: => DataFrame): DataFrame = synchronized {
+    if (!enabled) load
+    else frames.getOrElseUpdate(key, {
+      info(s"share data frame of ${key}")
+      load.persist(StorageLevel.MEMORY_AND_DISK)
+    })
+  }
+
+  def clear(): Unit = synchronized {
+    frames.values.foreach(_.unpersist())
+    frames.clear()
+    enabled = false
+  }
+
+}
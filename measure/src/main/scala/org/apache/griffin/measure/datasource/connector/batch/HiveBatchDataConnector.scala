@@ -22,7 +22,7 @@ import org.apache.spark.sql.{DataFrame, SparkSession}
 
 import org.apache.griffin.measure.configuration.dqdefinition.DataConnectorParam
 import org.apache.griffin.measure.context.TimeRange
-import org.apache.griffin.measure.datasource.TimestampStorage
+import org.apache.griffin.measure.datasource.{SharedDataFrames, TimestampStorage}
 import org.apache.griffin.measure.utils.ParamUtil._
 
 /**
@@ -50,7 +50,7 @@ case class HiveBatchDataConnector(@transient sparkSession: SparkSession,
     val dfOpt = {
       val dtSql = dataSql
       info(dtSql)
-      val df = sparkSession.sql(dtSql)
+      val df = SharedDataFrames.getOrLoad(dtSql)(sparkSession.sql(dtSql))
       val dfOpt = Some(df)
       val preDfOpt = preProcess(dfOpt, ms)
       preDfOpt
@@ -0,0 +1,256 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.cluster;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.griffin.core.cluster.entity.ServiceNode;
+import org.apache.griffin.core.cluster.repo.ServiceNodeRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Membership of the service nodes sharing the datasource.
+ * <p>
+ * Every node keeps a heartbeat row in the datasource, and nodes whose
+ * heartbeat is older than {@code cluster.node.timeout.milliseconds} are
+ * dead. The live node with the smallest id leads and runs the periodic
+ * tasks which should run once in the cluster. Other work, like polling livy
+ * for job instances, is partitioned by a consistent hash ring of live nodes,
+ * so adding a node moves only a share of the work to it. Clocks of nodes are
+ * expected to be synchronized well within the node timeout.
+ * <p>
+ * When clustering is disabled, the node is alone: it leads and owns
+ * everything.
+ */
+@Component
+public class ClusterMembership {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(ClusterMembership.class);
+    private static final int VIRTUAL_NODES = 160;
+
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+    @Value("${cluster.node.id:}")
+    private String configuredNodeId;
+    @Value("${server.port:8080}")
+    private int port;
+    @Value("${cluster.heartbeat.milliseconds:10000}")
+    private long heartbeatInterval;
+    @Value("${cluster.node.timeout.milliseconds:30000}")
+    private long nodeTimeout;
+
+    @Autowired
+    private ServiceNodeRepo nodeRepo;
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    private String nodeId;
+    /**
+     * ids of live nodes in ascending order
+     */
+    private volatile List<String> nodeIds;
+    /**
+     * virtual nodes of live nodes by hash
+     */
+    private volatile TreeMap<Long, String> ring;
+    private ScheduledExecutorService heartbeater;
+
+    @PostConstruct
+    public void init() {
+        nodeId = StringUtils.isEmpty(configuredNodeId) ? genNodeId()
+            : configuredNodeId;
+        setNodeIds(Collections.singletonList(nodeId));
+        if (!enabled) {
+            return;
+        }
+        // join before work is restored when the application is ready
+        beat();
+        heartbeater = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeater.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval,
+            heartbeatInterval, TimeUnit.MILLISECONDS);
+        LOGGER.info("Service node {} joins the cluster of {}.", nodeId,
+            nodeIds);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (heartbeater == null) {
+            return;
+        }
+        heartbeater.shutdownNow();
+        try {
+            // let other nodes adopt the work of this node at once
+            nodeRepo.deleteByNodeId(nodeId);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to leave the cluster.", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getNodeIds() {
+        return nodeIds;
+    }
+
+    /**
+     * @return whether this node runs the tasks which should run once in the
+     * cluster
+     */
+    public boolean isLeader() {
+        return nodeId.equals(nodeIds.get(0));
+    }
+
+    /**
+     * @param key key of the work, like a livy session id
+     * @return whether this node owns the work by the consistent hash ring
+     */
+    public boolean owns(Object key) {
+        return !enabled || nodeId.equals(getOwner(key));
+    }
+
+    /**
+     * @param owner node which took the work, null if unknown
+     * @param key   key of the work
+     * @return whether this node should run the work, i.e. it took the work,
+     * or the node which took the work is dead and this node owns the key
+     */
+    public boolean shouldRun(String owner, Object key) {
+        if (!enabled || nodeId.equals(owner)) {
+            return true;
+        }
+        return !nodeIds.contains(owner) && owns(key);
+    }
+
+    String getOwner(Object key) {
+        TreeMap<Long, String> nodes = ring;
+        Map.Entry<Long, String> entry = nodes.ceilingEntry(
+            hash(String.valueOf(key)));
+        return entry != null ? entry.getValue() : nodes.firstEntry()
+            .getValue();
+    }
+
+    void heartbeat() {
+        if (beat()) {
+            publisher.publishEvent(new NodesChangedEvent(this, nodeIds));
+        }
+    }
+
+    /**
+     * @return whether live nodes changed
+     */
+    private boolean beat() {
+        try {
+            long now = System.currentTimeMillis();
+            ServiceNode node = nodeRepo.findByNodeId(nodeId);
+            if (node == null) {
+                node = new ServiceNode(nodeId, now);
+            } else {
+                node.setHeartbeatTms(now);
+            }
+            nodeRepo.save(node);
+            List<String> ids = new ArrayList<>();
+            for (ServiceNode alive : nodeRepo.findAlive(now - nodeTimeout)) {
+                ids.add(alive.getNodeId());
+            }
+            if (!ids.contains(nodeId)) {
+                ids.add(nodeId);
+            }
+            Collections.sort(ids);
+            boolean changed = !ids.equals(nodeIds);
+            if (changed) {
+                LOGGER.info("Live service nodes are {}.", ids);
+                setNodeIds(ids);
+            }
+            if (isLeader()) {
+                nodeRepo.deleteDead(now - nodeTimeout);
+            }
+            return changed;
+        } catch (Exception e) {
+            // keep the last known nodes
+            LOGGER.error("Failed to heartbeat service node {}.", nodeId, e);
+            return false;
+        }
+    }
+
+    private void setNodeIds(List<String> ids) {
+        TreeMap<Long, String> nodes = new TreeMap<>();
+        for (String id : ids) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                nodes.put(hash(id + "#" + i), id);
+            }
+        }
+        ring = nodes;
+        nodeIds = ids;
+    }
+
+    private String genNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + port;
+        } catch (UnknownHostException e) {
+            LOGGER.warn("Failed to get host name, use a random node id.", e);
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(
+                key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.cluster;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the live service nodes of the cluster change, so that
+ * work left by dead nodes can be adopted.
+ */
+public class NodesChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = -1706329251460283916L;
+
+    private final List<String> nodeIds;
+
+    /**
+     * @param source  cluster membership
+     * @param nodeIds ids of live nodes in ascending order
+     */
+    public NodesChangedEvent(Object source, List<String> nodeIds) {
+        super(source);
+        this.nodeIds = Collections.unmodifiableList(nodeIds);
+    }
+
+    public List<String> getNodeIds() {
+        return nodeIds;
+    }
+}
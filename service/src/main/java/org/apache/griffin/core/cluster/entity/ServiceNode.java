@@ -0,0 +1,64 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.cluster.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+
+import org.apache.griffin.core.measure.entity.AbstractAuditableEntity;
+
+/**
+ * A service node of the cluster, alive as long as it keeps its heartbeat.
+ */
+@Entity
+public class ServiceNode extends AbstractAuditableEntity {
+
+    private static final long serialVersionUID = 7081426553182743195L;
+
+    @Column(name = "node_id", unique = true)
+    private String nodeId;
+
+    @Column(name = "heartbeat_timestamp")
+    private Long heartbeatTms;
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getHeartbeatTms() {
+        return heartbeatTms;
+    }
+
+    public void setHeartbeatTms(Long heartbeatTms) {
+        this.heartbeatTms = heartbeatTms;
+    }
+
+    public ServiceNode() {
+    }
+
+    public ServiceNode(String nodeId, Long heartbeatTms) {
+        this.nodeId = nodeId;
+        this.heartbeatTms = heartbeatTms;
+    }
+}
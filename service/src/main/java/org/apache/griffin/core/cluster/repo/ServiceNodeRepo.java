@@ -0,0 +1,46 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.cluster.repo;
+
+import java.util.List;
+
+import org.apache.griffin.core.cluster.entity.ServiceNode;
+import org.apache.griffin.core.job.repo.BaseJpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ServiceNodeRepo extends BaseJpaRepository<ServiceNode, Long> {
+
+    ServiceNode findByNodeId(String nodeId);
+
+    @Query("select n from ServiceNode n where n.heartbeatTms > ?1")
+    List<ServiceNode> findAlive(Long heartbeatTms);
+
+    @Transactional(rollbackFor = Exception.class)
+    @Modifying
+    @Query("delete from ServiceNode n where n.heartbeatTms <= ?1")
+    int deleteDead(Long heartbeatTms);
+
+    @Transactional(rollbackFor = Exception.class)
+    @Modifying
+    @Query("delete from ServiceNode n where n.nodeId = ?1")
+    int deleteByNodeId(String nodeId);
+}
@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.Map;
 import javax.sql.DataSource;
 
+import org.eclipse.persistence.config.BatchWriting;
 import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaBaseConfiguration;
@@ -54,6 +55,10 @@ public class EclipseLinkJpaConfig extends JpaBaseConfiguration {
         map.put(PersistenceUnitProperties.WEAVING, "false");
         map.put(PersistenceUnitProperties.DDL_GENERATION,
             "create-or-extend-tables");
+        // group bulk updates such as job instance state sync into
+        // jdbc batches
+        map.put(PersistenceUnitProperties.BATCH_WRITING, BatchWriting.JDBC);
+        map.put(PersistenceUnitProperties.BATCH_WRITING_SIZE, "100");
         return map;
     }
 }
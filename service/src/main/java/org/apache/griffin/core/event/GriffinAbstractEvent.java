@@ -19,7 +19,12 @@ under the License.
 
 package org.apache.griffin.core.event;
 
-public abstract class GriffinAbstractEvent<T> implements GriffinEvent<T> {
+import java.io.Serializable;
+
+public abstract class GriffinAbstractEvent<T> implements GriffinEvent<T>,
+    Serializable {
+    private static final long serialVersionUID = -5219273615282536342L;
+
     private T source;
     private EventType type;
     private EventSourceType sourceType;
@@ -0,0 +1,39 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.event;
+
+import java.util.List;
+
+import org.apache.griffin.core.exception.GriffinException;
+
+/**
+ * A hook which handles events in batches. When dispatched asynchronously,
+ * it gets the events queued since its last call at once, up to
+ * <code>internal.event.batch.size</code>, in the order they occurred.
+ */
+public interface GriffinBatchHook extends GriffinHook {
+    /**
+     * Invoked with events occurred since the last invocation.
+     *
+     * @param events events in the order they occurred
+     * @see GriffinEvent
+     */
+    void onEvents(List<GriffinEvent<?>> events) throws GriffinException;
+}
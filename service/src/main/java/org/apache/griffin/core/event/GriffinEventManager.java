@@ -19,41 +19,118 @@ under the License.
 
 package org.apache.griffin.core.event;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+/**
+ * Dispatch griffin events to the enabled hooks.
+ * <p>
+ * Every hook has its own dispatcher, async by default. A hook which must
+ * run before the action, or be able to abort it, is configured sync by
+ * {@code internal.event.hook.<hook>.mode=sync}. Other settings can be
+ * overridden per hook the same way.
+ */
 @Component
 public class GriffinEventManager {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(GriffinEventManager.class);
+    private static final String HOOK_PREFIX = "internal.event.hook.";
+
     @Autowired
     private ApplicationContext applicationContext;
+    @Autowired
+    private Environment env;
 
     @Value("#{'${internal.event.listeners}'.split(',')}")
     private Set<String> enabledListeners;
+    @Value("${internal.event.mode:async}")
+    private String mode;
+    @Value("${internal.event.queue.capacity:1024}")
+    private int capacity;
+    @Value("${internal.event.overflow.policy:BLOCK}")
+    private String overflowPolicy;
+    @Value("${internal.event.batch.size:100}")
+    private int batchSize;
+    @Value("${internal.event.spill.dir:}")
+    private String spillDir;
 
-    private List<GriffinHook> eventListeners;
+    private List<HookDispatcher> dispatchers;
 
     @PostConstruct
     void initializeListeners() {
-        List<GriffinHook> eventListeners = new ArrayList<>();
+        List<HookDispatcher> dispatchers = new ArrayList<>();
         applicationContext.getBeansOfType(GriffinHook.class)
             .forEach((beanName, listener) -> {
                 if (enabledListeners.contains(beanName)) {
-                    eventListeners.add(listener);
+                    dispatchers.add(createDispatcher(beanName, listener));
                 }
             });
-        this.eventListeners = eventListeners;
+        dispatchers.forEach(HookDispatcher::start);
+        this.dispatchers = dispatchers;
+    }
+
+    @PreDestroy
+    void close() {
+        if (dispatchers != null) {
+            dispatchers.forEach(HookDispatcher::close);
+        }
     }
 
     public void notifyListeners(GriffinEvent event) {
-        eventListeners.forEach(listener -> {
-            listener.onEvent(event);
-        });
+        dispatchers.forEach(dispatcher -> dispatcher.dispatch(event));
+    }
+
+    /**
+     * @return delivery and queue stats of every enabled hook
+     */
+    public List<HookStats> getHookStats() {
+        List<HookStats> stats = new ArrayList<>(dispatchers.size());
+        dispatchers.forEach(dispatcher -> stats.add(dispatcher.getStats()));
+        return stats;
+    }
+
+    private HookDispatcher createDispatcher(String name, GriffinHook hook) {
+        boolean async = !"sync".equalsIgnoreCase(
+            getHookProperty(name, "mode", mode));
+        int hookCapacity = Integer.parseInt(getHookProperty(name,
+            "queue.capacity", String.valueOf(capacity)));
+        OverflowPolicy policy = OverflowPolicy.valueOf(getHookProperty(name,
+            "overflow.policy", overflowPolicy).toUpperCase(Locale.ROOT));
+        int hookBatchSize = Integer.parseInt(getHookProperty(name,
+            "batch.size", String.valueOf(batchSize)));
+        File spillFile = null;
+        if (async && policy == OverflowPolicy.SPILL) {
+            File dir = StringUtils.isEmpty(spillDir)
+                ? new File(System.getProperty("java.io.tmpdir"),
+                "griffin-events")
+                : new File(spillDir);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                LOGGER.warn("Failed to create spill dir {}.", dir);
+            }
+            spillFile = new File(dir, name + ".events");
+        }
+        LOGGER.info("Hook {} is {}.", name, async ? "async with " + policy
+            + " on overflow of " + hookCapacity + " events" : "sync");
+        return new HookDispatcher(name, hook, async, hookCapacity, policy,
+            hookBatchSize, spillFile);
+    }
+
+    private String getHookProperty(String name, String key,
+                                   String defaultValue) {
+        return env.getProperty(HOOK_PREFIX + name + "." + key, defaultValue);
     }
 }
@@ -0,0 +1,313 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.event;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatch events to one hook, either on the thread of the action or
+ * asynchronously from a bounded queue.
+ * <p>
+ * A sync hook runs before the action goes on, and an exception it throws
+ * aborts the action. An async hook gets events in order from its own queue
+ * on its own thread, so a slow or failing hook neither delays the action
+ * nor other hooks. When the queue is full, the event is handled by the
+ * overflow policy. Spilled events are appended to a file and replayed in
+ * order once the queue is drained, including after a restart.
+ */
+class HookDispatcher {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(HookDispatcher.class);
+    private static final long POLL_MILLISECONDS = 200L;
+    private static final long CLOSE_MILLISECONDS = 5000L;
+
+    private final String name;
+    private final GriffinHook hook;
+    private final boolean async;
+    private final OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final int batchSize;
+    private final BlockingQueue<GriffinEvent<?>> queue;
+    private final File spillFile;
+
+    /**
+     * guards spill file, spilling and spillOffset
+     */
+    private final Object spillLock = new Object();
+    /**
+     * whether events are appended to the spill file rather than the queue,
+     * to keep them in order until the spill file is replayed
+     */
+    private boolean spilling;
+    private long spillOffset;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    HookDispatcher(String name, GriffinHook hook, boolean async,
+                   int capacity, OverflowPolicy overflowPolicy,
+                   int batchSize, File spillFile) {
+        this.name = name;
+        this.hook = hook;
+        this.async = async;
+        this.capacity = Math.max(capacity, 1);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = Math.max(batchSize, 1);
+        this.queue = async ? new ArrayBlockingQueue<>(this.capacity) : null;
+        this.spillFile = spillFile;
+    }
+
+    void start() {
+        if (!async) {
+            return;
+        }
+        // replay events spilled before a restart
+        spilling = spillFile != null && spillFile.length() > 0;
+        running = true;
+        worker = new Thread(this::run, "event-hook-" + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void close() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.join(CLOSE_MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            LOGGER.warn("{} events of hook {} are not delivered.",
+                queue.size(), name);
+        }
+    }
+
+    void dispatch(GriffinEvent<?> event) {
+        if (!async) {
+            List<GriffinEvent<?>> events = new ArrayList<>(1);
+            events.add(event);
+            deliver(events, true);
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(event);
+                }
+                break;
+            case SPILL:
+                synchronized (spillLock) {
+                    if (spilling || !queue.offer(event)) {
+                        spill(event);
+                    }
+                }
+                break;
+            default:
+                if (!queue.offer(event)) {
+                    drop(event);
+                }
+        }
+    }
+
+    private void run() {
+        List<GriffinEvent<?>> events = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                GriffinEvent<?> event = queue.poll(POLL_MILLISECONDS,
+                    TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    events.add(event);
+                    queue.drainTo(events, batchSize - 1);
+                } else {
+                    unspill(events);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!events.isEmpty()) {
+                deliver(events, false);
+                events.clear();
+            }
+        }
+    }
+
+    private void deliver(List<GriffinEvent<?>> events, boolean sync) {
+        long start = System.nanoTime();
+        try {
+            if (!sync && hook instanceof GriffinBatchHook) {
+                ((GriffinBatchHook) hook).onEvents(events);
+            } else {
+                for (GriffinEvent<?> event : events) {
+                    hook.onEvent(event);
+                }
+            }
+            delivered.addAndGet(events.size());
+        } catch (RuntimeException e) {
+            failed.addAndGet(events.size());
+            if (sync) {
+                throw e;
+            }
+            LOGGER.error("Hook {} failed to handle {} events.", name,
+                events.size(), e);
+        } finally {
+            long latency = System.nanoTime() - start;
+            calls.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    private void drop(GriffinEvent<?> event) {
+        dropped.incrementAndGet();
+        LOGGER.warn("Queue of hook {} is full, drop {} event of {}.", name,
+            event.getType(), event.getSourceType());
+    }
+
+    /**
+     * Append an event to the spill file as its length and its serialized
+     * bytes, called with spillLock held.
+     */
+    private void spill(GriffinEvent<?> event) {
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(spillFile,
+                true)))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(event);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            spilling = true;
+            spilled.incrementAndGet();
+        } catch (IOException e) {
+            LOGGER.error("Failed to spill event of hook {}.", name, e);
+            drop(event);
+        }
+    }
+
+    /**
+     * Read at most a batch of spilled events, and stop spilling once all of
+     * them are read.
+     */
+    private void unspill(List<GriffinEvent<?>> events) {
+        synchronized (spillLock) {
+            if (!spilling) {
+                return;
+            }
+            try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(spillFile)))) {
+                long skipped = 0;
+                while (skipped < spillOffset) {
+                    skipped += in.skip(spillOffset - skipped);
+                }
+                while (events.size() < batchSize) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    spillOffset += 4 + length;
+                    events.add(readEvent(bytes));
+                }
+                if (spillOffset >= spillFile.length()) {
+                    resetSpill();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                LOGGER.error("Failed to replay spilled events of hook {}, " +
+                    "discard them.", name, e);
+                resetSpill();
+            }
+        }
+    }
+
+    private void resetSpill() {
+        if (!spillFile.delete()) {
+            LOGGER.warn("Failed to delete spill file {}.", spillFile);
+        }
+        spilling = false;
+        spillOffset = 0;
+    }
+
+    private static GriffinEvent<?> readEvent(byte[] bytes)
+        throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes))) {
+            return (GriffinEvent<?>) in.readObject();
+        }
+    }
+
+    HookStats getStats() {
+        HookStats stats = new HookStats();
+        stats.setName(name);
+        stats.setAsync(async);
+        stats.setOverflowPolicy(async ? overflowPolicy : null);
+        stats.setQueueSize(async ? queue.size() : 0);
+        stats.setQueueCapacity(async ? capacity : 0);
+        stats.setDelivered(delivered.get());
+        stats.setDropped(dropped.get());
+        stats.setSpilled(spilled.get());
+        stats.setFailed(failed.get());
+        long count = calls.get();
+        stats.setCalls(count);
+        stats.setAverageLatencyMs(count == 0 ? 0
+            : totalLatency.get() / 1e6 / count);
+        stats.setMaxLatencyMs(maxLatency.get() / 1e6);
+        return stats;
+    }
+}
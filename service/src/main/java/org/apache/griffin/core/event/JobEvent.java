@@ -22,6 +22,7 @@ package org.apache.griffin.core.event;
 import org.apache.griffin.core.job.entity.AbstractJob;
 
 public class JobEvent extends GriffinAbstractEvent<AbstractJob> {
+    private static final long serialVersionUID = 3540263476215339520L;
 
     private JobEvent(AbstractJob source,
                      EventType type,
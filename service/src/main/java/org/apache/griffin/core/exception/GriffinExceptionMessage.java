@@ -56,6 +56,18 @@ public enum GriffinExceptionMessage {
 
     INVALID_MEASURE_PREDICATE(40016, "The measure predicate is invalid"),
 
+    INVALID_BACKFILL_RANGE(40017, "Backfill range is invalid or has too " +
+        "many fire times"),
+
+    INVALID_UPSTREAM_JOBS(40018, "Property 'upstream.jobs' should be ids " +
+        "of existing batch jobs without cyclic dependencies"),
+
+    INVALID_METRIC_SERIES_RANGE(40019, "Metric series range or interval " +
+        "is invalid or has too many points"),
+
+    INVALID_METRIC_SERIES_AGGREGATION(40020, "Metric series aggregation " +
+        "should be one of avg, min, max and last"),
+
     //404, "Not Found"
     MEASURE_ID_DOES_NOT_EXIST(40401, "Measure id does not exist"),
 
@@ -78,6 +90,8 @@ public enum GriffinExceptionMessage {
 
     JOB_INSTANCE_NOT_FOUND(40410, "No job instances with given job instance id found"),
 
+    BACKFILL_ID_DOES_NOT_EXIST(40411, "Backfill id does not exist"),
+
     //409, "Conflict"
     MEASURE_NAME_ALREADY_EXIST(40901, "Measure name already exists"),
 
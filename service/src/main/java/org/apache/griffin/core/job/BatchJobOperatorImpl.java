@@ -22,6 +22,7 @@ package org.apache.griffin.core.job;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_CONNECTOR_NAME;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_CRON_EXPRESSION;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_JOB_NAME;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_UPSTREAM_JOBS;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.JOB_IS_NOT_IN_PAUSED_STATUS;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.JOB_IS_NOT_SCHEDULED;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.JOB_KEY_DOES_NOT_EXIST;
@@ -83,6 +84,10 @@ public class BatchJobOperatorImpl implements JobOperator {
     private BatchJobRepo batchJobRepo;
     @Autowired
     private JobServiceImpl jobService;
+    @Autowired
+    private PredicateJobScheduler predicateScheduler;
+    @Autowired
+    private JobDependencyScheduler dependencyScheduler;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -95,6 +100,7 @@ public class BatchJobOperatorImpl implements JobOperator {
         BatchJob batchJob = genBatchJobBean(job, qName, qGroup);
         batchJob = batchJobRepo.save(batchJob);
         jobService.addJob(triggerKey, batchJob, BATCH);
+        dependencyScheduler.invalidate();
         return job;
     }
 
@@ -148,6 +154,7 @@ public class BatchJobOperatorImpl implements JobOperator {
     @Transactional
     public void delete(AbstractJob job) {
         pauseJob((BatchJob) job, true);
+        dependencyScheduler.invalidate();
     }
 
 
@@ -275,6 +282,10 @@ public class BatchJobOperatorImpl implements JobOperator {
     }
 
     public void deleteJob(String group, String name) throws SchedulerException {
+        if (PredicateJobScheduler.GROUP.equals(group)) {
+            predicateScheduler.cancel(name);
+            return;
+        }
         Scheduler scheduler = factory.getScheduler();
         JobKey jobKey = new JobKey(name, group);
         if (!scheduler.checkExists(jobKey)) {
@@ -350,6 +361,10 @@ public class BatchJobOperatorImpl implements JobOperator {
             throw new GriffinException.BadRequestException
                 (INVALID_CONNECTOR_NAME);
         }
+        if (!dependencyScheduler.isValidUpstream(job)) {
+            throw new GriffinException.BadRequestException
+                (INVALID_UPSTREAM_JOBS);
+        }
     }
 
     private boolean isValidCronExpression(String cronExpression) {
@@ -22,6 +22,8 @@ package org.apache.griffin.core.job;
 import static org.apache.griffin.core.job.JobInstance.PATH_CONNECTOR_CHARACTER;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -46,6 +48,24 @@ public class FileExistPredicator implements Predicator {
 
     @Override
     public boolean predicate() throws IOException {
+        List<String> hdfsPaths = getPaths();
+        LOGGER.info("Predicate paths: {}", hdfsPaths);
+        boolean exist = FSUtil.isFilesExist(hdfsPaths);
+        LOGGER.info("Predicate paths under {} {}.",
+            predicate.getConfigMap().get(PREDICT_ROOT_PATH),
+            exist ? "all exist" : "don't all exist");
+        return exist;
+    }
+
+    /**
+     * @return size of the directories holding the predicate paths
+     */
+    @Override
+    public Long inputSize() throws IOException {
+        return FSUtil.getParentContentSize(getPaths());
+    }
+
+    private List<String> getPaths() {
         Map<String, Object> config = predicate.getConfigMap();
         String[] paths = null;
         String rootPath = null;
@@ -59,15 +79,10 @@ public class FileExistPredicator implements Predicator {
                 "config root.path and path.");
             throw new NullPointerException();
         }
+        List<String> hdfsPaths = new ArrayList<>(paths.length);
         for (String path : paths) {
-            String hdfsPath = rootPath + path;
-            LOGGER.info("Predicate path: {}", hdfsPath);
-            if (!FSUtil.isFileExist(hdfsPath)) {
-                LOGGER.info("Predicate path: " + hdfsPath + " doesn't exist.");
-                return false;
-            }
-            LOGGER.info("Predicate path: " + hdfsPath + " exists.");
+            hdfsPaths.add(rootPath + path);
         }
-        return true;
+        return hdfsPaths;
     }
 }
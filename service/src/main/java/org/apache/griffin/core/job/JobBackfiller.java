@@ -0,0 +1,331 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.BACKFILL_ID_DOES_NOT_EXIST;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_BACKFILL_RANGE;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_CRON_EXPRESSION;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.JOB_KEY_DOES_NOT_EXIST;
+import static org.apache.griffin.core.job.JobInstance.JOB_START_TIME_KEY;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.griffin.core.exception.GriffinException;
+import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.Backfill;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.util.TimeUtil;
+import org.quartz.CronExpression;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fan a batch job out over the cron fire times of a historical time range.
+ * <p>
+ * Every fire time is dispatched as a one-shot quartz trigger of the job,
+ * which carries the fire time as the job start time and checks predicates
+ * only once, as historical data either exists or never comes. At most
+ * {@code backfill.parallelism} instances of a backfill are in flight at a
+ * time; the rest are dispatched as instances finish. A fire time whose
+ * trigger fired without creating an instance counts as failed. Backfills
+ * are kept in memory, so the undispatched part of a backfill is lost on
+ * restart.
+ */
+@Component
+public class JobBackfiller {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(JobBackfiller.class);
+    private static final int MAX_FINISHED_BACKFILLS = 100;
+
+    @Value("${backfill.parallelism:4}")
+    private int parallelism;
+    @Value("${backfill.max.fire.times:1000}")
+    private int maxFireTimes;
+
+    @Autowired
+    @Qualifier("schedulerFactoryBean")
+    private SchedulerFactoryBean factory;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+
+    /**
+     * backfills by id in creation order, guarded by this
+     */
+    private final Map<String, Run> runs = new LinkedHashMap<>();
+
+    /**
+     * @param job  batch job
+     * @param from begin of the time range, inclusive
+     * @param to   end of the time range, inclusive
+     * @return the backfill started
+     */
+    public Backfill start(AbstractJob job, long from, long to)
+        throws SchedulerException {
+        List<Long> fireTimes = getFireTimes(job.getCronExpression(),
+            job.getTimeZone(), from, to, maxFireTimes);
+        JobKey key = jobKey(job.getName(), job.getGroup());
+        if (!factory.getScheduler().checkExists(key)) {
+            throw new GriffinException.NotFoundException(
+                JOB_KEY_DOES_NOT_EXIST);
+        }
+        Run run = new Run(new Backfill(UUID.randomUUID().toString(),
+            job.getId(), from, to, fireTimes.size()), key, fireTimes);
+        synchronized (this) {
+            evictFinished();
+            runs.put(run.backfill.getId(), run);
+        }
+        LOGGER.info("Backfill {} of job {} over {} fire times.",
+            run.backfill.getId(), job.getJobName(), fireTimes.size());
+        dispatch(run);
+        return run.backfill;
+    }
+
+    /**
+     * @param id backfill id
+     * @return the backfill with its progress
+     */
+    public Backfill get(String id) {
+        Run run;
+        synchronized (this) {
+            run = runs.get(id);
+        }
+        if (run == null) {
+            throw new GriffinException.NotFoundException(
+                BACKFILL_ID_DOES_NOT_EXIST);
+        }
+        synchronized (run) {
+            refresh(run);
+            return run.backfill;
+        }
+    }
+
+    /**
+     * Dispatch more fire times of backfills whose instances finished.
+     */
+    @Scheduled(fixedDelayString = "${backfill.poll.milliseconds:5000}")
+    public void dispatchAll() {
+        List<Run> unfinished = new ArrayList<>();
+        synchronized (this) {
+            for (Run run : runs.values()) {
+                if (!run.backfill.isFinished()) {
+                    unfinished.add(run);
+                }
+            }
+        }
+        for (Run run : unfinished) {
+            try {
+                dispatch(run);
+            } catch (Exception e) {
+                LOGGER.error("Failed to dispatch backfill {}.",
+                    run.backfill.getId(), e);
+            }
+        }
+    }
+
+    private void dispatch(Run run) throws SchedulerException {
+        synchronized (run) {
+            refresh(run);
+            Backfill backfill = run.backfill;
+            Scheduler scheduler = factory.getScheduler();
+            while (backfill.getActive() < parallelism
+                && !run.pending.isEmpty()) {
+                Trigger trigger = newTrigger()
+                    .forJob(run.jobKey)
+                    .usingJobData(JOB_START_TIME_KEY, run.pending.peekFirst())
+                    .startNow()
+                    .build();
+                scheduler.scheduleJob(trigger);
+                run.pending.pollFirst();
+                run.triggers.put(trigger.getKey().toString(),
+                    trigger.getKey());
+                backfill.setDispatched(backfill.getDispatched() + 1);
+                backfill.setActive(backfill.getActive() + 1);
+            }
+            backfill.setFinished(run.pending.isEmpty()
+                && backfill.getActive() == 0);
+        }
+    }
+
+    /**
+     * Count instances of dispatched fire times by state. A fire time whose
+     * instance is not created yet is in flight, unless it is lost.
+     */
+    private void refresh(Run run) {
+        Backfill backfill = run.backfill;
+        int succeeded = 0;
+        int failed = 0;
+        Set<String> created = new HashSet<>();
+        if (!run.triggers.isEmpty()) {
+            for (JobInstanceBean instance : instanceRepo
+                .findByTriggerKeyIn(run.triggers.keySet())) {
+                created.add(instance.getTriggerKey());
+                if (SUCCESS.equals(instance.getState())) {
+                    succeeded++;
+                } else if (!LivySessionStates.isActive(instance.getState())) {
+                    failed++;
+                }
+            }
+        }
+        failed += countLost(run, created);
+        backfill.setSucceeded(succeeded);
+        backfill.setFailed(failed);
+        backfill.setActive(backfill.getDispatched() - succeeded - failed);
+        backfill.setFinished(run.pending.isEmpty()
+            && backfill.getActive() == 0);
+    }
+
+    /**
+     * Count fire times whose trigger is gone without an instance, as the
+     * job failed before it created one. A fired trigger is given one round
+     * for its instance to be saved before its fire time is lost.
+     */
+    private int countLost(Run run, Set<String> created) {
+        run.lost.removeAll(created);
+        Set<String> fired = new HashSet<>();
+        for (Map.Entry<String, TriggerKey> entry : run.triggers.entrySet()) {
+            String key = entry.getKey();
+            if (created.contains(key) || run.lost.contains(key)
+                || triggerExists(entry.getValue())) {
+                continue;
+            }
+            if (run.fired.contains(key)) {
+                run.lost.add(key);
+                LOGGER.warn("Fire time {} of backfill {} created no job " +
+                    "instance.", key, run.backfill.getId());
+            } else {
+                fired.add(key);
+            }
+        }
+        run.fired = fired;
+        return run.lost.size();
+    }
+
+    private boolean triggerExists(TriggerKey key) {
+        try {
+            return factory.getScheduler().checkExists(key);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Failed to check trigger {}. {}", key,
+                e.getMessage());
+            return true;
+        }
+    }
+
+    private void evictFinished() {
+        int finished = 0;
+        for (Run run : runs.values()) {
+            if (run.backfill.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<Run> it = runs.values().iterator();
+        while (finished >= MAX_FINISHED_BACKFILLS && it.hasNext()) {
+            if (it.next().backfill.isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    /**
+     * @return cron fire times in [from, to] in ascending order
+     */
+    static List<Long> getFireTimes(String cron, String timeZone, long from,
+                                   long to, int max) {
+        if (from > to) {
+            throw new GriffinException.BadRequestException(
+                INVALID_BACKFILL_RANGE);
+        }
+        CronExpression expression;
+        try {
+            expression = new CronExpression(cron);
+        } catch (ParseException | NullPointerException e) {
+            throw new GriffinException.BadRequestException(
+                INVALID_CRON_EXPRESSION);
+        }
+        expression.setTimeZone(TimeUtil.getTimeZone(timeZone));
+        List<Long> fireTimes = new ArrayList<>();
+        Date next = expression.getNextValidTimeAfter(new Date(from - 1));
+        while (next != null && next.getTime() <= to) {
+            if (fireTimes.size() >= max) {
+                throw new GriffinException.BadRequestException(
+                    INVALID_BACKFILL_RANGE);
+            }
+            fireTimes.add(next.getTime());
+            next = expression.getNextValidTimeAfter(next);
+        }
+        return fireTimes;
+    }
+
+    private static class Run {
+        private final Backfill backfill;
+        private final JobKey jobKey;
+        /**
+         * fire times not dispatched yet, in ascending order
+         */
+        private final Deque<Long> pending;
+        /**
+         * triggers of dispatched fire times by trigger key string
+         */
+        private final Map<String, TriggerKey> triggers =
+            new LinkedHashMap<>();
+        /**
+         * fire times whose trigger was found gone without an instance in
+         * the last round
+         */
+        private Set<String> fired = new HashSet<>();
+        /**
+         * fire times which never created an instance
+         */
+        private final Set<String> lost = new HashSet<>();
+
+        Run(Backfill backfill, JobKey jobKey, List<Long> fireTimes) {
+            this.backfill = backfill;
+            this.jobKey = jobKey;
+            this.pending = new ArrayDeque<>(fireTimes);
+        }
+    }
+}
@@ -24,8 +24,11 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.Backfill;
 import org.apache.griffin.core.job.entity.JobHealth;
 import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.JobSummary;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
 import org.apache.griffin.core.util.FSUtil;
 import org.quartz.SchedulerException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -55,6 +58,21 @@ public class JobController {
         return jobService.getAliveJobs(type);
     }
 
+    /**
+     * List scalar columns of alive jobs ordered by id. The next page starts
+     * after the id of the last job of this page.
+     */
+    @RequestMapping(value = "/jobs/summary", method = RequestMethod.GET)
+    public List<JobSummary> getJobSummaries(
+        @RequestParam(value = "type", defaultValue = "") String type,
+        @RequestParam(value = "owner", required = false) String owner,
+        @RequestParam(value = "org", required = false) String organization,
+        @RequestParam(value = "after", required = false) Long after,
+        @RequestParam(value = "size", defaultValue = "100") int size) {
+        return jobService.getJobSummaries(type, owner, organization, after,
+            size);
+    }
+
     @RequestMapping(value = "/jobs", method = RequestMethod.POST)
     @ResponseStatus(HttpStatus.CREATED)
     public AbstractJob addJob(@RequestBody AbstractJob job) throws Exception {
@@ -101,6 +119,11 @@ public class JobController {
         return jobService.findInstance(id);
     }
 
+    @RequestMapping(value = "/jobs/{id}/resources", method = RequestMethod.GET)
+    public ResourceAdvice getResourceAdvice(@PathVariable("id") Long id) {
+        return jobService.getResourceAdvice(id);
+    }
+
     @RequestMapping(value = "/jobs/health", method = RequestMethod.GET)
     public JobHealth getHealthInfo() {
         return jobService.getHealthInfo();
@@ -127,6 +150,21 @@ public class JobController {
         return Collections.singletonMap("triggerKey", jobService.triggerJobById(id));
     }
 
+    @RequestMapping(value = "/jobs/{id}/backfill", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Backfill backfill(@PathVariable("id") Long id,
+                             @RequestParam("from") long from,
+                             @RequestParam("to") long to)
+        throws SchedulerException {
+        return jobService.backfill(id, from, to);
+    }
+
+    @RequestMapping(value = "/jobs/backfill/{backfillId}",
+        method = RequestMethod.GET)
+    public Backfill getBackfill(@PathVariable("backfillId") String id) {
+        return jobService.getBackfill(id);
+    }
+
     @RequestMapping(value = "jobs/triggerKeys/{triggerKey:.+}", method = RequestMethod.GET)
     public List<JobInstanceBean> findInstanceByTriggerKey(@PathVariable("triggerKey") String triggerKey) {
         return jobService.findInstancesByTriggerKey(triggerKey);
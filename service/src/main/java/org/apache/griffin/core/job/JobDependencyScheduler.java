@@ -0,0 +1,303 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.JobInstance.JOB_START_TIME_KEY;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.BatchJob;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.JobRelease;
+import org.apache.griffin.core.job.repo.BatchJobRepo;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.JobReleaseRepo;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Release downstream batch jobs when their upstream jobs succeed.
+ * <p>
+ * A job declares its upstream job ids by {@code upstream.jobs} of its
+ * {@code predicate.config}. It is no longer fired by its own cron, but
+ * once every upstream job has a successful instance of the same job start
+ * time, as soon as the state sync sees the last of them succeed. The
+ * downstream instance gets that job start time and checks its predicates
+ * only once. A job start time is released by one node of a cluster only,
+ * the one which saves its release marker.
+ */
+@Component
+public class JobDependencyScheduler {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(JobDependencyScheduler.class);
+    /**
+     * job config of upstream job ids
+     */
+    public static final String UPSTREAM_JOBS = "upstream.jobs";
+    private static final int MAX_RELEASED_SIZE = 10000;
+
+    @Value("${job.dependency.cache.milliseconds:30000}")
+    private long cacheTtl;
+
+    @Autowired
+    @Qualifier("schedulerFactoryBean")
+    private SchedulerFactoryBean factory;
+    @Autowired
+    private BatchJobRepo batchJobRepo;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private JobReleaseRepo releaseRepo;
+
+    /**
+     * downstream jobs by upstream job id, null until loaded
+     */
+    private volatile Map<Long, List<BatchJob>> downstreams;
+    private volatile long loadedTime;
+    /**
+     * downstream job ids and job start times already released by any node
+     * as far as this node knows, guarded by itself
+     */
+    private final Set<String> released = new LinkedHashSet<>();
+
+    /**
+     * @param job job
+     * @return upstream job ids declared by the job, empty if none
+     */
+    public static List<Long> getUpstreamJobIds(AbstractJob job) {
+        Map<String, Object> config = job.getConfigMap();
+        Object upstream = config == null ? null : config.get(UPSTREAM_JOBS);
+        if (!(upstream instanceof List)) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Object id : (List<?>) upstream) {
+            if (id != null) {
+                ids.add(Long.valueOf(id.toString()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param job job to add
+     * @return whether the upstream jobs of the job exist and none of them
+     * depends on the job itself or on a cycle, directly or through other
+     * jobs
+     */
+    public boolean isValidUpstream(AbstractJob job) {
+        try {
+            return isAcyclic(job.getId(), getUpstreamJobIds(job),
+                new HashSet<>(), new HashSet<>());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Upstream job ids are invalid.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @param jobId   id of the job being added, null if not saved yet
+     * @param ids     upstream job ids to walk
+     * @param path    job ids on the way from the job to the upstream jobs
+     * @param checked job ids whose upstream jobs are known acyclic
+     */
+    private boolean isAcyclic(Long jobId, List<Long> ids, Set<Long> path,
+                              Set<Long> checked) {
+        for (Long id : ids) {
+            if (id.equals(jobId) || path.contains(id)) {
+                LOGGER.warn("Upstream job {} depends on itself.", id);
+                return false;
+            }
+            if (checked.contains(id)) {
+                continue;
+            }
+            BatchJob upstream = batchJobRepo.findByIdAndDeleted(id, false);
+            if (upstream == null) {
+                // only direct upstream jobs must exist, deleted ones
+                // further up no longer release anything
+                if (path.isEmpty()) {
+                    LOGGER.warn("Upstream job {} does not exist.", id);
+                    return false;
+                }
+            } else {
+                path.add(id);
+                boolean acyclic = isAcyclic(jobId,
+                    getUpstreamJobIds(upstream), path, checked);
+                path.remove(id);
+                if (!acyclic) {
+                    return false;
+                }
+            }
+            checked.add(id);
+        }
+        return true;
+    }
+
+    /**
+     * Reload the dependencies of jobs next time they are needed, like
+     * when a job is added. Jobs added on other nodes are seen once the
+     * loaded dependencies expire.
+     */
+    public void invalidate() {
+        downstreams = null;
+    }
+
+    /**
+     * Release downstream jobs of the instances which finished, called by
+     * the state sync with the instances whose state changed.
+     *
+     * @param instances job instances whose state changed
+     */
+    public void onInstancesChanged(List<JobInstanceBean> instances) {
+        for (JobInstanceBean instance : instances) {
+            if (!SUCCESS.equals(instance.getState())
+                || instance.getJob() == null
+                || instance.getJobStartTms() == null) {
+                continue;
+            }
+            List<BatchJob> jobs = getDownstreams().get(
+                instance.getJob().getId());
+            if (jobs == null) {
+                continue;
+            }
+            for (BatchJob downstream : jobs) {
+                try {
+                    release(downstream, instance.getJobStartTms());
+                } catch (Exception e) {
+                    LOGGER.error("Failed to release job {} of {}.",
+                        downstream.getJobName(), instance.getJobStartTms(),
+                        e);
+                }
+            }
+        }
+    }
+
+    private void release(BatchJob job, Long jobStartTime)
+        throws SchedulerException {
+        List<Long> upstreamIds = getUpstreamJobIds(job);
+        Set<Long> succeeded = new HashSet<>();
+        for (JobInstanceBean instance : instanceRepo
+            .findByJobIdsAndJobStartTms(upstreamIds, jobStartTime, SUCCESS)) {
+            succeeded.add(instance.getJob().getId());
+        }
+        if (!succeeded.containsAll(upstreamIds)) {
+            return;
+        }
+        String releaseKey = job.getId() + "@" + jobStartTime;
+        synchronized (released) {
+            if (!released.add(releaseKey)) {
+                return;
+            }
+            if (released.size() > MAX_RELEASED_SIZE) {
+                released.remove(released.iterator().next());
+            }
+        }
+        Scheduler scheduler = factory.getScheduler();
+        JobKey jobKey = jobKey(job.getName(), job.getGroup());
+        if (!scheduler.checkExists(jobKey)) {
+            LOGGER.warn("Downstream job {} is not scheduled.",
+                job.getJobName());
+            return;
+        }
+        JobRelease marker;
+        try {
+            // nodes of a cluster may release a job at the same time, and
+            // only one of them saves the release marker
+            marker = releaseRepo.saveAndFlush(new JobRelease(job.getId(),
+                jobStartTime));
+        } catch (DataAccessException e) {
+            if (!isDuplicate(e)) {
+                throw e;
+            }
+            LOGGER.info("Job {} of {} is released already.",
+                job.getJobName(), jobStartTime);
+            return;
+        }
+        try {
+            scheduler.scheduleJob(newTrigger()
+                .withIdentity(releaseKey, job.getGroup())
+                .forJob(jobKey)
+                .usingJobData(JOB_START_TIME_KEY, jobStartTime)
+                .startNow()
+                .build());
+        } catch (SchedulerException | RuntimeException e) {
+            // a later state sync may release it again
+            releaseRepo.delete(marker);
+            synchronized (released) {
+                released.remove(releaseKey);
+            }
+            throw e;
+        }
+        LOGGER.info("Release job {} of {} as upstream jobs {} succeeded.",
+            job.getJobName(), jobStartTime, upstreamIds);
+    }
+
+    /**
+     * EclipseLink reports a unique key violation as a generic jpa error, so
+     * it is told by the sql state of integrity constraint violations.
+     */
+    static boolean isDuplicate(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                return state != null && state.startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    private Map<Long, List<BatchJob>> getDownstreams() {
+        Map<Long, List<BatchJob>> map = downstreams;
+        long now = System.currentTimeMillis();
+        if (map == null || now - loadedTime > cacheTtl) {
+            map = new HashMap<>();
+            for (BatchJob job : batchJobRepo.findByDeleted(false)) {
+                for (Long upstreamId : getUpstreamJobIds(job)) {
+                    map.computeIfAbsent(upstreamId, id -> new ArrayList<>())
+                        .add(job);
+                }
+            }
+            downstreams = map;
+            loadedTime = now;
+        }
+        return map;
+    }
+}
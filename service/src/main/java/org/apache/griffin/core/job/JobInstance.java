@@ -36,10 +36,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TimeZone;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.griffin.core.exception.GriffinException;
@@ -55,7 +54,9 @@ import org.apache.griffin.core.measure.entity.DataSource;
 import org.apache.griffin.core.measure.entity.GriffinMeasure;
 import org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType;
 import org.apache.griffin.core.measure.repo.GriffinMeasureRepo;
+import org.apache.griffin.core.util.PartitionTemplate;
 import org.apache.griffin.core.util.TimeUtil;
+import org.quartz.CronTrigger;
 import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobDataMap;
@@ -83,6 +84,12 @@ public class JobInstance implements Job {
     public static final String MEASURE_KEY = "measure";
     public static final String PREDICATES_KEY = "predicts";
     public static final String PREDICATE_JOB_NAME = "predicateJobName";
+    public static final String LIVY_CONF_KEY = "livyConf";
+    /**
+     * trigger data of a job start time, like a backfill fire time or the
+     * job start time of upstream jobs which succeeded
+     */
+    public static final String JOB_START_TIME_KEY = "jobStartTime";
     private static final String TRIGGER_KEY = "trigger";
     static final String JOB_NAME = "jobName";
     static final String PATH_CONNECTOR_CHARACTER = ",";
@@ -90,6 +97,10 @@ public class JobInstance implements Job {
     public static final String REPEAT = "repeat";
     public static final String CHECK_DONEFILE_SCHEDULE =
         "checkdonefile.schedule";
+    /**
+     * job config of livy overrides like queue, executors and memory
+     */
+    public static final String LIVY_CONF = "livy.conf";
 
     @Autowired
     @Qualifier("schedulerFactoryBean")
@@ -102,17 +113,31 @@ public class JobInstance implements Job {
     private JobInstanceRepo instanceRepo;
     @Autowired
     private Environment env;
+    @Autowired
+    private PredicateJobScheduler predicateScheduler;
 
     private GriffinMeasure measure;
     private AbstractJob job;
     private List<SegmentPredicate> mPredicates;
     private Long jobStartTime;
+    /**
+     * whether the job start time is given by the trigger
+     */
+    private boolean triggered;
 
     @Override
     @Transactional
     public void execute(JobExecutionContext context) {
         try {
             initParam(context);
+            // cron fires of downstream jobs wait for their upstream jobs,
+            // releases and manual triggers run right away
+            if (!triggered && context.getTrigger() instanceof CronTrigger
+                && !JobDependencyScheduler.getUpstreamJobIds(job).isEmpty()) {
+                LOGGER.info("Job {} is released by its upstream jobs.",
+                    job.getJobName());
+                return;
+            }
             setSourcesPartitionsAndPredicates(measure.getDataSources());
             createJobInstance(job.getConfigMap());
         } catch (Exception e) {
@@ -128,7 +153,7 @@ public class JobInstance implements Job {
         job = jobRepo.findOne(jobId);
         Long measureId = job.getMeasureId();
         measure = measureRepo.findOne(measureId);
-        setJobStartTime(jobDetail);
+        setJobStartTime(context);
         if (job.getConfigMap() == null) {
             job.setConfigMap(new HashMap<>());
         }
@@ -136,10 +161,17 @@ public class JobInstance implements Job {
     }
 
     @SuppressWarnings("unchecked")
-    private void setJobStartTime(JobDetail jobDetail)
+    private void setJobStartTime(JobExecutionContext context)
         throws SchedulerException {
+        JobDataMap triggerData = context.getTrigger().getJobDataMap();
+        triggered = triggerData != null
+            && triggerData.containsKey(JOB_START_TIME_KEY);
+        if (triggered) {
+            jobStartTime = triggerData.getLong(JOB_START_TIME_KEY);
+            return;
+        }
         Scheduler scheduler = factory.getScheduler();
-        JobKey jobKey = jobDetail.getKey();
+        JobKey jobKey = context.getJobDetail().getKey();
         List<Trigger> triggers =
             (List<Trigger>) scheduler.getTriggersOfJob(jobKey);
         Date triggerTime = triggers.get(0).getPreviousFireTime();
@@ -249,19 +281,17 @@ public class JobInstance implements Job {
             LOGGER.warn("Predicate config is null.");
             return;
         }
+        TimeZone timeZone = TimeUtil.getTimeZone(timezone);
         for (Map.Entry<String, Object> entry : conf.entrySet()) {
             // in case entry value is a json object instead of a string
             if (entry.getValue() instanceof String) {
                 String value = (String) entry.getValue();
-                Set<String> set = new HashSet<>();
                 if (StringUtils.isEmpty(value)) {
                     continue;
                 }
-                for (Long timestamp : sampleTs) {
-                    set.add(TimeUtil.format(value, timestamp,
-                        TimeUtil.getTimeZone(timezone)));
-                }
-                conf.put(entry.getKey(), StringUtils.join(set,
+                List<String> partitions = PartitionTemplate.compile(value)
+                    .expand(sampleTs, timeZone);
+                conf.put(entry.getKey(), StringUtils.join(partitions,
                     PATH_CONNECTOR_CHARACTER));
             }
         }
@@ -274,15 +304,27 @@ public class JobInstance implements Job {
         Map<String, Object> config = (Map<String, Object>) confMap
             .get(CHECK_DONEFILE_SCHEDULE);
         Long interval = TimeUtil.str2Long((String) config.get(INTERVAL));
-        Integer repeat = Integer.valueOf(config.get(REPEAT).toString());
-        String groupName = "PG";
+        // data of a given job start time either exists or never comes
+        Integer repeat = triggered ? 0
+            : Integer.valueOf(config.get(REPEAT).toString());
         String jobName = job.getJobName() + "_predicate_"
             + System.currentTimeMillis();
+        String triggerKey = (String) confMap.get(TRIGGER_KEY);
+        if (predicateScheduler.isEnabled()) {
+            if (predicateScheduler.exists(jobName)) {
+                throw new GriffinException.ConflictException(
+                    QUARTZ_JOB_ALREADY_EXIST);
+            }
+            saveJobInstance(jobName, PredicateJobScheduler.GROUP, triggerKey);
+            predicateScheduler.schedule(jobName, genJobDataMap(jobName),
+                interval, repeat);
+            return;
+        }
+        String groupName = PredicateJobScheduler.QUARTZ_GROUP;
         TriggerKey tk = triggerKey(jobName, groupName);
         if (factory.getScheduler().checkExists(tk)) {
             throw new GriffinException.ConflictException(QUARTZ_JOB_ALREADY_EXIST);
         }
-        String triggerKey = (String) confMap.get(TRIGGER_KEY);
         saveJobInstance(jobName, groupName, triggerKey);
         createJobInstance(tk, interval, repeat, jobName);
     }
@@ -322,6 +364,7 @@ public class JobInstance implements Job {
             tms, expireTms, type);
         instance.setJob(job);
         instance.setTriggerKey(triggerKey);
+        instance.setJobStartTms(jobStartTime);
         instanceRepo.save(instance);
     }
 
@@ -355,20 +398,24 @@ public class JobInstance implements Job {
                 .withIdentity(jobKey)
                 .build();
         }
-        setJobDataMap(jobDetail, pJobName);
+        jobDetail.getJobDataMap().putAll(genJobDataMap(pJobName));
         scheduler.addJob(jobDetail, isJobKeyExist);
         return jobDetail;
     }
 
-    private void setJobDataMap(JobDetail jobDetail, String pJobName)
-        throws IOException {
-        JobDataMap dataMap = jobDetail.getJobDataMap();
+    private JobDataMap genJobDataMap(String pJobName) throws IOException {
+        JobDataMap dataMap = new JobDataMap();
         preProcessMeasure();
         String result = toJson(measure);
         dataMap.put(MEASURE_KEY, result);
         dataMap.put(PREDICATES_KEY, toJson(mPredicates));
         dataMap.put(JOB_NAME, job.getJobName());
         dataMap.put(PREDICATE_JOB_NAME, pJobName);
+        Object livyConf = job.getConfigMap().get(LIVY_CONF);
+        if (livyConf != null) {
+            dataMap.put(LIVY_CONF_KEY, toJson(livyConf));
+        }
+        return dataMap;
     }
 
     private void preProcessMeasure() throws IOException {
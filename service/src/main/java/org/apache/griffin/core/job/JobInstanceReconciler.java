@@ -0,0 +1,284 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.UNKNOWN;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.util.JsonUtil;
+import org.apache.griffin.core.util.YarnNetUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Reconcile states of active job instances with Livy and Yarn in bulk.
+ * <p>
+ * Instead of one Livy GET per instance, Livy batches are paged through with
+ * {@code GET /batches?from=&size=} and apps whose Livy session has expired
+ * are looked up with a single Yarn app listing. Results are matched to
+ * instances in memory and only the instances whose state actually changed
+ * are written back, in one batch.
+ */
+@Component
+public class JobInstanceReconciler {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(JobInstanceReconciler.class);
+    private static final String YARN_APP_STATES =
+        "NEW,NEW_SAVING,SUBMITTED,ACCEPTED,RUNNING,FINISHED,FAILED,KILLED";
+
+    @Value("${livy.uri}")
+    private String livyUri;
+    @Value("${yarn.uri}")
+    private String yarnUri;
+    @Value("${jobInstance.sync.page.size:1000}")
+    private int pageSize;
+
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private LivyTaskSubmitHelper livyTaskSubmitHelper;
+    @Autowired
+    private JobDependencyScheduler dependencyScheduler;
+    @Autowired
+    private LivySessionPool livySessionPool;
+
+    /**
+     * @param instances active job instances
+     * @return count of instances whose state changed
+     * @throws IOException if Livy batches cannot be listed
+     */
+    public int reconcile(List<JobInstanceBean> instances) throws IOException {
+        // instances of coalesced measures share one livy batch
+        Map<Long, List<JobInstanceBean>> instanceMap = new HashMap<>();
+        // instances run as statements of pooled livy sessions
+        List<JobInstanceBean> pooled = new ArrayList<>();
+        for (JobInstanceBean instance : instances) {
+            if (instance.getStatementId() != null) {
+                pooled.add(instance);
+            } else if (instance.getSessionId() != null) {
+                instanceMap.computeIfAbsent(instance.getSessionId(),
+                    id -> new ArrayList<>()).add(instance);
+            }
+        }
+        if (instanceMap.isEmpty() && pooled.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Map<String, Object>> sessions = instanceMap.isEmpty()
+            ? new HashMap<>() : listLivySessions(instanceMap);
+        List<JobInstanceBean> changed = new ArrayList<>();
+        List<JobInstanceBean> expired = new ArrayList<>();
+        int count = pooled.size();
+        if (!pooled.isEmpty()) {
+            for (JobInstanceBean instance : livySessionPool.reconcile(pooled)) {
+                setRunTime(instance, null);
+                changed.add(instance);
+            }
+        }
+        for (Map.Entry<Long, List<JobInstanceBean>> entry
+            : instanceMap.entrySet()) {
+            Long sessionId = entry.getKey();
+            Map<String, Object> session = sessions.get(sessionId);
+            if (session == null) {
+                livyTaskSubmitHelper.decreaseCurTaskNum(sessionId);
+            }
+            for (JobInstanceBean instance : entry.getValue()) {
+                count++;
+                if (session != null) {
+                    if (setStateByLivy(instance, session)) {
+                        changed.add(instance);
+                    }
+                } else if (instance.getAppId() == null) {
+                    // Session is gone before spark ever got an app id. It
+                    // may not be scheduled for a long time for too many
+                    // tasks.
+                    instance.setState(DEAD);
+                    instance.setDeleted(true);
+                    changed.add(instance);
+                } else {
+                    expired.add(instance);
+                }
+            }
+        }
+        changed.addAll(setStateByYarn(expired));
+        if (!changed.isEmpty()) {
+            instanceRepo.saveAll(changed);
+            dependencyScheduler.onInstancesChanged(changed);
+        }
+        LOGGER.info("Reconciled {} active job instances, {} changed.",
+            count, changed.size());
+        return changed.size();
+    }
+
+    /**
+     * Page through Livy batches until all wanted sessions are found or there
+     * are no more batches.
+     */
+    private Map<Long, Map<String, Object>> listLivySessions(
+        Map<Long, ?> wanted) throws IOException {
+        Map<Long, Map<String, Object>> sessions = new HashMap<>();
+        TypeReference<HashMap<String, Object>> type =
+            new TypeReference<HashMap<String, Object>>() {
+            };
+        int from = 0;
+        int total = Integer.MAX_VALUE;
+        while (from < total && sessions.size() < wanted.size()) {
+            String uri = livyUri + "?from=" + from + "&size=" + pageSize;
+            Map<String, Object> page = JsonUtil.toEntity(
+                livyTaskSubmitHelper.getFromLivy(uri), type);
+            if (page == null) {
+                throw new IOException("Empty response from " + uri);
+            }
+            List<Map<String, Object>> batches = getBatches(page);
+            if (batches.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> batch : batches) {
+                Long id = Long.valueOf(String.valueOf(batch.get("id")));
+                if (wanted.containsKey(id)) {
+                    sessions.put(id, batch);
+                }
+            }
+            Object totalObj = page.get("total");
+            total = totalObj == null ? total
+                : Integer.parseInt(totalObj.toString());
+            from += batches.size();
+        }
+        return sessions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> getBatches(Map<String, Object> page) {
+        Object batches = page.get("sessions");
+        return batches instanceof List ? (List<Map<String, Object>>) batches
+            : new ArrayList<>();
+    }
+
+    private boolean setStateByLivy(JobInstanceBean instance,
+                                   Map<String, Object> session) {
+        State oldState = instance.getState();
+        String oldAppId = instance.getAppId();
+        Object state = session.get("state");
+        Object appId = session.get("appId");
+        State newState = toState(state);
+        instance.setState(newState);
+        instance.setAppId(appId == null ? null : appId.toString());
+        instance.setAppUri(appId == null ? null : yarnUri + "/cluster/app/"
+            + appId);
+        // If Livy returns to success or dead, task execution completes one
+        if (SUCCESS.equals(newState) || DEAD.equals(newState)) {
+            livyTaskSubmitHelper.decreaseCurTaskNum(instance.getSessionId());
+            setRunTime(instance, null);
+        }
+        return oldState != newState
+            || !Objects.equals(oldAppId, instance.getAppId());
+    }
+
+    private List<JobInstanceBean> setStateByYarn(
+        List<JobInstanceBean> instances) {
+        if (CollectionUtils.isEmpty(instances)) {
+            return instances;
+        }
+        LOGGER.warn("{} spark sessions may be overdue! " +
+            "Now we use yarn to update state.", instances.size());
+        long startedTimeBegin = Long.MAX_VALUE;
+        for (JobInstanceBean instance : instances) {
+            if (instance.getTms() != null) {
+                startedTimeBegin = Math.min(startedTimeBegin,
+                    instance.getTms());
+            }
+        }
+        startedTimeBegin = startedTimeBegin == Long.MAX_VALUE ? 0
+            : startedTimeBegin;
+        Map<String, JsonObject> apps = YarnNetUtil.listApps(yarnUri,
+            YARN_APP_STATES, startedTimeBegin);
+        List<JobInstanceBean> changed = new ArrayList<>();
+        for (JobInstanceBean instance : instances) {
+            State oldState = instance.getState();
+            if (apps == null) {
+                instance.setState(UNKNOWN);
+            } else {
+                JsonObject app = apps.get(instance.getAppId());
+                // in sync with Livy behavior, see
+                // com.cloudera.livy.utils.SparkYarnApp
+                instance.setState(app == null ? DEAD
+                    : LivySessionStates.toLivyState(app));
+                if (!LivySessionStates.isActive(instance.getState())) {
+                    setRunTime(instance, app == null
+                        || !app.has("elapsedTime") ? null
+                        : app.get("elapsedTime").getAsLong());
+                }
+            }
+            if (oldState != instance.getState()) {
+                changed.add(instance);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Record the run time of a finished instance, which sizes resources of
+     * later instances of its job.
+     *
+     * @param elapsed elapsed time reported by yarn, or null to count from
+     *                submission
+     */
+    private static void setRunTime(JobInstanceBean instance, Long elapsed) {
+        if (instance.getRunTime() != null) {
+            return;
+        }
+        if (elapsed != null) {
+            instance.setRunTime(elapsed);
+        } else if (instance.getSubmitTms() != null) {
+            instance.setRunTime(System.currentTimeMillis()
+                - instance.getSubmitTms());
+        }
+    }
+
+    private static State toState(Object state) {
+        if (state == null) {
+            return null;
+        }
+        try {
+            return State.valueOf(state.toString().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown livy state {}.", state);
+            return UNKNOWN;
+        }
+    }
+}
@@ -22,14 +22,21 @@ package org.apache.griffin.core.job;
 import java.util.List;
 
 import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.Backfill;
 import org.apache.griffin.core.job.entity.JobHealth;
 import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.JobSummary;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
 import org.quartz.SchedulerException;
 
 public interface JobService {
 
     List<AbstractJob> getAliveJobs(String type);
 
+    List<JobSummary> getJobSummaries(String type, String owner,
+                                     String organization, Long after,
+                                     int size);
+
     AbstractJob addJob(AbstractJob js) throws Exception;
 
     AbstractJob getJobConfig(Long jobId);
@@ -50,5 +57,11 @@ public interface JobService {
 
     JobInstanceBean findInstance(Long id);
 
+    ResourceAdvice getResourceAdvice(Long jobId);
+
     String triggerJobById(Long id) throws SchedulerException;
+
+    Backfill backfill(Long id, long from, long to) throws SchedulerException;
+
+    Backfill getBackfill(String id);
 }
@@ -52,25 +52,33 @@ import static org.quartz.TriggerKey.triggerKey;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.griffin.core.cluster.ClusterMembership;
 import org.apache.griffin.core.event.GriffinEventManager;
 import org.apache.griffin.core.event.JobEvent;
 import org.apache.griffin.core.exception.GriffinException;
 import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.Backfill;
 import org.apache.griffin.core.job.entity.BatchJob;
 import org.apache.griffin.core.job.entity.JobHealth;
 import org.apache.griffin.core.job.entity.JobInstanceBean;
 import org.apache.griffin.core.job.entity.JobState;
+import org.apache.griffin.core.job.entity.JobSummary;
 import org.apache.griffin.core.job.entity.JobType;
 import org.apache.griffin.core.job.entity.LivySessionStates;
 import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
 import org.apache.griffin.core.job.entity.StreamingJob;
 import org.apache.griffin.core.job.repo.BatchJobRepo;
 import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.JobReleaseRepo;
 import org.apache.griffin.core.job.repo.JobRepo;
 import org.apache.griffin.core.job.repo.StreamingJobRepo;
 import org.apache.griffin.core.measure.entity.GriffinMeasure;
@@ -119,6 +127,8 @@ public class JobServiceImpl implements JobService {
     @Autowired
     private JobInstanceRepo instanceRepo;
     @Autowired
+    private JobReleaseRepo releaseRepo;
+    @Autowired
     private Environment env;
     @Autowired
     private GriffinMeasureRepo measureRepo;
@@ -136,6 +146,16 @@ public class JobServiceImpl implements JobService {
     private GriffinEventManager eventManager;
     @Autowired
     private LivyTaskSubmitHelper livyTaskSubmitHelper;
+    @Autowired
+    private JobInstanceReconciler instanceReconciler;
+    @Autowired
+    private JobDependencyScheduler dependencyScheduler;
+    @Autowired
+    private LivyResourceAdvisor resourceAdvisor;
+    @Autowired
+    private JobBackfiller backfiller;
+    @Autowired
+    private ClusterMembership cluster;
 
     public JobServiceImpl() {
 
@@ -154,6 +174,27 @@ public class JobServiceImpl implements JobService {
         return getJobDataBeans(jobs);
     }
 
+    @Override
+    public List<JobSummary> getJobSummaries(String type, String owner,
+                                            String organization, Long after,
+                                            int size) {
+        size = size > MAX_PAGE_SIZE ? MAX_PAGE_SIZE : size;
+        size = size <= 0 ? DEFAULT_PAGE_SIZE : size;
+        Pageable pageable = PageRequest.of(0, size);
+        Long id = after == null ? 0L : after;
+        owner = StringUtils.isEmpty(owner) ? null : owner;
+        organization = StringUtils.isEmpty(organization) ? null : organization;
+        JobRepo<? extends AbstractJob> repo;
+        if (JobType.BATCH.getName().equals(type)) {
+            repo = batchJobRepo;
+        } else if (JobType.STREAMING.getName().equals(type)) {
+            repo = streamingJobRepo;
+        } else {
+            repo = jobRepo;
+        }
+        return repo.findSummaries(id, owner, organization, pageable);
+    }
+
     private List<AbstractJob> getJobDataBeans(List<? extends AbstractJob> jobs) {
         List<AbstractJob> dataList = new ArrayList<>();
         try {
@@ -298,6 +339,16 @@ public class JobServiceImpl implements JobService {
         return bean;
     }
 
+    /**
+     * @param jobId job id
+     * @return livy resources recommended for the next instance of the job
+     */
+    @Override
+    public ResourceAdvice getResourceAdvice(Long jobId) {
+        getJobConfig(jobId);
+        return resourceAdvisor.advise(jobId, null);
+    }
+
     private List<JobInstanceBean> updateState(List<JobInstanceBean> instances) {
         for (JobInstanceBean instance : instances) {
             State state = instance.getState();
@@ -339,6 +390,9 @@ public class JobServiceImpl implements JobService {
 
     @Scheduled(fixedDelayString = "${jobInstance.expired.milliseconds}")
     public void deleteExpiredJobInstance() {
+        if (!cluster.isLeader()) {
+            return;
+        }
         Long timeMills = System.currentTimeMillis();
         List<JobInstanceBean> instances = instanceRepo
             .findByExpireTmsLessThanEqual
@@ -349,6 +403,12 @@ public class JobServiceImpl implements JobService {
         }
         int count = instanceRepo.deleteByExpireTimestamp(timeMills);
         LOGGER.info("Delete {} expired job instances.", count);
+        // upstream instances of older releases are expired, so they can
+        // not release a job again
+        String expired = env.getProperty("jobInstance.expired.milliseconds");
+        count = releaseRepo.deleteByCreatedDateLessThanEqual(timeMills
+            - Long.valueOf(expired != null ? expired : "604800000"));
+        LOGGER.info("Delete {} expired job releases.", count);
     }
 
     private void validateJobExist(AbstractJob job) {
@@ -516,9 +576,43 @@ public class JobServiceImpl implements JobService {
         LivySessionStates.State[] states = {STARTING, NOT_STARTED, RECOVERING,
             IDLE, RUNNING, BUSY};
         List<JobInstanceBean> beans = instanceRepo.findByActiveState(states);
-        for (JobInstanceBean jobInstance : beans) {
-            syncInstancesOfJob(jobInstance);
+        if (cluster.isEnabled()) {
+            beans = getOwnedInstances(beans);
+        }
+        try {
+            instanceReconciler.reconcile(beans);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to reconcile job instances in bulk, sync " +
+                "them one by one. {}", e.getMessage());
+            for (JobInstanceBean jobInstance : beans) {
+                syncInstancesOfJob(jobInstance);
+            }
+        }
+    }
+
+    /**
+     * Keep the instances whose livy session is owned by this node, and give
+     * back permits of sessions which other nodes found finished.
+     */
+    private List<JobInstanceBean> getOwnedInstances(
+        List<JobInstanceBean> instances) {
+        List<JobInstanceBean> owned = new ArrayList<>();
+        Set<Long> sessionIds = new HashSet<>();
+        for (JobInstanceBean instance : instances) {
+            // pooled livy sessions hold no permits of livy batches
+            Long sessionId = instance.getStatementId() == null
+                ? instance.getSessionId() : null;
+            if (sessionId != null) {
+                sessionIds.add(sessionId);
+            }
+            // instances of coalesced measures share one livy batch
+            if (cluster.owns(sessionId != null ? sessionId
+                : instance.getId())) {
+                owned.add(instance);
+            }
         }
+        livyTaskSubmitHelper.releaseInactive(sessionIds);
+        return owned;
     }
 
     /**
@@ -528,9 +622,12 @@ public class JobServiceImpl implements JobService {
      * @param instance job instance livy info
      */
     private void syncInstancesOfJob(JobInstanceBean instance) {
-        if (instance.getSessionId() == null) {
+        // statements of pooled livy sessions are synced by the session pool
+        if (instance.getSessionId() == null
+            || instance.getStatementId() != null) {
             return;
         }
+        State oldState = instance.getState();
         String uri = env.getProperty("livy.uri") + "/"
             + instance.getSessionId();
         TypeReference<HashMap<String, Object>> type =
@@ -550,11 +647,14 @@ public class JobServiceImpl implements JobService {
             LOGGER.warn("sessionId({}) appId({}) {}.", instance.getSessionId(),
                 instance.getAppId(), e.getMessage());
             setStateByYarn(instance, e);
-            livyTaskSubmitHelper.decreaseCurTaskNum(instance.getId());
+            livyTaskSubmitHelper.decreaseCurTaskNum(instance.getSessionId());
         } catch (Exception e) {
             LOGGER.error(e.getMessage());
         }
-
+        if (instance.getState() != oldState) {
+            dependencyScheduler.onInstancesChanged(
+                Collections.singletonList(instance));
+        }
     }
 
     private void setStateByYarn(JobInstanceBean instance,
@@ -629,8 +729,10 @@ public class JobServiceImpl implements JobService {
                 .getProperty("yarn.uri") + "/cluster/app/" + appId);
             instanceRepo.save(instance);
             // If Livy returns to success or dead, task execution completes one,TaskNum--
-            if (SUCCESS.equals(state) || DEAD.equals(state)) {
-                livyTaskSubmitHelper.decreaseCurTaskNum(instance.getId());
+            if (SUCCESS.equals(instance.getState())
+                || DEAD.equals(instance.getState())) {
+                livyTaskSubmitHelper.decreaseCurTaskNum(
+                    instance.getSessionId());
             }
         }
     }
@@ -696,4 +798,21 @@ public class JobServiceImpl implements JobService {
             throw new GriffinException.NotFoundException(JOB_ID_DOES_NOT_EXIST);
         }
     }
+
+    @Override
+    public Backfill backfill(Long id, long from, long to)
+        throws SchedulerException {
+        AbstractJob job = jobRepo.findByIdAndDeleted(id, false);
+        validateJobExist(job);
+        if (!(job instanceof BatchJob)) {
+            throw new GriffinException.BadRequestException(
+                JOB_TYPE_DOES_NOT_SUPPORT);
+        }
+        return backfiller.start(job, from, to);
+    }
+
+    @Override
+    public Backfill getBackfill(String id) {
+        return backfiller.get(id);
+    }
 }
@@ -0,0 +1,398 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.config.PropertiesConfig.livyConfMap;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.FOUND;
+import static org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType.BATCH;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.measure.entity.DataConnector;
+import org.apache.griffin.core.measure.entity.DataSource;
+import org.apache.griffin.core.measure.entity.GriffinMeasure;
+import org.apache.griffin.core.util.JsonUtil;
+import org.quartz.JobDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Coalesce batch measures reading the same data into one livy batch.
+ * <p>
+ * Measures whose predicates are ready are grouped by env and by the
+ * connector configs of their data sources, after partitions are resolved
+ * by {@link JobInstance}. A group is submitted when the coalescing window
+ * elapses or it is full. A group of several measures runs as one
+ * multi-measure application which scans every shared data source once,
+ * while every job keeps its own job instance and metric name, and waits in
+ * the livy task queue like any batch if the queue is needed. A group of
+ * one measure is submitted as usual. Jobs which override livy resources
+ * are submitted alone, and if adaptive sizing is enabled a group gets the
+ * largest resources advised for any of its measures. Predicate jobs of a
+ * group are in flight until they are deleted, so firing again they are not
+ * submitted twice.
+ */
+@Component
+public class LivyBatchCoalescer implements ApplicationContextAware {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(LivyBatchCoalescer.class);
+
+    @Value("${livy.coalesce.window.milliseconds:0}")
+    private long window;
+    @Value("${livy.coalesce.max.measures:10}")
+    private int maxMeasures;
+    @Value("${livy.task.appId.retry.count:3}")
+    private int appIdRetryCount;
+    @Value("${livy.need.queue:false}")
+    private boolean isNeedLivyQueue;
+
+    @Autowired
+    private LivyTaskSubmitHelper livyTaskSubmitHelper;
+    @Autowired
+    private BatchJobOperatorImpl batchJobOp;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private LivyResourceAdvisor livyResourceAdvisor;
+    @Autowired
+    private Environment env;
+
+    private AutowireCapableBeanFactory beanFactory;
+    private ScheduledExecutorService scheduler;
+    /**
+     * pending groups by group key, guarded by this
+     */
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+    /**
+     * names of predicate jobs submitted but not deleted yet, guarded by this
+     */
+    private final Set<String> inFlight = new HashSet<>();
+
+    @Override
+    public void setApplicationContext(ApplicationContext context)
+        throws BeansException {
+        beanFactory = context.getAutowireCapableBeanFactory();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "livy-batch-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            // predicate jobs of pending measures are not deleted yet, so
+            // they fire again after restart
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return window > 0;
+    }
+
+    /**
+     * Add a measure whose predicates are ready to its group.
+     *
+     * @param jd          predicate job detail
+     * @param instance    job instance
+     * @param measure     measure with partitions resolved
+     * @param overridden  whether the job overrides livy resources
+     * @param envJson     env of the measure application
+     * @param measureJson measure of the measure application
+     * @return true if the measure is pending in a group and will be
+     * submitted when the group is flushed, false if it should be submitted
+     * as usual
+     */
+    public boolean add(JobDetail jd, JobInstanceBean instance,
+                       GriffinMeasure measure, boolean overridden,
+                       String envJson, String measureJson) {
+        if (!isEnabled() || overridden || measure.getProcessType() != BATCH
+            || instance == null) {
+            return false;
+        }
+        String key = genGroupKey(envJson, measure);
+        if (key == null) {
+            return false;
+        }
+        String name = jd.getKey().getName();
+        Group full = null;
+        synchronized (this) {
+            if (inFlight.contains(name)) {
+                return true;
+            }
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(key, envJson);
+                groups.put(key, group);
+                Group scheduled = group;
+                scheduler.schedule(() -> flush(scheduled), window,
+                    TimeUnit.MILLISECONDS);
+            }
+            // a predicate job may fire again before its group is flushed
+            group.entries.putIfAbsent(name, new Entry(jd, instance,
+                measureJson));
+            if (group.entries.size() >= maxMeasures) {
+                groups.remove(key);
+                inFlight.addAll(group.entries.keySet());
+                full = group;
+            }
+        }
+        if (full != null) {
+            Group submitted = full;
+            scheduler.execute(() -> submit(submitted));
+        }
+        return true;
+    }
+
+    private void flush(Group group) {
+        synchronized (this) {
+            if (groups.get(group.key) != group) {
+                // already submitted because it was full
+                return;
+            }
+            groups.remove(group.key);
+            inFlight.addAll(group.entries.keySet());
+        }
+        submit(group);
+    }
+
+    private void submit(Group group) {
+        List<Entry> entries = new ArrayList<>(group.entries.values());
+        boolean queued = false;
+        try {
+            if (entries.size() == 1) {
+                SparkSubmitJob job = new SparkSubmitJob();
+                beanFactory.autowireBean(job);
+                job.dispatch(entries.get(0).jobDetail);
+                return;
+            }
+            LivyRequest request = genRequest(group.envJson, entries);
+            if (!isNeedLivyQueue) {
+                post(request, entries);
+                return;
+            }
+            queued = livyTaskSubmitHelper.addTaskToWaitingQueue(
+                genTaskName(entries), earliestTms(entries),
+                request.getQueue(), () -> post(request, entries));
+            if (!queued) {
+                LOGGER.warn("Livy task queue is full, coalesced measures " +
+                    "are submitted when their predicate jobs fire again.");
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to submit coalesced measures.", e);
+        } finally {
+            if (!queued) {
+                release(entries);
+            }
+        }
+    }
+
+    private void post(LivyRequest request, List<Entry> entries) {
+        try {
+            LOGGER.info("Submit {} coalesced measures in one livy batch.",
+                entries.size());
+            Map<String, Object> resultMap = post(request);
+            for (Entry entry : entries) {
+                deletePredicateJob(entry.jobDetail);
+                SparkSubmitJob.setJobInstance(entry.instance, resultMap,
+                    FOUND);
+                if (resultMap != null) {
+                    entry.instance.setYarnQueue(request.getQueue());
+                }
+            }
+            instanceRepo.saveAll(instancesOf(entries));
+        } catch (Exception e) {
+            LOGGER.error("Failed to submit coalesced measures.", e);
+        } finally {
+            release(entries);
+        }
+    }
+
+    private synchronized void release(List<Entry> entries) {
+        for (Entry entry : entries) {
+            inFlight.remove(entry.jobDetail.getKey().getName());
+        }
+    }
+
+    private LivyRequest genRequest(String envJson, List<Entry> entries)
+        throws JsonProcessingException {
+        List<String> measureJsons = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            measureJsons.add(entry.measureJson);
+        }
+        String measuresJson = "[" + String.join(",", measureJsons) + "]";
+        Map<String, Object> overrides = null;
+        if (livyResourceAdvisor.isEnabled()) {
+            ResourceAdvice advice = livyResourceAdvisor.adviseAll(
+                instancesOf(entries));
+            LOGGER.info("Livy resources of {}: {} for {}",
+                genTaskName(entries), advice.getResources(),
+                advice.getReasons());
+            overrides = advice.getResources();
+        }
+        return LivyRequest.of(livyConfMap, overrides, Arrays.asList(envJson,
+            SparkSubmitJob.escapeCharacter(measuresJson, "\\`"), "raw,raw"));
+    }
+
+    private static String genTaskName(List<Entry> entries) {
+        List<String> names = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            names.add(entry.jobDetail.getKey().getName());
+        }
+        return "coalesced:" + String.join(",", names);
+    }
+
+    private static Long earliestTms(List<Entry> entries) {
+        Long tms = null;
+        for (Entry entry : entries) {
+            Long instanceTms = entry.instance.getTms();
+            if (instanceTms != null && (tms == null || instanceTms < tms)) {
+                tms = instanceTms;
+            }
+        }
+        return tms;
+    }
+
+    private Map<String, Object> post(LivyRequest request) throws IOException {
+        String result = livyTaskSubmitHelper.postToLivy(
+            env.getProperty("livy.uri"), request);
+        if (result == null) {
+            return null;
+        }
+        Map<String, Object> resultMap = livyTaskSubmitHelper
+            .retryLivyGetAppId(result, appIdRetryCount);
+        if (resultMap != null) {
+            livyTaskSubmitHelper.increaseCurTaskNum(Long.valueOf(
+                String.valueOf(resultMap.get("id"))), request.getQueue());
+        }
+        return resultMap;
+    }
+
+    private void deletePredicateJob(JobDetail jd) {
+        String group = jd.getKey().getGroup();
+        String name = jd.getKey().getName();
+        try {
+            batchJobOp.deleteJob(group, name);
+        } catch (Exception e) {
+            LOGGER.error("Failed to delete predicate job({},{}).", group,
+                name, e);
+        }
+    }
+
+    private static List<JobInstanceBean> instancesOf(List<Entry> entries) {
+        List<JobInstanceBean> instances = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            instances.add(entry.instance);
+        }
+        return instances;
+    }
+
+    /**
+     * @return key of measures reading the same data with the same env, or
+     * null if the measure has no data source
+     */
+    static String genGroupKey(String envJson, GriffinMeasure measure) {
+        List<String> connectors = new ArrayList<>();
+        List<DataSource> sources = measure.getDataSources();
+        if (CollectionUtils.isEmpty(sources)) {
+            return null;
+        }
+        try {
+            for (DataSource source : sources) {
+                for (DataConnector dc : source.getConnectors()) {
+                    Map<String, Object> config = dc.getConfigMap();
+                    connectors.add(dc.getType() + ":" + dc.getVersion() + ":"
+                        + JsonUtil.toJson(config == null ? null
+                        : new TreeMap<>(config)));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Failed to generate group key of measure {}.",
+                measure.getName(), e);
+            return null;
+        }
+        if (connectors.isEmpty()) {
+            return null;
+        }
+        Collections.sort(connectors);
+        return envJson + "\n" + String.join("\n", connectors);
+    }
+
+    private static class Group {
+        private final String key;
+        private final String envJson;
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+        Group(String key, String envJson) {
+            this.key = key;
+            this.envJson = envJson;
+        }
+    }
+
+    private static class Entry {
+        private final JobDetail jobDetail;
+        private final JobInstanceBean instance;
+        private final String measureJson;
+
+        Entry(JobDetail jobDetail, JobInstanceBean instance,
+              String measureJson) {
+            this.jobDetail = jobDetail;
+            this.instance = instance;
+            this.measureJson = measureJson;
+        }
+    }
+}
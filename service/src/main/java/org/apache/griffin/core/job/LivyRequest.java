@@ -0,0 +1,168 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.griffin.core.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Immutable body of one livy batch submission.
+ * <p>
+ * The body is built from the template in sparkProperties.json, which is
+ * serialized once and shared by all submissions, so that only the args of
+ * each submission are serialized and spliced in. A job may override the
+ * yarn queue, executors and memory of the template, in which case its body
+ * is serialized from a merged copy of the template.
+ */
+public final class LivyRequest {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(LivyRequest.class);
+    static final String DEFAULT_YARN_QUEUE = "default";
+    private static final String QUEUE = "queue";
+    private static final String ARGS = "args";
+    private static final Set<String> OVERRIDABLE_KEYS = new HashSet<>(
+        Arrays.asList(QUEUE, "numExecutors", "executorCores", "driverMemory",
+            "executorMemory"));
+
+    private static volatile Template template;
+
+    private final String body;
+    private final String queue;
+
+    private LivyRequest(String body, String queue) {
+        this.body = body;
+        this.queue = queue;
+    }
+
+    /**
+     * @param conf      livy template from sparkProperties.json
+     * @param overrides per-job overrides of the template, may be null
+     * @param args      args of the griffin measure application
+     * @return livy request of one submission
+     * @throws JsonProcessingException if the body cannot be serialized
+     */
+    public static LivyRequest of(Map<String, Object> conf,
+                                 Map<String, Object> overrides,
+                                 List<String> args)
+        throws JsonProcessingException {
+        Map<String, Object> base = conf == null
+            ? Collections.emptyMap() : conf;
+        Map<String, Object> valid = validOverrides(overrides);
+        String prefix;
+        if (valid.isEmpty()) {
+            prefix = getTemplate(base).prefix;
+        } else {
+            Map<String, Object> merged = new LinkedHashMap<>(base);
+            merged.putAll(valid);
+            base = merged;
+            prefix = prefixOf(merged);
+        }
+        Object queue = base.get(QUEUE);
+        return new LivyRequest(splice(prefix, JsonUtil.toJson(args)),
+            queue == null ? DEFAULT_YARN_QUEUE : queue.toString());
+    }
+
+    /**
+     * @return json body to post to livy
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return yarn queue the batch is submitted to
+     */
+    public String getQueue() {
+        return queue;
+    }
+
+    private static Template getTemplate(Map<String, Object> conf)
+        throws JsonProcessingException {
+        Template current = template;
+        // the template only changes if sparkProperties.json is reloaded
+        if (current == null || current.conf != conf) {
+            current = new Template(conf, prefixOf(conf));
+            template = current;
+        }
+        return current;
+    }
+
+    private static Map<String, Object> validOverrides(
+        Map<String, Object> overrides) {
+        if (CollectionUtils.isEmpty(overrides)) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> valid = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+            if (OVERRIDABLE_KEYS.contains(entry.getKey())
+                && entry.getValue() != null) {
+                valid.put(entry.getKey(), entry.getValue());
+            } else {
+                LOGGER.warn("Livy conf {} cannot be overridden by job.",
+                    entry.getKey());
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * @return json of the conf without args and the closing brace
+     */
+    private static String prefixOf(Map<String, Object> conf)
+        throws JsonProcessingException {
+        Map<String, Object> copy = new LinkedHashMap<>(conf);
+        copy.remove(ARGS);
+        String json = JsonUtil.toJson(copy);
+        return json.substring(0, json.lastIndexOf('}'));
+    }
+
+    private static String splice(String prefix, String args) {
+        StringBuilder sb = new StringBuilder(prefix.length() + args.length()
+            + 10);
+        sb.append(prefix);
+        if (prefix.length() > 1) {
+            sb.append(',');
+        }
+        return sb.append('"').append(ARGS).append("\":").append(args)
+            .append('}').toString();
+    }
+
+    private static final class Template {
+        private final Map<String, Object> conf;
+        private final String prefix;
+
+        Template(Map<String, Object> conf, String prefix) {
+            this.conf = conf;
+            this.prefix = prefix;
+        }
+    }
+}
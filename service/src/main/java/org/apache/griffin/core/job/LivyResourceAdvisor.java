@@ -0,0 +1,266 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.config.PropertiesConfig.livyConfMap;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.ERROR;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recommend livy resources of a job submission from the run history of
+ * the job.
+ * <p>
+ * Executors are sized by the input size predicated ready for the
+ * submission, and added when recent runs are slower than the target run
+ * time. Executor memory is doubled for every recent run in a row which
+ * failed, as failed runs are mostly out of memory. All resources are
+ * bounded by admin settings.
+ */
+@Component
+public class LivyResourceAdvisor {
+    static final String NUM_EXECUTORS = "numExecutors";
+    static final String EXECUTOR_MEMORY = "executorMemory";
+
+    @Value("${livy.adaptive.enabled:false}")
+    private boolean enabled;
+    @Value("${livy.adaptive.bytes.per.executor:2147483648}")
+    private long bytesPerExecutor;
+    @Value("${livy.adaptive.executors.min:1}")
+    private int minExecutors;
+    @Value("${livy.adaptive.executors.max:20}")
+    private int maxExecutors;
+    @Value("${livy.adaptive.executor.memory.max:8g}")
+    private String maxExecutorMemory;
+    @Value("${livy.adaptive.target.runtime.milliseconds:1800000}")
+    private long targetRunTime;
+    @Value("${livy.adaptive.history.size:10}")
+    private int historySize;
+
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param jobId     job id
+     * @param inputSize input size of the submission, or null to estimate it
+     *                  from history
+     * @return recommended resources
+     */
+    public ResourceAdvice advise(Long jobId, Long inputSize) {
+        List<JobInstanceBean> history = jobId == null
+            ? Collections.emptyList()
+            : instanceRepo.findFinishedByJobId(jobId,
+            PageRequest.of(0, Math.max(historySize, 1)));
+        ResourceAdvice advice = new ResourceAdvice(jobId, inputSize);
+        List<String> reasons = advice.getReasons();
+        Long size = inputSize;
+        if (size == null) {
+            size = medianInputSize(history);
+            if (size != null) {
+                reasons.add(String.format("input size is estimated as %d "
+                    + "bytes, the median of recent runs", size));
+            }
+        }
+        int executors = sizeExecutors(size, reasons);
+        executors = scaleByRunTime(executors, history, reasons);
+        advice.getResources().put(NUM_EXECUTORS, executors);
+        advice.getResources().put(EXECUTOR_MEMORY,
+            sizeMemory(history, reasons));
+        return advice;
+    }
+
+    /**
+     * Recommend resources of submissions run together as one application,
+     * which shares its executors, so the largest resources recommended for
+     * any of them.
+     *
+     * @param instances job instances of the submissions
+     * @return recommended resources
+     */
+    public ResourceAdvice adviseAll(List<JobInstanceBean> instances) {
+        ResourceAdvice merged = new ResourceAdvice();
+        int executors = 0;
+        long memoryMb = 0;
+        for (JobInstanceBean instance : instances) {
+            Long jobId = instance.getJob() == null ? null
+                : instance.getJob().getId();
+            ResourceAdvice advice = advise(jobId, instance.getInputSize());
+            Map<String, Object> resources = advice.getResources();
+            executors = Math.max(executors,
+                (Integer) resources.get(NUM_EXECUTORS));
+            memoryMb = Math.max(memoryMb,
+                toMb(resources.get(EXECUTOR_MEMORY).toString()));
+            for (String reason : advice.getReasons()) {
+                merged.getReasons().add("job " + jobId + ": " + reason);
+            }
+        }
+        merged.getResources().put(NUM_EXECUTORS, executors);
+        merged.getResources().put(EXECUTOR_MEMORY, formatMb(memoryMb));
+        return merged;
+    }
+
+    private int sizeExecutors(Long size, List<String> reasons) {
+        int base = toInt(conf(NUM_EXECUTORS), minExecutors);
+        if (size == null) {
+            int executors = bound(base);
+            reasons.add(String.format("input size is unknown, %d executors "
+                + "by default", executors));
+            return executors;
+        }
+        long needed = Math.max((size + bytesPerExecutor - 1)
+            / bytesPerExecutor, 1);
+        int executors = bound(needed);
+        reasons.add(String.format("%d bytes of input at %d bytes per executor "
+                + "need %d executors, %d within [%d, %d]", size,
+            bytesPerExecutor, needed, executors, minExecutors, maxExecutors));
+        return executors;
+    }
+
+    private int scaleByRunTime(int executors, List<JobInstanceBean> history,
+                               List<String> reasons) {
+        List<Long> runTimes = new ArrayList<>();
+        for (JobInstanceBean instance : history) {
+            if (!isFailed(instance)) {
+                runTimes.add(instance.getRunTime());
+            }
+        }
+        if (runTimes.isEmpty() || targetRunTime <= 0) {
+            return executors;
+        }
+        Collections.sort(runTimes);
+        long p90 = runTimes.get((int) Math.ceil(runTimes.size() * 0.9) - 1);
+        if (p90 <= targetRunTime || executors >= maxExecutors) {
+            return executors;
+        }
+        int scaled = bound((long) Math.ceil((double) executors * p90
+            / targetRunTime));
+        reasons.add(String.format("p90 run time %d ms of %d recent runs "
+                + "exceeds the target %d ms, %d executors", p90,
+            runTimes.size(), targetRunTime, scaled));
+        return scaled;
+    }
+
+    private String sizeMemory(List<JobInstanceBean> history,
+                              List<String> reasons) {
+        String base = conf(EXECUTOR_MEMORY) == null ? "1g"
+            : conf(EXECUTOR_MEMORY).toString();
+        int failures = 0;
+        for (JobInstanceBean instance : history) {
+            if (!isFailed(instance)) {
+                break;
+            }
+            failures++;
+        }
+        if (failures == 0) {
+            return base;
+        }
+        long maxMb = toMb(maxExecutorMemory);
+        long mb = Math.min(toMb(base) << Math.min(failures, 10), maxMb);
+        String memory = formatMb(mb);
+        reasons.add(String.format("last %d runs failed, executor memory "
+            + "%s at most %s", failures, memory, maxExecutorMemory));
+        return memory;
+    }
+
+    private static Long medianInputSize(List<JobInstanceBean> history) {
+        List<Long> sizes = new ArrayList<>();
+        for (JobInstanceBean instance : history) {
+            if (instance.getInputSize() != null) {
+                sizes.add(instance.getInputSize());
+            }
+        }
+        if (sizes.isEmpty()) {
+            return null;
+        }
+        Collections.sort(sizes);
+        return sizes.get(sizes.size() / 2);
+    }
+
+    private static boolean isFailed(JobInstanceBean instance) {
+        return DEAD.equals(instance.getState())
+            || ERROR.equals(instance.getState());
+    }
+
+    private int bound(long executors) {
+        return (int) Math.max(minExecutors, Math.min(maxExecutors,
+            executors));
+    }
+
+    private static Object conf(String key) {
+        Map<String, Object> conf = livyConfMap;
+        return conf == null ? null : conf.get(key);
+    }
+
+    private static int toInt(Object value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param memory spark memory string like 512m or 2g, in mb without unit
+     * @return memory in mb
+     */
+    static long toMb(String memory) {
+        String value = memory.trim().toLowerCase(Locale.ROOT);
+        char unit = value.charAt(value.length() - 1);
+        if (Character.isDigit(unit)) {
+            return Long.parseLong(value);
+        }
+        long number = Long.parseLong(value.substring(0, value.length() - 1)
+            .trim());
+        switch (unit) {
+            case 'k':
+                return Math.max(number / 1024, 1);
+            case 'g':
+                return number * 1024;
+            case 't':
+                return number * 1024 * 1024;
+            default:
+                return number;
+        }
+    }
+
+    static String formatMb(long mb) {
+        return mb % 1024 == 0 ? (mb / 1024) + "g" : mb + "m";
+    }
+}
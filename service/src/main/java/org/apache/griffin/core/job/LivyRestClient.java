@@ -0,0 +1,230 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.griffin.core.util.BlockingExecutors;
+import org.apache.http.auth.AuthSchemeProvider;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.config.AuthSchemes;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Lookup;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.auth.SPNegoSchemeFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.security.kerberos.client.KerberosRestTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared http client for all Livy traffic (submit, state sync and delete).
+ * <p>
+ * Connections are pooled and kept alive between calls, and when Kerberos is
+ * enabled the login reuses the ticket cache instead of doing a keytab login
+ * per request. Every call runs on a bounded worker pool and is exposed as a
+ * {@link CompletableFuture} so that callers don't have to block a thread
+ * per request.
+ */
+@Component
+public class LivyRestClient {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(LivyRestClient.class);
+    private static final String REQUEST_BY_HEADER = "X-Requested-By";
+
+    @Value("${livy.need.kerberos:false}")
+    private String needKerberos;
+    @Value("${livy.server.auth.kerberos.principal:}")
+    private String userPrincipal;
+    @Value("${livy.server.auth.kerberos.keytab:}")
+    private String keyTabLocation;
+    @Value("${livy.server.auth.kerberos.ticket.cache:}")
+    private String ticketCache;
+    @Value("${livy.client.max.connections.total:200}")
+    private int maxConnTotal;
+    @Value("${livy.client.max.connections.per.host:50}")
+    private int maxConnPerHost;
+    @Value("${livy.client.connect.timeout.milliseconds:5000}")
+    private int connectTimeout;
+    @Value("${livy.client.read.timeout.milliseconds:30000}")
+    private int readTimeout;
+    @Value("${livy.client.connection.request.timeout.milliseconds:5000}")
+    private int connRequestTimeout;
+    @Value("${livy.client.async.threads:16}")
+    private int asyncThreads;
+    @Value("${executor.virtual.threads:false}")
+    private boolean virtualThreads;
+
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        boolean kerberos = isKerberosEnabled();
+        httpClient = buildHttpClient(kerberos);
+        if (kerberos) {
+            LOGGER.info("The livy server needs Kerberos Authentication");
+            LOGGER.info("principal:{}, location:{}, ticket cache:{}",
+                userPrincipal, keyTabLocation, ticketCache);
+            restTemplate = new KerberosRestTemplate(genLoginOptions(),
+                httpClient);
+        } else {
+            LOGGER.info("The livy server doesn't need Kerberos Authentication");
+            restTemplate = new RestTemplate(
+                new HttpComponentsClientHttpRequestFactory(httpClient));
+        }
+        executor = BlockingExecutors.newExecutor("livy-client", asyncThreads,
+            virtualThreads);
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    public CompletableFuture<String> post(String uri, String body) {
+        LOGGER.info("Post To Livy URI is: {}", uri);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(REQUEST_BY_HEADER, "admin");
+        HttpEntity<String> entity = new HttpEntity<>(body, headers);
+        return CompletableFuture.supplyAsync(() ->
+            restTemplate.postForObject(uri, entity, String.class), executor);
+    }
+
+    public CompletableFuture<String> get(String uri) {
+        LOGGER.info("Get From Livy URI is: {}", uri);
+        return CompletableFuture.supplyAsync(() ->
+            restTemplate.getForObject(uri, String.class), executor);
+    }
+
+    public CompletableFuture<Void> delete(String uri) {
+        LOGGER.info("Delete by Livy URI is: {}", uri);
+        return CompletableFuture.runAsync(() -> restTemplate.delete(uri),
+            executor);
+    }
+
+    /**
+     * Wait for a future returned by this client, rethrowing the original
+     * runtime exception (e.g. HttpClientErrorException) so that callers can
+     * keep handling Livy errors as before.
+     *
+     * @param future livy call
+     * @param <T>    result type
+     * @return result of the call
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isKerberosEnabled() {
+        if (StringUtils.isEmpty(needKerberos)) {
+            LOGGER.error("The property \"livy.need.kerberos\" is empty");
+            return false;
+        }
+        return needKerberos.equalsIgnoreCase("true");
+    }
+
+    private CloseableHttpClient buildHttpClient(boolean kerberos) {
+        PoolingHttpClientConnectionManager cm =
+            new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(maxConnTotal);
+        cm.setDefaultMaxPerRoute(maxConnPerHost);
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setSocketTimeout(readTimeout)
+            .setConnectionRequestTimeout(connRequestTimeout)
+            .build();
+        HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(cm)
+            .setDefaultRequestConfig(requestConfig);
+        if (kerberos) {
+            Lookup<AuthSchemeProvider> authSchemeRegistry = RegistryBuilder
+                .<AuthSchemeProvider>create()
+                .register(AuthSchemes.SPNEGO, new SPNegoSchemeFactory(true))
+                .build();
+            BasicCredentialsProvider credentialsProvider =
+                new BasicCredentialsProvider();
+            // SPNEGO takes credentials from the JAAS subject, so only an
+            // empty credential is needed to enable the auth scheme
+            credentialsProvider.setCredentials(new AuthScope(null, -1, null),
+                new Credentials() {
+                    @Override
+                    public Principal getUserPrincipal() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getPassword() {
+                        return null;
+                    }
+                });
+            builder.setDefaultAuthSchemeRegistry(authSchemeRegistry)
+                .setDefaultCredentialsProvider(credentialsProvider);
+        }
+        return builder.build();
+    }
+
+    private Map<String, Object> genLoginOptions() {
+        Map<String, Object> options = new HashMap<>();
+        options.put("useKeyTab", "true");
+        options.put("keyTab", keyTabLocation);
+        options.put("principal", userPrincipal);
+        options.put("storeKey", "true");
+        if (!StringUtils.isEmpty(ticketCache)) {
+            options.put("useTicketCache", "true");
+            options.put("ticketCache", ticketCache);
+            options.put("renewTGT", "true");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,412 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.config.PropertiesConfig.livyConfMap;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.UNKNOWN;
+import static org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType.BATCH;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType;
+import org.apache.griffin.core.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * A pool of warm livy interactive sessions with griffin-measure jar loaded.
+ * <p>
+ * Batch measures of at most {@code livy.session.max.input.bytes} input run
+ * as statements in these sessions, so they do not pay yarn container
+ * allocation and spark driver startup for every job instance. Sessions are
+ * recycled after a number of statements or an age, and every session runs
+ * a limited number of statements at a time. Jobs of larger or unknown
+ * input, jobs which override livy resources, streaming jobs and jobs
+ * arriving when no session has a free slot are submitted as livy batches
+ * as before, as the fixed resources of a session would not fit them.
+ */
+@Component
+public class LivySessionPool {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(LivySessionPool.class);
+    private static final TypeReference<HashMap<String, Object>> TYPE =
+        new TypeReference<HashMap<String, Object>>() {
+        };
+    private static final Set<String> READY_STATES = new HashSet<>(
+        Arrays.asList("idle", "busy"));
+    private static final Set<String> FINAL_STATES = new HashSet<>(
+        Arrays.asList("shutting_down", "error", "dead", "killed", "success"));
+    private static final String[] SESSION_CONF_KEYS = {"queue",
+        "numExecutors", "executorCores", "driverMemory", "executorMemory",
+        "conf", "files"};
+    private static final String APPLICATION =
+        "org.apache.griffin.measure.Application";
+
+    @Value("${livy.session.pool.size:0}")
+    private int poolSize;
+    @Value("${livy.session.concurrency:1}")
+    private int concurrency;
+    @Value("${livy.session.max.statements:100}")
+    private int maxStatements;
+    @Value("${livy.session.max.age.milliseconds:14400000}")
+    private long maxAge;
+    @Value("${livy.session.uri:}")
+    private String sessionUri;
+    @Value("${livy.session.max.input.bytes:1073741824}")
+    private long maxInputBytes;
+
+    @Autowired
+    private LivyRestClient livyRestClient;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private JobDependencyScheduler dependencyScheduler;
+    @Autowired
+    private Environment env;
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sessionIndex = new AtomicInteger(0);
+
+    public boolean isEnabled() {
+        return poolSize > 0;
+    }
+
+    /**
+     * Run a measure as a statement in a warm session if its input size is
+     * known and small enough and a session has a free slot. The job
+     * instance is saved as running and updated when the statement finishes.
+     *
+     * @param instance    job instance with its input size
+     * @param processType process type of the measure
+     * @param overridden  whether the job overrides livy resources
+     * @param envJson     env of the measure application
+     * @param measureJson measure of the measure application
+     * @return true if the measure is submitted to a session, false if it
+     * should be submitted as a livy batch
+     */
+    public boolean submit(JobInstanceBean instance, ProcessType processType,
+                          boolean overridden, String envJson,
+                          String measureJson) {
+        if (!isEnabled() || processType != BATCH || overridden) {
+            return false;
+        }
+        Long inputSize = instance.getInputSize();
+        if (inputSize == null || inputSize > maxInputBytes) {
+            LOGGER.info("Job instance {} of input size {} runs as a batch.",
+                instance.getId(), inputSize);
+            return false;
+        }
+        Session session = reserve();
+        if (session == null) {
+            return false;
+        }
+        try {
+            Map<String, Object> body = new HashMap<>();
+            body.put("code", genCode(envJson, measureJson));
+            String result = LivyRestClient.await(livyRestClient.post(
+                getSessionUri() + "/" + session.id + "/statements",
+                JsonUtil.toJson(body)));
+            Map<String, Object> statement = JsonUtil.toEntity(result, TYPE);
+            Long statementId = Long.valueOf(String.valueOf(
+                statement.get("id")));
+            instance.setState(RUNNING);
+            instance.setPredicateDeleted(true);
+            instance.setAppId(session.appId);
+            instance.setSessionId(session.id);
+            instance.setStatementId(statementId);
+            instanceRepo.save(instance);
+            session.statements.put(statementId, instance.getId());
+            LOGGER.info("Job instance {} runs as statement {} of livy " +
+                "session {}.", instance.getId(), statementId, session.id);
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to run job instance {} in livy session {}, " +
+                "submit it as a batch. {}", instance.getId(), session.id,
+                e.getMessage());
+            return false;
+        } finally {
+            session.reserved.decrementAndGet();
+        }
+    }
+
+    /**
+     * Look up statements of pooled instances which no session of this node
+     * tracks, e.g. those submitted before a restart or by another node.
+     * Instances whose session or statement is gone are dead.
+     *
+     * @param instances active instances run as statements
+     * @return instances whose state changed
+     */
+    public List<JobInstanceBean> reconcile(List<JobInstanceBean> instances) {
+        Set<Long> tracked = new HashSet<>();
+        for (Session session : sessions) {
+            tracked.addAll(session.statements.values());
+        }
+        List<JobInstanceBean> changed = new ArrayList<>();
+        for (JobInstanceBean instance : instances) {
+            if (tracked.contains(instance.getId())) {
+                continue;
+            }
+            String uri = getSessionUri() + "/" + instance.getSessionId()
+                + "/statements/" + instance.getStatementId();
+            State state;
+            try {
+                state = getStatementState(uri);
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
+                    LOGGER.warn("Failed to get statement of job instance " +
+                        "{}. {}", instance.getId(), e.getMessage());
+                    continue;
+                }
+                state = DEAD;
+            } catch (Exception e) {
+                LOGGER.warn("Failed to get statement of job instance {}. {}",
+                    instance.getId(), e.getMessage());
+                continue;
+            }
+            if (state != null) {
+                instance.setState(state);
+                changed.add(instance);
+            }
+        }
+        return changed;
+    }
+
+    private synchronized Session reserve() {
+        for (Session session : sessions) {
+            if (READY_STATES.contains(session.state) && !session.isRetiring()
+                && session.inFlight() < concurrency) {
+                session.reserved.incrementAndGet();
+                session.submitted++;
+                return session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Refresh sessions and their running statements, recycle old sessions
+     * and keep the pool full.
+     */
+    @Scheduled(fixedDelayString = "${livy.session.poll.milliseconds:5000}")
+    public void maintain() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (Session session : sessions) {
+            try {
+                refresh(session);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to refresh livy session {}. {}",
+                    session.id, e.getMessage());
+            }
+        }
+        long alive = sessions.stream().filter(s -> !s.isRetiring()).count();
+        for (long i = alive; i < poolSize; i++) {
+            try {
+                create();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to create livy session. {}",
+                    e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void refresh(Session session) throws IOException {
+        String uri = getSessionUri() + "/" + session.id;
+        Map<String, Object> result = JsonUtil.toEntity(LivyRestClient.await(
+            livyRestClient.get(uri)), TYPE);
+        Object state = result.get("state");
+        Object appId = result.get("appId");
+        session.state = state == null ? "" : state.toString().toLowerCase();
+        session.appId = appId == null ? null : appId.toString();
+        if (FINAL_STATES.contains(session.state)) {
+            sessions.remove(session);
+            finishAll(session, DEAD);
+            LOGGER.warn("Livy session {} is {}.", session.id, session.state);
+            return;
+        }
+        for (Map.Entry<Long, Long> entry : session.statements.entrySet()) {
+            State finalState = getStatementState(uri + "/statements/"
+                + entry.getKey());
+            if (finalState != null) {
+                session.statements.remove(entry.getKey());
+                finish(entry.getValue(), finalState);
+            }
+        }
+        if (session.isRetiring() && session.inFlight() == 0) {
+            sessions.remove(session);
+            LivyRestClient.await(livyRestClient.delete(uri));
+            LOGGER.info("Livy session {} is recycled.", session.id);
+        }
+    }
+
+    /**
+     * @return final state of the job instance, or null if the statement is
+     * still running
+     */
+    @SuppressWarnings("unchecked")
+    private State getStatementState(String uri) throws IOException {
+        Map<String, Object> statement = JsonUtil.toEntity(
+            LivyRestClient.await(livyRestClient.get(uri)), TYPE);
+        Object state = statement.get("state");
+        if ("available".equals(state)) {
+            Map<String, Object> output = (Map<String, Object>) statement
+                .get("output");
+            Object status = output == null ? null : output.get("status");
+            Object data = output == null ? null : output.get("data");
+            // the statement prints like "res0: Boolean = true"
+            boolean success = "ok".equals(status) && data instanceof Map
+                && String.valueOf(((Map) data).get("text/plain")).trim()
+                .endsWith("true");
+            return success ? SUCCESS : DEAD;
+        } else if ("error".equals(state) || "cancelled".equals(state)) {
+            return DEAD;
+        }
+        return null;
+    }
+
+    private void create() throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("kind", "spark");
+        body.put("name", "griffin-session-" + sessionIndex.incrementAndGet());
+        List<String> jars = new ArrayList<>();
+        if (livyConfMap != null) {
+            for (String key : SESSION_CONF_KEYS) {
+                if (livyConfMap.get(key) != null) {
+                    body.put(key, livyConfMap.get(key));
+                }
+            }
+            if (livyConfMap.get("file") != null) {
+                jars.add(livyConfMap.get("file").toString());
+            }
+        }
+        body.put("jars", jars);
+        String result = LivyRestClient.await(livyRestClient.post(
+            getSessionUri(), JsonUtil.toJson(body)));
+        Map<String, Object> session = JsonUtil.toEntity(result, TYPE);
+        Long id = Long.valueOf(String.valueOf(session.get("id")));
+        sessions.add(new Session(id));
+        LOGGER.info("Livy session {} is created.", id);
+    }
+
+    private void finishAll(Session session, State state) {
+        for (Long instanceId : session.statements.values()) {
+            finish(instanceId, state);
+        }
+        session.statements.clear();
+    }
+
+    private void finish(Long instanceId, State state) {
+        JobInstanceBean instance = instanceRepo.findOne(instanceId);
+        if (instance == null) {
+            return;
+        }
+        instance.setState(state);
+        instanceRepo.save(instance);
+        dependencyScheduler.onInstancesChanged(
+            Collections.singletonList(instance));
+        LOGGER.info("Job instance {} is {} in livy session.", instanceId,
+            state);
+    }
+
+    private String genCode(String envJson, String measureJson)
+        throws IOException {
+        // json string literals are valid scala string literals
+        return APPLICATION + ".runInSession(" + JsonUtil.toJson(envJson)
+            + ", " + JsonUtil.toJson(measureJson) + ")";
+    }
+
+    private String getSessionUri() {
+        if (!StringUtils.isEmpty(sessionUri)) {
+            return sessionUri;
+        }
+        String batchUri = env.getProperty("livy.uri");
+        return batchUri.replaceAll("/batches/?$", "") + "/sessions";
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Session session : sessions) {
+            try {
+                // statements of a deleted session never report their result
+                finishAll(session, UNKNOWN);
+                LivyRestClient.await(livyRestClient.delete(getSessionUri()
+                    + "/" + session.id));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to delete livy session {}. {}",
+                    session.id, e.getMessage());
+            }
+        }
+        sessions.clear();
+    }
+
+    private class Session {
+        private final Long id;
+        private final long createdTime = System.currentTimeMillis();
+        private final Map<Long, Long> statements = new ConcurrentHashMap<>();
+        private final AtomicInteger reserved = new AtomicInteger(0);
+        private volatile String state = "starting";
+        private volatile String appId;
+        private volatile int submitted;
+
+        Session(Long id) {
+            this.id = id;
+        }
+
+        int inFlight() {
+            return statements.size() + reserved.get();
+        }
+
+        boolean isRetiring() {
+            return submitted >= maxStatements
+                || System.currentTimeMillis() - createdTime > maxAge;
+        }
+    }
+}
@@ -20,70 +20,158 @@ under the License.
 package org.apache.griffin.core.job;
 
 import static org.apache.griffin.core.config.PropertiesConfig.livyConfMap;
-import static org.apache.griffin.core.job.entity.LivySessionStates.State.NOT_FOUND;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.BUSY;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.IDLE;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.NOT_STARTED;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RECOVERING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.STARTING;
 import static org.apache.griffin.core.util.JsonUtil.toEntity;
-import static org.apache.griffin.core.util.JsonUtil.toJsonWithFormat;
+import static org.apache.griffin.core.util.JsonUtil.toJson;
+import static org.quartz.JobBuilder.newJob;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.collections.map.HashedMap;
+import org.apache.griffin.core.cluster.ClusterMembership;
+import org.apache.griffin.core.cluster.NodesChangedEvent;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.entity.LivySubmitTask;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.LivySubmitTaskRepo;
+import org.apache.griffin.core.util.BlockingExecutors;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.security.kerberos.client.KerberosRestTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * Helper of all Livy interactions, including the submit queue used when
+ * {@code livy.need.queue} is enabled.
+ * <p>
+ * Queued tasks are dispatched by several worker lanes. A lane takes a task
+ * only when there is a free permit, both globally
+ * ({@code livy.task.max.concurrent.count}) and for the yarn queue of the task
+ * ({@code livy.task.queue.max.concurrent.count}). Permits are given back by
+ * completion events, i.e. when a submitted session reaches a final state, so
+ * the submit rate follows the real capacity of the cluster. Waiting tasks are
+ * ordered by their SLA deadline, which lets late jobs go first.
+ * <p>
+ * Waiting tasks are appended to a table on the JPA datasource and deleted
+ * in batches once dispatched, so a restart loses no queued submission. The
+ * in-flight count is rebuilt from active job instances on startup.
+ * <p>
+ * In a cluster, every node dispatches the tasks it queued within its own
+ * limits, and the waiting tasks of a dead node are adopted by live nodes by
+ * the consistent hash ring of {@link ClusterMembership}.
+ */
 @Component
-public class LivyTaskSubmitHelper {
+public class LivyTaskSubmitHelper implements ApplicationContextAware {
     private static final Logger LOGGER = LoggerFactory.getLogger(LivyTaskSubmitHelper.class);
-    private static final String REQUEST_BY_HEADER = "X-Requested-By";
     public static final int DEFAULT_QUEUE_SIZE = 20000;
     private static final int SLEEP_TIME = 300;
+    private static final String DEFAULT_YARN_QUEUE =
+        LivyRequest.DEFAULT_YARN_QUEUE;
+    private static final State[] ACTIVE_STATES = {STARTING, NOT_STARTED,
+        RECOVERING, IDLE, RUNNING, BUSY};
 
-    private SparkSubmitJob sparkSubmitJob;
-    private ConcurrentMap<Long, Integer> taskAppIdMap = new ConcurrentHashMap<>();
+    private ConcurrentMap<Long, String> taskQueueMap = new ConcurrentHashMap<>();
     // Current number of tasks
     private AtomicInteger curConcurrentTaskNum = new AtomicInteger(0);
     private String workerNamePre;
-    private RestTemplate restTemplate = new RestTemplate();
-    // queue for pub or sub
-    private BlockingQueue<JobDetail> queue;
+    // waiting tasks ordered by deadline, guarded by lock
+    private final TreeSet<SubmitTask> queue = new TreeSet<>();
+    private final Set<String> queuedNames = new HashSet<>();
+    // number of running or submitting tasks of every yarn queue
+    private final Map<String, Integer> yarnQueueTaskNum = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final AtomicLong sequence = new AtomicLong(0);
+    // tasks taken by lanes which are not accepted by livy yet
+    private int pendingTaskNum;
+    private Map<String, Integer> yarnQueueLimits = new HashMap<>();
+    // ids of dispatched tasks to be deleted from the table
+    private final Queue<Long> dispatchedIds = new ConcurrentLinkedQueue<>();
     private String uri;
+    private transient AutowireCapableBeanFactory beanFactory;
 
     @Value("${livy.task.max.concurrent.count:20}")
     private int maxConcurrentTaskCount;
-    @Value("${livy.task.submit.interval.second:3}")
-    private int batchIntervalSecond;
+    @Value("${livy.task.queue.max.concurrent.count:}")
+    private String queueConcurrentTaskCount;
+    @Value("${livy.task.submit.lanes:4}")
+    private int laneCount;
+    @Value("${livy.task.sla.milliseconds:3600000}")
+    private long slaMillis;
+    @Value("${livy.task.queue.batch.size:500}")
+    private int batchSize;
+    @Value("${executor.virtual.threads:false}")
+    private boolean virtualThreads;
 
     @Autowired
     private Environment env;
+    @Autowired
+    private LivyRestClient livyRestClient;
+    @Autowired
+    private LivySubmitTaskRepo taskRepo;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private ClusterMembership cluster;
+    /**
+     * sessions missing from active job instances at the last sync, only
+     * accessed by the sync
+     */
+    private Set<Long> missingSessionIds = new HashSet<>();
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) {
+        beanFactory = context.getAutowireCapableBeanFactory();
+    }
 
     /**
      * Initialize related parameters and open consumer threads.
      */
     @PostConstruct
     public void init() {
+        yarnQueueLimits = parseQueueLimits(queueConcurrentTaskCount);
         startWorker();
         uri = env.getProperty("livy.uri");
         LOGGER.info("Livy uri : {}", uri);
@@ -94,76 +182,375 @@ public class LivyTaskSubmitHelper {
     }
 
     /**
-     * Initialize blocking queues and start consumer threads.
+     * Start worker lanes which dispatch queued tasks.
      */
     public void startWorker() {
-        queue = new LinkedBlockingQueue<>(DEFAULT_QUEUE_SIZE);
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        TaskInner taskInner = new TaskInner(executorService);
-        executorService.execute(taskInner);
+        int lanes = Math.max(laneCount, 1);
+        // lanes block on livy, so they are cheap on virtual threads
+        ExecutorService executorService = Executors.newFixedThreadPool(lanes,
+            BlockingExecutors.newThreadFactory(workerNamePre,
+                virtualThreads));
+        for (int i = 0; i < lanes; i++) {
+            executorService.execute(new TaskInner());
+        }
     }
 
     /**
      * Put job detail into the queue.
      *
-     * @param jd job detail.
+     * @param jd            job detail.
+     * @param scheduledTime time when the job instance is scheduled, used to
+     *                      work out its SLA deadline
+     * @param yarnQueue     yarn queue the job will be submitted to
+     * @return false if the task is discarded because the queue is full
      */
-    public void addTaskToWaitingQueue(JobDetail jd) throws IOException {
+    public boolean addTaskToWaitingQueue(JobDetail jd, Long scheduledTime,
+                                         String yarnQueue) {
         if (jd == null) {
             LOGGER.warn("task is blank, workerNamePre: {}", workerNamePre);
-            return;
+            return true;
+        }
+        String name = jd.getKey().getName();
+        Boolean reserved = reserveName(name);
+        if (reserved != null) {
+            return reserved;
+        }
+        long deadline = deadline(scheduledTime);
+        SubmitTask task = new SubmitTask(persist(jd, yarnQueue, deadline),
+            name, jd, null, yarnQueue, deadline, sequence.incrementAndGet());
+        enqueue(task);
+        LOGGER.info("add_task_to_waiting_queue_success, workerNamePre: {}, task: {}",
+            workerNamePre, jd);
+        return true;
+    }
+
+    /**
+     * Put a task which runs an action of its own, like a livy batch of
+     * coalesced measures, into the queue. It waits for permits like job
+     * details but is kept in memory only, so its caller must submit it
+     * again after restart.
+     *
+     * @param name          unique name of the task
+     * @param scheduledTime time when the task is scheduled
+     * @param yarnQueue     yarn queue the action submits to
+     * @param action        action which submits to livy
+     * @return false if the task is discarded because the queue is full
+     */
+    public boolean addTaskToWaitingQueue(String name, Long scheduledTime,
+                                         String yarnQueue, Runnable action) {
+        Boolean reserved = reserveName(name);
+        if (reserved != null) {
+            return reserved;
+        }
+        enqueue(new SubmitTask(null, name, null, action, yarnQueue,
+            deadline(scheduledTime), sequence.incrementAndGet()));
+        LOGGER.info("add_task_to_waiting_queue_success, workerNamePre: {}, task: {}",
+            workerNamePre, name);
+        return true;
+    }
+
+    /**
+     * @return null if the name is reserved for a new task, otherwise the
+     * result of adding the task
+     */
+    private Boolean reserveName(String name) {
+        lock.lock();
+        try {
+            if (queuedNames.contains(name)) {
+                LOGGER.info("task is already queued, workerNamePre: {}, " +
+                    "task: {}", workerNamePre, name);
+                return true;
+            }
+            if (queue.size() >= DEFAULT_QUEUE_SIZE) {
+                LOGGER.warn("task is discard, workerNamePre: {}, task: {}",
+                    workerNamePre, name);
+                return false;
+            }
+            queuedNames.add(name);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long deadline(Long scheduledTime) {
+        long time = scheduledTime != null ? scheduledTime
+            : System.currentTimeMillis();
+        return time + slaMillis;
+    }
+
+    private Long persist(JobDetail jd, String yarnQueue, long deadline) {
+        try {
+            LivySubmitTask row = new LivySubmitTask(jd.getKey().getName(),
+                jd.getKey().getGroup(),
+                toJson(jd.getJobDataMap().getWrappedMap()), yarnQueue,
+                deadline);
+            row.setOwner(cluster.getNodeId());
+            return taskRepo.save(row).getId();
+        } catch (Exception e) {
+            // keep the task in memory only rather than losing it
+            LOGGER.warn("Failed to persist livy task {}.", jd.getKey(), e);
+            return null;
+        }
+    }
+
+    private void enqueue(SubmitTask task) {
+        lock.lock();
+        try {
+            queuedNames.add(task.name);
+            queue.add(task);
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Delete dispatched tasks from the table in batches.
+     */
+    @Scheduled(fixedDelayString =
+        "${livy.task.queue.flush.milliseconds:1000}")
+    public void flushDispatchedTasks() {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = dispatchedIds.poll()) != null) {
+            ids.add(id);
+            if (ids.size() >= batchSize) {
+                deleteTasks(ids);
+                ids = new ArrayList<>();
+            }
+        }
+        deleteTasks(ids);
+    }
 
-        if (queue.remainingCapacity() <= 0) {
-            LOGGER.warn("task is discard, workerNamePre: {}, task: {}", workerNamePre, jd);
-            sparkSubmitJob.saveJobInstance(null, NOT_FOUND);
+    private void deleteTasks(List<Long> ids) {
+        if (ids.isEmpty()) {
             return;
         }
+        try {
+            taskRepo.deleteByIdIn(ids);
+        } catch (Exception e) {
+            LOGGER.error("Failed to delete dispatched livy tasks.", e);
+            dispatchedIds.addAll(ids);
+        }
+    }
 
-        queue.add(jd);
-        LOGGER.info("add_task_to_waiting_queue_success, workerNamePre: {}, task: {}",
-            workerNamePre, jd);
+    /**
+     * Rebuild the in-flight count from active job instances and reload the
+     * waiting tasks from the table in batches.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        restoreCurTaskNum();
+        restoreTasks(false);
     }
 
     /**
-     * Consumer thread.
+     * Adopt waiting tasks of nodes which are dead.
      */
-    class TaskInner implements Runnable {
-        private ExecutorService es;
+    @EventListener(NodesChangedEvent.class)
+    public void adopt() {
+        restoreTasks(true);
+    }
+
+    /**
+     * @param adopting whether to restore only the tasks of dead nodes, as
+     *                 tasks of this node are in memory already
+     */
+    private void restoreTasks(boolean adopting) {
+        TypeReference<HashMap<String, Object>> type =
+            new TypeReference<HashMap<String, Object>>() {
+            };
+        long lastId = 0;
+        int restored = 0;
+        List<LivySubmitTask> rows;
+        do {
+            rows = taskRepo.findByIdGreaterThan(lastId,
+                PageRequest.of(0, batchSize));
+            Set<String> pending = getPendingPredicateNames(rows);
+            List<Long> staleIds = new ArrayList<>();
+            for (LivySubmitTask row : rows) {
+                lastId = row.getId();
+                boolean mine = cluster.getNodeId().equals(row.getOwner());
+                if ((adopting && mine) || isQueued(row.getPredicateName())
+                    || !cluster.shouldRun(row.getOwner(),
+                    row.getPredicateName())) {
+                    continue;
+                }
+                if (!pending.contains(row.getPredicateName())) {
+                    // submitted before restart or job instance is gone
+                    staleIds.add(row.getId());
+                    continue;
+                }
+                try {
+                    JobDetail jd = newJob(SparkSubmitJob.class)
+                        .withIdentity(row.getPredicateName(),
+                            row.getPredicateGroup())
+                        .usingJobData(new JobDataMap(toEntity(
+                            row.getJobData(), type)))
+                        .build();
+                    if (!mine) {
+                        row.setOwner(cluster.getNodeId());
+                        taskRepo.save(row);
+                    }
+                    enqueue(new SubmitTask(row.getId(),
+                        jd.getKey().getName(), jd, null, row.getYarnQueue(),
+                        row.getDeadline(), sequence.incrementAndGet()));
+                    restored++;
+                } catch (IOException e) {
+                    LOGGER.error("Failed to restore livy task {}.",
+                        row.getPredicateName(), e);
+                    staleIds.add(row.getId());
+                }
+            }
+            deleteTasks(staleIds);
+        } while (rows.size() >= batchSize);
+        LOGGER.info("Restored {} waiting livy tasks and {} running tasks.",
+            restored, curConcurrentTaskNum.get());
+    }
+
+    private boolean isQueued(String predicateName) {
+        lock.lock();
+        try {
+            return queuedNames.contains(predicateName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Set<String> getPendingPredicateNames(List<LivySubmitTask> rows) {
+        Set<String> names = new HashSet<>();
+        if (rows.isEmpty()) {
+            return names;
+        }
+        for (LivySubmitTask row : rows) {
+            names.add(row.getPredicateName());
+        }
+        Set<String> pending = new HashSet<>();
+        for (JobInstanceBean instance : instanceRepo.findByPredicateNameIn(
+            names)) {
+            if (!instance.isPredicateDeleted() && !instance.isDeleted()) {
+                pending.add(instance.getPredicateName());
+            }
+        }
+        return pending;
+    }
 
-        public TaskInner(ExecutorService es) {
-            this.es = es;
+    private void restoreCurTaskNum() {
+        String defaultQueue = getYarnQueue(livyConfMap);
+        for (JobInstanceBean instance : instanceRepo.findByActiveState(
+            ACTIVE_STATES)) {
+            Long sessionId = instance.getSessionId();
+            // the other sessions are released by the nodes owning them
+            if (sessionId != null && instance.getStatementId() == null
+                && !taskQueueMap.containsKey(sessionId)
+                && cluster.owns(sessionId)) {
+                // the global queue for instances which did not record theirs
+                increaseCurTaskNum(sessionId, instance.getYarnQueue() != null
+                    ? instance.getYarnQueue() : defaultQueue);
+            }
         }
+    }
+
+    /**
+     * Worker lane. It waits for a task with a free permit instead of polling,
+     * and one failed task never stops the lane.
+     */
+    class TaskInner implements Runnable {
 
         public void run() {
-            long insertTime = System.currentTimeMillis();
-            while (true) {
+            while (!Thread.currentThread().isInterrupted()) {
+                SubmitTask task;
                 try {
-                    if (curConcurrentTaskNum.get() < maxConcurrentTaskCount
-                        && (System.currentTimeMillis() - insertTime) >= batchIntervalSecond * 1000) {
-                        JobDetail jd = queue.take();
-                        sparkSubmitJob.saveJobInstance(jd);
-                        insertTime = System.currentTimeMillis();
+                    task = takeTask();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    if (task.action != null) {
+                        task.action.run();
                     } else {
-                        Thread.sleep(SLEEP_TIME);
+                        SparkSubmitJob sparkSubmitJob = new SparkSubmitJob();
+                        beanFactory.autowireBean(sparkSubmitJob);
+                        sparkSubmitJob.submit(task.jobDetail);
                     }
                 } catch (Exception e) {
                     LOGGER.error("Async_worker_doTask_failed, {}", e.getMessage(), e);
-                    es.execute(this);
+                } finally {
+                    releasePending(task);
                 }
             }
         }
     }
 
+    private SubmitTask takeTask() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                SubmitTask task = pollTaskWithPermit();
+                if (task != null) {
+                    pendingTaskNum++;
+                    yarnQueueTaskNum.merge(task.yarnQueue, 1, Integer::sum);
+                    queuedNames.remove(task.name);
+                    if (task.id != null) {
+                        dispatchedIds.add(task.id);
+                    }
+                    return task;
+                }
+                permitReleased.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SubmitTask pollTaskWithPermit() {
+        if (curConcurrentTaskNum.get() + pendingTaskNum
+            >= maxConcurrentTaskCount) {
+            return null;
+        }
+        Iterator<SubmitTask> it = queue.iterator();
+        while (it.hasNext()) {
+            SubmitTask task = it.next();
+            Integer limit = yarnQueueLimits.get(task.yarnQueue);
+            if (limit == null || yarnQueueTaskNum.getOrDefault(
+                task.yarnQueue, 0) < limit) {
+                it.remove();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void releasePending(SubmitTask task) {
+        lock.lock();
+        try {
+            pendingTaskNum--;
+            yarnQueueTaskNum.merge(task.yarnQueue, -1, Integer::sum);
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Add the batch id returned by Livy.
      *
      * @param scheduleId livy batch id.
+     * @param yarnQueue  yarn queue of the batch.
      */
-    public void increaseCurTaskNum(Long scheduleId) {
-        curConcurrentTaskNum.incrementAndGet();
-        if (scheduleId != null) {
-            taskAppIdMap.put(scheduleId, 1);
+    public void increaseCurTaskNum(Long scheduleId, String yarnQueue) {
+        lock.lock();
+        try {
+            curConcurrentTaskNum.incrementAndGet();
+            if (scheduleId != null) {
+                String q = yarnQueue != null ? yarnQueue : DEFAULT_YARN_QUEUE;
+                taskQueueMap.put(scheduleId, q);
+                yarnQueueTaskNum.merge(q, 1, Integer::sum);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -173,9 +560,102 @@ public class LivyTaskSubmitHelper {
      * @param scheduleId livy batch id.
      */
     public void decreaseCurTaskNum(Long scheduleId) {
-        if (scheduleId != null && taskAppIdMap.containsKey(scheduleId)) {
-            curConcurrentTaskNum.decrementAndGet();
-            taskAppIdMap.remove(scheduleId);
+        if (scheduleId == null || !taskQueueMap.containsKey(scheduleId)) {
+            return;
+        }
+        lock.lock();
+        try {
+            String yarnQueue = taskQueueMap.remove(scheduleId);
+            if (yarnQueue != null) {
+                curConcurrentTaskNum.decrementAndGet();
+                yarnQueueTaskNum.merge(yarnQueue, -1, Integer::sum);
+                permitReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back permits of sessions which are not active any more, while
+     * they are synced by other nodes of the cluster. A session is released
+     * when it is missing from active job instances in two syncs in a row,
+     * as the job instance of a session just submitted may not be saved yet.
+     *
+     * @param activeSessionIds session ids of all active job instances
+     */
+    public void releaseInactive(Set<Long> activeSessionIds) {
+        Set<Long> missing = new HashSet<>();
+        for (Long sessionId : taskQueueMap.keySet()) {
+            if (activeSessionIds.contains(sessionId)) {
+                continue;
+            }
+            if (missingSessionIds.contains(sessionId)) {
+                decreaseCurTaskNum(sessionId);
+            } else {
+                missing.add(sessionId);
+            }
+        }
+        missingSessionIds = missing;
+    }
+
+    /**
+     * @param livyConf livy batch body
+     * @return yarn queue the batch is submitted to
+     */
+    public String getYarnQueue(Map<String, Object> livyConf) {
+        Object yarnQueue = livyConf == null ? null : livyConf.get("queue");
+        return yarnQueue == null ? DEFAULT_YARN_QUEUE : yarnQueue.toString();
+    }
+
+    /**
+     * @param limits limits like "queueA:10,queueB:5"
+     * @return max concurrent task count of every yarn queue
+     */
+    static Map<String, Integer> parseQueueLimits(String limits) {
+        Map<String, Integer> map = new HashMap<>();
+        if (StringUtils.isEmpty(limits)) {
+            return map;
+        }
+        for (String limit : limits.split(",")) {
+            String[] pair = limit.trim().split(":");
+            if (pair.length != 2) {
+                LOGGER.warn("Invalid yarn queue limit {}.", limit);
+                continue;
+            }
+            map.put(pair[0].trim(), Integer.valueOf(pair[1].trim()));
+        }
+        return map;
+    }
+
+    private static final class SubmitTask implements Comparable<SubmitTask> {
+        private final Long id;
+        private final String name;
+        /**
+         * job detail to submit, null if the task runs its action
+         */
+        private final JobDetail jobDetail;
+        private final Runnable action;
+        private final String yarnQueue;
+        private final long deadline;
+        private final long seq;
+
+        SubmitTask(Long id, String name, JobDetail jobDetail, Runnable action,
+                   String yarnQueue, long deadline, long seq) {
+            this.id = id;
+            this.name = name;
+            this.jobDetail = jobDetail;
+            this.action = action;
+            this.yarnQueue = yarnQueue != null ? yarnQueue
+                : DEFAULT_YARN_QUEUE;
+            this.deadline = deadline;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(SubmitTask o) {
+            int result = Long.compare(deadline, o.deadline);
+            return result != 0 ? result : Long.compare(seq, o.seq);
         }
     }
 
@@ -227,109 +707,46 @@ public class LivyTaskSubmitHelper {
         return result == null ? resultMap : toEntity(result, type);
     }
 
-    public String postToLivy(String uri) {
-        LOGGER.info("Post To Livy URI is: " + uri);
-        String needKerberos = env.getProperty("livy.need.kerberos");
-        LOGGER.info("Need Kerberos:" + needKerberos);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set(REQUEST_BY_HEADER, "admin");
-
-        if (needKerberos == null || needKerberos.isEmpty()) {
-            LOGGER.error("The property \"livy.need.kerberos\" is empty");
-            return null;
-        }
+    public String postToLivy(String uri, LivyRequest request) {
+        return LivyRestClient.await(postToLivyAsync(uri, request));
+    }
 
-        if (needKerberos.equalsIgnoreCase("false")) {
-            LOGGER.info("The livy server doesn't need Kerberos Authentication");
-            String result = null;
-            try {
-                HttpEntity<String> springEntity = new HttpEntity<>(toJsonWithFormat(livyConfMap), headers);
-                result = restTemplate.postForObject(uri, springEntity, String.class);
+    public CompletableFuture<String> postToLivyAsync(String uri,
+                                                     LivyRequest request) {
+        return livyRestClient.post(uri, request.getBody()).handle((result, e) -> {
+            if (e == null) {
                 LOGGER.info(result);
-            } catch (HttpClientErrorException e) {
-                LOGGER.error("Post to livy ERROR. \n  response status : " + e.getMessage()
-                    + "\n  response header : " + e.getResponseHeaders()
-                    + "\n  response body : " + e.getResponseBodyAsString());
-            } catch (JsonProcessingException e) {
-                LOGGER.error("Json Parsing failed, {}", e.getMessage(), e);
-            } catch (Exception e) {
-                LOGGER.error("Post to livy ERROR. \n {}", e);
+                return result;
             }
-            return result;
-        } else {
-            LOGGER.info("The livy server needs Kerberos Authentication");
-            String userPrincipal = env.getProperty("livy.server.auth.kerberos.principal");
-            String keyTabLocation = env.getProperty("livy.server.auth.kerberos.keytab");
-            LOGGER.info("principal:{}, lcoation:{}", userPrincipal, keyTabLocation);
-
-            KerberosRestTemplate restTemplate = new KerberosRestTemplate(keyTabLocation, userPrincipal);
-            HttpEntity<String> springEntity = null;
-            try {
-                springEntity = new HttpEntity<>(toJsonWithFormat(livyConfMap), headers);
-            } catch (HttpClientErrorException e) {
-                LOGGER.error("Post to livy ERROR. \n  response status : " + e.getMessage()
-                    + "\n  response header : " + e.getResponseHeaders()
-                    + "\n  response body : " + e.getResponseBodyAsString());
-            } catch (JsonProcessingException e) {
-                LOGGER.error("Json Parsing failed, {}", e.getMessage(), e);
-            } catch (Exception e) {
-                LOGGER.error("Post to livy ERROR. {}", e.getMessage(), e);
+            Throwable cause = e instanceof CompletionException
+                ? e.getCause() : e;
+            if (cause instanceof HttpClientErrorException) {
+                HttpClientErrorException ex = (HttpClientErrorException) cause;
+                LOGGER.error("Post to livy ERROR. \n  response status : "
+                    + ex.getMessage()
+                    + "\n  response header : " + ex.getResponseHeaders()
+                    + "\n  response body : " + ex.getResponseBodyAsString());
+            } else {
+                LOGGER.error("Post to livy ERROR. {}", cause.getMessage(),
+                    cause);
             }
-            String result = restTemplate.postForObject(uri, springEntity, String.class);
-            LOGGER.info(result);
-            return result;
-        }
+            return null;
+        });
     }
 
     public String getFromLivy(String uri) {
-        LOGGER.info("Get From Livy URI is: " + uri);
-        String needKerberos = env.getProperty("livy.need.kerberos");
-        LOGGER.info("Need Kerberos:" + needKerberos);
-
-        if (needKerberos == null || needKerberos.isEmpty()) {
-            LOGGER.error("The property \"livy.need.kerberos\" is empty");
-            return null;
-        }
-
-        if (needKerberos.equalsIgnoreCase("false")) {
-            LOGGER.info("The livy server doesn't need Kerberos Authentication");
-            return restTemplate.getForObject(uri, String.class);
-        } else {
-            LOGGER.info("The livy server needs Kerberos Authentication");
-            String userPrincipal = env.getProperty("livy.server.auth.kerberos.principal");
-            String keyTabLocation = env.getProperty("livy.server.auth.kerberos.keytab");
-            LOGGER.info("principal:{}, lcoation:{}", userPrincipal, keyTabLocation);
+        return LivyRestClient.await(getFromLivyAsync(uri));
+    }
 
-            KerberosRestTemplate restTemplate = new KerberosRestTemplate(keyTabLocation, userPrincipal);
-            String result = restTemplate.getForObject(uri, String.class);
-            LOGGER.info(result);
-            return result;
-        }
+    public CompletableFuture<String> getFromLivyAsync(String uri) {
+        return livyRestClient.get(uri);
     }
 
     public void deleteByLivy(String uri) {
-        LOGGER.info("Delete by Livy URI is: " + uri);
-        String needKerberos = env.getProperty("livy.need.kerberos");
-        LOGGER.info("Need Kerberos:" + needKerberos);
-
-        if (needKerberos == null || needKerberos.isEmpty()) {
-            LOGGER.error("The property \"livy.need.kerberos\" is empty");
-            return;
-        }
-
-        if (needKerberos.equalsIgnoreCase("false")) {
-            LOGGER.info("The livy server doesn't need Kerberos Authentication");
-            new RestTemplate().delete(uri);
-        } else {
-            LOGGER.info("The livy server needs Kerberos Authentication");
-            String userPrincipal = env.getProperty("livy.server.auth.kerberos.principal");
-            String keyTabLocation = env.getProperty("livy.server.auth.kerberos.keytab");
-            LOGGER.info("principal:{}, lcoation:{}", userPrincipal, keyTabLocation);
+        LivyRestClient.await(deleteByLivyAsync(uri));
+    }
 
-            KerberosRestTemplate restTemplate = new KerberosRestTemplate(keyTabLocation, userPrincipal);
-            restTemplate.delete(uri);
-        }
+    public CompletableFuture<Void> deleteByLivyAsync(String uri) {
+        return livyRestClient.delete(uri);
     }
 }
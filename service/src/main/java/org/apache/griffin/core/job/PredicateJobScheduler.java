@@ -0,0 +1,377 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.util.JsonUtil.toEntity;
+import static org.apache.griffin.core.util.JsonUtil.toJson;
+import static org.quartz.JobBuilder.newJob;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.griffin.core.cluster.ClusterMembership;
+import org.apache.griffin.core.cluster.NodesChangedEvent;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.PredicateJobCheckpoint;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.PredicateJobCheckpointRepo;
+import org.apache.griffin.core.util.BlockingExecutors;
+import org.apache.griffin.core.util.HashedTimingWheel;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schedules predicate jobs on an in-memory timing wheel instead of creating
+ * a durable Quartz job and trigger per job instance.
+ * <p>
+ * A predicate job is retried every interval until its predicates are ready
+ * or the repeat count is exhausted, exactly like the Quartz "PG" predicate
+ * jobs it replaces. Pending predicate jobs are checkpointed to the database
+ * periodically and restored on startup, and predicate jobs still stored in
+ * Quartz are migrated to the wheel when the service starts.
+ * <p>
+ * In a cluster, a predicate job runs on the node which scheduled it. The
+ * checkpoints of a dead node are adopted by live nodes by the consistent
+ * hash ring of {@link ClusterMembership}.
+ */
+@Component
+public class PredicateJobScheduler implements ApplicationContextAware {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(PredicateJobScheduler.class);
+    public static final String GROUP = "PW";
+    public static final String QUARTZ_GROUP = "PG";
+
+    @Value("${predicate.job.scheduler:quartz}")
+    private String schedulerType;
+    @Value("${predicate.wheel.tick.milliseconds:1000}")
+    private long tickMillis;
+    @Value("${predicate.wheel.size:512}")
+    private int wheelSize;
+    @Value("${predicate.wheel.threads:8}")
+    private int threads;
+    @Value("${predicate.wheel.migrate.quartz:true}")
+    private boolean migrateQuartz;
+    @Value("${executor.virtual.threads:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    @Qualifier("schedulerFactoryBean")
+    private SchedulerFactoryBean factory;
+    @Autowired
+    private PredicateJobCheckpointRepo checkpointRepo;
+    @Autowired
+    private JobInstanceRepo instanceRepo;
+    @Autowired
+    private ClusterMembership cluster;
+
+    private transient AutowireCapableBeanFactory beanFactory;
+    private final Map<String, PredicateTask> tasks = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private HashedTimingWheel wheel;
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) {
+        beanFactory = context.getAutowireCapableBeanFactory();
+    }
+
+    @PostConstruct
+    public void init() {
+        // predicates block on hdfs, so every firing may get a virtual thread
+        executor = BlockingExecutors.newExecutor("predicate-wheel-worker",
+            threads, virtualThreads);
+        wheel = new HashedTimingWheel("predicate-wheel", tickMillis,
+            wheelSize, executor);
+    }
+
+    @PreDestroy
+    public void close() {
+        checkpoint();
+        if (wheel != null) {
+            wheel.stop();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return true if new predicate jobs should be scheduled on the wheel
+     */
+    public boolean isEnabled() {
+        return "wheel".equalsIgnoreCase(schedulerType);
+    }
+
+    /**
+     * Schedule a predicate job which fires now and then repeats every
+     * interval for repeatCount times at most.
+     *
+     * @param name        predicate job name
+     * @param dataMap     job data of the predicate job
+     * @param interval    repeat interval in milliseconds
+     * @param repeatCount repeat count
+     * @throws IOException if job data cannot be serialized
+     */
+    public void schedule(String name, JobDataMap dataMap, long interval,
+                         int repeatCount) throws IOException {
+        schedule(name, dataMap, interval, repeatCount, 0,
+            System.currentTimeMillis());
+    }
+
+    private void schedule(String name, Map<String, Object> dataMap,
+                          long interval, int repeatCount, int fireCount,
+                          long nextFireTime) throws IOException {
+        PredicateJobCheckpoint checkpoint = new PredicateJobCheckpoint(name,
+            toJson(dataMap), interval, repeatCount, fireCount, nextFireTime);
+        checkpoint.setOwner(cluster.getNodeId());
+        checkpoint = checkpointRepo.save(checkpoint);
+        start(checkpoint, dataMap);
+    }
+
+    private void start(PredicateJobCheckpoint checkpoint,
+                       Map<String, Object> dataMap) {
+        String name = checkpoint.getPredicateName();
+        JobDetail jd = newJob(SparkSubmitJob.class)
+            .withIdentity(name, GROUP)
+            .usingJobData(new JobDataMap(dataMap))
+            .build();
+        PredicateTask task = new PredicateTask(checkpoint, jd);
+        PredicateTask old = tasks.put(name, task);
+        if (old != null) {
+            old.cancel();
+        }
+        long delay = checkpoint.getNextFireTime() - System.currentTimeMillis();
+        task.timeout = wheel.newTimeout(() -> fire(task), delay);
+        LOGGER.info("Predicate job {} is scheduled on timing wheel.", name);
+    }
+
+    /**
+     * Cancel a predicate job and remove its checkpoint.
+     *
+     * @param name predicate job name
+     */
+    public void cancel(String name) {
+        PredicateTask task = tasks.remove(name);
+        if (task != null) {
+            task.cancel();
+        }
+        checkpointRepo.deleteByPredicateName(name);
+    }
+
+    public boolean exists(String name) {
+        return tasks.containsKey(name);
+    }
+
+    private void fire(PredicateTask task) {
+        if (task.cancelled) {
+            return;
+        }
+        PredicateJobCheckpoint checkpoint = task.checkpoint;
+        int fireCount = checkpoint.getFireCount() + 1;
+        boolean lastFire = fireCount > checkpoint.getRepeatCount();
+        checkpoint.setFireCount(fireCount);
+        boolean done;
+        try {
+            SparkSubmitJob job = new SparkSubmitJob();
+            beanFactory.autowireBean(job);
+            done = job.execute(task.jobDetail, () -> lastFire);
+        } catch (Exception e) {
+            LOGGER.error("Failed to fire predicate job {}.",
+                checkpoint.getPredicateName(), e);
+            done = false;
+        }
+        if (done || lastFire) {
+            if (tasks.remove(checkpoint.getPredicateName(), task)) {
+                checkpointRepo.deleteByPredicateName(
+                    checkpoint.getPredicateName());
+            }
+            return;
+        }
+        checkpoint.setNextFireTime(System.currentTimeMillis()
+            + checkpoint.getInterval());
+        task.dirty = true;
+        task.timeout = wheel.newTimeout(() -> fire(task),
+            checkpoint.getInterval());
+        if (task.cancelled) {
+            task.timeout.cancel();
+        }
+    }
+
+    /**
+     * Persist fire count and next fire time of predicate jobs that fired
+     * since the last checkpoint.
+     */
+    @Scheduled(fixedDelayString =
+        "${predicate.wheel.checkpoint.milliseconds:30000}")
+    public void checkpoint() {
+        List<PredicateJobCheckpoint> changed = new ArrayList<>();
+        for (PredicateTask task : tasks.values()) {
+            if (task.dirty && !task.cancelled) {
+                task.dirty = false;
+                changed.add(task.checkpoint);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            checkpointRepo.saveAll(changed);
+        } catch (Exception e) {
+            LOGGER.error("Failed to checkpoint predicate jobs.", e);
+        }
+    }
+
+    /**
+     * Restore checkpointed predicate jobs and migrate predicate jobs left in
+     * Quartz once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        restoreCheckpoints(false);
+        if (isEnabled() && migrateQuartz && cluster.isLeader()) {
+            migrateQuartzJobs();
+        }
+    }
+
+    /**
+     * Adopt checkpointed predicate jobs of nodes which are dead.
+     */
+    @EventListener(NodesChangedEvent.class)
+    public void adopt() {
+        restoreCheckpoints(true);
+    }
+
+    /**
+     * @param adopting whether to restore only the checkpoints of dead nodes,
+     *                 as predicate jobs of this node are in memory already
+     */
+    private void restoreCheckpoints(boolean adopting) {
+        TypeReference<HashMap<String, Object>> type =
+            new TypeReference<HashMap<String, Object>>() {
+            };
+        for (PredicateJobCheckpoint checkpoint : checkpointRepo.findAll()) {
+            String name = checkpoint.getPredicateName();
+            boolean mine = cluster.getNodeId().equals(checkpoint.getOwner());
+            if ((adopting && mine) || tasks.containsKey(name)
+                || !cluster.shouldRun(checkpoint.getOwner(), name)) {
+                continue;
+            }
+            try {
+                if (!mine) {
+                    checkpoint.setOwner(cluster.getNodeId());
+                    checkpoint = checkpointRepo.save(checkpoint);
+                }
+                start(checkpoint, toEntity(checkpoint.getJobData(), type));
+            } catch (IOException e) {
+                LOGGER.error("Failed to restore predicate job {}.", name, e);
+            }
+        }
+    }
+
+    private void migrateQuartzJobs() {
+        try {
+            Scheduler scheduler = factory.getScheduler();
+            for (JobKey key : scheduler.getJobKeys(
+                GroupMatcher.jobGroupEquals(QUARTZ_GROUP))) {
+                try {
+                    migrate(scheduler, key);
+                } catch (Exception e) {
+                    LOGGER.error("Failed to migrate predicate job {}.", key,
+                        e);
+                }
+            }
+        } catch (SchedulerException e) {
+            LOGGER.error("Failed to list quartz predicate jobs.", e);
+        }
+    }
+
+    private void migrate(Scheduler scheduler, JobKey key) throws Exception {
+        scheduler.pauseJob(key);
+        JobDetail jd = scheduler.getJobDetail(key);
+        List<? extends Trigger> triggers = scheduler.getTriggersOfJob(key);
+        if (jd != null && !triggers.isEmpty()
+            && triggers.get(0) instanceof SimpleTrigger) {
+            SimpleTrigger trigger = (SimpleTrigger) triggers.get(0);
+            Date nextFireTime = trigger.getNextFireTime();
+            // a trigger without next fire time has finished all retries
+            if (nextFireTime != null) {
+                schedule(key.getName(), jd.getJobDataMap().getWrappedMap(),
+                    trigger.getRepeatInterval(), trigger.getRepeatCount(),
+                    trigger.getTimesTriggered(), nextFireTime.getTime());
+                JobInstanceBean instance = instanceRepo.findByPredicateName(
+                    key.getName());
+                if (instance != null) {
+                    instance.setPredicateGroup(GROUP);
+                    instanceRepo.save(instance);
+                }
+            }
+        }
+        scheduler.deleteJob(key);
+        LOGGER.info("Predicate job {} is migrated from quartz.", key);
+    }
+
+    private static class PredicateTask {
+        private final PredicateJobCheckpoint checkpoint;
+        private final JobDetail jobDetail;
+        private volatile HashedTimingWheel.Timeout timeout;
+        private volatile boolean dirty;
+        private volatile boolean cancelled;
+
+        PredicateTask(PredicateJobCheckpoint checkpoint, JobDetail jobDetail) {
+            this.checkpoint = checkpoint;
+            this.jobDetail = jobDetail;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
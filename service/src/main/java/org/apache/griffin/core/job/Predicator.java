@@ -33,4 +33,14 @@ public interface Predicator {
      * @throws IOException
      */
     boolean predicate() throws IOException;
+
+    /**
+     * size of the data whose readiness is predicated
+     *
+     * @return size in bytes, or null if it is unknown
+     * @throws IOException
+     */
+    default Long inputSize() throws IOException {
+        return null;
+    }
 }
@@ -23,6 +23,7 @@ import static org.apache.griffin.core.config.EnvConfig.ENV_BATCH;
 import static org.apache.griffin.core.config.EnvConfig.ENV_STREAMING;
 import static org.apache.griffin.core.config.PropertiesConfig.livyConfMap;
 import static org.apache.griffin.core.job.JobInstance.JOB_NAME;
+import static org.apache.griffin.core.job.JobInstance.LIVY_CONF_KEY;
 import static org.apache.griffin.core.job.JobInstance.MEASURE_KEY;
 import static org.apache.griffin.core.job.JobInstance.PREDICATES_KEY;
 import static org.apache.griffin.core.job.JobInstance.PREDICATE_JOB_NAME;
@@ -39,8 +40,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
 import org.apache.griffin.core.job.entity.SegmentPredicate;
 import org.apache.griffin.core.job.factory.PredicatorFactory;
 import org.apache.griffin.core.job.repo.JobInstanceRepo;
@@ -67,7 +70,7 @@ import org.springframework.util.StringUtils;
  * Simple implementation of the Quartz Job interface, submitting the
  * griffin job to spark cluster via livy
  *
- * @see LivyTaskSubmitHelper#postToLivy(String)
+ * @see LivyTaskSubmitHelper#postToLivy(String, LivyRequest)
  * @see Job#execute(JobExecutionContext) 
  */
 @PersistJobDataAfterExecution
@@ -85,6 +88,12 @@ public class SparkSubmitJob implements Job {
     private Environment env;
     @Autowired
     private LivyTaskSubmitHelper livyTaskSubmitHelper;
+    @Autowired
+    private LivySessionPool livySessionPool;
+    @Autowired
+    private LivyBatchCoalescer livyBatchCoalescer;
+    @Autowired
+    private LivyResourceAdvisor livyResourceAdvisor;
 
     @Value("${livy.need.queue:false}")
     private boolean isNeedLivyQueue;
@@ -92,43 +101,152 @@ public class SparkSubmitJob implements Job {
     private int appIdRetryCount;
 
     private GriffinMeasure measure;
+    private Map<String, Object> livyOverrides;
+    private List<String> livyArgs;
+    private LivyRequest livyRequest;
+    private String measureJson;
     private String livyUri;
     private List<SegmentPredicate> mPredicates;
     private JobInstanceBean jobInstance;
 
     @Override
     public void execute(JobExecutionContext context) {
-        JobDetail jd = context.getJobDetail();
+        execute(context.getJobDetail(), () -> isLastFire(context));
+    }
+
+    /**
+     * Check predicates of a predicate job and submit the griffin job once
+     * they are all ready.
+     *
+     * @param jd       predicate job detail
+     * @param lastFire whether this is the last retry of the predicate job
+     * @return true if the predicate job is finished, either the griffin job
+     * is submitted or the predicates are still not ready at the last retry
+     */
+    boolean execute(JobDetail jd, BooleanSupplier lastFire) {
         try {
             initParam(jd);
             setLivyConf();
             if (!success(mPredicates)) {
-                updateJobInstanceState(context);
-                return;
+                return updateJobInstanceState(lastFire);
+            }
+            if (submitToSession(jd)) {
+                return true;
+            }
+            if (livyBatchCoalescer.isEnabled()
+                && livyResourceAdvisor.isEnabled()) {
+                // a coalesced group is sized by input sizes of its measures
+                recordInputSize();
             }
-            if (isNeedLivyQueue) {
-                //livy batch limit
-                livyTaskSubmitHelper.addTaskToWaitingQueue(jd);
-            } else {
-                saveJobInstance(jd);
+            if (livyBatchCoalescer.add(jd, jobInstance, measure,
+                livyOverrides != null, genEnv(), measureJson)) {
+                // the predicate job is deleted once its group is submitted
+                return false;
             }
+            submitToLivy(jd);
+            return true;
         } catch (Exception e) {
             LOGGER.error("Post spark task ERROR.", e);
         }
+        return false;
     }
 
-    private void updateJobInstanceState(JobExecutionContext context)
-        throws IOException {
+    /**
+     * Submit a predicate job whose predicates are already ready as a livy
+     * batch, through the waiting queue if it is needed.
+     *
+     * @param jd predicate job detail
+     */
+    void dispatch(JobDetail jd) throws SchedulerException, IOException {
+        initParam(jd);
+        setLivyConf();
+        submitToLivy(jd);
+    }
+
+    private void submitToLivy(JobDetail jd) throws SchedulerException,
+        IOException {
+        if (isNeedLivyQueue) {
+            //livy batch limit
+            if (!livyTaskSubmitHelper.addTaskToWaitingQueue(jd,
+                jobInstance.getTms(), livyRequest.getQueue())) {
+                saveJobInstance(null, NOT_FOUND);
+            }
+        } else {
+            saveJobInstance(jd);
+        }
+    }
+
+    /**
+     * Submit a queued predicate job whose predicates are already ready.
+     *
+     * @param jd predicate job detail
+     */
+    void submit(JobDetail jd) throws SchedulerException, IOException {
+        initParam(jd);
+        setLivyConf();
+        saveJobInstance(jd);
+    }
+
+    private boolean submitToSession(JobDetail jd) throws SchedulerException {
+        if (jobInstance == null || !livySessionPool.isEnabled()) {
+            return false;
+        }
+        // sessions take small measures only
+        recordInputSize();
+        if (!livySessionPool.submit(jobInstance, measure.getProcessType(),
+            livyOverrides != null, genEnv(), measureJson)) {
+            return false;
+        }
+        deletePredicateJob(jd);
+        return true;
+    }
+
+    private void recordInputSize() {
+        if (jobInstance != null && jobInstance.getInputSize() == null) {
+            jobInstance.setInputSize(inputSize(mPredicates));
+        }
+    }
+
+    private static Long inputSize(List<SegmentPredicate> predicates) {
+        if (CollectionUtils.isEmpty(predicates)) {
+            return null;
+        }
+        Long size = null;
+        for (SegmentPredicate segPredicate : predicates) {
+            Predicator predicator = PredicatorFactory
+                .newPredicateInstance(segPredicate);
+            try {
+                Long predicateSize = predicator == null ? null
+                    : predicator.inputSize();
+                if (predicateSize != null) {
+                    size = (size == null ? 0 : size) + predicateSize;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to get input size of predicate {}.",
+                    segPredicate.getType(), e);
+            }
+        }
+        return size;
+    }
+
+    private boolean isLastFire(JobExecutionContext context) {
         SimpleTrigger simpleTrigger = (SimpleTrigger) context.getTrigger();
         int repeatCount = simpleTrigger.getRepeatCount();
         int fireCount = simpleTrigger.getTimesTriggered();
-        if (fireCount > repeatCount) {
+        return fireCount > repeatCount;
+    }
+
+    private boolean updateJobInstanceState(BooleanSupplier lastFire)
+        throws IOException {
+        if (lastFire.getAsBoolean()) {
             saveJobInstance(null, NOT_FOUND);
+            return true;
         }
+        return false;
     }
 
     private String post2Livy() {
-        return livyTaskSubmitHelper.postToLivy(livyUri);
+        return livyTaskSubmitHelper.postToLivy(livyUri, livyRequest);
     }
 
     private boolean success(List<SegmentPredicate> predicates) {
@@ -158,6 +276,7 @@ public class SparkSubmitJob implements Job {
             GriffinMeasure.class);
         livyUri = env.getProperty("livy.uri");
         setPredicates(jd.getJobDataMap().getString(PREDICATES_KEY));
+        setLivyOverrides(jd.getJobDataMap().getString(LIVY_CONF_KEY));
         // in order to keep metric name unique, we set job name
         // as measure name at present
         measure.setName(jd.getJobDataMap().getString(JOB_NAME));
@@ -176,7 +295,13 @@ public class SparkSubmitJob implements Job {
         }
     }
 
-    private String escapeCharacter(String str, String regex) {
+    private void setLivyOverrides(String json) throws IOException {
+        livyOverrides = StringUtils.isEmpty(json) ? null : toEntity(json,
+            new TypeReference<HashMap<String, Object>>() {
+            });
+    }
+
+    static String escapeCharacter(String str, String regex) {
         if (StringUtils.isEmpty(str)) {
             return str;
         }
@@ -197,26 +322,56 @@ public class SparkSubmitJob implements Job {
     private void setLivyArgs() throws IOException {
         List<String> args = new ArrayList<>();
         args.add(genEnv());
-        String measureJson = JsonUtil.toJsonWithFormat(measure);
+        measureJson = JsonUtil.toJsonWithFormat(measure);
         // to fix livy bug: character will be ignored by livy
         String finalMeasureJson = escapeCharacter(measureJson, "\\`");
         LOGGER.info(finalMeasureJson);
         args.add(finalMeasureJson);
         args.add("raw,raw");
-        livyConfMap.put("args", args);
+        livyArgs = args;
+        livyRequest = LivyRequest.of(livyConfMap, livyOverrides, args);
+    }
+
+    /**
+     * If adaptive sizing is enabled, record the input size of the job
+     * instance and size livy resources by it and the run history of the
+     * job. Resources overridden by the job itself always win.
+     */
+    private void adviseResources() throws IOException {
+        if (!livyResourceAdvisor.isEnabled()) {
+            return;
+        }
+        // input size takes an hdfs call per predicate, so only if needed
+        recordInputSize();
+        Long jobId = jobInstance.getJob() == null ? null
+            : jobInstance.getJob().getId();
+        ResourceAdvice advice = livyResourceAdvisor.advise(jobId,
+            jobInstance.getInputSize());
+        LOGGER.info("Livy resources of {}: {} for {}", measure.getName(),
+            advice.getResources(), advice.getReasons());
+        Map<String, Object> overrides = new HashMap<>(advice.getResources());
+        if (livyOverrides != null) {
+            overrides.putAll(livyOverrides);
+        }
+        livyRequest = LivyRequest.of(livyConfMap, overrides, livyArgs);
     }
 
     protected void saveJobInstance(JobDetail jd) throws SchedulerException,
         IOException {
+        adviseResources();
         // If result is null, it may livy uri is wrong
         // or livy parameter is wrong.
         Map<String, Object> resultMap = post2LivyWithRetry();
+        deletePredicateJob(jd);
+        setJobInstance(jobInstance, resultMap, FOUND);
+        jobInstanceRepo.save(jobInstance);
+    }
+
+    private void deletePredicateJob(JobDetail jd) throws SchedulerException {
         String group = jd.getKey().getGroup();
         String name = jd.getKey().getName();
         batchJobOp.deleteJob(group, name);
         LOGGER.info("Delete predicate job({},{}) SUCCESS.", group, name);
-        setJobInstance(resultMap, FOUND);
-        jobInstanceRepo.save(jobInstance);
     }
 
     private Map<String, Object> post2LivyWithRetry()
@@ -227,7 +382,9 @@ public class SparkSubmitJob implements Job {
             resultMap = livyTaskSubmitHelper.retryLivyGetAppId(result, appIdRetryCount);
             if (resultMap != null) {
                 livyTaskSubmitHelper.increaseCurTaskNum(Long.valueOf(
-                    String.valueOf(resultMap.get("id"))).longValue());
+                    String.valueOf(resultMap.get("id"))),
+                    livyRequest.getQueue());
+                jobInstance.setYarnQueue(livyRequest.getQueue());
             }
         }
 
@@ -243,14 +400,16 @@ public class SparkSubmitJob implements Job {
         if (result != null) {
             resultMap = toEntity(result, type);
         }
-        setJobInstance(resultMap, state);
+        setJobInstance(jobInstance, resultMap, state);
         jobInstanceRepo.save(jobInstance);
     }
 
-    private void setJobInstance(Map<String, Object> resultMap, State state) {
+    static void setJobInstance(JobInstanceBean jobInstance,
+                               Map<String, Object> resultMap, State state) {
         jobInstance.setState(state);
         jobInstance.setPredicateDeleted(true);
         if (resultMap != null) {
+            jobInstance.setSubmitTms(System.currentTimeMillis());
             Object status = resultMap.get("state");
             Object id = resultMap.get("id");
             Object appId = resultMap.get("appId");
@@ -27,7 +27,6 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +70,9 @@ public abstract class AbstractJob extends AbstractAuditableEntity {
 
     private static final Logger LOGGER = LoggerFactory
         .getLogger(AbstractJob.class);
+    private static final TypeReference<Map<String, Object>> CONFIG_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
 
     protected Long measureId;
 
@@ -102,9 +104,18 @@ public abstract class AbstractJob extends AbstractAuditableEntity {
     @JsonIgnore
     private String predicateConfig;
 
+    /**
+     * parsed view of predicateConfig, materialized on first access
+     */
     @Transient
     private Map<String, Object> configMap;
 
+    /**
+     * predicateConfig as last parsed, compared with the parsed view on save
+     */
+    @Transient
+    private Map<String, Object> parsedConfig;
+
     @NotNull
     @OneToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST,
         CascadeType.REMOVE, CascadeType.MERGE})
@@ -171,6 +182,9 @@ public abstract class AbstractJob extends AbstractAuditableEntity {
 
     @JsonProperty("predicate.config")
     public Map<String, Object> getConfigMap() {
+        if (configMap == null && !StringUtils.isEmpty(predicateConfig)) {
+            configMap = JsonUtil.parseColumn(predicateConfig, CONFIG_TYPE);
+        }
         return configMap;
     }
 
@@ -184,6 +198,7 @@ public abstract class AbstractJob extends AbstractAuditableEntity {
 
     private void setPredicateConfig(String config) {
         this.predicateConfig = config;
+        load();
     }
 
     @JsonProperty("metric.name")
@@ -227,18 +242,27 @@ public abstract class AbstractJob extends AbstractAuditableEntity {
     @PrePersist
     @PreUpdate
     public void save() throws JsonProcessingException {
+        // predicateConfig is left untouched if the parsed view is not changed
         if (configMap != null) {
-            this.predicateConfig = JsonUtil.toJson(configMap);
+            if (parsedConfig == null) {
+                parsedConfig = JsonUtil.parseSnapshot(predicateConfig,
+                    CONFIG_TYPE);
+            }
+            if (!configMap.equals(parsedConfig)) {
+                this.predicateConfig = JsonUtil.toJson(configMap);
+                this.parsedConfig = null;
+            }
         }
     }
 
+    /**
+     * Drop the parsed view so that predicateConfig is parsed again on next
+     * access.
+     */
     @PostLoad
-    public void load() throws IOException {
-        if (!StringUtils.isEmpty(predicateConfig)) {
-            this.configMap = JsonUtil.toEntity(predicateConfig,
-                new TypeReference<Map<String, Object>>() {
-                });
-        }
+    public void load() {
+        this.configMap = null;
+        this.parsedConfig = null;
     }
 
     AbstractJob() {
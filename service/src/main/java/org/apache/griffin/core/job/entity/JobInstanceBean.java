@@ -90,6 +90,46 @@ public class JobInstanceBean extends AbstractAuditableEntity {
 
     private String triggerKey;
 
+    /**
+     * size in bytes of the data predicated ready for this instance
+     */
+    @Column(name = "input_size")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long inputSize;
+
+    /**
+     * yarn queue the livy session of this instance is counted against
+     */
+    @Column(name = "yarn_queue")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String yarnQueue;
+
+    /**
+     * id of the statement running this instance in a pooled livy session,
+     * whose id is then kept as session id
+     */
+    @Column(name = "statement_id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long statementId;
+
+    /**
+     * job start time which the data time range is relative to
+     */
+    @Column(name = "job_start_timestamp")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long jobStartTms;
+
+    @Column(name = "submit_timestamp")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long submitTms;
+
+    /**
+     * milliseconds from submission to a final state
+     */
+    @Column(name = "run_time")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long runTime;
+
     public AbstractJob getJob() {
         return job;
     }
@@ -196,6 +236,56 @@ public class JobInstanceBean extends AbstractAuditableEntity {
         this.triggerKey = triggerKey;
     }
 
+    public Long getInputSize() {
+        return inputSize;
+    }
+
+    public void setInputSize(Long inputSize) {
+        this.inputSize = inputSize;
+    }
+
+    public String getYarnQueue() {
+        return yarnQueue;
+    }
+
+    public void setYarnQueue(String yarnQueue) {
+        this.yarnQueue = yarnQueue;
+    }
+
+    public Long getStatementId() {
+        return statementId;
+    }
+
+    public void setStatementId(Long statementId) {
+        this.statementId = statementId;
+    }
+
+    @JsonProperty("jobStartTimestamp")
+    public Long getJobStartTms() {
+        return jobStartTms;
+    }
+
+    public void setJobStartTms(Long jobStartTms) {
+        this.jobStartTms = jobStartTms;
+    }
+
+    @JsonProperty("submitTimestamp")
+    public Long getSubmitTms() {
+        return submitTms;
+    }
+
+    public void setSubmitTms(Long submitTms) {
+        this.submitTms = submitTms;
+    }
+
+    public Long getRunTime() {
+        return runTime;
+    }
+
+    public void setRunTime(Long runTime) {
+        this.runTime = runTime;
+    }
+
     public JobInstanceBean() {
     }
 
@@ -0,0 +1,80 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+
+import org.apache.griffin.core.measure.entity.AbstractAuditableEntity;
+
+/**
+ * Marker of a downstream job released for a job start time. Its release
+ * key is unique, so only one node of a cluster releases the job.
+ */
+@Entity
+public class JobRelease extends AbstractAuditableEntity {
+
+    private static final long serialVersionUID = -3316585247924960281L;
+
+    /**
+     * downstream job id and job start time joined by '@'
+     */
+    @Column(name = "release_key", unique = true, nullable = false)
+    private String releaseKey;
+
+    @Column(name = "job_id")
+    private Long jobId;
+
+    @Column(name = "job_start_timestamp")
+    private Long jobStartTms;
+
+    public String getReleaseKey() {
+        return releaseKey;
+    }
+
+    public void setReleaseKey(String releaseKey) {
+        this.releaseKey = releaseKey;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getJobStartTms() {
+        return jobStartTms;
+    }
+
+    public void setJobStartTms(Long jobStartTms) {
+        this.jobStartTms = jobStartTms;
+    }
+
+    public JobRelease() {
+    }
+
+    public JobRelease(Long jobId, Long jobStartTms) {
+        this.releaseKey = jobId + "@" + jobStartTms;
+        this.jobId = jobId;
+        this.jobStartTms = jobStartTms;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.persistence.DiscriminatorValue;
+
+/**
+ * Scalar columns of a job for listings, selected by a JPQL constructor
+ * expression so that data segments are never loaded.
+ */
+public class JobSummary {
+    private Long id;
+    private String jobName;
+    private String type;
+    private Long measureId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String metricName;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String cronExpression;
+    private String timeZone;
+    private Long createdDate;
+
+    public JobSummary(Long id, String jobName, String type, Long measureId,
+                      String metricName, String cronExpression,
+                      String timeZone, Long createdDate) {
+        this.id = id;
+        this.jobName = jobName;
+        this.type = typeOf(type);
+        this.measureId = measureId;
+        this.metricName = metricName;
+        this.cronExpression = cronExpression;
+        this.timeZone = timeZone;
+        this.createdDate = createdDate;
+    }
+
+    /**
+     * @param discriminator discriminator value of the job
+     * @return job type name
+     */
+    private static String typeOf(String discriminator) {
+        if (discriminatorOf(StreamingJob.class).equals(discriminator)) {
+            return JobType.STREAMING.getName();
+        } else if (discriminatorOf(VirtualJob.class).equals(discriminator)) {
+            return JobType.VIRTUAL.getName();
+        }
+        return JobType.BATCH.getName();
+    }
+
+    private static String discriminatorOf(Class<? extends AbstractJob> type) {
+        return type.getAnnotation(DiscriminatorValue.class).value();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @JsonProperty("job.name")
+    public String getJobName() {
+        return jobName;
+    }
+
+    @JsonProperty("job.type")
+    public String getType() {
+        return type;
+    }
+
+    @JsonProperty("measure.id")
+    public Long getMeasureId() {
+        return measureId;
+    }
+
+    @JsonProperty("metric.name")
+    public String getMetricName() {
+        return metricName;
+    }
+
+    @JsonProperty("cron.expression")
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    @JsonProperty("cron.time.zone")
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public Long getCreatedDate() {
+        return createdDate;
+    }
+}
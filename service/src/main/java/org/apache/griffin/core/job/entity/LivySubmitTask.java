@@ -0,0 +1,119 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Lob;
+
+import org.apache.griffin.core.measure.entity.AbstractAuditableEntity;
+
+/**
+ * A task waiting in the Livy submit queue. Rows are only inserted and
+ * deleted, and updated only when a node adopts the tasks of a dead node.
+ */
+@Entity
+public class LivySubmitTask extends AbstractAuditableEntity {
+
+    private static final long serialVersionUID = -3262405412371862096L;
+
+    @Column(name = "predicate_job_name")
+    private String predicateName;
+
+    @Column(name = "predicate_group_name")
+    private String predicateGroup;
+
+    /**
+     * job data map of the predicate job serialized as json
+     */
+    @Lob
+    @Column(name = "job_data")
+    private String jobData;
+
+    private String yarnQueue;
+
+    private Long deadline;
+
+    /**
+     * id of the service node which runs it
+     */
+    @Column(name = "owner_node")
+    private String owner;
+
+    public String getPredicateName() {
+        return predicateName;
+    }
+
+    public void setPredicateName(String predicateName) {
+        this.predicateName = predicateName;
+    }
+
+    public String getPredicateGroup() {
+        return predicateGroup;
+    }
+
+    public void setPredicateGroup(String predicateGroup) {
+        this.predicateGroup = predicateGroup;
+    }
+
+    public String getJobData() {
+        return jobData;
+    }
+
+    public void setJobData(String jobData) {
+        this.jobData = jobData;
+    }
+
+    public String getYarnQueue() {
+        return yarnQueue;
+    }
+
+    public void setYarnQueue(String yarnQueue) {
+        this.yarnQueue = yarnQueue;
+    }
+
+    public Long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Long deadline) {
+        this.deadline = deadline;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LivySubmitTask() {
+    }
+
+    public LivySubmitTask(String predicateName, String predicateGroup,
+                          String jobData, String yarnQueue, Long deadline) {
+        this.predicateName = predicateName;
+        this.predicateGroup = predicateGroup;
+        this.jobData = jobData;
+        this.yarnQueue = yarnQueue;
+        this.deadline = deadline;
+    }
+}
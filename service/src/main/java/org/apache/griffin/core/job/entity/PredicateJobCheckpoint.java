@@ -0,0 +1,134 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Lob;
+
+import org.apache.griffin.core.measure.entity.AbstractAuditableEntity;
+
+/**
+ * Checkpoint of a predicate job scheduled on the in-memory timing wheel, so
+ * that pending predicate retries survive a restart.
+ */
+@Entity
+public class PredicateJobCheckpoint extends AbstractAuditableEntity {
+
+    private static final long serialVersionUID = 2493806264123469510L;
+
+    @Column(name = "predicate_job_name", unique = true)
+    private String predicateName;
+
+    /**
+     * job data map of the predicate job serialized as json
+     */
+    @Lob
+    @Column(name = "job_data")
+    private String jobData;
+
+    @Column(name = "repeat_interval")
+    private Long interval;
+
+    @Column(name = "repeat_count")
+    private Integer repeatCount;
+
+    @Column(name = "fire_count")
+    private Integer fireCount = 0;
+
+    @Column(name = "next_fire_time")
+    private Long nextFireTime;
+
+    /**
+     * id of the service node which runs it
+     */
+    @Column(name = "owner_node")
+    private String owner;
+
+    public String getPredicateName() {
+        return predicateName;
+    }
+
+    public void setPredicateName(String predicateName) {
+        this.predicateName = predicateName;
+    }
+
+    public String getJobData() {
+        return jobData;
+    }
+
+    public void setJobData(String jobData) {
+        this.jobData = jobData;
+    }
+
+    public Long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Long interval) {
+        this.interval = interval;
+    }
+
+    public Integer getRepeatCount() {
+        return repeatCount;
+    }
+
+    public void setRepeatCount(Integer repeatCount) {
+        this.repeatCount = repeatCount;
+    }
+
+    public Integer getFireCount() {
+        return fireCount;
+    }
+
+    public void setFireCount(Integer fireCount) {
+        this.fireCount = fireCount;
+    }
+
+    public Long getNextFireTime() {
+        return nextFireTime;
+    }
+
+    public void setNextFireTime(Long nextFireTime) {
+        this.nextFireTime = nextFireTime;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public PredicateJobCheckpoint() {
+    }
+
+    public PredicateJobCheckpoint(String predicateName, String jobData,
+                                  Long interval, Integer repeatCount,
+                                  Integer fireCount, Long nextFireTime) {
+        this.predicateName = predicateName;
+        this.jobData = jobData;
+        this.interval = interval;
+        this.repeatCount = repeatCount;
+        this.fireCount = fireCount;
+        this.nextFireTime = nextFireTime;
+    }
+}
@@ -24,7 +24,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
-import java.io.IOException;
 import java.util.Map;
 import javax.persistence.Entity;
 import javax.persistence.PostLoad;
@@ -41,14 +40,27 @@ public class SegmentPredicate extends AbstractAuditableEntity {
 
     private static final long serialVersionUID = 1942715275465116154L;
 
+    private static final TypeReference<Map<String, Object>> CONFIG_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
+
     private String type;
 
     @JsonIgnore
     private String config;
 
+    /**
+     * parsed view of config, materialized on first access
+     */
     @Transient
     private Map<String, Object> configMap;
 
+    /**
+     * config as last parsed, compared with the parsed view on save
+     */
+    @Transient
+    private Map<String, Object> parsedConfig;
+
     public String getType() {
         return type;
     }
@@ -59,6 +71,9 @@ public class SegmentPredicate extends AbstractAuditableEntity {
 
     @JsonProperty("config")
     public Map<String, Object> getConfigMap() {
+        if (configMap == null && !StringUtils.isEmpty(config)) {
+            configMap = JsonUtil.parseColumn(config, CONFIG_TYPE);
+        }
         return configMap;
     }
 
@@ -72,23 +87,31 @@ public class SegmentPredicate extends AbstractAuditableEntity {
 
     public void setConfig(String config) {
         this.config = config;
+        load();
     }
 
     @PrePersist
     @PreUpdate
     public void save() throws JsonProcessingException {
+        // config is left untouched if the parsed view is not changed
         if (configMap != null) {
-            this.config = JsonUtil.toJson(configMap);
+            if (parsedConfig == null) {
+                parsedConfig = JsonUtil.parseSnapshot(config, CONFIG_TYPE);
+            }
+            if (!configMap.equals(parsedConfig)) {
+                this.config = JsonUtil.toJson(configMap);
+                this.parsedConfig = null;
+            }
         }
     }
 
+    /**
+     * Drop the parsed view so that config is parsed again on next access.
+     */
     @PostLoad
-    public void load() throws IOException {
-        if (!StringUtils.isEmpty(config)) {
-            this.configMap = JsonUtil.toEntity(config,
-                new TypeReference<Map<String, Object>>() {
-                });
-        }
+    public void load() {
+        this.configMap = null;
+        this.parsedConfig = null;
     }
 
     public SegmentPredicate() {
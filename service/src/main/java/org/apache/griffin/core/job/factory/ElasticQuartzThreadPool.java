@@ -0,0 +1,154 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.factory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.griffin.core.util.BlockingExecutors;
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Quartz thread pool for jobs which mostly block on JDBC, HDFS and HTTP.
+ * <p>
+ * Up to {@code org.quartz.threadPool.threadCount} jobs run at once. With
+ * {@code org.quartz.threadPool.virtualThreads} on a JVM which has virtual
+ * threads, every job runs on a new virtual thread, so the count can be in
+ * the thousands. Otherwise jobs run on platform threads created on demand
+ * and retired when idle, unlike the threads of SimpleThreadPool which all
+ * live as long as the scheduler.
+ */
+public class ElasticQuartzThreadPool implements ThreadPool {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(ElasticQuartzThreadPool.class);
+    private static final long POLL_MILLISECONDS = 500L;
+
+    private int threadCount = 10;
+    private boolean virtualThreads = true;
+    private String instanceName = "quartz";
+
+    private Semaphore permits;
+    private ExecutorService executor;
+    private volatile boolean shutdown;
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    @Override
+    public void setInstanceId(String instanceId) {
+    }
+
+    @Override
+    public void setInstanceName(String instanceName) {
+        this.instanceName = instanceName;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (threadCount <= 0) {
+            throw new SchedulerConfigException("Thread count must be > 0");
+        }
+        permits = new Semaphore(threadCount);
+        executor = BlockingExecutors.newExecutor(instanceName + "-worker",
+            threadCount, virtualThreads);
+        LOGGER.info("Quartz runs at most {} jobs at once on {} threads.",
+            threadCount, virtualThreads
+                && BlockingExecutors.isVirtualThreadSupported() ? "virtual"
+                : "platform");
+    }
+
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null || shutdown) {
+            return false;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return false;
+        }
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        while (!shutdown) {
+            try {
+                if (permits.tryAcquire(POLL_MILLISECONDS,
+                    TimeUnit.MILLISECONDS)) {
+                    permits.release();
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        shutdown = true;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        if (!waitForJobsToComplete) {
+            return;
+        }
+        try {
+            while (!executor.awaitTermination(POLL_MILLISECONDS,
+                TimeUnit.MILLISECONDS)) {
+                LOGGER.debug("Waiting for quartz jobs to complete.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadCount;
+    }
+}
@@ -24,6 +24,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 import static org.apache.griffin.core.job.entity.LivySessionStates.State;
@@ -32,6 +33,8 @@ public interface JobInstanceRepo extends BaseJpaRepository<JobInstanceBean, Long
 
     JobInstanceBean findByPredicateName(String name);
 
+    List<JobInstanceBean> findByPredicateNameIn(Collection<String> names);
+
     @Query("select s from JobInstanceBean s where s.id = ?1")
     JobInstanceBean findByInstanceId(Long id);
 
@@ -41,6 +44,10 @@ public interface JobInstanceRepo extends BaseJpaRepository<JobInstanceBean, Long
     @Query("select s from JobInstanceBean s where s.job.id = ?1")
     List<JobInstanceBean> findByJobId(Long jobId);
 
+    @Query("select s from JobInstanceBean s where s.job.id = ?1 " +
+            "and s.runTime is not null order by s.id desc")
+    List<JobInstanceBean> findFinishedByJobId(Long jobId, Pageable pageable);
+
     List<JobInstanceBean> findByExpireTmsLessThanEqual(Long expireTms);
 
     @Transactional(rollbackFor = Exception.class)
@@ -53,4 +60,12 @@ public interface JobInstanceRepo extends BaseJpaRepository<JobInstanceBean, Long
     List<JobInstanceBean> findByActiveState(State[] states);
 
     List<JobInstanceBean> findByTriggerKey(String triggerKey);
+
+    List<JobInstanceBean> findByTriggerKeyIn(Collection<String> triggerKeys);
+
+    @Query("select s from JobInstanceBean s where s.job.id in ?1 " +
+            "and s.jobStartTms = ?2 and s.state = ?3")
+    List<JobInstanceBean> findByJobIdsAndJobStartTms(Collection<Long> jobIds,
+                                                     Long jobStartTms,
+                                                     State state);
 }
@@ -20,6 +20,8 @@ under the License.
 package org.apache.griffin.core.job.repo;
 
 import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.JobSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
@@ -37,4 +39,15 @@ public interface JobRepo<T extends AbstractJob> extends BaseJpaRepository<T, Lon
     List<T> findByMeasureIdAndDeleted(Long measureId, boolean deleted);
 
     T findByIdAndDeleted(Long jobId, boolean deleted);
+
+    @Query("select new org.apache.griffin.core.job.entity.JobSummary(" +
+        "j.id, j.jobName, TYPE(j), j.measureId, j.metricName, " +
+        "j.cronExpression, j.timeZone, j.createdDate) " +
+        "from #{#entityName} j where j.deleted = false and j.id > ?1 " +
+        "and (?2 is null or j.measureId in (select m.id from Measure m " +
+        "where m.owner = ?2)) " +
+        "and (?3 is null or j.measureId in (select m.id from Measure m " +
+        "where m.organization = ?3)) order by j.id")
+    List<JobSummary> findSummaries(Long id, String owner, String organization,
+                                   Pageable pageable);
 }
@@ -0,0 +1,42 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.repo;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.griffin.core.job.entity.LivySubmitTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface LivySubmitTaskRepo
+    extends BaseJpaRepository<LivySubmitTask, Long> {
+
+    @Query("select t from LivySubmitTask t where t.id > ?1 " +
+        "order by t.id")
+    List<LivySubmitTask> findByIdGreaterThan(Long id, Pageable pageable);
+
+    @Transactional(rollbackFor = Exception.class)
+    @Modifying
+    @Query("delete from LivySubmitTask t where t.id in ?1")
+    int deleteByIdIn(Collection<Long> ids);
+}
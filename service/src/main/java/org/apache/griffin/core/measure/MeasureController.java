@@ -23,6 +23,7 @@ import java.util.List;
 import javax.validation.Valid;
 
 import org.apache.griffin.core.measure.entity.Measure;
+import org.apache.griffin.core.measure.entity.MeasureSummary;
 import org.quartz.SchedulerException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -46,6 +47,21 @@ public class MeasureController {
         return measureService.getAllAliveMeasures(type);
     }
 
+    /**
+     * List scalar columns of alive measures ordered by id. The next page
+     * starts after the id of the last measure of this page.
+     */
+    @RequestMapping(value = "/measures/summary", method = RequestMethod.GET)
+    public List<MeasureSummary> getMeasureSummaries(
+        @RequestParam(value = "type", defaultValue = "") String type,
+        @RequestParam(value = "owner", required = false) String owner,
+        @RequestParam(value = "org", required = false) String organization,
+        @RequestParam(value = "after", required = false) Long after,
+        @RequestParam(value = "size", defaultValue = "100") int size) {
+        return measureService.getMeasureSummaries(type, owner, organization,
+            after, size);
+    }
+
     @RequestMapping(value = "/measures/{id}", method = RequestMethod.GET)
     public Measure getMeasureById(@PathVariable("id") long id) {
         return measureService.getMeasureById(id);
@@ -23,12 +23,17 @@ package org.apache.griffin.core.measure;
 import java.util.List;
 
 import org.apache.griffin.core.measure.entity.Measure;
+import org.apache.griffin.core.measure.entity.MeasureSummary;
 import org.quartz.SchedulerException;
 
 public interface MeasureService {
 
     List<? extends Measure> getAllAliveMeasures(String type);
 
+    List<MeasureSummary> getMeasureSummaries(String type, String owner,
+                                             String organization, Long after,
+                                             int size);
+
     Measure getMeasureById(long id);
 
     void deleteMeasureById(Long id) throws SchedulerException;
@@ -31,6 +31,7 @@ import org.apache.griffin.core.exception.GriffinException;
 import org.apache.griffin.core.measure.entity.ExternalMeasure;
 import org.apache.griffin.core.measure.entity.GriffinMeasure;
 import org.apache.griffin.core.measure.entity.Measure;
+import org.apache.griffin.core.measure.entity.MeasureSummary;
 import org.apache.griffin.core.measure.repo.ExternalMeasureRepo;
 import org.apache.griffin.core.measure.repo.GriffinMeasureRepo;
 import org.apache.griffin.core.measure.repo.MeasureRepo;
@@ -39,8 +40,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 @Service
 public class MeasureServiceImpl implements MeasureService {
@@ -48,6 +51,8 @@ public class MeasureServiceImpl implements MeasureService {
         .getLogger(MeasureServiceImpl.class);
     private static final String GRIFFIN = "griffin";
     private static final String EXTERNAL = "external";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1024;
 
     @Autowired
     private MeasureRepo<Measure> measureRepo;
@@ -72,6 +77,25 @@ public class MeasureServiceImpl implements MeasureService {
         return measureRepo.findByDeleted(false);
     }
 
+    @Override
+    public List<MeasureSummary> getMeasureSummaries(String type, String owner,
+                                                    String organization,
+                                                    Long after, int size) {
+        size = size > MAX_PAGE_SIZE ? MAX_PAGE_SIZE : size;
+        size = size <= 0 ? DEFAULT_PAGE_SIZE : size;
+        Long id = after == null ? 0L : after;
+        owner = StringUtils.isEmpty(owner) ? null : owner;
+        organization = StringUtils.isEmpty(organization) ? null : organization;
+        MeasureRepo<? extends Measure> repo = measureRepo;
+        if (GRIFFIN.equals(type)) {
+            repo = griffinMeasureRepo;
+        } else if (EXTERNAL.equals(type)) {
+            repo = externalMeasureRepo;
+        }
+        return repo.findSummaries(id, owner, organization,
+            PageRequest.of(0, size));
+    }
+
     @Override
     public Measure getMeasureById(long id) {
         Measure measure = measureRepo.findByIdAndDeleted(id, false);
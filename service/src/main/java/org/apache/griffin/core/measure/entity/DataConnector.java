@@ -56,6 +56,9 @@ public class DataConnector extends AbstractAuditableEntity {
 
     private final static Logger LOGGER = LoggerFactory
         .getLogger(DataConnector.class);
+    private static final TypeReference<Map<String, Object>> CONFIG_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
 
     public enum DataType {
         /**
@@ -92,9 +95,18 @@ public class DataConnector extends AbstractAuditableEntity {
     @Column(length = 20480)
     private String config;
 
+    /**
+     * parsed view of config, materialized on first access
+     */
     @Transient
     private Map<String, Object> configMap;
 
+    /**
+     * config as last parsed, compared with the parsed view on save
+     */
+    @Transient
+    private Map<String, Object> parsedConfig;
+
     @OneToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST,
         CascadeType.REMOVE, CascadeType.MERGE})
     @JoinColumn(name = "data_connector_id")
@@ -125,6 +137,9 @@ public class DataConnector extends AbstractAuditableEntity {
 
     @JsonProperty("config")
     public Map<String, Object> getConfigMap() {
+        if (configMap == null && !StringUtils.isEmpty(config)) {
+            configMap = JsonUtil.parseColumn(config, CONFIG_TYPE);
+        }
         return configMap;
     }
 
@@ -134,6 +149,7 @@ public class DataConnector extends AbstractAuditableEntity {
 
     private void setConfig(String config) {
         this.config = config;
+        load();
     }
 
     private String getConfig() {
@@ -206,18 +222,25 @@ public class DataConnector extends AbstractAuditableEntity {
     @PrePersist
     @PreUpdate
     public void save() throws JsonProcessingException {
+        // config is left untouched if the parsed view is not changed
         if (configMap != null) {
-            this.config = JsonUtil.toJson(configMap);
+            if (parsedConfig == null) {
+                parsedConfig = JsonUtil.parseSnapshot(config, CONFIG_TYPE);
+            }
+            if (!configMap.equals(parsedConfig)) {
+                this.config = JsonUtil.toJson(configMap);
+                this.parsedConfig = null;
+            }
         }
     }
 
+    /**
+     * Drop the parsed view so that config is parsed again on next access.
+     */
     @PostLoad
-    public void load() throws IOException {
-        if (!StringUtils.isEmpty(config)) {
-            this.configMap = JsonUtil.toEntity(config,
-                new TypeReference<Map<String, Object>>() {
-                });
-        }
+    public void load() {
+        this.configMap = null;
+        this.parsedConfig = null;
     }
 
     public DataConnector() {
@@ -230,9 +253,6 @@ public class DataConnector extends AbstractAuditableEntity {
         this.type = type;
         this.version = version;
         this.config = config;
-        this.configMap = JsonUtil.toEntity(config,
-            new TypeReference<Map<String, Object>>() {
-            });
         this.dataFrameName = dataFrameName;
     }
 
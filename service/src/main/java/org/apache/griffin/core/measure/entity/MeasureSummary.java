@@ -0,0 +1,90 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.measure.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Scalar columns of a measure for listings, selected by a JPQL constructor
+ * expression so that data sources and rules are never loaded.
+ */
+public class MeasureSummary {
+    private Long id;
+    private String name;
+    private String type;
+    private DqType dqType;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String owner;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String organization;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String description;
+    private Long createdDate;
+
+    public MeasureSummary(Long id, String name, String type, DqType dqType,
+                          String owner, String organization,
+                          String description, Long createdDate) {
+        this.id = id;
+        this.name = name;
+        // type is the discriminator value, which defaults to the entity name
+        this.type = ExternalMeasure.class.getSimpleName().equals(type)
+            ? "external" : "griffin";
+        this.dqType = dqType;
+        this.owner = owner;
+        this.organization = organization;
+        this.description = description;
+        this.createdDate = createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @JsonProperty("measure.type")
+    public String getType() {
+        return type;
+    }
+
+    @JsonProperty("dq.type")
+    public DqType getDqType() {
+        return dqType;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getCreatedDate() {
+        return createdDate;
+    }
+}
@@ -25,7 +25,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import javax.persistence.Column;
@@ -41,10 +40,15 @@ import javax.validation.constraints.NotNull;
 import org.apache.commons.lang.StringUtils;
 import org.apache.griffin.core.util.JsonUtil;
 
-
 @Entity
 public class Rule extends AbstractAuditableEntity {
     private static final long serialVersionUID = -143019093509759648L;
+    private static final TypeReference<Map<String, Object>> DETAILS_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
+    private static final TypeReference<List<Map<String, Object>>> OUT_TYPE =
+        new TypeReference<List<Map<String, Object>>>() {
+        };
 
     /**
      * three type:1.griffin-dsl 2.df-opr 3.spark-sql
@@ -69,14 +73,32 @@ public class Rule extends AbstractAuditableEntity {
     @Column(length = 1024)
     private String details;
 
+    /**
+     * parsed view of details, materialized on first access
+     */
     @Transient
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private Map<String, Object> detailsMap;
 
+    /**
+     * details as last parsed, compared with the parsed view on save
+     */
+    @Transient
+    private Map<String, Object> parsedDetails;
+
+    /**
+     * parsed view of out, materialized on first access
+     */
     @Transient
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Map<String, Object>> outList;
 
+    /**
+     * out as last parsed, compared with the parsed view on save
+     */
+    @Transient
+    private List<Map<String, Object>> parsedOut;
+
     @JsonIgnore
     @Column(name = "\"out\"")
     private String out;
@@ -130,6 +152,9 @@ public class Rule extends AbstractAuditableEntity {
 
     @JsonProperty("details")
     public Map<String, Object> getDetailsMap() {
+        if (detailsMap == null && !StringUtils.isEmpty(details)) {
+            detailsMap = JsonUtil.parseColumn(details, DETAILS_TYPE);
+        }
         return detailsMap;
     }
 
@@ -143,10 +168,15 @@ public class Rule extends AbstractAuditableEntity {
 
     private void setDetails(String details) {
         this.details = details;
+        this.detailsMap = null;
+        this.parsedDetails = null;
     }
 
     @JsonProperty("out")
     public List<Map<String, Object>> getOutList() {
+        if (outList == null && !StringUtils.isEmpty(out)) {
+            outList = JsonUtil.parseColumn(out, OUT_TYPE);
+        }
         return outList;
     }
 
@@ -160,6 +190,8 @@ public class Rule extends AbstractAuditableEntity {
 
     private void setOut(String out) {
         this.out = out;
+        this.outList = null;
+        this.parsedOut = null;
     }
 
     public Boolean getCache() {
@@ -173,26 +205,38 @@ public class Rule extends AbstractAuditableEntity {
     @PrePersist
     @PreUpdate
     public void save() throws JsonProcessingException {
+        // json columns are left untouched if their parsed views are not
+        // changed
         if (detailsMap != null) {
-            this.details = JsonUtil.toJson(detailsMap);
+            if (parsedDetails == null) {
+                parsedDetails = JsonUtil.parseSnapshot(details, DETAILS_TYPE);
+            }
+            if (!detailsMap.equals(parsedDetails)) {
+                this.details = JsonUtil.toJson(detailsMap);
+                this.parsedDetails = null;
+            }
         }
         if (outList != null) {
-            this.out = JsonUtil.toJson(outList);
+            if (parsedOut == null) {
+                parsedOut = JsonUtil.parseSnapshot(out, OUT_TYPE);
+            }
+            if (!outList.equals(parsedOut)) {
+                this.out = JsonUtil.toJson(outList);
+                this.parsedOut = null;
+            }
         }
     }
 
+    /**
+     * Drop the parsed views so that json columns are parsed again on next
+     * access.
+     */
     @PostLoad
-    public void load() throws IOException {
-        if (!StringUtils.isEmpty(details)) {
-            this.detailsMap = JsonUtil.toEntity(
-                details, new TypeReference<Map<String, Object>>() {
-                });
-        }
-        if (!StringUtils.isEmpty(out)) {
-            this.outList = JsonUtil.toEntity(
-                out, new TypeReference<List<Map<String, Object>>>() {
-                });
-        }
+    public void load() {
+        this.detailsMap = null;
+        this.parsedDetails = null;
+        this.outList = null;
+        this.parsedOut = null;
     }
 
     public Rule() {
@@ -22,6 +22,8 @@ package org.apache.griffin.core.measure.repo;
 
 import org.apache.griffin.core.job.repo.BaseJpaRepository;
 import org.apache.griffin.core.measure.entity.Measure;
+import org.apache.griffin.core.measure.entity.MeasureSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
@@ -88,4 +90,23 @@ public interface MeasureRepo<T extends Measure> extends BaseJpaRepository<T, Lon
     @Query("select m.name from #{#entityName} m "
             + "where m.organization= ?1 and m.deleted= ?2")
     List<String> findNameByOrganization(String organization, Boolean deleted);
+
+    /**
+     * search summaries of alive measures whose id is greater than the given
+     * id, ordered by id
+     *
+     * @param id           id of the last measure of the previous page
+     * @param owner        query condition, ignored if null
+     * @param organization query condition, ignored if null
+     * @param pageable     page size
+     * @return measure summary collection
+     */
+    @Query("select new org.apache.griffin.core.measure.entity.MeasureSummary("
+            + "m.id, m.name, TYPE(m), m.dqType, m.owner, m.organization, "
+            + "m.description, m.createdDate) from #{#entityName} m "
+            + "where m.deleted = false and m.id > ?1 "
+            + "and (?2 is null or m.owner = ?2) "
+            + "and (?3 is null or m.organization = ?3) order by m.id")
+    List<MeasureSummary> findSummaries(Long id, String owner,
+                                       String organization, Pageable pageable);
 }
@@ -0,0 +1,284 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.griffin.core.metric.model.MetricCacheStats;
+import org.apache.griffin.core.metric.model.MetricSeries;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache of metric value queries in front of the metric store
+ * selected by {@code metric.store}.
+ * <p>
+ * Queries are cached by metric name, offset, size and timestamp, at most
+ * {@code metric.cache.ttl.milliseconds} each, and least recently used ones
+ * are evicted when the cached values exceed {@code metric.cache.max.values}.
+ * Adding or deleting values of a metric invalidates the queries of that
+ * metric only. As elasticsearch makes writes searchable only after its
+ * refresh interval, queries of a metric are not cached for
+ * {@code metric.cache.refresh.milliseconds} after a write of it.
+ */
+@Primary
+@Component
+public class CachedMetricStore implements MetricStore {
+    /**
+     * timestamp of dashboard queries, which have none
+     */
+    private static final long NO_TMST = 0L;
+
+    @Value("${metric.cache.ttl.milliseconds:30000}")
+    private long ttl;
+    @Value("${metric.cache.max.values:100000}")
+    private long maxValues;
+    @Value("${metric.cache.refresh.milliseconds:1000}")
+    private long refreshInterval;
+
+    @Autowired
+    @Qualifier(value = "metricStoreBackend")
+    private MetricStore metricStore;
+
+    /**
+     * cached queries in access order, guarded by this
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(
+        16, 0.75f, true);
+    /**
+     * time of the last write by metric name, guarded by this
+     */
+    private final Map<String, Long> writeTimes = new HashMap<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Override
+    public List<MetricValue> getMetricValues(String metricName, int from,
+                                             int size, long tmst)
+        throws IOException {
+        Key key = new Key(metricName, from, size, tmst);
+        List<MetricValue> values = get(key);
+        if (values != null) {
+            return values;
+        }
+        long start = System.currentTimeMillis();
+        values = metricStore.getMetricValues(metricName, from, size, tmst);
+        put(key, values, start);
+        return values;
+    }
+
+    @Override
+    public Map<String, List<MetricValue>> getMetricValues(
+        List<String> metricNames, int from, int size) throws IOException {
+        Map<String, List<MetricValue>> result = new HashMap<>();
+        List<String> missed = new ArrayList<>();
+        for (String metricName : metricNames) {
+            List<MetricValue> values = get(new Key(metricName, from, size,
+                NO_TMST));
+            if (values != null) {
+                result.put(metricName, values);
+            } else if (!result.containsKey(metricName)) {
+                missed.add(metricName);
+            }
+        }
+        if (missed.isEmpty()) {
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, List<MetricValue>> loaded = metricStore.getMetricValues(
+            missed, from, size);
+        for (Map.Entry<String, List<MetricValue>> entry : loaded.entrySet()) {
+            put(new Key(entry.getKey(), from, size, NO_TMST),
+                entry.getValue(), start);
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    @Override
+    public ResponseEntity<?> addMetricValues(List<MetricValue> metricValues)
+        throws IOException {
+        try {
+            return metricStore.addMetricValues(metricValues);
+        } finally {
+            List<String> metricNames = new ArrayList<>();
+            for (MetricValue value : metricValues) {
+                metricNames.add(value.getName());
+            }
+            invalidate(metricNames);
+        }
+    }
+
+    @Override
+    public ResponseEntity<?> deleteMetricValues(String metricName)
+        throws IOException {
+        try {
+            return metricStore.deleteMetricValues(metricName);
+        } finally {
+            invalidate(Collections.singletonList(metricName));
+        }
+    }
+
+    @Override
+    public MetricValue getMetric(String applicationId) throws IOException {
+        return metricStore.getMetric(applicationId);
+    }
+
+    @Override
+    public MetricSeries getMetricSeries(String metricName, String field,
+                                        long from, long to, long interval,
+                                        SeriesAggregation agg)
+        throws IOException {
+        return metricStore.getMetricSeries(metricName, field, from, to,
+            interval, agg);
+    }
+
+    public synchronized MetricCacheStats getStats() {
+        return new MetricCacheStats(entries.size(), weight, maxValues, hits,
+            misses, evictions);
+    }
+
+    private synchronized List<MetricValue> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.time > ttl) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.values;
+    }
+
+    /**
+     * Cache values loaded since start, unless the metric was written in
+     * the meantime or too shortly before to be searchable.
+     */
+    private synchronized void put(Key key, List<MetricValue> values,
+                                  long start) {
+        Long writeTime = writeTimes.get(key.metricName);
+        if (ttl <= 0 || values == null || values.size() >= maxValues
+            || (writeTime != null && writeTime + refreshInterval >= start)) {
+            return;
+        }
+        Entry old = entries.put(key, new Entry(
+            Collections.unmodifiableList(values), start));
+        if (old != null) {
+            weight -= weigh(old);
+        }
+        weight += values.size() + 1;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxValues && it.hasNext()) {
+            weight -= weigh(it.next().getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private synchronized void invalidate(List<String> metricNames) {
+        long now = System.currentTimeMillis();
+        // a write time only matters for a refresh interval
+        writeTimes.values().removeIf(time -> time + refreshInterval < now);
+        Set<String> written = new HashSet<>(metricNames);
+        for (String metricName : written) {
+            writeTimes.put(metricName, now);
+        }
+        entries.entrySet().removeIf(entry -> {
+            if (!written.contains(entry.getKey().metricName)) {
+                return false;
+            }
+            weight -= weigh(entry.getValue());
+            return true;
+        });
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= weigh(entry);
+        }
+    }
+
+    private static long weigh(Entry entry) {
+        return entry.values.size() + 1;
+    }
+
+    private static class Key {
+        private final String metricName;
+        private final int from;
+        private final int size;
+        private final long tmst;
+
+        Key(String metricName, int from, int size, long tmst) {
+            this.metricName = metricName;
+            this.from = from;
+            this.size = size;
+            this.tmst = tmst;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return from == key.from && size == key.size && tmst == key.tmst
+                && Objects.equals(metricName, key.metricName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metricName, from, size, tmst);
+        }
+    }
+
+    private static class Entry {
+        private final List<MetricValue> values;
+        private final long time;
+
+        Entry(List<MetricValue> values, long time) {
+            this.values = values;
+            this.time = time;
+        }
+    }
+}
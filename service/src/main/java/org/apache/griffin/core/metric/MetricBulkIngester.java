@@ -0,0 +1,373 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.util.JsonUtil;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write metric values to elasticsearch by bulk requests of at most
+ * {@code maxActions} values and {@code maxBytes} bytes.
+ * <p>
+ * Every value is serialized once, when its chunk is cut, and the request
+ * body is streamed from the serialized values. At most {@code concurrency}
+ * chunks are in flight, and the caller waits for a free slot before it
+ * serializes more, so memory is bounded however many values are posted.
+ * Items and requests rejected as overloaded are retried with exponential
+ * backoff, while other items of the chunk, and chunks whose request failed
+ * without a response, are reported as failed and not sent again. The result
+ * has the shape of an elasticsearch bulk response, with one item per value
+ * in order.
+ */
+class MetricBulkIngester {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MetricBulkIngester.class);
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final RestClient client;
+    private final String url;
+    /**
+     * action and metadata line of a value
+     */
+    private final Function<MetricValue, byte[]> metaData;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int concurrency;
+    private final int maxRetries;
+    private final long backoff;
+    private final ExecutorService executor;
+
+    MetricBulkIngester(RestClient client, String url,
+                       Function<MetricValue, byte[]> metaData,
+                       int maxActions, long maxBytes, int concurrency,
+                       int maxRetries, long backoff,
+                       ExecutorService executor) {
+        this.client = client;
+        this.url = url;
+        this.metaData = metaData;
+        this.maxActions = Math.max(maxActions, 1);
+        this.maxBytes = Math.max(maxBytes, 1);
+        this.concurrency = Math.max(concurrency, 1);
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.backoff = Math.max(backoff, 0);
+        this.executor = executor;
+    }
+
+    /**
+     * @param values metric values
+     * @return bulk response with the final result of every value
+     * @throws IOException if no value could be written at all
+     */
+    JsonNode ingest(List<MetricValue> values) throws IOException {
+        long start = System.currentTimeMillis();
+        Result result = new Result(values.size());
+        Semaphore permits = new Semaphore(concurrency);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            Chunk chunk = new Chunk();
+            for (int i = 0; i < values.size(); i++) {
+                byte[] doc = toDoc(values.get(i));
+                if (!chunk.indices.isEmpty() && (chunk.indices.size()
+                    >= maxActions || chunk.bytes + doc.length > maxBytes)) {
+                    futures.add(submit(chunk, result, permits));
+                    chunk = new Chunk();
+                }
+                chunk.add(i, doc);
+            }
+            if (!chunk.indices.isEmpty()) {
+                futures.add(submit(chunk, result, permits));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted bulk request.");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write metric values.",
+                e.getCause());
+        }
+        IOException failure = result.failure.get();
+        if (failure != null && !result.responded.get()) {
+            throw failure;
+        }
+        return result.toResponse(System.currentTimeMillis() - start);
+    }
+
+    private byte[] toDoc(MetricValue value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(metaData.apply(value));
+        JsonUtil.write(out, value);
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    private Future<?> submit(Chunk chunk, Result result, Semaphore permits)
+        throws InterruptedException {
+        permits.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    write(chunk, result);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Send a chunk, and send again only its items or the request rejected
+     * as overloaded.
+     */
+    private void write(Chunk chunk, Result result) {
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < chunk.indices.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 0; ; attempt++) {
+            List<Integer> retries = new ArrayList<>();
+            try {
+                Response response = client.performRequest("POST", url,
+                    Collections.emptyMap(), chunk.entity(pending));
+                JsonNode items;
+                try (InputStream in = response.getEntity().getContent()) {
+                    items = JsonUtil.readTree(in).path("items");
+                }
+                result.responded.set(true);
+                for (int i = 0; i < pending.size(); i++) {
+                    JsonNode item = items.path(i);
+                    int status = getStatus(item);
+                    if (status == 0) {
+                        item = failure(500, "missing bulk response item");
+                    }
+                    result.set(chunk.indices.get(pending.get(i)), item);
+                    if (isRetryable(status)) {
+                        retries.add(pending.get(i));
+                    }
+                }
+            } catch (ResponseException e) {
+                int status = e.getResponse().getStatusLine().getStatusCode();
+                fail(chunk, pending, result, status, e);
+                if (isRetryable(status)) {
+                    retries.addAll(pending);
+                }
+            } catch (IOException e) {
+                // the chunk may have been indexed before the connection
+                // failed, and values sent again without ids are duplicated
+                fail(chunk, pending, result, 500, e);
+            }
+            if (retries.isEmpty() || attempt >= maxRetries) {
+                if (!retries.isEmpty()) {
+                    LOGGER.warn("{} metric values are still rejected after " +
+                        "{} retries.", retries.size(), maxRetries);
+                }
+                return;
+            }
+            try {
+                Thread.sleep(backoff << Math.min(attempt, 16));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pending = retries;
+        }
+    }
+
+    private static void fail(Chunk chunk, List<Integer> pending,
+                             Result result, int status, IOException e) {
+        result.failure.compareAndSet(null, e);
+        JsonNode item = failure(status, e.getMessage());
+        for (Integer i : pending) {
+            result.set(chunk.indices.get(i), item);
+        }
+    }
+
+    private static JsonNode failure(int status, String reason) {
+        ObjectNode error = NODES.objectNode();
+        error.put("type", "request_failed");
+        error.put("reason", reason);
+        ObjectNode index = NODES.objectNode();
+        index.put("status", status);
+        index.set("error", error);
+        ObjectNode item = NODES.objectNode();
+        item.set("index", index);
+        return item;
+    }
+
+    static int getStatus(JsonNode item) {
+        Iterator<JsonNode> actions = item.elements();
+        return actions.hasNext() ? actions.next().path("status").asInt() : 0;
+    }
+
+    /**
+     * @return whether elasticsearch rejected the item as overloaded
+     */
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 503;
+    }
+
+    private static class Chunk {
+        /**
+         * indices of values in the posted list
+         */
+        private final List<Integer> indices = new ArrayList<>();
+        private final List<byte[]> docs = new ArrayList<>();
+        private long bytes;
+
+        void add(int index, byte[] doc) {
+            indices.add(index);
+            docs.add(doc);
+            bytes += doc.length;
+        }
+
+        BulkEntity entity(List<Integer> positions) {
+            List<byte[]> selected = new ArrayList<>(positions.size());
+            for (Integer position : positions) {
+                selected.add(docs.get(position));
+            }
+            return new BulkEntity(selected);
+        }
+    }
+
+    /**
+     * Request body streamed from serialized docs without joining them.
+     */
+    private static class BulkEntity extends AbstractHttpEntity {
+        private final List<byte[]> docs;
+        private final long length;
+
+        BulkEntity(List<byte[]> docs) {
+            this.docs = docs;
+            long sum = 0;
+            for (byte[] doc : docs) {
+                sum += doc.length;
+            }
+            this.length = sum;
+            setContentType(ContentType.APPLICATION_JSON.toString());
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getContent() {
+            Iterator<byte[]> it = docs.iterator();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return new ByteArrayInputStream(it.next());
+                }
+            });
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            for (byte[] doc : docs) {
+                out.write(doc);
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    private static class Result {
+        private final JsonNode[] items;
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private final AtomicReference<IOException> failure =
+            new AtomicReference<>();
+
+        Result(int size) {
+            this.items = new JsonNode[size];
+        }
+
+        synchronized void set(int index, JsonNode item) {
+            items[index] = item;
+        }
+
+        synchronized JsonNode toResponse(long took) {
+            ArrayNode array = NODES.arrayNode();
+            boolean errors = false;
+            for (JsonNode value : items) {
+                JsonNode item = value == null
+                    ? failure(500, "not written") : value;
+                int status = getStatus(item);
+                errors |= status < 200 || status >= 300;
+                array.add(item);
+            }
+            ObjectNode response = NODES.objectNode();
+            response.put("took", took);
+            response.put("errors", errors);
+            response.set("items", array);
+            return response;
+        }
+    }
+}
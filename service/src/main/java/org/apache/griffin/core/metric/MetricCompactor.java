@@ -0,0 +1,542 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.util.JsonUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Roll up and drop monthly partitions of metric values by retention tiers.
+ * <p>
+ * Raw values are kept in partitions like {@code griffin-metrics-2019.02},
+ * and their hourly and daily rollups in partitions like
+ * {@code griffin-metrics-1h-2019.02} and {@code griffin-metrics-1d-2019.02},
+ * all read by the alias {@code griffin-metrics}. A partition whose month
+ * is older than the retention of its tier is rolled up into the next tier
+ * and then deleted as a whole, so retention is rounded up to a month. A
+ * partition is compacted only after the partition of the previous tier of
+ * the same month is gone. Rollups have ids derived from metric name and
+ * time, so compacting a partition again overwrites them.
+ * <p>
+ * Values written to an index out of the partitions, like the one of the
+ * measure sink, are moved into raw partitions, so they are compacted too.
+ */
+class MetricCompactor {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MetricCompactor.class);
+    /**
+     * metadata of the tier of a rollup
+     */
+    static final String ROLLUP = "rollup";
+    /**
+     * metadata of the number of raw values in a rollup
+     */
+    static final String ROLLUP_COUNT = "rollupCount";
+    private static final String SCROLL = "1m";
+    private static final ContentType NDJSON = ContentType.create(
+        "application/x-ndjson", StandardCharsets.UTF_8);
+    private static final DateTimeFormatter MONTH = DateTimeFormatter
+        .ofPattern("yyyy.MM").withZone(ZoneOffset.UTC);
+    private static final TypeReference<MetricValue> VALUE_TYPE =
+        new TypeReference<MetricValue>() {
+        };
+
+    enum Tier {
+        RAW(null, 0L),
+        HOURLY("1h", TimeUnit.HOURS.toMillis(1)),
+        DAILY("1d", TimeUnit.DAYS.toMillis(1));
+
+        private final String id;
+        private final long interval;
+
+        Tier(String id, long interval) {
+            this.id = id;
+            this.interval = interval;
+        }
+
+        Tier next() {
+            return this == RAW ? HOURLY : this == HOURLY ? DAILY : null;
+        }
+
+        Tier previous() {
+            return this == DAILY ? HOURLY : this == HOURLY ? RAW : null;
+        }
+
+        static Tier of(String id) {
+            for (Tier tier : values()) {
+                if (tier.id != null && tier.id.equals(id)) {
+                    return tier;
+                }
+            }
+            return RAW;
+        }
+    }
+
+    private final RestClient client;
+    private final String alias;
+    private final Pattern partitionPattern;
+    /**
+     * retention in milliseconds by tier, 0 to keep forever
+     */
+    private final Map<Tier, Long> retentions;
+    private final int batchSize;
+    private final MetricBulkIngester ingester;
+
+    MetricCompactor(RestClient client, String alias,
+                    Map<Tier, Long> retentions, int batchSize,
+                    MetricBulkIngester ingester) {
+        this.client = client;
+        this.alias = alias;
+        this.partitionPattern = Pattern.compile(Pattern.quote(alias)
+            + "-(?:(1h|1d)-)?(\\d{4}\\.\\d{2})");
+        this.retentions = retentions;
+        this.batchSize = Math.max(batchSize, 1);
+        this.ingester = ingester;
+    }
+
+    /**
+     * @param alias alias of all partitions
+     * @param tier  tier of the value
+     * @param tmst  timestamp of the value
+     * @return partition of the value
+     */
+    static String partition(String alias, Tier tier, long tmst) {
+        String month = MONTH.format(Instant.ofEpochMilli(tmst));
+        return tier == Tier.RAW ? alias + "-" + month
+            : alias + "-" + tier.id + "-" + month;
+    }
+
+    /**
+     * Remove the rollup metadata of a value, which is raw unless written
+     * by a compaction.
+     */
+    static void stripRollup(MetricValue value) {
+        Map<String, Object> metadata = value.getMetadata();
+        if (metadata != null && (metadata.containsKey(ROLLUP)
+            || metadata.containsKey(ROLLUP_COUNT))) {
+            Map<String, Object> raw = new HashMap<>(metadata);
+            raw.remove(ROLLUP);
+            raw.remove(ROLLUP_COUNT);
+            value.setMetadata(raw);
+        }
+    }
+
+    static Tier tierOf(MetricValue value) {
+        Map<String, Object> metadata = value.getMetadata();
+        Object id = metadata == null ? null : metadata.get(ROLLUP);
+        return id == null ? Tier.RAW : Tier.of(id.toString());
+    }
+
+    /**
+     * @param now current time
+     * @return number of partitions deleted
+     */
+    int compact(long now) throws IOException {
+        List<Partition> partitions = listPartitions();
+        Set<String> indices = new HashSet<>();
+        for (Partition partition : partitions) {
+            indices.add(partition.index);
+        }
+        int deleted = 0;
+        for (Partition partition : partitions) {
+            long retention = retentions.getOrDefault(partition.tier, 0L);
+            Tier previous = partition.tier.previous();
+            if (retention <= 0 || partition.end > now - retention
+                || (previous != null && indices.contains(partition(alias,
+                previous, partition.start)))) {
+                continue;
+            }
+            try {
+                if (partition.tier.next() != null && !rollup(partition)) {
+                    continue;
+                }
+                delete(partition.index);
+                deleted++;
+            } catch (IOException e) {
+                LOGGER.error("Failed to compact metric partition {}.",
+                    partition.index, e);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Move values of an index out of the partitions into raw partitions by
+     * their time. The index joins the alias first, so its values are read
+     * until they are moved, and a value is deleted from the index only
+     * after it is written to its partition.
+     *
+     * @param index index out of the partitions
+     * @return number of values moved
+     */
+    int migrate(String index) throws IOException {
+        try {
+            client.performRequest("POST", "/_aliases", Collections.emptyMap(),
+                entity(Collections.singletonMap("actions",
+                    Collections.singletonList(Collections.singletonMap("add",
+                        params("index", index, "alias", alias))))));
+        } catch (ResponseException e) {
+            // nothing is written to the index yet
+            if (e.getResponse().getStatusLine().getStatusCode() == 404) {
+                return 0;
+            }
+            throw e;
+        }
+        int moved = 0;
+        String scrollId = null;
+        try {
+            JsonNode page = search(index, "_doc");
+            while (true) {
+                scrollId = page.path("_scroll_id").asText(null);
+                JsonNode hits = page.path("hits").path("hits");
+                if (hits.size() == 0) {
+                    break;
+                }
+                List<MetricValue> values = new ArrayList<>();
+                for (JsonNode hit : hits) {
+                    MetricValue value = JsonUtil.toEntity(hit.get("_source"),
+                        VALUE_TYPE);
+                    stripRollup(value);
+                    values.add(value);
+                }
+                JsonNode items = ingester.ingest(values).path("items");
+                StringBuilder deletes = new StringBuilder();
+                int written = 0;
+                for (int i = 0; i < hits.size(); i++) {
+                    int status = MetricBulkIngester.getStatus(items.path(i));
+                    if (status < 200 || status >= 300) {
+                        continue;
+                    }
+                    JsonNode hit = hits.get(i);
+                    deletes.append(JsonUtil.toJson(Collections.singletonMap(
+                        "delete", params("_index", hit.path("_index").asText(),
+                            "_type", hit.path("_type").asText(),
+                            "_id", hit.path("_id").asText())))).append('\n');
+                    written++;
+                }
+                if (written < hits.size()) {
+                    // moved again by the next compaction
+                    LOGGER.error("Failed to move {} metric values of {}.",
+                        hits.size() - written, index);
+                }
+                if (written > 0) {
+                    JsonNode response = read(client.performRequest("POST",
+                        "/_bulk", Collections.emptyMap(),
+                        new NStringEntity(deletes.toString(), NDJSON)));
+                    if (response.path("errors").asBoolean()) {
+                        LOGGER.error("Failed to delete moved metric values "
+                            + "of {}: {}", index, response);
+                    }
+                    moved += written;
+                }
+                page = scroll(scrollId);
+            }
+        } finally {
+            clearScroll(scrollId);
+        }
+        return moved;
+    }
+
+    /**
+     * @return partitions of all tiers, raw ones first
+     */
+    private List<Partition> listPartitions() throws IOException {
+        Response response = client.performRequest("GET",
+            "/_cat/indices/" + alias + "-*",
+            params("format", "json", "h", "index"));
+        JsonNode indices;
+        try (InputStream in = response.getEntity().getContent()) {
+            indices = JsonUtil.readTree(in);
+        }
+        List<Partition> partitions = new ArrayList<>();
+        for (JsonNode node : indices) {
+            String index = node.path("index").asText();
+            Matcher matcher = partitionPattern.matcher(index);
+            if (matcher.matches()) {
+                partitions.add(new Partition(index, Tier.of(matcher.group(1)),
+                    matcher.group(2)));
+            }
+        }
+        partitions.sort((p1, p2) -> p1.tier != p2.tier
+            ? p1.tier.compareTo(p2.tier) : Long.compare(p1.start, p2.start));
+        return partitions;
+    }
+
+    /**
+     * Roll up values of a partition into the next tier, reading them by
+     * metric name and time, so one rollup is open at a time.
+     *
+     * @return true if all rollups are written
+     */
+    private boolean rollup(Partition partition) throws IOException {
+        Tier tier = partition.tier.next();
+        List<MetricValue> batch = new ArrayList<>();
+        Rollup rollup = null;
+        long count = 0;
+        String scrollId = null;
+        try {
+            JsonNode page = search(partition.index, "name.keyword", "tmst");
+            while (true) {
+                scrollId = page.path("_scroll_id").asText(null);
+                JsonNode hits = page.path("hits").path("hits");
+                if (hits.size() == 0) {
+                    break;
+                }
+                for (JsonNode hit : hits) {
+                    MetricValue value = JsonUtil.toEntity(hit.get("_source"),
+                        VALUE_TYPE);
+                    if (value.getName() == null || value.getTmst() == null) {
+                        continue;
+                    }
+                    long bucket = Math.floorDiv(value.getTmst(),
+                        tier.interval) * tier.interval;
+                    if (rollup != null && !rollup.accepts(value.getName(),
+                        bucket)) {
+                        batch.add(rollup.toValue());
+                        rollup = null;
+                        if (batch.size() >= batchSize && !write(batch)) {
+                            return false;
+                        }
+                    }
+                    if (rollup == null) {
+                        rollup = new Rollup(value.getName(), bucket, tier);
+                    }
+                    rollup.add(value);
+                    count++;
+                }
+                page = scroll(scrollId);
+            }
+        } finally {
+            clearScroll(scrollId);
+        }
+        if (rollup != null) {
+            batch.add(rollup.toValue());
+        }
+        if (!batch.isEmpty() && !write(batch)) {
+            return false;
+        }
+        LOGGER.info("Roll up {} metric values of {} by {}.", count,
+            partition.index, tier.id);
+        return true;
+    }
+
+    private boolean write(List<MetricValue> batch) throws IOException {
+        JsonNode response = ingester.ingest(batch);
+        batch.clear();
+        if (response.path("errors").asBoolean()) {
+            LOGGER.error("Failed to write metric rollups: {}", response);
+            return false;
+        }
+        return true;
+    }
+
+    private JsonNode search(String index, String... sortFields)
+        throws IOException {
+        List<Object> sort = new ArrayList<>();
+        for (String field : sortFields) {
+            sort.add(Collections.singletonMap(field, "asc"));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("size", batchSize);
+        body.put("sort", sort);
+        return read(client.performRequest("POST", "/" + index + "/_search",
+            params("scroll", SCROLL), entity(body)));
+    }
+
+    private JsonNode scroll(String scrollId) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("scroll", SCROLL);
+        body.put("scroll_id", scrollId);
+        return read(client.performRequest("POST", "/_search/scroll",
+            Collections.emptyMap(), entity(body)));
+    }
+
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        try {
+            client.performRequest("DELETE", "/_search/scroll",
+                Collections.emptyMap(), entity(Collections.singletonMap(
+                    "scroll_id", Collections.singletonList(scrollId))));
+        } catch (IOException e) {
+            // expires anyway
+            LOGGER.warn("Failed to clear scroll.", e);
+        }
+    }
+
+    private void delete(String index) throws IOException {
+        try {
+            client.performRequest("DELETE", "/" + index);
+            LOGGER.info("Delete metric partition {}.", index);
+        } catch (ResponseException e) {
+            // deleted by another service node
+            if (e.getResponse().getStatusLine().getStatusCode() != 404) {
+                throw e;
+            }
+        }
+    }
+
+    private static JsonNode read(Response response) throws IOException {
+        try (InputStream in = response.getEntity().getContent()) {
+            return JsonUtil.readTree(in);
+        }
+    }
+
+    private static HttpEntity entity(Object body) throws IOException {
+        return new NStringEntity(JsonUtil.toJson(body),
+            ContentType.APPLICATION_JSON);
+    }
+
+    private static Map<String, String> params(String... keyValues) {
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put(keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+
+    private static class Partition {
+        private final String index;
+        private final Tier tier;
+        /**
+         * begin of the month
+         */
+        private final long start;
+        /**
+         * begin of the next month
+         */
+        private final long end;
+
+        Partition(String index, Tier tier, String month) {
+            this.index = index;
+            this.tier = tier;
+            ZonedDateTime begin = ZonedDateTime.of(
+                Integer.parseInt(month.substring(0, 4)),
+                Integer.parseInt(month.substring(5)), 1, 0, 0, 0, 0,
+                ZoneOffset.UTC);
+            this.start = begin.toInstant().toEpochMilli();
+            this.end = begin.plusMonths(1).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * Values of a metric in an interval, whose numeric fields are averaged
+     * weighted by the raw values they stand for, and whose other fields
+     * are the latest.
+     */
+    static class Rollup {
+        private final String name;
+        private final long tmst;
+        private final Tier tier;
+        private long count;
+        /**
+         * weighted sum and weight of numeric fields
+         */
+        private final Map<String, double[]> sums = new LinkedHashMap<>();
+        private final Map<String, Object> latest = new LinkedHashMap<>();
+        private Map<String, Object> metadata;
+
+        Rollup(String name, long tmst, Tier tier) {
+            this.name = name;
+            this.tmst = tmst;
+            this.tier = tier;
+        }
+
+        boolean accepts(String name, long tmst) {
+            return this.name.equals(name) && this.tmst == tmst;
+        }
+
+        void add(MetricValue value) {
+            long weight = weightOf(value);
+            count += weight;
+            if (value.getValue() != null) {
+                for (Map.Entry<String, Object> entry : value.getValue()
+                    .entrySet()) {
+                    Object field = entry.getValue();
+                    if (field instanceof Number) {
+                        double[] sum = sums.computeIfAbsent(entry.getKey(),
+                            key -> new double[2]);
+                        sum[0] += ((Number) field).doubleValue() * weight;
+                        sum[1] += weight;
+                    } else {
+                        latest.put(entry.getKey(), field);
+                    }
+                }
+            }
+            if (value.getMetadata() != null) {
+                metadata = value.getMetadata();
+            }
+        }
+
+        MetricValue toValue() {
+            Map<String, Object> value = new LinkedHashMap<>(latest);
+            for (Map.Entry<String, double[]> entry : sums.entrySet()) {
+                double[] sum = entry.getValue();
+                value.put(entry.getKey(), sum[0] / sum[1]);
+            }
+            Map<String, Object> meta = metadata == null
+                ? new LinkedHashMap<>() : new LinkedHashMap<>(metadata);
+            // a rollup is not the value of any application
+            meta.remove("applicationId");
+            meta.put(ROLLUP, tier.id);
+            meta.put(ROLLUP_COUNT, count);
+            return new MetricValue(name, tmst, meta, value);
+        }
+
+        private static long weightOf(MetricValue value) {
+            Map<String, Object> metadata = value.getMetadata();
+            Object count = metadata == null ? null
+                : metadata.get(ROLLUP_COUNT);
+            return count instanceof Number
+                ? Math.max(((Number) count).longValue(), 1) : 1;
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.griffin.core.metric.model.Metric;
+import org.apache.griffin.core.metric.model.MetricCacheStats;
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -42,6 +44,9 @@ public class MetricController {
     @Autowired
     private MetricService metricService;
 
+    @Autowired
+    private CachedMetricStore metricCache;
+
     @RequestMapping(value = "/metrics", method = RequestMethod.GET)
     public Map<String, List<Metric>> getAllMetrics() {
         return metricService.getAllMetrics();
@@ -60,6 +65,22 @@ public class MetricController {
         return metricService.getMetricValues(metricName, offset, size, tmst);
     }
 
+    @RequestMapping(value = "/metrics/{name}/series",
+        method = RequestMethod.GET)
+    public MetricSeries getMetricSeries(@PathVariable("name") String name,
+                                        @RequestParam("field") String field,
+                                        @RequestParam("from") long from,
+                                        @RequestParam(value = "to",
+                                            required = false) Long to,
+                                        @RequestParam("interval")
+                                            String interval,
+                                        @RequestParam(value = "agg",
+                                            defaultValue = "avg")
+                                            String agg) {
+        return metricService.getMetricSeries(name, field, from,
+            to == null ? System.currentTimeMillis() : to, interval, agg);
+    }
+
     @RequestMapping(value = "/metrics/values", method = RequestMethod.POST)
     public ResponseEntity<?> addMetricValues(@RequestBody List<MetricValue>
                                                  values) {
@@ -77,4 +98,9 @@ public class MetricController {
     public MetricValue getMetric(@PathVariable("instanceId") Long id) {
         return metricService.findMetric(id);
     }
+
+    @RequestMapping(value = "/metrics/cache", method = RequestMethod.GET)
+    public MetricCacheStats getCacheStats() {
+        return metricCache.getStats();
+    }
 }
@@ -0,0 +1,126 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.griffin.core.metric.model.MetricSeries;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
+
+/**
+ * Aggregate a metric series in the service, for metric stores which cannot
+ * aggregate by themselves. Intervals are aligned to the epoch, as the date
+ * histogram of elasticsearch does.
+ */
+final class MetricSeriesAggregator {
+    private static final int PAGE_SIZE = 1000;
+
+    private MetricSeriesAggregator() {
+    }
+
+    /**
+     * Page through metric values from the latest back to the range, and
+     * aggregate those in the range.
+     */
+    static MetricSeries aggregate(MetricStore store, String metricName,
+                                  String field, long from, long to,
+                                  long interval, SeriesAggregation agg)
+        throws IOException {
+        Map<Long, Bucket> buckets = new TreeMap<>();
+        for (int offset = 0; ; offset += PAGE_SIZE) {
+            List<MetricValue> page = store.getMetricValues(metricName, offset,
+                PAGE_SIZE, 0L);
+            for (MetricValue value : page) {
+                if (value.getTmst() == null || value.getTmst() > to) {
+                    continue;
+                }
+                if (value.getTmst() < from) {
+                    return toSeries(buckets, metricName, field, interval, agg);
+                }
+                Double number = getNumber(value, field);
+                if (number != null) {
+                    long key = Math.floorDiv(value.getTmst(), interval)
+                        * interval;
+                    buckets.computeIfAbsent(key, k -> new Bucket())
+                        .add(value.getTmst(), number);
+                }
+            }
+            if (page.size() < PAGE_SIZE) {
+                return toSeries(buckets, metricName, field, interval, agg);
+            }
+        }
+    }
+
+    private static MetricSeries toSeries(Map<Long, Bucket> buckets,
+                                         String metricName, String field,
+                                         long interval,
+                                         SeriesAggregation agg) {
+        MetricSeries series = new MetricSeries(metricName, field, agg,
+            interval);
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            series.add(entry.getKey(), entry.getValue().get(agg));
+        }
+        return series;
+    }
+
+    private static Double getNumber(MetricValue value, String field) {
+        Map<String, Object> map = value.getValue();
+        Object number = map == null ? null : map.get(field);
+        return number instanceof Number ? ((Number) number).doubleValue()
+            : null;
+    }
+
+    private static class Bucket {
+        private int count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private long lastTmst = Long.MIN_VALUE;
+        private double last;
+
+        void add(long tmst, double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (tmst >= lastTmst) {
+                lastTmst = tmst;
+                last = value;
+            }
+        }
+
+        double get(SeriesAggregation agg) {
+            switch (agg) {
+                case MIN:
+                    return min;
+                case MAX:
+                    return max;
+                case LAST:
+                    return last;
+                default:
+                    return sum / count;
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.griffin.core.metric.model.Metric;
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
 import org.springframework.http.ResponseEntity;
 
@@ -34,6 +35,18 @@ public interface MetricService {
     List<MetricValue> getMetricValues(String metricName, int offset, int size,
                                       long tmst);
 
+    /**
+     * @param metricName metric name
+     * @param field      field of metric values to aggregate
+     * @param from       begin of the time range, inclusive
+     * @param to         end of the time range, inclusive
+     * @param interval   interval like 1h or 1d
+     * @param agg        avg, min, max or last
+     * @return values of the field aggregated by intervals
+     */
+    MetricSeries getMetricSeries(String metricName, String field, long from,
+                                 long to, String interval, String agg);
+
     ResponseEntity addMetricValues(List<MetricValue> values);
 
     ResponseEntity<?> deleteMetricValues(String metricName);
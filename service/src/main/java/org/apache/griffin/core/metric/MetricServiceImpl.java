@@ -22,13 +22,17 @@ package org.apache.griffin.core.metric;
 
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_METRIC_RECORDS_OFFSET;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_METRIC_RECORDS_SIZE;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_METRIC_SERIES_AGGREGATION;
+import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_METRIC_SERIES_RANGE;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.INVALID_METRIC_VALUE_FORMAT;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.JOB_INSTANCE_NOT_FOUND;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -43,11 +47,15 @@ import org.apache.griffin.core.job.repo.JobRepo;
 import org.apache.griffin.core.measure.entity.Measure;
 import org.apache.griffin.core.measure.repo.MeasureRepo;
 import org.apache.griffin.core.metric.model.Metric;
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
+import org.apache.griffin.core.util.TimeUtil;
 import org.codehaus.jackson.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
@@ -56,6 +64,9 @@ public class MetricServiceImpl implements MetricService {
     private static final Logger LOGGER = LoggerFactory
         .getLogger(MetricServiceImpl.class);
 
+    @Value("${metric.series.max.points:10000}")
+    private long maxSeriesPoints = 10000;
+
     @Autowired
     private MeasureRepo<Measure> measureRepo;
     @Autowired
@@ -74,14 +85,17 @@ public class MetricServiceImpl implements MetricService {
             .toMap(Measure::getId, Function.identity()));
         Map<Long, List<AbstractJob>> jobMap = jobs.stream().collect(Collectors
             .groupingBy(AbstractJob::getMeasureId, Collectors.toList()));
+        Map<String, List<MetricValue>> valueMap = getMetricValues(jobs
+            .stream().map(AbstractJob::getMetricName)
+            .collect(Collectors.toList()), 0, 300);
         for (Map.Entry<Long, List<AbstractJob>> entry : jobMap.entrySet()) {
             Long measureId = entry.getKey();
             Measure measure = measureMap.get(measureId);
             List<AbstractJob> jobList = entry.getValue();
             List<Metric> metrics = new ArrayList<>();
             for (AbstractJob job : jobList) {
-                List<MetricValue> metricValues = getMetricValues(job
-                    .getMetricName(), 0, 300, job.getCreatedDate());
+                List<MetricValue> metricValues = valueMap.getOrDefault(job
+                    .getMetricName(), Collections.emptyList());
                 metrics.add(new Metric(job.getMetricName(), measure.getDqType(),
                     measure.getOwner(), metricValues));
             }
@@ -91,6 +105,21 @@ public class MetricServiceImpl implements MetricService {
         return metricMap;
     }
 
+    /**
+     * Get metric values of all metrics in as few round trips as possible.
+     */
+    private Map<String, List<MetricValue>> getMetricValues(
+        List<String> metricNames, int offset, int size) {
+        try {
+            return metricStore.getMetricValues(metricNames, offset, size);
+        } catch (IOException e) {
+            LOGGER.error("Failed to get metric values of {} metrics. {}",
+                metricNames.size(), e.getMessage());
+            throw new GriffinException.ServiceException(
+                "Failed to get metric values", e);
+        }
+    }
+
     @Override
     public List<MetricValue> getMetricValues(String metricName, int offset,
                                              int size, long tmst) {
@@ -112,6 +141,35 @@ public class MetricServiceImpl implements MetricService {
         }
     }
 
+    @Override
+    public MetricSeries getMetricSeries(String metricName, String field,
+                                        long from, long to, String interval,
+                                        String agg) {
+        long intervalMs = TimeUtil.str2Long(interval);
+        if (StringUtils.isBlank(field) || from > to || intervalMs <= 0
+            || (to - from) / intervalMs >= maxSeriesPoints) {
+            throw new GriffinException.BadRequestException(
+                INVALID_METRIC_SERIES_RANGE);
+        }
+        SeriesAggregation aggregation;
+        try {
+            aggregation = SeriesAggregation.valueOf(agg.toUpperCase(
+                Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new GriffinException.BadRequestException(
+                INVALID_METRIC_SERIES_AGGREGATION);
+        }
+        try {
+            return metricStore.getMetricSeries(metricName, field, from, to,
+                intervalMs, aggregation);
+        } catch (IOException e) {
+            LOGGER.error("Failed to get metric series named {}. {}",
+                metricName, e.getMessage());
+            throw new GriffinException.ServiceException(
+                "Failed to get metric series", e);
+        }
+    }
+
     @SuppressWarnings("rawtypes")
     @Override
     public ResponseEntity addMetricValues(List<MetricValue> values) {
@@ -21,8 +21,11 @@ package org.apache.griffin.core.metric;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
 import org.springframework.http.ResponseEntity;
 
 public interface MetricStore {
@@ -30,10 +33,40 @@ public interface MetricStore {
     List<MetricValue> getMetricValues(String metricName, int from, int size,
                                       long tmst) throws IOException;
 
+    /**
+     * @param metricNames metric names
+     * @param from        offset of the latest metric values of every metric
+     * @param size        max metric values of every metric
+     * @return metric values by metric name, latest first
+     */
+    Map<String, List<MetricValue>> getMetricValues(List<String> metricNames,
+                                                   int from, int size)
+        throws IOException;
+
     ResponseEntity<?> addMetricValues(List<MetricValue> metricValues)
         throws IOException;
 
     ResponseEntity<?> deleteMetricValues(String metricName) throws IOException;
 
     MetricValue getMetric(String applicationId) throws IOException;
+
+    /**
+     * Aggregate metric values of a field by fixed intervals. Stores which
+     * cannot aggregate by themselves aggregate in the service.
+     *
+     * @param metricName metric name
+     * @param field      field of metric values to aggregate
+     * @param from       begin of the time range, inclusive
+     * @param to         end of the time range, inclusive
+     * @param interval   interval in milliseconds
+     * @param agg        aggregation of values in an interval
+     * @return the series in ascending time order
+     */
+    default MetricSeries getMetricSeries(String metricName, String field,
+                                         long from, long to, long interval,
+                                         SeriesAggregation agg)
+        throws IOException {
+        return MetricSeriesAggregator.aggregate(this, metricName, field, from,
+            to, interval, agg);
+    }
 }
@@ -20,58 +20,155 @@ under the License.
 package org.apache.griffin.core.metric;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
 
+import org.apache.griffin.core.cluster.ClusterMembership;
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
+import org.apache.griffin.core.util.BlockingExecutors;
 import org.apache.griffin.core.util.JsonUtil;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 @Component
+@Qualifier(value = "metricStoreBackend")
+@ConditionalOnProperty(name = "metric.store", havingValue = "elasticsearch",
+    matchIfMissing = true)
 public class MetricStoreImpl implements MetricStore {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MetricStoreImpl.class);
 
     private static final String INDEX = "griffin";
     private static final String TYPE = "accuracy";
+    /**
+     * alias of monthly partitions
+     */
+    private static final String ALIAS = "griffin-metrics";
+    private static final ContentType NDJSON = ContentType.create(
+        "application/x-ndjson", StandardCharsets.UTF_8);
+
+    /**
+     * max searches packed into one multi-search request
+     */
+    @Value("${elasticsearch.msearch.size:100}")
+    private int msearchSize = 100;
+    /**
+     * max multi-search requests in flight at a time
+     */
+    @Value("${elasticsearch.msearch.concurrency:4}")
+    private int msearchConcurrency = 4;
+    /**
+     * max metric values of a bulk request
+     */
+    @Value("${elasticsearch.bulk.max.actions:1000}")
+    private int bulkMaxActions = 1000;
+    /**
+     * max bytes of a bulk request, exceeded only by a single large value
+     */
+    @Value("${elasticsearch.bulk.max.bytes:5242880}")
+    private long bulkMaxBytes = 5242880L;
+    /**
+     * max bulk requests in flight at a time
+     */
+    @Value("${elasticsearch.bulk.concurrency:2}")
+    private int bulkConcurrency = 2;
+    @Value("${elasticsearch.bulk.max.retries:3}")
+    private int bulkMaxRetries = 3;
+    @Value("${elasticsearch.bulk.retry.backoff.milliseconds:100}")
+    private long bulkBackoff = 100L;
+    @Value("${executor.virtual.threads:false}")
+    private boolean virtualThreads;
+    /**
+     * days raw values, hourly and daily rollups are kept, 0 to keep forever
+     */
+    @Value("${metric.retention.raw.days:0}")
+    private int rawRetentionDays;
+    @Value("${metric.retention.hourly.days:0}")
+    private int hourlyRetentionDays;
+    @Value("${metric.retention.daily.days:0}")
+    private int dailyRetentionDays;
+
+    @Autowired
+    private ClusterMembership cluster;
 
     private RestClient client;
     private HttpHeaders responseHeaders;
     private String urlGet;
     private String urlDelete;
     private String urlPost;
-    private ObjectMapper mapper;
+    private String urlMultiSearch;
+    private String urlAggregate;
     private String indexMetaData;
+    private final boolean partitioned;
+    private volatile boolean templatePut;
+    private MetricBulkIngester bulkIngester;
+    private ExecutorService bulkExecutor;
+
+    public MetricStoreImpl(String host, int port, String scheme, String user,
+                           String password) {
+        this(host, port, scheme, user, password, false);
+    }
 
+    /**
+     * @param partitioned whether metric values are written to monthly
+     *                    partitions and read by their alias, instead of the
+     *                    single index
+     */
+    @Autowired
     public MetricStoreImpl(@Value("${elasticsearch.host}") String host,
                            @Value("${elasticsearch.port}") int port,
                            @Value("${elasticsearch.scheme:http}") String scheme,
                            @Value("${elasticsearch.user:}") String user,
-                           @Value("${elasticsearch.password:}") String password) {
+                           @Value("${elasticsearch.password:}") String password,
+                           @Value("${elasticsearch.index.partitioned:false}")
+                               boolean partitioned) {
         HttpHost httpHost = new HttpHost(host, port, scheme);
         RestClientBuilder builder = RestClient.builder(httpHost);
         if (!user.isEmpty() && !password.isEmpty()) {
@@ -85,16 +182,21 @@ public class MetricStoreImpl implements MetricStore {
         HttpHeaders responseHeaders = new HttpHeaders();
         responseHeaders.setContentType(MediaType.APPLICATION_JSON);
         this.responseHeaders = responseHeaders;
-        String urlBase = String.format("/%s/%s", INDEX, TYPE);
+        this.partitioned = partitioned;
+        String urlBase = String.format("/%s/%s", partitioned ? ALIAS : INDEX,
+            TYPE);
         this.urlGet = urlBase.concat("/_search?filter_path=hits.hits._source");
-        this.urlPost = urlBase.concat("/_bulk");
+        // partitions are picked by the metadata of every value
+        this.urlPost = partitioned ? "/_bulk" : urlBase.concat("/_bulk");
         this.urlDelete = urlBase.concat("/_delete_by_query");
+        this.urlMultiSearch = urlBase.concat("/_msearch");
+        this.urlAggregate = urlBase.concat(
+            "/_search?filter_path=aggregations.series.buckets");
         this.indexMetaData = String.format(
             "{ \"index\" : { \"_index\" : " +
-                "\"%s\",\"_type\" : \"%s\" } }%n",
+                "\"%s\",\"_type\" : \"%s\" } }\n",
             INDEX,
             TYPE);
-        this.mapper = new ObjectMapper();
     }
 
     @Override
@@ -118,6 +220,12 @@ public class MetricStoreImpl implements MetricStore {
     private HttpEntity getHttpEntityForSearch(String metricName, int from, int
         size, long tmst)
         throws JsonProcessingException {
+        return new NStringEntity(JsonUtil.toJson(getSearchBody(metricName,
+            from, size)), ContentType.APPLICATION_JSON);
+    }
+
+    private static Map<String, Object> getSearchBody(String metricName,
+                                                     int from, int size) {
         Map<String, Object> map = new HashMap<>();
         Map<String, Object> queryParam = new HashMap<>();
         Map<String, Object> termQuery = Collections.singletonMap("name.keyword",
@@ -130,58 +238,329 @@ public class MetricStoreImpl implements MetricStore {
         map.put("sort", sortParam);
         map.put("from", from);
         map.put("size", size);
-        return new NStringEntity(JsonUtil.toJson(map),
-            ContentType.APPLICATION_JSON);
+        return map;
     }
 
-    private List<MetricValue> getMetricValuesFromResponse(Response response)
+    /**
+     * Search metric values of many metrics in multi-search requests of at
+     * most {@code elasticsearch.msearch.size} searches, which are sent
+     * concurrently over the pooled connections of the rest client.
+     */
+    @Override
+    public Map<String, List<MetricValue>> getMetricValues(
+        List<String> metricNames, int from, int size) throws IOException {
+        List<String> names = new ArrayList<>(new LinkedHashSet<>(metricNames));
+        int chunkSize = Math.max(msearchSize, 1);
+        Semaphore permits = new Semaphore(Math.max(msearchConcurrency, 1));
+        List<List<String>> chunks = new ArrayList<>();
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < names.size(); i += chunkSize) {
+                List<String> chunk = names.subList(i, Math.min(i + chunkSize,
+                    names.size()));
+                HttpEntity entity = getHttpEntityForMultiSearch(chunk, from,
+                    size);
+                permits.acquire();
+                chunks.add(chunk);
+                futures.add(multiSearch(entity).whenComplete((response, e) ->
+                    permits.release()));
+            }
+            Map<String, List<MetricValue>> metricValues = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                metricValues.putAll(getMetricValuesFromMultiResponse(
+                    chunks.get(i), futures.get(i).join()));
+            }
+            return metricValues;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted multi-search.");
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to search metric values.", cause);
+        }
+    }
+
+    private HttpEntity getHttpEntityForMultiSearch(List<String> metricNames,
+                                                   int from, int size)
         throws IOException {
-        List<MetricValue> metricValues = new ArrayList<>();
-        JsonNode jsonNode = mapper.readTree(EntityUtils.toString(response
-            .getEntity()));
-        if (jsonNode.hasNonNull("hits") && jsonNode.get("hits")
-            .hasNonNull("hits")) {
-            for (JsonNode node : jsonNode.get("hits").get("hits")) {
-                JsonNode sourceNode = node.get("_source");
-                Map<String, Object> value = JsonUtil.toEntity(
-                    sourceNode.get("value").toString(),
-                    new TypeReference<Map<String, Object>>() {
-                    });
-                Map<String, Object> meta = JsonUtil.toEntity(
-                    Objects.toString(sourceNode.get("metadata"), null),
-                    new TypeReference<Map<String, Object>>() {
-                    });
-                MetricValue metricValue = new MetricValue(
-                    sourceNode.get("name").asText(),
-                    Long.parseLong(sourceNode.get("tmst").asText()),
-                    meta,
-                    value);
-                metricValues.add(metricValue);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        // index and type are given by the url
+        byte[] header = "{}\n".getBytes(StandardCharsets.UTF_8);
+        for (String metricName : metricNames) {
+            body.write(header);
+            JsonUtil.write(body, getSearchBody(metricName, from, size));
+            body.write('\n');
+        }
+        return new NByteArrayEntity(body.toByteArray(), NDJSON);
+    }
+
+    private CompletableFuture<Response> multiSearch(HttpEntity entity) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        client.performRequestAsync("GET", urlMultiSearch,
+            Collections.emptyMap(), entity, new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    future.complete(response);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        return future;
+    }
+
+    /**
+     * @return metric values by metric name, where the i-th response of the
+     * multi-search answers the search of the i-th metric name
+     */
+    private static Map<String, List<MetricValue>>
+    getMetricValuesFromMultiResponse(List<String> metricNames,
+                                     Response response) throws IOException {
+        MultiSearchResponse multiResponse;
+        try (InputStream in = response.getEntity().getContent()) {
+            multiResponse = JsonUtil.read(in, MultiSearchResponse.class);
+        }
+        List<SearchResponse> responses = multiResponse.responses;
+        if (responses == null || responses.size() != metricNames.size()) {
+            throw new IOException("Unexpected multi-search response of "
+                + metricNames.size() + " searches.");
+        }
+        Map<String, List<MetricValue>> metricValues = new HashMap<>();
+        for (int i = 0; i < metricNames.size(); i++) {
+            SearchResponse searchResponse = responses.get(i);
+            if (searchResponse.error == null) {
+                metricValues.put(metricNames.get(i),
+                    searchResponse.getMetricValues());
+            } else if (searchResponse.status == 404) {
+                // griffin index is created by the first metric written
+                metricValues.put(metricNames.get(i), Collections.emptyList());
+            } else {
+                throw new IOException("Failed to search metric values named "
+                    + metricNames.get(i) + ". " + searchResponse.error);
             }
         }
         return metricValues;
     }
 
+    /**
+     * Bind sources of hits to metric values in one pass over the response.
+     */
+    private List<MetricValue> getMetricValuesFromResponse(Response response)
+        throws IOException {
+        try (InputStream in = response.getEntity().getContent()) {
+            return JsonUtil.read(in, SearchResponse.class).getMetricValues();
+        }
+    }
+
+    /**
+     * Aggregate in elasticsearch by a date histogram of fixed intervals,
+     * with an avg, min or max of the field, or the top hit for last.
+     */
     @Override
-    public ResponseEntity<?> addMetricValues(List<MetricValue> metricValues)
+    public MetricSeries getMetricSeries(String metricName, String field,
+                                        long from, long to, long interval,
+                                        SeriesAggregation agg)
         throws IOException {
-        String bulkRequestBody = getBulkRequestBody(metricValues);
-        HttpEntity entity = new NStringEntity(bulkRequestBody,
+        HttpEntity entity = new NStringEntity(JsonUtil.toJson(
+            getSeriesBody(metricName, field, from, to, interval, agg)),
             ContentType.APPLICATION_JSON);
-        Response response = client.performRequest("POST", urlPost,
-            Collections.emptyMap(), entity);
-        return getResponseEntityFromResponse(response);
+        JsonNode jsonNode;
+        try {
+            Response response = client.performRequest("GET", urlAggregate,
+                Collections.emptyMap(), entity);
+            try (InputStream in = response.getEntity().getContent()) {
+                jsonNode = JsonUtil.readTree(in);
+            }
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == 404) {
+                return new MetricSeries(metricName, field, agg, interval);
+            }
+            throw e;
+        }
+        MetricSeries series = new MetricSeries(metricName, field, agg,
+            interval);
+        for (JsonNode bucket : jsonNode.path("aggregations").path("series")
+            .path("buckets")) {
+            JsonNode value = agg == SeriesAggregation.LAST
+                ? bucket.path("metric").path("hits").path("hits").path(0)
+                .path("_source").path("value").path(field)
+                : bucket.path("metric").path("value");
+            if (value.isNumber()) {
+                series.add(bucket.path("key").asLong(), value.asDouble());
+            }
+        }
+        return series;
+    }
+
+    private static Map<String, Object> getSeriesBody(String metricName,
+                                                     String field, long from,
+                                                     long to, long interval,
+                                                     SeriesAggregation agg) {
+        String valueField = "value." + field;
+        Map<String, Object> range = new HashMap<>();
+        range.put("gte", from);
+        range.put("lte", to);
+        List<Object> filters = new ArrayList<>();
+        filters.add(Collections.singletonMap("term", Collections
+            .singletonMap("name.keyword", metricName)));
+        filters.add(Collections.singletonMap("range", Collections
+            .singletonMap("tmst", range)));
+        filters.add(Collections.singletonMap("exists", Collections
+            .singletonMap("field", valueField)));
+        Map<String, Object> metric;
+        if (agg == SeriesAggregation.LAST) {
+            Map<String, Object> topHits = new HashMap<>();
+            topHits.put("size", 1);
+            topHits.put("sort", Collections.singletonMap("tmst", Collections
+                .singletonMap("order", "desc")));
+            topHits.put("_source", Collections.singletonMap("includes",
+                Collections.singletonList(valueField)));
+            metric = Collections.singletonMap("top_hits", topHits);
+        } else {
+            metric = Collections.singletonMap(agg.name().toLowerCase(Locale.ROOT),
+                Collections.singletonMap("field", valueField));
+        }
+        Map<String, Object> histogram = new HashMap<>();
+        histogram.put("field", "tmst");
+        histogram.put("interval", interval + "ms");
+        histogram.put("min_doc_count", 1);
+        Map<String, Object> series = new HashMap<>();
+        series.put("date_histogram", histogram);
+        series.put("aggs", Collections.singletonMap("metric", metric));
+        Map<String, Object> map = new HashMap<>();
+        map.put("query", Collections.singletonMap("bool", Collections
+            .singletonMap("filter", filters)));
+        map.put("size", 0);
+        map.put("aggs", Collections.singletonMap("series", series));
+        return map;
+    }
+
+    @Override
+    public ResponseEntity<?> addMetricValues(List<MetricValue> metricValues)
+        throws IOException {
+        if (partitioned) {
+            putTemplate();
+            // only compactions write rollups
+            for (MetricValue value : metricValues) {
+                MetricCompactor.stripRollup(value);
+            }
+        }
+        JsonNode response = getBulkIngester().ingest(metricValues);
+        return new ResponseEntity<>(JsonUtil.toJson(response),
+            responseHeaders, HttpStatus.OK);
+    }
+
+    private synchronized MetricBulkIngester getBulkIngester() {
+        if (bulkIngester == null) {
+            bulkExecutor = BlockingExecutors.newExecutor("metric-bulk",
+                bulkConcurrency, virtualThreads);
+            byte[] metaData = indexMetaData.getBytes(StandardCharsets.UTF_8);
+            bulkIngester = new MetricBulkIngester(client, urlPost,
+                partitioned ? MetricStoreImpl::getPartitionMetaData
+                    : value -> metaData,
+                bulkMaxActions, bulkMaxBytes, bulkConcurrency,
+                bulkMaxRetries, bulkBackoff, bulkExecutor);
+        }
+        return bulkIngester;
+    }
+
+    /**
+     * @return action and metadata line of the monthly partition of a value,
+     * with an id derived from metric name and time if it is a rollup
+     */
+    private static byte[] getPartitionMetaData(MetricValue value) {
+        MetricCompactor.Tier tier = MetricCompactor.tierOf(value);
+        long tmst = value.getTmst() == null ? System.currentTimeMillis()
+            : value.getTmst();
+        String index = MetricCompactor.partition(ALIAS, tier, tmst);
+        String id = tier == MetricCompactor.Tier.RAW ? ""
+            : String.format(",\"_id\":\"%s\"", UUID.nameUUIDFromBytes(
+            (value.getName() + "@" + tmst).getBytes(StandardCharsets.UTF_8)));
+        return String.format("{\"index\":{\"_index\":\"%s\",\"_type\":"
+            + "\"%s\"%s}}\n", index, TYPE, id)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Put the template which maps monthly partitions like the single index
+     * and adds them to the alias when they are created, as well as the
+     * single index the measure sink writes to.
+     */
+    private void putTemplate() throws IOException {
+        if (templatePut) {
+            return;
+        }
+        Map<String, Object> keyword = new HashMap<>();
+        keyword.put("type", "keyword");
+        keyword.put("ignore_above", 256);
+        Map<String, Object> name = new HashMap<>();
+        name.put("type", "text");
+        name.put("fields", Collections.singletonMap("keyword", keyword));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("name", name);
+        properties.put("tmst", Collections.singletonMap("type", "date"));
+        Map<String, Object> template = new HashMap<>();
+        template.put("index_patterns", Arrays.asList(ALIAS + "-*", INDEX));
+        template.put("aliases", Collections.singletonMap(ALIAS,
+            Collections.emptyMap()));
+        template.put("mappings", Collections.singletonMap(TYPE,
+            Collections.singletonMap("properties", properties)));
+        client.performRequest("PUT", "/_template/" + ALIAS,
+            Collections.emptyMap(), new NStringEntity(JsonUtil.toJson(
+                template), ContentType.APPLICATION_JSON));
+        templatePut = true;
+    }
+
+    /**
+     * Move values the measure sink wrote to the single index into monthly
+     * partitions, then roll up and drop partitions older than their
+     * retention, on the leader node only.
+     */
+    @Scheduled(fixedDelayString =
+        "${metric.compaction.interval.milliseconds:3600000}")
+    public void compact() {
+        if (!partitioned || !cluster.isLeader()) {
+            return;
+        }
+        Map<MetricCompactor.Tier, Long> retentions = new HashMap<>();
+        retentions.put(MetricCompactor.Tier.RAW,
+            TimeUnit.DAYS.toMillis(rawRetentionDays));
+        retentions.put(MetricCompactor.Tier.HOURLY,
+            TimeUnit.DAYS.toMillis(hourlyRetentionDays));
+        retentions.put(MetricCompactor.Tier.DAILY,
+            TimeUnit.DAYS.toMillis(dailyRetentionDays));
+        try {
+            putTemplate();
+            MetricCompactor compactor = new MetricCompactor(client, ALIAS,
+                retentions, bulkMaxActions, getBulkIngester());
+            int moved = compactor.migrate(INDEX);
+            if (moved > 0) {
+                LOGGER.info("Move {} metric values of {} into partitions.",
+                    moved, INDEX);
+            }
+            if (rawRetentionDays <= 0 && hourlyRetentionDays <= 0
+                && dailyRetentionDays <= 0) {
+                return;
+            }
+            int deleted = compactor.compact(System.currentTimeMillis());
+            if (deleted > 0) {
+                LOGGER.info("Compact {} metric partitions.", deleted);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to compact metric partitions.", e);
+        }
     }
 
-    private String getBulkRequestBody(List<MetricValue> metricValues) throws
-        JsonProcessingException {
-        StringBuilder bulkRequestBody = new StringBuilder();
-        for (MetricValue metricValue : metricValues) {
-            bulkRequestBody.append(indexMetaData);
-            bulkRequestBody.append(JsonUtil.toJson(metricValue));
-            bulkRequestBody.append(System.lineSeparator());
+    @PreDestroy
+    public synchronized void close() {
+        if (bulkExecutor != null) {
+            bulkExecutor.shutdown();
         }
-        return bulkRequestBody.toString();
     }
 
     @Override
@@ -221,4 +600,38 @@ public class MetricStoreImpl implements MetricStore {
         List<MetricValue> metricValues = getMetricValuesFromResponse(response);
         return metricValues.get(0);
     }
+
+    private static class MultiSearchResponse {
+        @JsonProperty("responses")
+        private List<SearchResponse> responses;
+    }
+
+    private static class SearchResponse {
+        @JsonProperty("hits")
+        private Hits hits;
+        @JsonProperty("error")
+        private JsonNode error;
+        @JsonProperty("status")
+        private int status;
+
+        List<MetricValue> getMetricValues() {
+            List<MetricValue> metricValues = new ArrayList<>();
+            if (hits != null && hits.hits != null) {
+                for (Hit hit : hits.hits) {
+                    metricValues.add(hit.source);
+                }
+            }
+            return metricValues;
+        }
+    }
+
+    private static class Hits {
+        @JsonProperty("hits")
+        private List<Hit> hits;
+    }
+
+    private static class Hit {
+        @JsonProperty("_source")
+        private MetricValue source;
+    }
 }
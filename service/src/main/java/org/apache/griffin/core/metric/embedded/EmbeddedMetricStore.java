@@ -0,0 +1,356 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric.embedded;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.griffin.core.metric.MetricStore;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Metric store on local disk for deployments without elasticsearch,
+ * selected by {@code metric.store=embedded}.
+ * <p>
+ * Every metric has a directory of append-only segment files under
+ * {@code metric.store.embedded.dir}, named by the hex of the metric name.
+ * Long names are named by the hex of their prefix and their SHA-1 instead,
+ * to keep within file name limits, with the name in a {@link #NAME_FILE}.
+ * Segments are memory mapped and sparsely indexed by timestamp, so the
+ * latest values of a metric are read without scanning or parsing older
+ * ones. Segments of values posted out of order are merged once a metric
+ * has more than {@code metric.store.embedded.max.segments} of them.
+ * Application ids of values are indexed in memory when the store opens.
+ * Values are forced to disk before a post returns.
+ */
+@Component
+@Qualifier(value = "metricStoreBackend")
+@ConditionalOnProperty(name = "metric.store", havingValue = "embedded")
+public class EmbeddedMetricStore implements MetricStore {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(EmbeddedMetricStore.class);
+    static final String NAME_FILE = "metric.name";
+    /**
+     * UTF-8 bytes of the longest name whose directory is its hex
+     */
+    private static final int MAX_PLAIN_BYTES = 100;
+    private static final int HASHED_PREFIX_BYTES = 32;
+
+    @Value("${metric.store.embedded.dir:data/metrics}")
+    private String dir;
+    @Value("${metric.store.embedded.segment.bytes:67108864}")
+    private long segmentBytes;
+    @Value("${metric.store.embedded.max.segments:16}")
+    private int maxSegments;
+
+    private final HttpHeaders responseHeaders = new HttpHeaders();
+    /**
+     * logs by metric name
+     */
+    private final Map<String, MetricLog> logs = new ConcurrentHashMap<>();
+
+    public EmbeddedMetricStore() {
+        responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        File root = new File(dir);
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Failed to create " + root);
+        }
+        File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs == null) {
+            throw new IOException("Failed to list " + root);
+        }
+        for (File metricDir : dirs) {
+            String name;
+            try {
+                name = nameOf(metricDir);
+            } catch (IllegalArgumentException | IOException e) {
+                LOGGER.warn("Skip {} which is not a metric.", metricDir);
+                continue;
+            }
+            logs.put(name, MetricLog.open(metricDir, segmentBytes,
+                maxSegments));
+        }
+        LOGGER.info("Open {} metrics in {}.", logs.size(),
+            root.getAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() {
+        for (MetricLog log : logs.values()) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close {}.", log.getDir(), e);
+            }
+        }
+        logs.clear();
+    }
+
+    /**
+     * Timestamps are not a filter of elasticsearch either, so tmst is
+     * ignored.
+     */
+    @Override
+    public List<MetricValue> getMetricValues(String metricName, int from,
+                                             int size, long tmst)
+        throws IOException {
+        MetricLog log = logs.get(metricName);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        return log.read(Long.MIN_VALUE, Long.MAX_VALUE, from, size);
+    }
+
+    @Override
+    public Map<String, List<MetricValue>> getMetricValues(
+        List<String> metricNames, int from, int size) throws IOException {
+        Map<String, List<MetricValue>> result = new LinkedHashMap<>();
+        for (String name : metricNames) {
+            result.put(name, getMetricValues(name, from, size, 0L));
+        }
+        return result;
+    }
+
+    /**
+     * @return response in the format of elasticsearch bulk responses
+     */
+    @Override
+    public ResponseEntity<?> addMetricValues(List<MetricValue> metricValues)
+        throws IOException {
+        long start = System.currentTimeMillis();
+        ObjectNode[] statuses = new ObjectNode[metricValues.size()];
+        Map<String, List<Integer>> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < metricValues.size(); i++) {
+            MetricValue value = metricValues.get(i);
+            if (StringUtils.isEmpty(value.getName())
+                || value.getTmst() == null) {
+                statuses[i] = status(HttpStatus.BAD_REQUEST,
+                    "name and tmst are required");
+            } else {
+                indexes.computeIfAbsent(value.getName(),
+                    name -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : indexes.entrySet()) {
+            List<MetricValue> values = new ArrayList<>();
+            for (int i : entry.getValue()) {
+                values.add(metricValues.get(i));
+            }
+            values.sort(Comparator.comparing(MetricValue::getTmst));
+            ObjectNode status;
+            try {
+                append(entry.getKey(), values);
+                status = status(HttpStatus.CREATED, null);
+            } catch (IOException e) {
+                LOGGER.error("Failed to append values of metric {}.",
+                    entry.getKey(), e);
+                status = status(HttpStatus.INTERNAL_SERVER_ERROR,
+                    e.getMessage());
+            }
+            for (int i : entry.getValue()) {
+                statuses[i] = status;
+            }
+        }
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode items = response.putArray("items");
+        boolean errors = false;
+        for (ObjectNode status : statuses) {
+            items.addObject().set("index", status);
+            errors |= status.get("status").asInt() >= 300;
+        }
+        response.put("took", System.currentTimeMillis() - start);
+        response.put("errors", errors);
+        return new ResponseEntity<>(JsonUtil.toJson(response),
+            responseHeaders, HttpStatus.OK);
+    }
+
+    private void append(String metricName, List<MetricValue> values)
+        throws IOException {
+        while (true) {
+            MetricLog log = getOrCreateLog(metricName);
+            if (log.append(values)) {
+                return;
+            }
+            // deleted concurrently, so the values go to a new log
+            logs.remove(metricName, log);
+        }
+    }
+
+    private MetricLog getOrCreateLog(String metricName) throws IOException {
+        MetricLog log = logs.get(metricName);
+        if (log != null) {
+            return log;
+        }
+        synchronized (logs) {
+            log = logs.get(metricName);
+            if (log == null) {
+                File metricDir = new File(dir, encode(metricName));
+                if (isHashed(metricDir.getName())) {
+                    writeName(metricDir, metricName);
+                }
+                log = MetricLog.create(metricDir, segmentBytes, maxSegments);
+                logs.put(metricName, log);
+            }
+            return log;
+        }
+    }
+
+    private static ObjectNode status(HttpStatus status, String error) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("status", status.value());
+        if (error != null) {
+            node.put("error", error);
+        }
+        return node;
+    }
+
+    @Override
+    public ResponseEntity<?> deleteMetricValues(String metricName)
+        throws IOException {
+        MetricLog log;
+        synchronized (logs) {
+            log = logs.remove(metricName);
+        }
+        int deleted = log == null ? 0 : log.delete();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("deleted", deleted);
+        return new ResponseEntity<>(JsonUtil.toJson(body), responseHeaders,
+            HttpStatus.OK);
+    }
+
+    /**
+     * @return the latest value of the application id, or null if none
+     */
+    @Override
+    public MetricValue getMetric(String applicationId) throws IOException {
+        MetricValue latest = null;
+        for (MetricLog log : logs.values()) {
+            MetricValue value = log.find(applicationId);
+            if (value != null && (latest == null
+                || value.getTmst() > latest.getTmst())) {
+                latest = value;
+            }
+        }
+        return latest;
+    }
+
+    static String encode(String metricName) {
+        byte[] bytes = metricName.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_PLAIN_BYTES) {
+            return hex(bytes, bytes.length);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            return hex(bytes, HASHED_PREFIX_BYTES) + "-"
+                + hex(digest, digest.length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(String.format("%02x", bytes[i] & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHashed(String dirName) {
+        return dirName.indexOf('-') >= 0;
+    }
+
+    /**
+     * The name file is written before any segment, so a hashed directory
+     * without it has no values.
+     */
+    private static void writeName(File metricDir, String metricName)
+        throws IOException {
+        if (!metricDir.isDirectory() && !metricDir.mkdirs()) {
+            throw new IOException("Failed to create " + metricDir);
+        }
+        File file = new File(metricDir, NAME_FILE);
+        File tmp = new File(metricDir, NAME_FILE + MetricLog.TMP_SUFFIX);
+        Files.write(tmp.toPath(), metricName.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(),
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String nameOf(File metricDir) throws IOException {
+        if (!isHashed(metricDir.getName())) {
+            return decode(metricDir.getName());
+        }
+        File file = new File(metricDir, NAME_FILE);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException(metricDir.getName());
+        }
+        return new String(Files.readAllBytes(file.toPath()),
+            StandardCharsets.UTF_8);
+    }
+
+    static String decode(String dirName) {
+        if (dirName.length() % 2 != 0) {
+            throw new IllegalArgumentException(dirName);
+        }
+        byte[] bytes = new byte[dirName.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(dirName.charAt(2 * i), 16);
+            int low = Character.digit(dirName.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException(dirName);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
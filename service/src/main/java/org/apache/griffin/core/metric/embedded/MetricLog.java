@@ -0,0 +1,378 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric.embedded;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Metric values of one metric in a directory of segments.
+ * <p>
+ * Values are appended to the latest segment as long as they are not
+ * earlier than its latest value, otherwise to a new segment, so every
+ * segment is in time order and a range is read by merging segments
+ * backwards. Once there are more than {@code maxSegments} segments, like
+ * after a backfill of earlier values, the segments smaller than
+ * {@code segmentBytes} are merged into one. A merge is recorded in a
+ * manifest of the merged segments, so a merge interrupted by a crash is
+ * finished when the log opens. Thread safe.
+ */
+class MetricLog implements Closeable {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(MetricLog.class);
+    static final String SUFFIX = ".seg";
+    private static final String MERGE_SUFFIX = ".merge";
+    static final String TMP_SUFFIX = ".tmp";
+    /**
+     * values read and written at a time by a merge
+     */
+    private static final int MERGE_BATCH = 1024;
+
+    private final File dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+    /**
+     * segments by sequence number, guarded by this
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    /**
+     * segment sequence number and position by application id, guarded by
+     * this
+     */
+    private final Map<String, long[]> appIds = new HashMap<>();
+    private boolean deleted;
+
+    private MetricLog(File dir, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        // segments are mapped by int positions
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE / 2);
+        this.maxSegments = Math.max(maxSegments, 1);
+    }
+
+    static MetricLog open(File dir, long segmentBytes, int maxSegments)
+        throws IOException {
+        MetricLog log = new MetricLog(dir, segmentBytes, maxSegments);
+        try {
+            for (File manifest : list(dir, MERGE_SUFFIX)) {
+                finishMerge(manifest);
+            }
+            for (File tmp : list(dir, TMP_SUFFIX)) {
+                Files.delete(tmp.toPath());
+            }
+            for (File file : list(dir, SUFFIX)) {
+                long seq = parseSeq(file, SUFFIX);
+                Map<String, Long> positions = new HashMap<>();
+                log.segments.put(seq, Segment.open(file, seq, positions));
+                log.indexAppIds(seq, positions);
+            }
+            log.mergeIfNeeded();
+        } catch (IOException | NumberFormatException e) {
+            log.close();
+            throw e instanceof IOException ? (IOException) e
+                : new IOException("Invalid segment in " + dir, e);
+        }
+        return log;
+    }
+
+    static MetricLog create(File dir, long segmentBytes, int maxSegments)
+        throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        return new MetricLog(dir, segmentBytes, maxSegments);
+    }
+
+    private static File[] list(File dir, String suffix) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(suffix));
+        if (files == null) {
+            throw new IOException("Failed to list " + dir);
+        }
+        return files;
+    }
+
+    private static long parseSeq(File file, String suffix) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0,
+            name.length() - suffix.length()));
+    }
+
+    private static File segmentFile(File dir, long seq) {
+        return new File(dir, seq + SUFFIX);
+    }
+
+    /**
+     * @param values values in ascending time order
+     * @return false if the log is deleted
+     */
+    synchronized boolean append(List<MetricValue> values)
+        throws IOException {
+        if (deleted) {
+            return false;
+        }
+        if (values.isEmpty()) {
+            return true;
+        }
+        Segment active = segments.isEmpty() ? null
+            : segments.lastEntry().getValue();
+        if (active == null || (!active.isEmpty()
+            && values.get(0).getTmst() < active.getMaxTmst())
+            || active.getSize() >= segmentBytes) {
+            long seq = active == null ? 0 : active.getSeq() + 1;
+            active = Segment.create(segmentFile(dir, seq), seq);
+            segments.put(seq, active);
+        }
+        Map<String, Long> positions = new HashMap<>();
+        active.append(values, positions);
+        indexAppIds(active.getSeq(), positions);
+        try {
+            mergeIfNeeded();
+        } catch (IOException e) {
+            // the values are appended anyway, and merged next time
+            LOGGER.warn("Failed to merge segments of {}.", dir, e);
+        }
+        return true;
+    }
+
+    /**
+     * Merge the segments smaller than segmentBytes into a new segment in
+     * time order if there are more than maxSegments segments.
+     */
+    private void mergeIfNeeded() throws IOException {
+        if (segments.size() <= maxSegments) {
+            return;
+        }
+        List<Segment> merged = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment.getSize() < segmentBytes) {
+                merged.add(segment);
+            }
+        }
+        if (merged.size() < 2) {
+            return;
+        }
+        long seq = segments.lastKey() + 1;
+        File target = segmentFile(dir, seq);
+        File tmp = new File(dir, target.getName() + TMP_SUFFIX);
+        try {
+            writeMerged(merged, tmp, seq);
+            writeManifest(merged, seq);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+        // from here on a crash is recovered by the manifest
+        Files.move(tmp.toPath(), target.toPath(),
+            StandardCopyOption.ATOMIC_MOVE);
+        Map<String, Long> positions = new HashMap<>();
+        Segment segment = Segment.open(target, seq, positions);
+        for (Segment old : merged) {
+            segments.remove(old.getSeq());
+        }
+        segments.put(seq, segment);
+        // the merged segment is the latest, so its application ids win
+        indexAppIds(seq, positions);
+        for (Segment old : merged) {
+            old.close();
+            Files.delete(old.getFile().toPath());
+        }
+        Files.delete(new File(dir, seq + MERGE_SUFFIX).toPath());
+        LOGGER.info("Merged {} segments of {} into {}.", merged.size(), dir,
+            target.getName());
+    }
+
+    private static void writeMerged(List<Segment> merged, File file, long seq)
+        throws IOException {
+        // earlier segments first for values of the same time
+        PriorityQueue<Segment.Scanner> scanners = new PriorityQueue<>(
+            merged.size(), Comparator.comparingLong(Segment.Scanner::tmst)
+            .thenComparingLong(scanner -> scanner.segment().getSeq()));
+        for (Segment segment : merged) {
+            Segment.Scanner scanner = segment.scan();
+            if (scanner.hasNext()) {
+                scanners.add(scanner);
+            }
+        }
+        try (Segment target = Segment.create(file, seq)) {
+            List<MetricValue> batch = new ArrayList<>(MERGE_BATCH);
+            while (!scanners.isEmpty()) {
+                Segment.Scanner scanner = scanners.poll();
+                batch.add(scanner.segment().read(scanner.next()));
+                if (scanner.hasNext()) {
+                    scanners.add(scanner);
+                }
+                if (batch.size() >= MERGE_BATCH || scanners.isEmpty()) {
+                    target.append(batch, new HashMap<>());
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void writeManifest(List<Segment> merged, long seq)
+        throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Segment segment : merged) {
+            lines.add(String.valueOf(segment.getSeq()));
+        }
+        File manifest = new File(dir, seq + MERGE_SUFFIX);
+        File tmp = new File(dir, manifest.getName() + TMP_SUFFIX);
+        Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), manifest.toPath(),
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finish a merge interrupted after its manifest was written, when the
+     * merged segment is complete but the segments merged into it may not
+     * be deleted yet.
+     */
+    private static void finishMerge(File manifest) throws IOException {
+        File dir = manifest.getParentFile();
+        File target = segmentFile(dir, parseSeq(manifest, MERGE_SUFFIX));
+        File tmp = new File(dir, target.getName() + TMP_SUFFIX);
+        if (tmp.exists()) {
+            Files.move(tmp.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        for (String line : Files.readAllLines(manifest.toPath(),
+            StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                Files.deleteIfExists(segmentFile(dir, Long.parseLong(line.trim()))
+                    .toPath());
+            }
+        }
+        Files.delete(manifest.toPath());
+        LOGGER.info("Finished merge of {}.", target);
+    }
+
+    private void indexAppIds(long seq, Map<String, Long> positions) {
+        for (Map.Entry<String, Long> entry : positions.entrySet()) {
+            long[] found = appIds.get(entry.getKey());
+            // the latest value of an application id wins
+            if (found == null || seq > found[0]
+                || (seq == found[0] && entry.getValue() > found[1])) {
+                appIds.put(entry.getKey(), new long[]{seq, entry.getValue()});
+            }
+        }
+    }
+
+    /**
+     * @param from   begin of the time range, inclusive
+     * @param to     end of the time range, inclusive
+     * @param offset number of latest values to skip
+     * @param size   max number of values
+     * @return values in [from, to] in descending time order
+     */
+    synchronized List<MetricValue> read(long from, long to, int offset,
+                                        int size) throws IOException {
+        if (size <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Segment.Cursor> cursors = new PriorityQueue<>(
+            Math.max(segments.size(), 1),
+            Comparator.comparingLong(Segment.Cursor::tmst).reversed());
+        for (Segment segment : segments.values()) {
+            Segment.Cursor cursor = segment.cursor(from, to);
+            if (cursor.hasNext()) {
+                cursors.add(cursor);
+            }
+        }
+        List<MetricValue> values = new ArrayList<>(Math.min(size, 1024));
+        int skipped = 0;
+        while (!cursors.isEmpty() && values.size() < size) {
+            Segment.Cursor cursor = cursors.poll();
+            long position = cursor.next();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                values.add(cursor.segment().read(position));
+            }
+            if (cursor.hasNext()) {
+                cursors.add(cursor);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the latest value of the application id, or null if none
+     */
+    synchronized MetricValue find(String appId) throws IOException {
+        long[] found = appIds.get(appId);
+        return found == null ? null
+            : segments.get(found[0]).read(found[1]);
+    }
+
+    /**
+     * Close and delete all segments.
+     *
+     * @return number of values deleted
+     */
+    synchronized int delete() throws IOException {
+        int count = 0;
+        for (Segment segment : segments.values()) {
+            count += segment.getCount();
+        }
+        deleted = true;
+        close();
+        if (!FileSystemUtils.deleteRecursively(dir)) {
+            throw new IOException("Failed to delete " + dir);
+        }
+        return count;
+    }
+
+    File getDir() {
+        return dir;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        segments.clear();
+        appIds.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric.embedded;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only segment file of metric values in ascending time order.
+ * <p>
+ * A record is its length, its timestamp, the application id of its
+ * metadata and the json of the value. Every {@link #INDEX_INTERVAL}-th
+ * record is indexed by its timestamp and position, so a time is found by a
+ * binary search of the index and a scan of at most one block. Records are
+ * read from a memory map of the file. The map grows geometrically ahead of
+ * the file, which is trimmed to its records on close. Not thread safe,
+ * guarded by its {@link MetricLog}.
+ */
+class Segment implements Closeable {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(Segment.class);
+    static final int INDEX_INTERVAL = 64;
+    /**
+     * length, timestamp and application id length of a record
+     */
+    private static final int HEADER_BYTES = 4 + 8 + 2;
+    private static final long MIN_MAP_BYTES = 64 * 1024;
+
+    private final File file;
+    private final long seq;
+    private final FileChannel channel;
+    /**
+     * timestamps and positions of every INDEX_INTERVAL-th record
+     */
+    private final List<long[]> index = new ArrayList<>();
+    private long size;
+    private int count;
+    private long minTmst = Long.MAX_VALUE;
+    private long maxTmst = Long.MIN_VALUE;
+    private MappedByteBuffer map;
+    /**
+     * whether the map extended the file beyond its records
+     */
+    private boolean padded;
+
+    private Segment(File file, long seq) throws IOException {
+        this.file = file;
+        this.seq = seq;
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+    static Segment create(File file, long seq) throws IOException {
+        return new Segment(file, seq);
+    }
+
+    /**
+     * Open a segment and rebuild its index. A record partially written
+     * before a crash, or the zeros its map extended the file with, are
+     * truncated.
+     *
+     * @param appIds receives the application id and position of records
+     *               which have one
+     */
+    static Segment open(File file, long seq, Map<String, Long> appIds)
+        throws IOException {
+        Segment segment = new Segment(file, seq);
+        try {
+            segment.recover(appIds);
+        } catch (IOException e) {
+            segment.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    private void recover(Map<String, Long> appIds) throws IOException {
+        long length = channel.size();
+        ByteBuffer buffer = map(length);
+        long position = 0;
+        while (position + HEADER_BYTES <= length) {
+            buffer.position((int) position);
+            int recordBytes = buffer.getInt();
+            if (recordBytes < HEADER_BYTES - 4
+                || position + 4 + recordBytes > length) {
+                break;
+            }
+            long tmst = buffer.getLong();
+            String appId = readAppId(buffer);
+            if (appId != null) {
+                appIds.put(appId, position);
+            }
+            indexRecord(tmst, position);
+            position += 4 + recordBytes;
+        }
+        if (position < length) {
+            LOGGER.warn("Truncate {} bytes of incomplete records of {}.",
+                length - position, file);
+            channel.truncate(position);
+            map = null;
+        }
+        size = position;
+    }
+
+    /**
+     * Append values in ascending time order, which are not earlier than
+     * the latest value of the segment.
+     *
+     * @param appIds receives the application id and position of values
+     *               which have one
+     */
+    void append(List<MetricValue> values, Map<String, Long> appIds)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long position = size;
+        List<long[]> records = new ArrayList<>(values.size());
+        for (MetricValue value : values) {
+            byte[] json = toJson(value);
+            String appId = getAppId(value);
+            byte[] appIdBytes = appId == null ? new byte[0]
+                : appId.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(HEADER_BYTES - 4 + appIdBytes.length + json.length);
+            header.putLong(value.getTmst());
+            header.putShort((short) appIdBytes.length);
+            out.write(header.array());
+            out.write(appIdBytes);
+            out.write(json);
+            records.add(new long[]{value.getTmst(), position});
+            if (appId != null) {
+                appIds.put(appId, position);
+            }
+            position = size + out.size();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        long writePosition = size;
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+        channel.force(false);
+        for (long[] record : records) {
+            indexRecord(record[0], record[1]);
+        }
+        size = writePosition;
+    }
+
+    private void indexRecord(long tmst, long position) {
+        if (count % INDEX_INTERVAL == 0) {
+            index.add(new long[]{tmst, position});
+        }
+        count++;
+        minTmst = Math.min(minTmst, tmst);
+        maxTmst = Math.max(maxTmst, tmst);
+    }
+
+    /**
+     * @return cursor over records in [from, to] in descending time order
+     */
+    Cursor cursor(long from, long to) throws IOException {
+        if (count == 0 || from > maxTmst || to < minTmst) {
+            return new Cursor(null, -1, from, to);
+        }
+        // last block whose first record is not after to
+        return new Cursor(map(size), Math.max(lastBlockAtOrBefore(to), 0),
+            from, to);
+    }
+
+    private int lastBlockAtOrBefore(long tmst) {
+        int low = 0;
+        int high = index.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index.get(mid)[0] <= tmst) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return scanner over all records in ascending time order
+     */
+    Scanner scan() throws IOException {
+        return new Scanner(map(size));
+    }
+
+    MetricValue read(long position) throws IOException {
+        ByteBuffer buffer = map(size);
+        buffer.position((int) position);
+        int recordBytes = buffer.getInt();
+        buffer.getLong();
+        int appIdBytes = buffer.getShort();
+        buffer.position(buffer.position() + appIdBytes);
+        byte[] json = new byte[recordBytes - (HEADER_BYTES - 4) - appIdBytes];
+        buffer.get(json);
+        return JsonUtil.read(new ByteArrayInputStream(json),
+            MetricValue.class);
+    }
+
+    private ByteBuffer map(long length) throws IOException {
+        if (map == null || map.capacity() < length) {
+            // mapping beyond the end extends the file with zeros, which
+            // the next appends overwrite
+            long capacity = Math.min(map == null ? length : Math.max(length,
+                Math.max(2L * map.capacity(), MIN_MAP_BYTES)),
+                Integer.MAX_VALUE);
+            padded |= capacity > channel.size();
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+        }
+        return map.duplicate();
+    }
+
+    private static String readAppId(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length <= 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String getAppId(MetricValue value) {
+        Map<String, Object> metadata = value.getMetadata();
+        Object appId = metadata == null ? null : metadata.get("applicationId");
+        if (appId == null) {
+            return null;
+        }
+        String id = appId.toString();
+        return id.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE
+            ? null : id;
+    }
+
+    private static byte[] toJson(MetricValue value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtil.write(out, value);
+        return out.toByteArray();
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    long getMaxTmst() {
+        if (count == 0) {
+            throw new NoSuchElementException("Segment is empty.");
+        }
+        return maxTmst;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads records backwards one index block at a time.
+     */
+    class Cursor {
+        private final ByteBuffer buffer;
+        private final long from;
+        private final long to;
+        private final List<long[]> records = new ArrayList<>(INDEX_INTERVAL);
+        private int block;
+        private int next = -1;
+
+        private Cursor(ByteBuffer buffer, int block, long from, long to) {
+            this.buffer = buffer;
+            this.block = block;
+            this.from = from;
+            this.to = to;
+            advance();
+        }
+
+        boolean hasNext() {
+            return next >= 0;
+        }
+
+        long tmst() {
+            return records.get(next)[0];
+        }
+
+        /**
+         * @return position of the current record, then moves to the next
+         */
+        long next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            long position = records.get(next)[1];
+            next--;
+            advance();
+            return position;
+        }
+
+        Segment segment() {
+            return Segment.this;
+        }
+
+        private void advance() {
+            while (true) {
+                while (next >= 0) {
+                    long tmst = records.get(next)[0];
+                    if (tmst < from) {
+                        next = -1;
+                        block = -1;
+                        return;
+                    }
+                    if (tmst <= to) {
+                        return;
+                    }
+                    next--;
+                }
+                if (block < 0) {
+                    return;
+                }
+                loadBlock(block--);
+            }
+        }
+
+        private void loadBlock(int i) {
+            long start = index.get(i)[1];
+            long end = i + 1 < index.size() ? index.get(i + 1)[1] : size;
+            records.clear();
+            for (long position = start; position < end; ) {
+                buffer.position((int) position);
+                int recordBytes = buffer.getInt();
+                records.add(new long[]{buffer.getLong(), position});
+                position += 4 + recordBytes;
+            }
+            next = records.size() - 1;
+        }
+    }
+
+    /**
+     * Reads records forwards, for compaction.
+     */
+    class Scanner {
+        private final ByteBuffer buffer;
+        private long position;
+
+        private Scanner(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean hasNext() {
+            return position < size;
+        }
+
+        long tmst() {
+            return buffer.getLong((int) position + 4);
+        }
+
+        /**
+         * @return position of the current record, then moves to the next
+         */
+        long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long current = position;
+            position += 4 + buffer.getInt((int) position);
+            return current;
+        }
+
+        Segment segment() {
+            return Segment.this;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        map = null;
+        try {
+            if (padded && channel.isOpen() && channel.size() > size) {
+                channel.truncate(size);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
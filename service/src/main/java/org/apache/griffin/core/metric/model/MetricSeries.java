@@ -0,0 +1,107 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metric values of a field aggregated by fixed intervals, as columns of
+ * interval start times and values in ascending time order. Intervals
+ * without values are left out.
+ */
+public class MetricSeries {
+
+    private String name;
+
+    private String field;
+
+    private SeriesAggregation aggregation;
+
+    private long interval;
+
+    private List<Long> timestamps = new ArrayList<>();
+
+    private List<Double> values = new ArrayList<>();
+
+    public MetricSeries() {
+    }
+
+    public MetricSeries(String name, String field,
+                        SeriesAggregation aggregation, long interval) {
+        this.name = name;
+        this.field = field;
+        this.aggregation = aggregation;
+        this.interval = interval;
+    }
+
+    public void add(long timestamp, double value) {
+        timestamps.add(timestamp);
+        values.add(value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public SeriesAggregation getAggregation() {
+        return aggregation;
+    }
+
+    public void setAggregation(SeriesAggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public List<Long> getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(List<Long> timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    public List<Double> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Double> values) {
+        this.values = values;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executors of tasks which mostly block on I/O, like JDBC, HDFS RPCs and
+ * Livy or YARN HTTP calls.
+ * <p>
+ * When virtual threads are asked for and the JVM has them (Java 21 or
+ * later), every task runs on a new virtual thread, so thousands of waiting
+ * tasks do not need thousands of platform threads. Otherwise tasks run on
+ * daemon platform threads, created on demand up to a maximum and retired
+ * when idle. Virtual threads are looked up reflectively, as the service is
+ * built for Java 8.
+ */
+public final class BlockingExecutors {
+    private static final Logger LOGGER = LoggerFactory
+        .getLogger(BlockingExecutors.class);
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor",
+                ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * @return whether the JVM has virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param name    prefix of thread names, threads are named name-N
+     * @param virtual whether to create virtual threads if supported
+     * @return factory of daemon threads
+     */
+    public static ThreadFactory newThreadFactory(String name,
+                                                 boolean virtual) {
+        if (virtual && isVirtualThreadSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null),
+                    name + "-", 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Failed to create virtual threads, use platform " +
+                    "threads for {}.", name, e);
+            }
+        }
+        AtomicInteger index = new AtomicInteger(0);
+        return r -> {
+            Thread t = new Thread(r, name + "-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * @param name       prefix of thread names
+     * @param maxThreads max platform threads, not a limit of virtual threads
+     * @param virtual    whether to run tasks on virtual threads if supported
+     * @return executor which runs every task on a new virtual thread, or on
+     * at most maxThreads platform threads and queues the other tasks
+     */
+    public static ExecutorService newExecutor(String name, int maxThreads,
+                                              boolean virtual) {
+        if (virtual && isVirtualThreadSupported()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(
+                    null, newThreadFactory(name, true));
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Failed to create virtual threads, use platform " +
+                    "threads for {}.", name, e);
+            }
+        }
+        int threads = Math.max(maxThreads, 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            newThreadFactory(name, false));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -22,11 +22,24 @@ package org.apache.griffin.core.util;
 import static org.apache.griffin.core.exception.GriffinExceptionMessage.HDFS_FILE_NOT_EXIST;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
@@ -48,9 +61,23 @@ public class FSUtil {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FSUtil.class);
     private static final int SAMPLE_ROW_COUNT = 100;
+    private static final int MAX_EXIST_CACHE_SIZE = 100000;
 
     private static String fsDefaultName;
 
+    private static int existCheckThreads = 8;
+
+    private static long existCacheTtl = 600000L;
+
+    /**
+     * Paths known to exist, with the time they were last seen. Only positive
+     * results are cached as done files don't disappear once written.
+     */
+    private static final Map<String, Long> EXIST_CACHE =
+        new ConcurrentHashMap<>();
+
+    private static ExecutorService existCheckExecutor;
+
     private static FileSystem fileSystem;
 
     private static FileSystem defaultFS = getDefaultFileSystem();
@@ -73,8 +100,13 @@ public class FSUtil {
         return fileSystem;
     }
 
-    public FSUtil(@Value("${fs.defaultFS}") String defaultName) {
+    public FSUtil(@Value("${fs.defaultFS}") String defaultName,
+                  @Value("${predicate.fs.check.threads:8}") int threads,
+                  @Value("${predicate.fs.cache.ttl.milliseconds:600000}")
+                      long cacheTtl) {
         fsDefaultName = defaultName;
+        existCheckThreads = threads;
+        existCacheTtl = cacheTtl;
     }
 
     private static void initFileSystem() {
@@ -167,12 +199,173 @@ public class FSUtil {
 
     }
 
+    /**
+     * Sum up the size of the directories holding the paths, like the
+     * partition directories of done files.
+     *
+     * @param paths hdfs paths
+     * @return size in bytes
+     */
+    public static long getParentContentSize(Collection<String> paths)
+        throws IOException {
+        checkHDFSConf();
+        Set<Path> parents = new HashSet<>();
+        for (String path : paths) {
+            Path parent = new Path(path).getParent();
+            if (parent != null) {
+                parents.add(parent);
+            }
+        }
+        long size = 0;
+        for (Path parent : parents) {
+            if (fileSystem.exists(parent)) {
+                size += fileSystem.getContentSummary(parent).getLength();
+            }
+        }
+        return size;
+    }
+
     public static boolean isFileExist(String path) throws IOException {
         checkHDFSConf();
         Path hdfsPath = new Path(path);
         return fileSystem.isFile(hdfsPath) || fileSystem.isDirectory(hdfsPath);
     }
 
+    /**
+     * Check that all paths exist. Paths are grouped by parent directory so
+     * that each directory costs one listStatus call, directories are listed
+     * in parallel on a bounded pool and paths found are cached for a short
+     * time to spare the name node on the next predicate fire.
+     *
+     * @param paths hdfs paths
+     * @return true if every path exists
+     */
+    public static boolean isFilesExist(Collection<String> paths)
+        throws IOException {
+        checkHDFSConf();
+        long now = System.currentTimeMillis();
+        Map<Path, Map<String, String>> pathsByParent = new HashMap<>();
+        for (String path : paths) {
+            if (isCachedExist(path, now)) {
+                continue;
+            }
+            Path hdfsPath = new Path(path);
+            Path parent = hdfsPath.getParent();
+            if (parent == null) {
+                if (!isFileExist(path)) {
+                    return false;
+                }
+                continue;
+            }
+            pathsByParent.computeIfAbsent(parent, p -> new HashMap<>())
+                .put(hdfsPath.getName(), path);
+        }
+        if (pathsByParent.isEmpty()) {
+            return true;
+        }
+        if (pathsByParent.size() == 1) {
+            Map.Entry<Path, Map<String, String>> entry = pathsByParent
+                .entrySet().iterator().next();
+            return isChildrenExist(entry.getKey(), entry.getValue());
+        }
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (Map.Entry<Path, Map<String, String>> entry : pathsByParent
+            .entrySet()) {
+            futures.add(getExistCheckExecutor().submit(() ->
+                isChildrenExist(entry.getKey(), entry.getValue())));
+        }
+        try {
+            for (Future<Boolean> future : futures) {
+                if (!future.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when checking paths.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to check paths.", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static boolean isChildrenExist(Path parent,
+                                           Map<String, String> children)
+        throws IOException {
+        FileStatus[] statuses;
+        try {
+            statuses = fileSystem.listStatus(parent);
+        } catch (FileNotFoundException e) {
+            LOGGER.info("Predicate directory: {} doesn't exist.", parent);
+            return false;
+        }
+        Set<String> names = new HashSet<>();
+        for (FileStatus status : statuses) {
+            names.add(status.getPath().getName());
+        }
+        long now = System.currentTimeMillis();
+        boolean exist = true;
+        for (Map.Entry<String, String> child : children.entrySet()) {
+            if (names.contains(child.getKey())) {
+                cacheExist(child.getValue(), now);
+            } else {
+                LOGGER.info("Predicate path: {} doesn't exist.",
+                    child.getValue());
+                exist = false;
+            }
+        }
+        return exist;
+    }
+
+    private static boolean isCachedExist(String path, long now) {
+        Long seen = EXIST_CACHE.get(path);
+        if (seen == null) {
+            return false;
+        }
+        if (now - seen > existCacheTtl) {
+            EXIST_CACHE.remove(path, seen);
+            return false;
+        }
+        return true;
+    }
+
+    private static void cacheExist(String path, long now) {
+        if (existCacheTtl <= 0) {
+            return;
+        }
+        if (EXIST_CACHE.size() >= MAX_EXIST_CACHE_SIZE) {
+            Iterator<Long> it = EXIST_CACHE.values().iterator();
+            while (it.hasNext()) {
+                if (now - it.next() > existCacheTtl) {
+                    it.remove();
+                }
+            }
+            if (EXIST_CACHE.size() >= MAX_EXIST_CACHE_SIZE) {
+                return;
+            }
+        }
+        EXIST_CACHE.put(path, now);
+    }
+
+    private static synchronized ExecutorService getExistCheckExecutor() {
+        if (existCheckExecutor == null) {
+            AtomicInteger index = new AtomicInteger(0);
+            existCheckExecutor = Executors.newFixedThreadPool(
+                Math.max(1, existCheckThreads), r -> {
+                    Thread t = new Thread(r, "fs-exist-check-"
+                        + index.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        }
+        return existCheckExecutor;
+    }
+
     public static InputStream getSampleInputStream(String path)
         throws IOException {
         checkHDFSConf();
@@ -19,31 +19,54 @@ under the License.
 
 package org.apache.griffin.core.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Json utilities backed by one shared {@link ObjectMapper}.
+ * <p>
+ * The mapper is configured once and only used through immutable
+ * {@link ObjectReader}/{@link ObjectWriter} instances, so serializer and
+ * deserializer caches are built once and shared by all threads.
+ */
 public class JsonUtil {
     private static final Logger LOGGER = LoggerFactory
         .getLogger(JsonUtil.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.reader();
+    private static final ObjectReader LENIENT_READER = READER.without(
+        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader STREAM_READER = LENIENT_READER
+        .without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    private static final ObjectWriter WRITER = MAPPER.writer();
+    private static final ObjectWriter PRETTY_WRITER = WRITER
+        .withDefaultPrettyPrinter();
+    private static final ObjectWriter STREAM_WRITER = WRITER
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
     public static String toJson(Object obj) throws JsonProcessingException {
         if (obj == null) {
             LOGGER.warn("Object cannot be empty!");
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.writeValueAsString(obj);
+        return WRITER.writeValueAsString(obj);
     }
 
     public static String toJsonWithFormat(Object obj)
@@ -52,9 +75,64 @@ public class JsonUtil {
             LOGGER.warn("Object to be formatted cannot be empty!");
             return null;
         }
-        ObjectWriter mapper = new ObjectMapper().writer()
-            .withDefaultPrettyPrinter();
-        return mapper.writeValueAsString(obj);
+        return PRETTY_WRITER.writeValueAsString(obj);
+    }
+
+    /**
+     * Write an object as json to the stream without building a string.
+     * The stream is left open.
+     *
+     * @param out output stream
+     * @param obj object to write
+     * @throws IOException if the object cannot be written
+     */
+    public static void write(OutputStream out, Object obj)
+        throws IOException {
+        if (out == null) {
+            throw new NullPointerException("Output stream cannot be null.");
+        }
+        STREAM_WRITER.writeValue(out, obj);
+    }
+
+    /**
+     * Read json from the stream. Unknown properties are ignored and the
+     * stream is left open.
+     *
+     * @param in   input stream
+     * @param type entity type
+     * @return entity
+     * @throws IOException if the json cannot be read
+     */
+    public static <T> T read(InputStream in, Class<T> type)
+        throws IOException {
+        if (in == null) {
+            throw new NullPointerException("Input stream cannot be null.");
+        }
+        return STREAM_READER.forType(type).readValue(in);
+    }
+
+    public static <T> T read(InputStream in, TypeReference<T> type)
+        throws IOException {
+        if (in == null) {
+            throw new NullPointerException("Input stream cannot be null.");
+        }
+        return STREAM_READER.forType(type).readValue(in);
+    }
+
+    public static JsonNode readTree(InputStream in) throws IOException {
+        if (in == null) {
+            throw new NullPointerException("Input stream cannot be null.");
+        }
+        return STREAM_READER.readTree(in);
+    }
+
+    public static <T> T toEntity(JsonNode node, TypeReference<T> type)
+        throws IOException {
+        if (node == null || node.isNull()) {
+            LOGGER.warn("Json node {} is empty!", type);
+            return null;
+        }
+        return READER.forType(type).readValue(node);
     }
 
     public static <T> T toEntity(String jsonStr, Class<T> type)
@@ -63,10 +141,7 @@ public class JsonUtil {
             LOGGER.warn("Json string {} is empty!", type);
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
-            false);
-        return mapper.readValue(jsonStr, type);
+        return LENIENT_READER.forType(type).readValue(jsonStr);
     }
 
     public static <T> T toEntity(File file, TypeReference type)
@@ -75,8 +150,7 @@ public class JsonUtil {
             LOGGER.warn("File cannot be empty!");
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(file, type);
+        return READER.forType(type).readValue(file);
     }
 
     public static <T> T toEntity(InputStream in, TypeReference type)
@@ -84,8 +158,7 @@ public class JsonUtil {
         if (in == null) {
             throw new NullPointerException("Input stream cannot be null.");
         }
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(in, type);
+        return READER.forType(type).readValue(in);
     }
 
     public static <T> T toEntity(String jsonStr, TypeReference type)
@@ -94,8 +167,47 @@ public class JsonUtil {
             LOGGER.warn("Json string {} is empty!", type);
             return null;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(jsonStr, type);
+        return READER.forType(type).readValue(jsonStr);
+    }
+
+    /**
+     * Parse a json column of an entity on first access. Getters cannot throw
+     * checked exceptions, so parse errors are rethrown unchecked.
+     *
+     * @param column json column value
+     * @param type   type of the parsed value
+     * @return parsed value, or null if the column is empty
+     */
+    public static <T> T parseColumn(String column,
+                                    TypeReference<T> type) {
+        if (StringUtils.isEmpty(column)) {
+            return null;
+        }
+        try {
+            return READER.forType(type).readValue(column);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse json column.", e);
+        }
     }
 
+    /**
+     * Parse a json column of an entity as the snapshot its parsed view is
+     * compared with on save. Entities cache the snapshot, so the column is
+     * parsed once rather than on every save.
+     *
+     * @param column json column value
+     * @param type   type of the parsed value
+     * @return parsed value, or null if the column is empty or not valid
+     */
+    public static <T> T parseSnapshot(String column,
+                                      TypeReference<T> type) {
+        if (StringUtils.isEmpty(column)) {
+            return null;
+        }
+        try {
+            return READER.forType(type).readValue(column);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
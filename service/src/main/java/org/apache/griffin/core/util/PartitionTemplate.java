@@ -0,0 +1,299 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.util;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled partition template like {@code /dt=#yyyyMMdd#/hour=#HH#},
+ * where every {@code #...#} part is a date pattern.
+ * <p>
+ * A template is parsed once into literal and date tokens. Date patterns are
+ * formatted by cached {@link DateTimeFormatter}s when the pattern means the
+ * same for {@link SimpleDateFormat}, and by a per-thread
+ * {@link SimpleDateFormat} otherwise. Templates with escaped hash tags or
+ * replacement characters are still formatted the legacy way so that the
+ * output never changes.
+ */
+public final class PartitionTemplate {
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final Map<String, PartitionTemplate> TEMPLATES =
+        new ConcurrentHashMap<>();
+    private static final Pattern PLACEHOLDER =
+        Pattern.compile("#(?:\\\\#|[^#])*#");
+    /**
+     * pattern letters which mean the same for SimpleDateFormat and
+     * DateTimeFormatter
+     */
+    private static final String COMPATIBLE_LETTERS = "yYMdDHhkKms";
+    private static final int[] MAX_LETTER_COUNTS =
+        {Integer.MAX_VALUE, Integer.MAX_VALUE, 4, 2, 3, 2, 2, 2, 2, 2, 2};
+
+    private final String template;
+    private final Token[] tokens;
+    private final boolean legacy;
+
+    private PartitionTemplate(String template) {
+        this.template = template;
+        this.legacy = template.indexOf('\\') >= 0
+            || template.indexOf('$') >= 0;
+        this.tokens = legacy ? null : parse(template);
+    }
+
+    /**
+     * @param template partition template
+     * @return compiled template, cached by template string
+     */
+    public static PartitionTemplate compile(String template) {
+        PartitionTemplate compiled = TEMPLATES.get(template);
+        if (compiled == null) {
+            compiled = new PartitionTemplate(template);
+            if (TEMPLATES.size() >= MAX_CACHE_SIZE) {
+                TEMPLATES.clear();
+            }
+            TEMPLATES.put(template, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return true if the template has no date pattern
+     */
+    public boolean isConstant() {
+        return !legacy && tokens.length == 1
+            && tokens[0] instanceof Literal;
+    }
+
+    public String format(long time, TimeZone timeZone) {
+        if (legacy) {
+            return legacyFormat(template, time, timeZone);
+        }
+        return format(time, timeZone.toZoneId(), timeZone);
+    }
+
+    /**
+     * Format the template for every timestamp.
+     *
+     * @param timestamps timestamps, usually in ascending order
+     * @param timeZone   time zone
+     * @return distinct partitions in ascending order
+     */
+    public List<String> expand(Long[] timestamps, TimeZone timeZone) {
+        List<String> partitions = new ArrayList<>();
+        if (timestamps.length == 0) {
+            return partitions;
+        }
+        if (isConstant()) {
+            partitions.add(template);
+            return partitions;
+        }
+        ZoneId zone = timeZone.toZoneId();
+        boolean ascending = true;
+        String previous = null;
+        for (Long timestamp : timestamps) {
+            String partition = legacy
+                ? legacyFormat(template, timestamp, timeZone)
+                : format(timestamp, zone, timeZone);
+            // consecutive timestamps mostly fall into the same partition
+            if (partition.equals(previous)) {
+                continue;
+            }
+            if (previous != null && partition.compareTo(previous) < 0) {
+                ascending = false;
+            }
+            partitions.add(partition);
+            previous = partition;
+        }
+        return ascending ? partitions : sortDistinct(partitions);
+    }
+
+    /**
+     * Format the template for timestamps begin, begin + step, ... until end
+     * (exclusive).
+     *
+     * @param begin    first timestamp
+     * @param end      end timestamp, exclusive
+     * @param step     step in milliseconds, must be positive
+     * @param timeZone time zone
+     * @return distinct partitions in ascending order
+     */
+    public List<String> expand(long begin, long end, long step,
+                               TimeZone timeZone) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive.");
+        }
+        int count = (int) Math.max((end - begin + step - 1) / step, 0);
+        Long[] timestamps = new Long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = begin + i * step;
+        }
+        return expand(timestamps, timeZone);
+    }
+
+    private String format(long time, ZoneId zone, TimeZone timeZone) {
+        StringBuilder sb = new StringBuilder(template.length() + 16);
+        ZonedDateTime dateTime = null;
+        for (Token token : tokens) {
+            if (token instanceof Literal) {
+                sb.append(((Literal) token).text);
+            } else if (token instanceof DateTimeToken) {
+                if (dateTime == null) {
+                    dateTime = Instant.ofEpochMilli(time).atZone(zone);
+                }
+                ((DateTimeToken) token).formatter.formatTo(dateTime, sb);
+            } else {
+                SimpleDateFormat sdf = ((SimpleDateToken) token).format.get();
+                sdf.setTimeZone(timeZone);
+                sb.append(sdf.format(new Date(time)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Token[] parse(String template) {
+        List<Token> tokens = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        int last = 0;
+        while (matcher.find()) {
+            if (matcher.start() > last) {
+                tokens.add(new Literal(template.substring(last,
+                    matcher.start())));
+            }
+            String pattern = template.substring(matcher.start() + 1,
+                matcher.end() - 1);
+            tokens.add(isCompatible(pattern) ? new DateTimeToken(pattern)
+                : new SimpleDateToken(pattern));
+            last = matcher.end();
+        }
+        if (last < template.length() || tokens.isEmpty()) {
+            tokens.add(new Literal(template.substring(last)));
+        }
+        return tokens.toArray(new Token[0]);
+    }
+
+    private static boolean isCompatible(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted) {
+                continue;
+            }
+            if ("[]{}".indexOf(c) >= 0) {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                int index = COMPATIBLE_LETTERS.indexOf(c);
+                int count = 1;
+                while (i + 1 < pattern.length()
+                    && pattern.charAt(i + 1) == c) {
+                    count++;
+                    i++;
+                }
+                if (index < 0 || count > MAX_LETTER_COUNTS[index]) {
+                    return false;
+                }
+            }
+        }
+        return !quoted;
+    }
+
+    private static List<String> sortDistinct(List<String> partitions) {
+        Collections.sort(partitions);
+        List<String> distinct = new ArrayList<>(partitions.size());
+        String previous = null;
+        for (String partition : partitions) {
+            if (!partition.equals(previous)) {
+                distinct.add(partition);
+                previous = partition;
+            }
+        }
+        return distinct;
+    }
+
+    private static String legacyFormat(String timeFormat, long time,
+                                       TimeZone timeZone) {
+        Date t = new Date(time);
+        Matcher matcher = PLACEHOLDER.matcher(timeFormat);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String group = matcher.group();
+            String content = group.substring(1, group.length() - 1);
+            String pattern = refreshEscapeHashTag(content);
+            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+            sdf.setTimeZone(timeZone);
+            matcher.appendReplacement(sb, sdf.format(t));
+        }
+        matcher.appendTail(sb);
+        return refreshEscapeHashTag(sb.toString());
+    }
+
+    private static String refreshEscapeHashTag(String str) {
+        String escapeHashTagPattern = "\\\\#";
+        String hashTag = "#";
+        return str.replaceAll(escapeHashTagPattern, hashTag);
+    }
+
+    private interface Token {
+    }
+
+    private static final class Literal implements Token {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class DateTimeToken implements Token {
+        private final DateTimeFormatter formatter;
+
+        DateTimeToken(String pattern) {
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+        }
+    }
+
+    private static final class SimpleDateToken implements Token {
+        private final ThreadLocal<SimpleDateFormat> format;
+
+        SimpleDateToken(String pattern) {
+            // fail fast on invalid patterns like SimpleDateFormat does
+            new SimpleDateFormat(pattern);
+            this.format = ThreadLocal.withInitial(() ->
+                new SimpleDateFormat(pattern));
+        }
+    }
+}
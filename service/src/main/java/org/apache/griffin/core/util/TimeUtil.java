@@ -19,9 +19,7 @@ under the License.
 
 package org.apache.griffin.core.util;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -126,27 +124,7 @@ public class TimeUtil {
     }
 
     public static String format(String timeFormat, long time, TimeZone timeZone) {
-        String timePattern = "#(?:\\\\#|[^#])*#";
-        Date t = new Date(time);
-        Pattern ptn = Pattern.compile(timePattern);
-        Matcher matcher = ptn.matcher(timeFormat);
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            String group = matcher.group();
-            String content = group.substring(1, group.length() - 1);
-            String pattern = refreshEscapeHashTag(content);
-            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
-            sdf.setTimeZone(timeZone);
-            matcher.appendReplacement(sb, sdf.format(t));
-        }
-        matcher.appendTail(sb);
-        return refreshEscapeHashTag(sb.toString());
-    }
-
-    private static String refreshEscapeHashTag(String str) {
-        String escapeHashTagPattern = "\\\\#";
-        String hashTag = "#";
-        return str.replaceAll(escapeHashTagPattern, hashTag);
+        return PartitionTemplate.compile(timeFormat).format(time, timeZone);
     }
 
     public static TimeZone getTimeZone(String timezone) {
@@ -21,9 +21,14 @@ package org.apache.griffin.core.util;
 
 import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.griffin.core.job.entity.JobInstanceBean;
 import org.apache.griffin.core.job.entity.LivySessionStates;
@@ -90,6 +95,61 @@ public class YarnNetUtil {
         return false;
     }
 
+    /**
+     * list apps started since a given time by yarn in one call.
+     *
+     * @param url              prefix part of whole url
+     * @param states           yarn app states to filter by, comma separated
+     * @param startedTimeBegin earliest start time of apps in milliseconds
+     * @return app json objects keyed by application id, null if yarn cannot
+     * be reached
+     */
+    public static Map<String, JsonObject> listApps(String url, String states,
+                                                   long startedTimeBegin) {
+        try {
+            url += "/ws/v1/cluster/apps?states=" + states
+                + "&startedTimeBegin=" + startedTimeBegin;
+            String result = restTemplate.getForObject(url, String.class);
+            return parseApps(result);
+        } catch (HttpClientErrorException e) {
+            LOGGER.warn("client error {} from yarn: {}",
+                e.getMessage(), e.getResponseBodyAsString());
+        } catch (Exception e) {
+            LOGGER.error("list apps exception happens by yarn. {}", e);
+        }
+        return null;
+    }
+
+    /**
+     * parse json string of yarn app list.
+     *
+     * @param json json string
+     * @return app json objects keyed by application id
+     */
+    public static Map<String, JsonObject> parseApps(String json) {
+        Map<String, JsonObject> apps = new HashMap<>();
+        if (StringUtils.isEmpty(json)) {
+            LOGGER.warn("Input string is empty.");
+            return apps;
+        }
+        JsonParser parser = new JsonParser();
+        JsonElement appsElement = parser.parse(json).getAsJsonObject()
+            .get("apps");
+        // yarn returns "apps": null when no app matches
+        if (appsElement == null || !appsElement.isJsonObject()) {
+            return apps;
+        }
+        JsonArray array = appsElement.getAsJsonObject().getAsJsonArray("app");
+        if (array == null) {
+            return apps;
+        }
+        for (JsonElement element : array) {
+            JsonObject app = element.getAsJsonObject();
+            apps.put(app.get("id").getAsString(), app);
+        }
+        return apps;
+    }
+
     /**
      * parse json string and get app json object.
      *
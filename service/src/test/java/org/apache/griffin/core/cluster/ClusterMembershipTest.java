@@ -0,0 +1,125 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.griffin.core.cluster.entity.ServiceNode;
+import org.apache.griffin.core.cluster.repo.ServiceNodeRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class ClusterMembershipTest {
+
+    @InjectMocks
+    private ClusterMembership cluster;
+
+    @Mock
+    private ServiceNodeRepo nodeRepo;
+
+    @Mock
+    private ApplicationEventPublisher publisher;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(cluster, "enabled", true);
+        ReflectionTestUtils.setField(cluster, "configuredNodeId", "node2");
+        ReflectionTestUtils.setField(cluster, "heartbeatInterval", 10000L);
+        ReflectionTestUtils.setField(cluster, "nodeTimeout", 30000L);
+        given(nodeRepo.findAlive(anyLong())).willReturn(Arrays.asList(
+            new ServiceNode("node1", 0L), new ServiceNode("node2", 0L)));
+        cluster.init();
+    }
+
+    @Test
+    public void testJoin() {
+        verify(nodeRepo).save(any(ServiceNode.class));
+        assertEquals(Arrays.asList("node1", "node2"), cluster.getNodeIds());
+        assertFalse(cluster.isLeader());
+        cluster.close();
+    }
+
+    @Test
+    public void testOwnershipIsPartitionedAndMovesOnlyFromDeadNodes() {
+        List<String> owners = new ArrayList<>();
+        int owned = 0;
+        for (int i = 0; i < 1000; i++) {
+            owners.add(cluster.getOwner(i));
+            if (cluster.owns(i)) {
+                owned++;
+            }
+        }
+        // virtual nodes spread keys evenly
+        assertTrue(owned > 350 && owned < 650);
+
+        given(nodeRepo.findAlive(anyLong())).willReturn(Collections
+            .singletonList(new ServiceNode("node2", 0L)));
+        cluster.heartbeat();
+
+        verify(publisher).publishEvent(any(NodesChangedEvent.class));
+        assertTrue(cluster.isLeader());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cluster.owns(i));
+        }
+        assertTrue(cluster.shouldRun("node1", 1));
+        assertTrue(cluster.shouldRun(null, 1));
+        cluster.close();
+    }
+
+    @Test
+    public void testNoEventIfNodesNotChanged() {
+        cluster.heartbeat();
+
+        verify(publisher, never()).publishEvent(any(NodesChangedEvent.class));
+        assertFalse(cluster.shouldRun("node1", owns("node1")));
+        assertTrue(cluster.shouldRun("node2", owns("node1")));
+        cluster.close();
+    }
+
+    /**
+     * @return a key owned by the node
+     */
+    private int owns(String nodeId) {
+        int key = 0;
+        while (!nodeId.equals(cluster.getOwner(key))) {
+            key++;
+        }
+        return key;
+    }
+}
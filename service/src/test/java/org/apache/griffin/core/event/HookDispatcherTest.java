@@ -0,0 +1,171 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.event;
+
+import static org.apache.griffin.core.event.JobEvent.yieldJobEventAfterCreation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.griffin.core.exception.GriffinException;
+import org.apache.griffin.core.job.entity.BatchJob;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HookDispatcherTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<HookDispatcher> dispatchers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        dispatchers.forEach(HookDispatcher::close);
+    }
+
+    @Test
+    public void testAsyncBatches() throws Exception {
+        RecordingHook hook = new RecordingHook();
+        HookDispatcher dispatcher = dispatcher(hook, true, 10,
+            OverflowPolicy.BLOCK, 3, null);
+        dispatchAll(dispatcher, 5);
+
+        dispatcher.start();
+        awaitDelivered(dispatcher, 5);
+
+        assertEquals(Arrays.asList(3, 2), hook.batchSizes);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), hook.ids);
+        assertEquals(2, dispatcher.getStats().getCalls());
+    }
+
+    @Test
+    public void testDropOnOverflow() {
+        HookDispatcher dispatcher = dispatcher(new RecordingHook(), true, 2,
+            OverflowPolicy.DROP, 10, null);
+
+        dispatchAll(dispatcher, 3);
+
+        HookStats stats = dispatcher.getStats();
+        assertEquals(1, stats.getDropped());
+        assertEquals(2, stats.getQueueSize());
+    }
+
+    @Test
+    public void testSpillKeepsOrder() throws Exception {
+        RecordingHook hook = new RecordingHook();
+        HookDispatcher dispatcher = dispatcher(hook, true, 2,
+            OverflowPolicy.SPILL, 2, folder.newFile("hook.events"));
+        dispatchAll(dispatcher, 5);
+        assertEquals(3, dispatcher.getStats().getSpilled());
+
+        dispatcher.start();
+        awaitDelivered(dispatcher, 5);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), hook.ids);
+    }
+
+    @Test
+    public void testReplaySpilledEventsAfterRestart() throws Exception {
+        File spillFile = folder.newFile("hook.events");
+        dispatchAll(dispatcher(new RecordingHook(), true, 1,
+            OverflowPolicy.SPILL, 10, spillFile), 3);
+
+        RecordingHook hook = new RecordingHook();
+        HookDispatcher restarted = dispatcher(hook, true, 1,
+            OverflowPolicy.SPILL, 10, spillFile);
+        restarted.start();
+        awaitDelivered(restarted, 2);
+
+        assertEquals(Arrays.asList(2L, 3L), hook.ids);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void testSyncHookFailureAbortsAction() {
+        HookDispatcher dispatcher = dispatcher(event -> {
+            throw new GriffinException.ServiceException("failed", null);
+        }, false, 10, OverflowPolicy.BLOCK, 10, null);
+        dispatcher.start();
+
+        try {
+            dispatcher.dispatch(event(1L));
+            fail("sync hook failure should be thrown");
+        } catch (GriffinException.ServiceException e) {
+            assertEquals(1, dispatcher.getStats().getFailed());
+        }
+    }
+
+    private HookDispatcher dispatcher(GriffinHook hook, boolean async,
+                                      int capacity, OverflowPolicy policy,
+                                      int batchSize, File spillFile) {
+        HookDispatcher dispatcher = new HookDispatcher("hook", hook, async,
+            capacity, policy, batchSize, spillFile);
+        dispatchers.add(dispatcher);
+        return dispatcher;
+    }
+
+    private static void dispatchAll(HookDispatcher dispatcher, int count) {
+        for (long id = 1; id <= count; id++) {
+            dispatcher.dispatch(event(id));
+        }
+    }
+
+    private static void awaitDelivered(HookDispatcher dispatcher, long count)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.getStats().getDelivered() < count
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, dispatcher.getStats().getDelivered());
+    }
+
+    private static GriffinEvent<?> event(Long id) {
+        BatchJob job = new BatchJob();
+        job.setId(id);
+        return yieldJobEventAfterCreation(job);
+    }
+
+    private static class RecordingHook implements GriffinBatchHook {
+        private final List<Integer> batchSizes = Collections
+            .synchronizedList(new ArrayList<>());
+        private final List<Long> ids = Collections
+            .synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onEvents(List<GriffinEvent<?>> events) {
+            batchSizes.add(events.size());
+            events.forEach(this::onEvent);
+        }
+
+        @Override
+        public void onEvent(GriffinEvent event) {
+            ids.add(((BatchJob) event.getSource()).getId());
+        }
+    }
+}
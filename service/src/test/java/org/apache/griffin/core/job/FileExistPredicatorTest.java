@@ -88,4 +88,20 @@ public class FileExistPredicatorTest {
         assertFalse(predicator.predicate());
 
     }
+
+    @Test
+    public void test_predicate_with_several_directories() throws IOException {
+        SegmentPredicate predicate = new SegmentPredicate();
+        Map<String, Object> configMap = new HashMap<>();
+        configMap.put("path", fileName + ",not_exist_dir/" + fileName);
+        configMap.put("root.path", rootPath);
+        predicate.setConfigMap(configMap);
+
+        FileExistPredicator predicator = new FileExistPredicator(predicate);
+        assertFalse(predicator.predicate());
+
+        configMap.put("path", fileName + "," + fileName);
+        predicate.setConfigMap(configMap);
+        assertTrue(predicator.predicate());
+    }
 }
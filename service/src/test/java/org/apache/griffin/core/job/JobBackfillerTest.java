@@ -0,0 +1,194 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.JobInstance.JOB_START_TIME_KEY;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.FINDING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.NOT_FOUND;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.griffin.core.exception.GriffinException;
+import org.apache.griffin.core.job.entity.Backfill;
+import org.apache.griffin.core.job.entity.BatchJob;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class JobBackfillerTest {
+    private static final long DAY = 86400000L;
+    // 2018-01-17 00:00:00 GMT
+    private static final long TIME = 1516147200000L;
+
+    @InjectMocks
+    private JobBackfiller backfiller;
+
+    @Mock
+    private SchedulerFactoryBean factory;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    private Scheduler scheduler;
+
+    @Before
+    public void setup() throws Exception {
+        ReflectionTestUtils.setField(backfiller, "parallelism", 2);
+        ReflectionTestUtils.setField(backfiller, "maxFireTimes", 100);
+        scheduler = mock(Scheduler.class);
+        given(factory.getScheduler()).willReturn(scheduler);
+        given(scheduler.checkExists(any(JobKey.class))).willReturn(true);
+        given(scheduler.checkExists(any(TriggerKey.class))).willReturn(true);
+    }
+
+    @Test
+    public void testGetFireTimes() {
+        List<Long> fireTimes = JobBackfiller.getFireTimes("0 0 0 * * ?",
+            "GMT", TIME, TIME + 2 * DAY, 10);
+
+        assertEquals(Arrays.asList(TIME, TIME + DAY, TIME + 2 * DAY),
+            fireTimes);
+    }
+
+    @Test(expected = GriffinException.BadRequestException.class)
+    public void testGetFireTimesExceedsMax() {
+        JobBackfiller.getFireTimes("0 0 * * * ?", "GMT", TIME, TIME + DAY, 10);
+    }
+
+    @Test(expected = GriffinException.BadRequestException.class)
+    public void testGetFireTimesWithInvalidRange() {
+        JobBackfiller.getFireTimes("0 0 0 * * ?", "GMT", TIME, TIME - 1, 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDispatchWithinParallelism() throws Exception {
+        List<JobInstanceBean> instances = new ArrayList<>();
+        given(instanceRepo.findByTriggerKeyIn(anyCollectionOf(String.class)))
+            .willReturn(instances);
+        BatchJob job = new BatchJob(1L, "job", "measure", "group", false);
+        job.setId(1L);
+        job.setCronExpression("0 0 0 * * ?");
+        job.setTimeZone("GMT");
+
+        Backfill backfill = backfiller.start(job, TIME, TIME + 3 * DAY);
+
+        ArgumentCaptor<Trigger> triggers = ArgumentCaptor.forClass(
+            Trigger.class);
+        verify(scheduler, times(2)).scheduleJob(triggers.capture());
+        assertEquals(TIME, triggers.getAllValues().get(0).getJobDataMap()
+            .getLong(JOB_START_TIME_KEY));
+        assertEquals(4, backfill.getTotal());
+        assertEquals(2, backfill.getActive());
+
+        // one instance finished and the other one is still predicating
+        instances.add(instance(triggers.getAllValues().get(0), SUCCESS));
+        instances.add(instance(triggers.getAllValues().get(1), FINDING));
+        backfiller.dispatchAll();
+
+        verify(scheduler, times(3)).scheduleJob(any(Trigger.class));
+        assertEquals(1, backfill.getSucceeded());
+        assertEquals(3, backfill.getDispatched());
+        assertFalse(backfill.isFinished());
+
+        instances.get(1).setState(NOT_FOUND);
+        backfiller.dispatchAll();
+        instances.clear();
+        for (Trigger trigger : captureTriggers(4)) {
+            instances.add(instance(trigger, SUCCESS));
+        }
+
+        Backfill progress = backfiller.get(backfill.getId());
+        assertEquals(4, progress.getSucceeded());
+        assertTrue(progress.isFinished());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFireTimeWithoutInstanceFails() throws Exception {
+        List<JobInstanceBean> instances = new ArrayList<>();
+        given(instanceRepo.findByTriggerKeyIn(anyCollectionOf(String.class)))
+            .willReturn(instances);
+        BatchJob job = new BatchJob(1L, "job", "measure", "group", false);
+        job.setCronExpression("0 0 0 * * ?");
+        job.setTimeZone("GMT");
+        Backfill backfill = backfiller.start(job, TIME, TIME + DAY);
+        List<Trigger> triggers = captureTriggers(2);
+        // the first trigger fired and failed before creating an instance,
+        // the second one is still waiting for a quartz thread
+        given(scheduler.checkExists(triggers.get(0).getKey()))
+            .willReturn(false);
+
+        backfiller.dispatchAll();
+        assertEquals(0, backfill.getFailed());
+        assertEquals(2, backfill.getActive());
+
+        backfiller.dispatchAll();
+        assertEquals(1, backfill.getFailed());
+        assertEquals(1, backfill.getActive());
+
+        instances.add(instance(triggers.get(1), SUCCESS));
+        Backfill progress = backfiller.get(backfill.getId());
+        assertEquals(1, progress.getSucceeded());
+        assertEquals(1, progress.getFailed());
+        assertTrue(progress.isFinished());
+    }
+
+    private List<Trigger> captureTriggers(int count) throws Exception {
+        ArgumentCaptor<Trigger> triggers = ArgumentCaptor.forClass(
+            Trigger.class);
+        verify(scheduler, times(count)).scheduleJob(triggers.capture());
+        return triggers.getAllValues();
+    }
+
+    private static JobInstanceBean instance(Trigger trigger, State state) {
+        JobInstanceBean instance = new JobInstanceBean();
+        instance.setTriggerKey(trigger.getKey().toString());
+        instance.setState(state);
+        return instance;
+    }
+}
@@ -41,9 +41,11 @@ import org.apache.griffin.core.exception.GriffinException;
 import org.apache.griffin.core.exception.GriffinExceptionHandler;
 import org.apache.griffin.core.exception.GriffinExceptionMessage;
 import org.apache.griffin.core.job.entity.AbstractJob;
+import org.apache.griffin.core.job.entity.Backfill;
 import org.apache.griffin.core.job.entity.JobHealth;
 import org.apache.griffin.core.job.entity.JobInstanceBean;
 import org.apache.griffin.core.job.entity.LivySessionStates;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
 import org.apache.griffin.core.util.URLHelper;
 import org.junit.Before;
 import org.junit.Test;
@@ -89,6 +91,31 @@ public class JobControllerTest {
                 .andExpect(jsonPath("$[0]['job.name']", is("job_name")));
     }
 
+    @Test
+    public void testBackfill() throws Exception {
+        Backfill backfill = new Backfill("id", 1L, 0L, 1000L, 3);
+        given(service.backfill(1L, 0L, 1000L)).willReturn(backfill);
+
+        mvc.perform(post(URLHelper.API_VERSION_PATH + "/jobs/1/backfill")
+                .param("from", "0").param("to", "1000"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is("id")))
+                .andExpect(jsonPath("$.total", is(3)));
+    }
+
+    @Test
+    public void testGetResourceAdvice() throws Exception {
+        ResourceAdvice advice = new ResourceAdvice(1L, null);
+        advice.getResources().put("numExecutors", 4);
+        advice.getReasons().add("reason");
+        given(service.getResourceAdvice(1L)).willReturn(advice);
+
+        mvc.perform(get(URLHelper.API_VERSION_PATH + "/jobs/1/resources"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resources.numExecutors", is(4)))
+                .andExpect(jsonPath("$.reasons[0]", is("reason")));
+    }
+
     @Test
     public void testDeleteJobByIdForSuccess() throws Exception {
         doNothing().when(service).deleteJob(1L);
@@ -0,0 +1,236 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.JobDependencyScheduler.UPSTREAM_JOBS;
+import static org.apache.griffin.core.job.JobInstance.JOB_START_TIME_KEY;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.PersistenceException;
+
+import org.apache.griffin.core.job.entity.BatchJob;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.JobRelease;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.repo.BatchJobRepo;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.JobReleaseRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.springframework.orm.jpa.JpaSystemException;
+import org.springframework.scheduling.quartz.SchedulerFactoryBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class JobDependencySchedulerTest {
+    private static final long TIME = 1516147200000L;
+
+    @InjectMocks
+    private JobDependencyScheduler dependencyScheduler;
+
+    @Mock
+    private SchedulerFactoryBean factory;
+
+    @Mock
+    private BatchJobRepo batchJobRepo;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Mock
+    private JobReleaseRepo releaseRepo;
+
+    private Scheduler scheduler;
+    private BatchJob upstream1;
+    private BatchJob upstream2;
+
+    @Before
+    public void setup() throws Exception {
+        scheduler = mock(Scheduler.class);
+        given(factory.getScheduler()).willReturn(scheduler);
+        given(scheduler.checkExists(any(JobKey.class))).willReturn(true);
+        upstream1 = job(1L, null);
+        upstream2 = job(2L, null);
+        BatchJob downstream = job(3L, Arrays.asList(1, "2"));
+        given(batchJobRepo.findByDeleted(false)).willReturn(Arrays.asList(
+            upstream1, upstream2, downstream));
+    }
+
+    @Test
+    public void testGetUpstreamJobIds() {
+        assertEquals(Arrays.asList(1L, 2L), JobDependencyScheduler
+            .getUpstreamJobIds(job(3L, Arrays.asList(1, "2"))));
+        assertTrue(JobDependencyScheduler.getUpstreamJobIds(job(1L, null))
+            .isEmpty());
+    }
+
+    @Test
+    public void testIsValidUpstream() {
+        BatchJob downstream = job(3L, Arrays.asList(1, "2"));
+        given(batchJobRepo.findByIdAndDeleted(1L, false))
+            .willReturn(upstream1);
+        given(batchJobRepo.findByIdAndDeleted(2L, false))
+            .willReturn(upstream2);
+        given(batchJobRepo.findByIdAndDeleted(3L, false))
+            .willReturn(downstream);
+
+        assertTrue(dependencyScheduler.isValidUpstream(job(null,
+            Arrays.asList(3, 1))));
+        assertFalse(dependencyScheduler.isValidUpstream(job(null,
+            Collections.singletonList(4))));
+        assertFalse(dependencyScheduler.isValidUpstream(job(null,
+            Collections.singletonList("x"))));
+        assertFalse(dependencyScheduler.isValidUpstream(job(4L,
+            Collections.singletonList(4))));
+        // job 1 would depend on itself through job 3
+        assertFalse(dependencyScheduler.isValidUpstream(job(1L,
+            Collections.singletonList(3))));
+    }
+
+    @Test
+    public void testRejectUpstreamCycle() {
+        BatchJob job5 = job(5L, Collections.singletonList(6));
+        BatchJob job6 = job(6L, Collections.singletonList(5));
+        given(batchJobRepo.findByIdAndDeleted(5L, false)).willReturn(job5);
+        given(batchJobRepo.findByIdAndDeleted(6L, false)).willReturn(job6);
+
+        assertFalse(dependencyScheduler.isValidUpstream(job(null,
+            Collections.singletonList(5))));
+    }
+
+    @Test
+    public void testReleaseWhenAllUpstreamJobsSucceed() throws Exception {
+        given(instanceRepo.findByJobIdsAndJobStartTms(
+            anyCollectionOf(Long.class), eq(TIME), eq(SUCCESS)))
+            .willReturn(Collections.singletonList(
+                instance(upstream1, SUCCESS)));
+
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, SUCCESS)));
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+
+        given(instanceRepo.findByJobIdsAndJobStartTms(
+            anyCollectionOf(Long.class), eq(TIME), eq(SUCCESS)))
+            .willReturn(Arrays.asList(instance(upstream1, SUCCESS),
+                instance(upstream2, SUCCESS)));
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream2, SUCCESS)));
+        // released once however many times upstream instances are synced
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, SUCCESS)));
+
+        ArgumentCaptor<Trigger> trigger = ArgumentCaptor.forClass(
+            Trigger.class);
+        verify(scheduler, times(1)).scheduleJob(trigger.capture());
+        assertEquals(TIME, trigger.getValue().getJobDataMap()
+            .getLong(JOB_START_TIME_KEY));
+        assertEquals("job3", trigger.getValue().getJobKey().getName());
+    }
+
+    @Test
+    public void testReleasedByAnotherNode() throws Exception {
+        given(instanceRepo.findByJobIdsAndJobStartTms(
+            anyCollectionOf(Long.class), eq(TIME), eq(SUCCESS)))
+            .willReturn(Arrays.asList(instance(upstream1, SUCCESS),
+                instance(upstream2, SUCCESS)));
+        given(releaseRepo.saveAndFlush(any(JobRelease.class))).willThrow(
+            new JpaSystemException(new PersistenceException(
+                new SQLIntegrityConstraintViolationException("duplicate " +
+                    "release_key", "23505"))));
+
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream2, SUCCESS)));
+
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void testReloadDownstreamsWhenExpired() {
+        ReflectionTestUtils.setField(dependencyScheduler, "cacheTtl",
+            60000L);
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, SUCCESS)));
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, SUCCESS)));
+        verify(batchJobRepo, times(1)).findByDeleted(false);
+
+        // jobs added or deleted on other nodes are seen once expired
+        ReflectionTestUtils.setField(dependencyScheduler, "loadedTime", 0L);
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, SUCCESS)));
+        verify(batchJobRepo, times(2)).findByDeleted(false);
+    }
+
+    @Test
+    public void testIgnoreUnfinishedInstances() throws Exception {
+        dependencyScheduler.onInstancesChanged(Collections.singletonList(
+            instance(upstream1, RUNNING)));
+
+        verify(instanceRepo, never()).findByJobIdsAndJobStartTms(
+            anyCollectionOf(Long.class), anyLong(), any(State.class));
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+    }
+
+    private static BatchJob job(Long id, Object upstream) {
+        BatchJob job = new BatchJob(id, "job" + id, "job" + id, "group",
+            false);
+        job.setId(id);
+        Map<String, Object> config = new HashMap<>();
+        if (upstream != null) {
+            config.put(UPSTREAM_JOBS, upstream);
+        }
+        job.setConfigMap(config);
+        return job;
+    }
+
+    private static JobInstanceBean instance(BatchJob job, State state) {
+        JobInstanceBean instance = new JobInstanceBean();
+        instance.setJob(job);
+        instance.setState(state);
+        instance.setJobStartTms(TIME);
+        return instance;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.STARTING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class JobInstanceReconcilerTest {
+
+    @InjectMocks
+    private JobInstanceReconciler reconciler;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Mock
+    private LivyTaskSubmitHelper livyTaskSubmitHelper;
+
+    @Mock
+    private JobDependencyScheduler dependencyScheduler;
+
+    @Mock
+    private LivySessionPool livySessionPool;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(reconciler, "livyUri",
+            "http://localhost:8998/batches");
+        ReflectionTestUtils.setField(reconciler, "yarnUri",
+            "http://localhost:8088");
+        ReflectionTestUtils.setField(reconciler, "pageSize", 2);
+    }
+
+    @Test
+    public void testReconcileOnlySavesChangedInstances() throws Exception {
+        JobInstanceBean running = new JobInstanceBean(1L, RUNNING,
+            "application_1", null, 1000L, 2000L);
+        JobInstanceBean finished = new JobInstanceBean(2L, RUNNING,
+            "application_2", null, 1000L, 2000L);
+        JobInstanceBean lost = new JobInstanceBean(3L, STARTING, null, null,
+            1000L, 2000L);
+        given(livyTaskSubmitHelper.getFromLivy(
+            "http://localhost:8998/batches?from=0&size=2"))
+            .willReturn("{\"from\":0,\"total\":3,\"sessions\":[" +
+                "{\"id\":1,\"state\":\"running\",\"appId\":\"application_1\"}," +
+                "{\"id\":2,\"state\":\"success\",\"appId\":\"application_2\"}]}");
+        given(livyTaskSubmitHelper.getFromLivy(
+            "http://localhost:8998/batches?from=2&size=2"))
+            .willReturn("{\"from\":2,\"total\":3,\"sessions\":[" +
+                "{\"id\":4,\"state\":\"running\",\"appId\":\"application_4\"}]}");
+
+        int count = reconciler.reconcile(Arrays.asList(running, finished,
+            lost));
+
+        assertEquals(2, count);
+        assertEquals(SUCCESS, finished.getState());
+        assertEquals(DEAD, lost.getState());
+        assertTrue(lost.isDeleted());
+        verify(instanceRepo).saveAll(anyListOf(JobInstanceBean.class));
+    }
+
+    @Test
+    public void testReconcileWithoutSession() throws Exception {
+        JobInstanceBean instance = new JobInstanceBean(RUNNING, 1000L, 2000L);
+        List<JobInstanceBean> instances = Collections.singletonList(instance);
+
+        assertEquals(0, reconciler.reconcile(instances));
+        verify(instanceRepo, never()).saveAll(anyListOf(JobInstanceBean.class));
+    }
+
+    @Test
+    public void testReconcilePooledInstancesBySessionPool() throws Exception {
+        JobInstanceBean pooled = new JobInstanceBean(7L, RUNNING,
+            "application_7", null, 1000L, 2000L);
+        pooled.setStatementId(0L);
+        List<JobInstanceBean> instances = Collections.singletonList(pooled);
+        given(livySessionPool.reconcile(instances)).willAnswer(invocation -> {
+            pooled.setState(SUCCESS);
+            return instances;
+        });
+
+        assertEquals(1, reconciler.reconcile(instances));
+        // the session id of a pooled instance is no livy batch
+        verify(livyTaskSubmitHelper, never()).getFromLivy(anyString());
+        verify(livyTaskSubmitHelper, never()).decreaseCurTaskNum(7L);
+        verify(instanceRepo).saveAll(instances);
+        verify(dependencyScheduler).onInstancesChanged(instances);
+    }
+}
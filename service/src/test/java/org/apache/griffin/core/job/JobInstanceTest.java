@@ -19,6 +19,7 @@ under the License.
 
 package org.apache.griffin.core.job;
 
+import static org.apache.griffin.core.job.JobDependencyScheduler.UPSTREAM_JOBS;
 import static org.apache.griffin.core.util.EntityMocksHelper.createFileExistPredicate;
 import static org.apache.griffin.core.util.EntityMocksHelper.createGriffinMeasure;
 import static org.apache.griffin.core.util.EntityMocksHelper.createJobDetail;
@@ -26,16 +27,19 @@ import static org.apache.griffin.core.util.EntityMocksHelper.createSimpleTrigger
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.griffin.core.job.entity.AbstractJob;
 import org.apache.griffin.core.job.entity.BatchJob;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
 import org.apache.griffin.core.job.repo.BatchJobRepo;
 import org.apache.griffin.core.job.repo.JobInstanceRepo;
 import org.apache.griffin.core.job.repo.JobRepo;
@@ -46,6 +50,7 @@ import org.apache.griffin.core.util.PropertiesUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Matchers;
+import org.quartz.CronTrigger;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobKey;
@@ -107,6 +112,9 @@ public class JobInstanceTest {
     @MockBean
     private JobRepo<AbstractJob> repo;
 
+    @MockBean
+    private PredicateJobScheduler predicateScheduler;
+
     @Test
     @SuppressWarnings("unchecked")
     public void testExecute() throws Exception {
@@ -140,6 +148,52 @@ public class JobInstanceTest {
                 JobKey.class));
     }
 
+    @Test
+    public void testExecuteDownstreamJobByManualTrigger() throws Exception {
+        Scheduler scheduler = executeDownstreamJob(mock(Trigger.class));
+
+        verify(scheduler, times(1)).getTriggersOfJob(Matchers.any(
+                JobKey.class));
+        verify(instanceRepo, times(1)).save(Matchers.any(
+                JobInstanceBean.class));
+    }
+
+    @Test
+    public void testSkipDownstreamJobByCronTrigger() throws Exception {
+        executeDownstreamJob(mock(CronTrigger.class));
+
+        verify(instanceRepo, never()).save(Matchers.any(
+                JobInstanceBean.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Scheduler executeDownstreamJob(Trigger trigger) throws Exception {
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        GriffinMeasure measure = createGriffinMeasure("measureName");
+        JobDetail jd = createJobDetail(JsonUtil.toJson(measure), "");
+        BatchJob job = new BatchJob(1L, "jobName",
+                "qName", "qGroup", false);
+        job.setConfigMap(new HashMap<>(Collections.singletonMap(
+                UPSTREAM_JOBS, Collections.singletonList(2))));
+        List<Trigger> triggers = Arrays.asList(createSimpleTrigger(2, 0));
+        given(context.getJobDetail()).willReturn(jd);
+        given(measureRepo.findOne(Matchers.anyLong())).willReturn(measure);
+        given(repo.findOne(Matchers.anyLong())).willReturn(job);
+        given(factory.getScheduler()).willReturn(scheduler);
+        given((List<Trigger>) scheduler.getTriggersOfJob(Matchers.any(
+                JobKey.class))).willReturn(triggers);
+        given(scheduler.checkExists(Matchers.any(TriggerKey.class)))
+                .willReturn(false);
+        given(jobRepo.save(Matchers.any(BatchJob.class))).willReturn(job);
+        given(scheduler.checkExists(Matchers.any(JobKey.class)))
+                .willReturn(false);
+        given(context.getTrigger()).willReturn(trigger);
+        given(trigger.getKey()).willReturn(new TriggerKey("test"));
+        jobInstance.execute(context);
+        return scheduler;
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testExecuteWithRangeLessThanZero() throws Exception {
@@ -0,0 +1,226 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.STARTING;
+import static org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType.BATCH;
+import static org.apache.griffin.core.util.EntityMocksHelper.createDataConnector;
+import static org.apache.griffin.core.util.EntityMocksHelper.createGriffinMeasure;
+import static org.apache.griffin.core.util.EntityMocksHelper.createJobInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.quartz.JobBuilder.newJob;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.measure.entity.GriffinMeasure;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.quartz.JobDetail;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class LivyBatchCoalescerTest {
+
+    @InjectMocks
+    private LivyBatchCoalescer coalescer;
+
+    @Mock
+    private LivyTaskSubmitHelper livyTaskSubmitHelper;
+
+    @Mock
+    private BatchJobOperatorImpl batchJobOp;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Mock
+    private Environment env;
+
+    @Mock
+    private LivyResourceAdvisor livyResourceAdvisor;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(coalescer, "window", 60000L);
+        ReflectionTestUtils.setField(coalescer, "maxMeasures", 2);
+        coalescer.init();
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.close();
+    }
+
+    @Test
+    public void testGenGroupKey() throws Exception {
+        GriffinMeasure measure = createGriffinMeasure("m1");
+        GriffinMeasure same = createGriffinMeasure("m2");
+        GriffinMeasure other = createGriffinMeasure("m3",
+            createDataConnector("source_name", "default", "test_data_src",
+                "dt=20180117"),
+            createDataConnector("target_name", "default", "test_data_tgt",
+                "dt=20180117"));
+
+        assertEquals(LivyBatchCoalescer.genGroupKey("{}", measure),
+            LivyBatchCoalescer.genGroupKey("{}", same));
+        assertNotEquals(LivyBatchCoalescer.genGroupKey("{}", measure),
+            LivyBatchCoalescer.genGroupKey("{}", other));
+        assertNotEquals(LivyBatchCoalescer.genGroupKey("{}", measure),
+            LivyBatchCoalescer.genGroupKey("{\"a\":1}", same));
+        assertNull(LivyBatchCoalescer.genGroupKey("{}", new GriffinMeasure()));
+    }
+
+    @Test
+    public void testAddSkipsOverriddenAndDisabled() throws Exception {
+        GriffinMeasure measure = batchMeasure("m1");
+
+        assertFalse(coalescer.add(jobDetail("p1"), createJobInstance(),
+            measure, true, "{}", "{}"));
+        ReflectionTestUtils.setField(coalescer, "window", 0L);
+        assertFalse(coalescer.add(jobDetail("p1"), createJobInstance(),
+            measure, false, "{}", "{}"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullGroupIsSubmittedInOneBatch() throws Exception {
+        given(env.getProperty("livy.uri")).willReturn("uri");
+        given(livyTaskSubmitHelper.postToLivy(eq("uri"),
+            any(LivyRequest.class))).willReturn("{\"id\":1}");
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", 1);
+        result.put("state", "starting");
+        result.put("appId", "application_1");
+        given(livyTaskSubmitHelper.retryLivyGetAppId(anyString(), anyInt()))
+            .willReturn(result);
+        ResourceAdvice advice = new ResourceAdvice();
+        advice.getResources().put("numExecutors", 5);
+        given(livyResourceAdvisor.isEnabled()).willReturn(true);
+        given(livyResourceAdvisor.adviseAll(anyListOf(JobInstanceBean.class)))
+            .willReturn(advice);
+        JobInstanceBean first = createJobInstance();
+        JobInstanceBean second = createJobInstance();
+
+        assertTrue(coalescer.add(jobDetail("p1"), first,
+            batchMeasure("m1"), false, "{}", "{\"name\":\"m1\"}"));
+        // a predicate job firing again is not added twice
+        assertTrue(coalescer.add(jobDetail("p1"), first,
+            batchMeasure("m1"), false, "{}", "{\"name\":\"m1\"}"));
+        assertTrue(coalescer.add(jobDetail("p2"), second,
+            batchMeasure("m2"), false, "{}", "{\"name\":\"m2\"}"));
+
+        verify(instanceRepo, timeout(2000)).saveAll(anyListOf(
+            JobInstanceBean.class));
+        ArgumentCaptor<LivyRequest> request = ArgumentCaptor.forClass(
+            LivyRequest.class);
+        verify(livyTaskSubmitHelper).postToLivy(eq("uri"), request.capture());
+        assertTrue(request.getValue().getBody().contains(
+            "[{\\\"name\\\":\\\"m1\\\"},{\\\"name\\\":\\\"m2\\\"}]"));
+        // the group is sized by the advice for its measures
+        assertTrue(request.getValue().getBody().contains(
+            "\"numExecutors\":5"));
+        verify(livyTaskSubmitHelper).increaseCurTaskNum(1L, "default");
+        verify(batchJobOp).deleteJob("PW", "p1");
+        verify(batchJobOp).deleteJob("PW", "p2");
+        assertEquals(Long.valueOf(1), first.getSessionId());
+        assertEquals("application_1", second.getAppId());
+        assertEquals(STARTING, first.getState());
+        assertTrue(first.isPredicateDeleted());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testQueuedGroupIsInFlightUntilSubmitted() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "isNeedLivyQueue", true);
+        given(env.getProperty("livy.uri")).willReturn("uri");
+        given(livyTaskSubmitHelper.postToLivy(eq("uri"),
+            any(LivyRequest.class))).willReturn("{\"id\":1}");
+        given(livyTaskSubmitHelper.retryLivyGetAppId(anyString(), anyInt()))
+            .willReturn(Collections.singletonMap("id", 1));
+        given(livyTaskSubmitHelper.addTaskToWaitingQueue(anyString(),
+            any(), any(), any(Runnable.class))).willReturn(true);
+        JobInstanceBean first = createJobInstance();
+        JobInstanceBean second = createJobInstance();
+
+        coalescer.add(jobDetail("p1"), first, batchMeasure("m1"), false,
+            "{}", "{\"name\":\"m1\"}");
+        coalescer.add(jobDetail("p2"), second, batchMeasure("m2"), false,
+            "{}", "{\"name\":\"m2\"}");
+
+        // the batch waits for a permit of the livy task queue
+        ArgumentCaptor<Runnable> action = ArgumentCaptor.forClass(
+            Runnable.class);
+        verify(livyTaskSubmitHelper, timeout(2000)).addTaskToWaitingQueue(
+            eq("coalesced:p1,p2"), any(), any(), action.capture());
+        verify(livyTaskSubmitHelper, never()).postToLivy(anyString(),
+            any(LivyRequest.class));
+        // a predicate job firing again before it is deleted is in flight
+        assertTrue(coalescer.add(jobDetail("p1"), first, batchMeasure("m1"),
+            false, "{}", "{\"name\":\"m1\"}"));
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(coalescer,
+            "groups")).isEmpty());
+
+        action.getValue().run();
+
+        verify(livyTaskSubmitHelper).postToLivy(eq("uri"),
+            any(LivyRequest.class));
+        verify(batchJobOp).deleteJob("PW", "p1");
+        verify(batchJobOp).deleteJob("PW", "p2");
+        assertTrue(((Set<?>) ReflectionTestUtils.getField(coalescer,
+            "inFlight")).isEmpty());
+    }
+
+    private static GriffinMeasure batchMeasure(String name) throws Exception {
+        GriffinMeasure measure = createGriffinMeasure(name);
+        measure.setProcessType(BATCH);
+        return measure;
+    }
+
+    private static JobDetail jobDetail(String name) {
+        return newJob(SparkSubmitJob.class).withIdentity(name, "PW").build();
+    }
+}
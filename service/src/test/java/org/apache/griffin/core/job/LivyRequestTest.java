@@ -0,0 +1,81 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.griffin.core.util.JsonUtil;
+import org.junit.Test;
+
+public class LivyRequestTest {
+
+    @Test
+    public void testArgsAreSplicedIntoTemplate() throws Exception {
+        Map<String, Object> conf = new LinkedHashMap<>();
+        conf.put("file", "griffin-measure.jar");
+        conf.put("queue", "etl");
+
+        LivyRequest request = LivyRequest.of(conf, null,
+            Arrays.asList("env", "{\"name\":\"m1\"}"));
+
+        assertEquals("{\"file\":\"griffin-measure.jar\",\"queue\":\"etl\","
+            + "\"args\":[\"env\",\"{\\\"name\\\":\\\"m1\\\"}\"]}",
+            request.getBody());
+        assertEquals("etl", request.getQueue());
+        assertEquals(2, conf.size());
+    }
+
+    @Test
+    public void testOverridesDoNotChangeTemplate() throws Exception {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("file", "griffin-measure.jar");
+        conf.put("numExecutors", 2);
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("queue", "adhoc");
+        overrides.put("numExecutors", 8);
+        overrides.put("file", "other.jar");
+
+        LivyRequest request = LivyRequest.of(conf, overrides,
+            Collections.singletonList("env"));
+        Map<String, Object> body = JsonUtil.toEntity(request.getBody(),
+            Map.class);
+
+        assertEquals("adhoc", request.getQueue());
+        assertEquals(8, body.get("numExecutors"));
+        assertEquals("griffin-measure.jar", body.get("file"));
+        assertEquals(2, conf.get("numExecutors"));
+        assertEquals("default", LivyRequest.of(conf, null,
+            Collections.emptyList()).getQueue());
+    }
+
+    @Test
+    public void testEmptyTemplate() throws Exception {
+        LivyRequest request = LivyRequest.of(null, null,
+            Collections.singletonList("env"));
+
+        assertEquals("{\"args\":[\"env\"]}", request.getBody());
+    }
+}
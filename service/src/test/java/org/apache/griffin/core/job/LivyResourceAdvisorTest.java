@@ -0,0 +1,131 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.LivyResourceAdvisor.EXECUTOR_MEMORY;
+import static org.apache.griffin.core.job.LivyResourceAdvisor.NUM_EXECUTORS;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.entity.ResourceAdvice;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class LivyResourceAdvisorTest {
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @InjectMocks
+    private LivyResourceAdvisor advisor;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(advisor, "bytesPerExecutor", GB);
+        ReflectionTestUtils.setField(advisor, "minExecutors", 1);
+        ReflectionTestUtils.setField(advisor, "maxExecutors", 10);
+        ReflectionTestUtils.setField(advisor, "maxExecutorMemory", "4g");
+        ReflectionTestUtils.setField(advisor, "targetRunTime", 60000L);
+        ReflectionTestUtils.setField(advisor, "historySize", 10);
+        given(instanceRepo.findFinishedByJobId(eq(1L), any(Pageable.class)))
+            .willReturn(new ArrayList<>());
+    }
+
+    @Test
+    public void testAdviseByInputSize() {
+        ResourceAdvice advice = advisor.advise(1L, 3 * GB + 1);
+
+        assertEquals(4, advice.getResources().get(NUM_EXECUTORS));
+        assertEquals(1, advice.getReasons().size());
+        assertEquals(10, advisor.advise(1L, 100 * GB).getResources()
+            .get(NUM_EXECUTORS));
+        assertEquals(1, advisor.advise(1L, 1L).getResources()
+            .get(NUM_EXECUTORS));
+    }
+
+    @Test
+    public void testAdviseByHistory() {
+        List<JobInstanceBean> history = Arrays.asList(
+            instance(DEAD, 2 * GB, 10000L),
+            instance(DEAD, 2 * GB, 10000L),
+            instance(SUCCESS, 4 * GB, 120000L));
+        given(instanceRepo.findFinishedByJobId(eq(1L), any(Pageable.class)))
+            .willReturn(history);
+
+        ResourceAdvice advice = advisor.advise(1L, null);
+
+        // median input size 2g needs 2 executors, doubled by run time
+        assertEquals(4, advice.getResources().get(NUM_EXECUTORS));
+        // 1g by default, doubled for each of the last two failed runs
+        assertEquals("4g", advice.getResources().get(EXECUTOR_MEMORY));
+        assertEquals(4, advice.getReasons().size());
+    }
+
+    @Test
+    public void testAdviseAllTakesLargestResources() {
+        JobInstanceBean small = instance(SUCCESS, GB + 1, 10000L);
+        JobInstanceBean large = instance(SUCCESS, 3 * GB, 10000L);
+
+        ResourceAdvice advice = advisor.adviseAll(Arrays.asList(small,
+            large));
+
+        assertEquals(3, advice.getResources().get(NUM_EXECUTORS));
+        assertEquals("1g", advice.getResources().get(EXECUTOR_MEMORY));
+        assertEquals(2, advice.getReasons().size());
+    }
+
+    @Test
+    public void testMemory() {
+        assertEquals(512, LivyResourceAdvisor.toMb("512m"));
+        assertEquals(2048, LivyResourceAdvisor.toMb("2g"));
+        assertEquals(2048, LivyResourceAdvisor.toMb("2048"));
+        assertEquals("2g", LivyResourceAdvisor.formatMb(2048));
+        assertEquals("1536m", LivyResourceAdvisor.formatMb(1536));
+    }
+
+    private static JobInstanceBean instance(State state, long inputSize,
+                                            long runTime) {
+        JobInstanceBean instance = new JobInstanceBean();
+        instance.setState(state);
+        instance.setInputSize(inputSize);
+        instance.setRunTime(runTime);
+        return instance;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.DEAD;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.SUCCESS;
+import static org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType.BATCH;
+import static org.apache.griffin.core.measure.entity.GriffinMeasure.ProcessType.STREAMING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+@RunWith(SpringRunner.class)
+public class LivySessionPoolTest {
+    private static final String URI = "http://localhost:8998/sessions";
+
+    @InjectMocks
+    private LivySessionPool pool;
+
+    @Mock
+    private LivyRestClient livyRestClient;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Mock
+    private JobDependencyScheduler dependencyScheduler;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "concurrency", 1);
+        ReflectionTestUtils.setField(pool, "maxStatements", 100);
+        ReflectionTestUtils.setField(pool, "maxAge", 3600000L);
+        ReflectionTestUtils.setField(pool, "sessionUri", URI);
+        ReflectionTestUtils.setField(pool, "maxInputBytes", 1000L);
+    }
+
+    @Test
+    public void testSubmitFallsBackToBatch() {
+        JobInstanceBean instance = new JobInstanceBean();
+
+        assertFalse(pool.submit(instance, BATCH, false, "{}", "{}"));
+        assertFalse(pool.submit(instance, STREAMING, false, "{}", "{}"));
+        verify(livyRestClient, never()).post(anyString(), anyString());
+    }
+
+    @Test
+    public void testSubmitToWarmSession() {
+        given(livyRestClient.post(eq(URI), anyString())).willReturn(
+            done("{\"id\":1,\"state\":\"starting\"}"));
+        given(livyRestClient.get(URI + "/1")).willReturn(
+            done("{\"id\":1,\"state\":\"idle\",\"appId\":\"app_1\"}"));
+        given(livyRestClient.post(eq(URI + "/1/statements"), anyString()))
+            .willReturn(done("{\"id\":0,\"state\":\"waiting\"}"));
+        given(livyRestClient.get(URI + "/1/statements/0")).willReturn(
+            done("{\"id\":0,\"state\":\"available\",\"output\":" +
+                "{\"status\":\"ok\",\"data\":" +
+                "{\"text/plain\":\"res0: Boolean = true\"}}}"));
+        JobInstanceBean instance = instance(10L, 100L);
+        given(instanceRepo.findOne(10L)).willReturn(instance);
+
+        // the first round creates the session, the second finds it idle
+        pool.maintain();
+        pool.maintain();
+
+        assertTrue(pool.submit(instance, BATCH, false, "{}", "{}"));
+        // no free slot
+        assertFalse(pool.submit(instance(11L, 100L), BATCH, false, "{}",
+            "{}"));
+        assertEquals(RUNNING, instance.getState());
+        assertEquals("app_1", instance.getAppId());
+        assertEquals(Long.valueOf(1), instance.getSessionId());
+        assertEquals(Long.valueOf(0), instance.getStatementId());
+
+        pool.maintain();
+
+        assertEquals(SUCCESS, instance.getState());
+    }
+
+    @Test
+    public void testLargeOrUnknownInputFallsBackToBatch() {
+        given(livyRestClient.post(eq(URI), anyString())).willReturn(
+            done("{\"id\":1,\"state\":\"starting\"}"));
+        given(livyRestClient.get(URI + "/1")).willReturn(
+            done("{\"id\":1,\"state\":\"idle\",\"appId\":\"app_1\"}"));
+        pool.maintain();
+        pool.maintain();
+
+        assertFalse(pool.submit(instance(10L, 1001L), BATCH, false, "{}",
+            "{}"));
+        assertFalse(pool.submit(instance(11L, null), BATCH, false, "{}",
+            "{}"));
+        verify(livyRestClient, never()).post(eq(URI + "/1/statements"),
+            anyString());
+    }
+
+    @Test
+    public void testReconcileUntrackedStatements() {
+        given(livyRestClient.get(URI + "/1/statements/0")).willReturn(
+            done("{\"id\":0,\"state\":\"available\",\"output\":" +
+                "{\"status\":\"ok\",\"data\":" +
+                "{\"text/plain\":\"res0: Boolean = true\"}}}"));
+        given(livyRestClient.get(URI + "/1/statements/1")).willReturn(
+            done("{\"id\":1,\"state\":\"running\"}"));
+        CompletableFuture<String> gone = new CompletableFuture<>();
+        gone.completeExceptionally(new HttpClientErrorException(
+            HttpStatus.NOT_FOUND));
+        given(livyRestClient.get(URI + "/2/statements/0")).willReturn(gone);
+        JobInstanceBean finished = pooled(10L, 1L, 0L);
+        JobInstanceBean running = pooled(11L, 1L, 1L);
+        JobInstanceBean lost = pooled(12L, 2L, 0L);
+
+        List<JobInstanceBean> changed = pool.reconcile(Arrays.asList(
+            finished, running, lost));
+
+        assertEquals(Arrays.asList(finished, lost), changed);
+        assertEquals(SUCCESS, finished.getState());
+        assertEquals(RUNNING, running.getState());
+        assertEquals(DEAD, lost.getState());
+    }
+
+    private static JobInstanceBean pooled(Long id, Long sessionId,
+                                          Long statementId) {
+        JobInstanceBean instance = instance(id, 100L);
+        instance.setState(RUNNING);
+        instance.setSessionId(sessionId);
+        instance.setStatementId(statementId);
+        return instance;
+    }
+
+    private static JobInstanceBean instance(Long id, Long inputSize) {
+        JobInstanceBean instance = new JobInstanceBean();
+        instance.setId(id);
+        instance.setInputSize(inputSize);
+        return instance;
+    }
+
+    private static <T> CompletableFuture<T> done(T value) {
+        return CompletableFuture.completedFuture(value);
+    }
+}
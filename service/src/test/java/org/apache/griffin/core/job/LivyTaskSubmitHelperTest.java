@@ -0,0 +1,186 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.apache.griffin.core.job.entity.LivySessionStates.State.RUNNING;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.quartz.JobBuilder.newJob;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.griffin.core.cluster.ClusterMembership;
+import org.apache.griffin.core.job.entity.JobInstanceBean;
+import org.apache.griffin.core.job.entity.LivySessionStates.State;
+import org.apache.griffin.core.job.entity.LivySubmitTask;
+import org.apache.griffin.core.job.repo.JobInstanceRepo;
+import org.apache.griffin.core.job.repo.LivySubmitTaskRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.quartz.JobDetail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class LivyTaskSubmitHelperTest {
+
+    @InjectMocks
+    private LivyTaskSubmitHelper helper;
+
+    @Mock
+    private LivySubmitTaskRepo taskRepo;
+
+    @Mock
+    private JobInstanceRepo instanceRepo;
+
+    @Mock
+    private ClusterMembership cluster;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(helper, "batchSize", 2);
+        given(cluster.getNodeId()).willReturn("node1");
+        given(cluster.owns(any())).willReturn(true);
+        given(cluster.shouldRun(any(), any())).willReturn(true);
+    }
+
+    @Test
+    public void testParseQueueLimits() {
+        Map<String, Integer> limits = LivyTaskSubmitHelper
+            .parseQueueLimits("etl:10, adhoc : 2,invalid");
+
+        assertEquals(2, limits.size());
+        assertEquals(Integer.valueOf(10), limits.get("etl"));
+        assertEquals(Integer.valueOf(2), limits.get("adhoc"));
+        assertTrue(LivyTaskSubmitHelper.parseQueueLimits("").isEmpty());
+    }
+
+    @Test
+    public void testGetYarnQueue() {
+        assertEquals("default", helper.getYarnQueue(null));
+        assertEquals("etl", helper.getYarnQueue(
+            Collections.singletonMap("queue", "etl")));
+    }
+
+    @Test
+    public void testAddTaskToWaitingQueueIgnoresDuplicate() {
+        given(taskRepo.save(any(LivySubmitTask.class)))
+            .willAnswer(invocation -> invocation.getArguments()[0]);
+        JobDetail jd = newJob(SparkSubmitJob.class)
+            .withIdentity("job_predicate_1", "PW").build();
+
+        assertTrue(helper.addTaskToWaitingQueue(jd, 1000L, "etl"));
+        assertTrue(helper.addTaskToWaitingQueue(jd, 1000L, "etl"));
+
+        assertEquals(1, ((Set<?>) ReflectionTestUtils.getField(
+            helper, "queue")).size());
+        verify(taskRepo, times(1)).save(any(LivySubmitTask.class));
+    }
+
+    @Test
+    public void testRestore() {
+        JobInstanceBean running = new JobInstanceBean(1L, RUNNING,
+            "application_1", null, 1000L, 2000L);
+        running.setYarnQueue("etl");
+        given(instanceRepo.findByActiveState(any(State[].class)))
+            .willReturn(Collections.singletonList(running));
+        LivySubmitTask waiting = new LivySubmitTask("p1", "PW", "{}",
+            "default", 1000L);
+        waiting.setId(1L);
+        LivySubmitTask submitted = new LivySubmitTask("p2", "PW", "{}",
+            "default", 1000L);
+        submitted.setId(2L);
+        given(taskRepo.findByIdGreaterThan(eq(0L), any(Pageable.class)))
+            .willReturn(Arrays.asList(waiting, submitted));
+        JobInstanceBean pending = new JobInstanceBean();
+        pending.setPredicateName("p1");
+        JobInstanceBean done = new JobInstanceBean();
+        done.setPredicateName("p2");
+        done.setPredicateDeleted(true);
+        given(instanceRepo.findByPredicateNameIn(anyCollectionOf(
+            String.class))).willReturn(Arrays.asList(pending, done));
+
+        helper.restore();
+
+        assertEquals(1, ((AtomicInteger) ReflectionTestUtils.getField(
+            helper, "curConcurrentTaskNum")).get());
+        // counted against the queue the session was submitted to
+        assertEquals("etl", ((Map<?, ?>) ReflectionTestUtils.getField(
+            helper, "taskQueueMap")).get(1L));
+        assertEquals(1, ((Set<?>) ReflectionTestUtils.getField(
+            helper, "queue")).size());
+        verify(taskRepo).deleteByIdIn(Collections.singletonList(2L));
+    }
+
+    @Test
+    public void testAdoptTasksOfDeadNodes() {
+        LivySubmitTask mine = new LivySubmitTask("p1", "PW", "{}",
+            "default", 1000L);
+        mine.setId(1L);
+        mine.setOwner("node1");
+        LivySubmitTask orphan = new LivySubmitTask("p2", "PW", "{}",
+            "default", 1000L);
+        orphan.setId(2L);
+        orphan.setOwner("node2");
+        given(taskRepo.findByIdGreaterThan(eq(0L), any(Pageable.class)))
+            .willReturn(Arrays.asList(mine, orphan));
+        JobInstanceBean pending1 = new JobInstanceBean();
+        pending1.setPredicateName("p1");
+        JobInstanceBean pending2 = new JobInstanceBean();
+        pending2.setPredicateName("p2");
+        given(instanceRepo.findByPredicateNameIn(anyCollectionOf(
+            String.class))).willReturn(Arrays.asList(pending1, pending2));
+
+        helper.adopt();
+
+        assertEquals(1, ((Set<?>) ReflectionTestUtils.getField(
+            helper, "queue")).size());
+        assertEquals("node1", orphan.getOwner());
+        verify(taskRepo).save(orphan);
+    }
+
+    @Test
+    public void testReleaseInactiveSessionsAfterTwoSyncs() {
+        helper.increaseCurTaskNum(1L, "default");
+        helper.increaseCurTaskNum(2L, "default");
+        AtomicInteger taskNum = (AtomicInteger) ReflectionTestUtils.getField(
+            helper, "curConcurrentTaskNum");
+
+        helper.releaseInactive(Collections.singleton(2L));
+        assertEquals(2, taskNum.get());
+
+        helper.releaseInactive(Collections.singleton(2L));
+        assertEquals(1, taskNum.get());
+    }
+}
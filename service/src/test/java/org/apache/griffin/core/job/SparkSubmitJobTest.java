@@ -92,6 +92,15 @@ public class SparkSubmitJobTest {
     @MockBean
     private LivyTaskSubmitHelper livyTaskSubmitHelper;
 
+    @MockBean
+    private LivySessionPool livySessionPool;
+
+    @MockBean
+    private LivyBatchCoalescer livyBatchCoalescer;
+
+    @MockBean
+    private LivyResourceAdvisor livyResourceAdvisor;
+
     @Before
     public void setUp() {
     }
@@ -0,0 +1,115 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class SegmentPredicateTest {
+
+    @Test
+    public void testConfigMapIsParsedOnceOnAccess() {
+        SegmentPredicate predicate = new SegmentPredicate();
+        predicate.setConfig("{\"path\":\"/_DONE\"}");
+
+        assertNull(ReflectionTestUtils.getField(predicate, "configMap"));
+        Map<String, Object> config = predicate.getConfigMap();
+        assertEquals("/_DONE", config.get("path"));
+        assertSame(config, predicate.getConfigMap());
+    }
+
+    @Test
+    public void testSaveKeepsConfigIfNotChanged() throws Exception {
+        SegmentPredicate predicate = new SegmentPredicate();
+        // a formatting which re-serialization would not produce
+        String config = "{ \"path\" : \"/_DONE\" }";
+        predicate.setConfig(config);
+
+        predicate.getConfigMap();
+        predicate.save();
+        assertSame(config, ReflectionTestUtils.getField(predicate, "config"));
+
+        predicate.getConfigMap().put("path", "/_SUCCESS");
+        predicate.save();
+        assertEquals("{\"path\":\"/_SUCCESS\"}",
+            ReflectionTestUtils.getField(predicate, "config"));
+    }
+
+    @Test
+    public void testSaveParsesConfigOnce() throws Exception {
+        SegmentPredicate predicate = new SegmentPredicate();
+        predicate.setConfig("{\"path\":\"/_DONE\"}");
+
+        predicate.getConfigMap();
+        predicate.save();
+        Object parsed = ReflectionTestUtils.getField(predicate, "parsedConfig");
+        predicate.save();
+        assertSame(parsed, ReflectionTestUtils.getField(predicate,
+            "parsedConfig"));
+
+        predicate.load();
+        assertNull(ReflectionTestUtils.getField(predicate, "parsedConfig"));
+    }
+
+    @Test
+    public void testSaveChangeOfTheSameHashCode() throws Exception {
+        SegmentPredicate predicate = new SegmentPredicate();
+        predicate.setConfig("{\"path\":\"Aa\"}");
+
+        // "Aa" and "BB" have the same hash code
+        predicate.getConfigMap().put("path", "BB");
+        predicate.save();
+
+        assertEquals("{\"path\":\"BB\"}",
+            ReflectionTestUtils.getField(predicate, "config"));
+    }
+
+    @Test
+    public void testSaveSerializesConfigMapSetDirectly() throws Exception {
+        SegmentPredicate predicate = new SegmentPredicate();
+        Map<String, Object> config = new HashMap<>();
+        config.put("path", "/_DONE");
+        predicate.setConfigMap(config);
+
+        predicate.save();
+
+        assertEquals("{\"path\":\"/_DONE\"}",
+            ReflectionTestUtils.getField(predicate, "config"));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testGetConfigMapWithInvalidConfig() {
+        SegmentPredicate predicate = new SegmentPredicate();
+        predicate.setConfig("{invalid");
+
+        predicate.getConfigMap();
+    }
+}
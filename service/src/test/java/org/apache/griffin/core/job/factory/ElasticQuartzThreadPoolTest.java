@@ -0,0 +1,72 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.quartz.SchedulerConfigException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class ElasticQuartzThreadPoolTest {
+
+    @Test
+    public void testRunAtMostThreadCountJobs() throws Exception {
+        ElasticQuartzThreadPool pool = new ElasticQuartzThreadPool();
+        pool.setThreadCount(2);
+        pool.setVirtualThreads(true);
+        pool.initialize();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable job = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertEquals(2, pool.blockForAvailableThreads());
+        assertTrue(pool.runInThread(job));
+        assertTrue(pool.runInThread(job));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, pool.getPoolSize());
+
+        release.countDown();
+        assertTrue(pool.blockForAvailableThreads() > 0);
+        pool.shutdown(true);
+        assertFalse(pool.runInThread(job));
+    }
+
+    @Test(expected = SchedulerConfigException.class)
+    public void testInitializeWithoutThreads() throws Exception {
+        ElasticQuartzThreadPool pool = new ElasticQuartzThreadPool();
+        pool.setThreadCount(0);
+        pool.initialize();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.job.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import org.apache.griffin.core.config.EclipseLinkJpaConfigForTest;
+import org.apache.griffin.core.job.entity.JobRelease;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ContextConfiguration(classes = {EclipseLinkJpaConfigForTest.class})
+public class JobReleaseRepoTest {
+
+    @Autowired
+    private JobReleaseRepo releaseRepo;
+
+    @MockBean
+    private IMetaStoreClient client;
+
+    @Test
+    public void testReleaseKeyIsUnique() {
+        releaseRepo.saveAndFlush(new JobRelease(1L, 1000L));
+
+        assertThatThrownBy(() -> releaseRepo.saveAndFlush(
+            new JobRelease(1L, 1000L)))
+            .isInstanceOf(DataAccessException.class)
+            .hasRootCauseInstanceOf(
+                SQLIntegrityConstraintViolationException.class);
+    }
+
+    @Test
+    public void testDeleteByCreatedDate() {
+        JobRelease release = releaseRepo.saveAndFlush(new JobRelease(1L,
+            1000L));
+
+        assertThat(releaseRepo.deleteByCreatedDateLessThanEqual(
+            release.getCreatedDate() - 1)).isEqualTo(0);
+        assertThat(releaseRepo.deleteByCreatedDateLessThanEqual(
+            release.getCreatedDate())).isEqualTo(1);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import org.apache.griffin.core.config.EclipseLinkJpaConfigForTest;
 import org.apache.griffin.core.job.entity.AbstractJob;
 import org.apache.griffin.core.job.entity.BatchJob;
+import org.apache.griffin.core.job.entity.JobSummary;
 import org.apache.griffin.core.job.entity.VirtualJob;
 import org.apache.hadoop.hive.metastore.IMetaStoreClient;
 import org.junit.Before;
@@ -35,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -91,6 +93,28 @@ public class JobRepoTest {
         assert job == null;
     }
 
+    @Test
+    public void testFindSummaries() {
+        List<JobSummary> summaries = jobRepo.findSummaries(0L, null, null,
+                PageRequest.of(0, 3));
+        assertEquals(3, summaries.size());
+        assertEquals("griffinJobName1", summaries.get(0).getJobName());
+        assertEquals("batch", summaries.get(0).getType());
+        assertEquals("virtual", summaries.get(2).getType());
+
+        summaries = jobRepo.findSummaries(summaries.get(2).getId(), null,
+                null, PageRequest.of(0, 3));
+        assertEquals(1, summaries.size());
+        assertEquals("virtualJobName2", summaries.get(0).getJobName());
+    }
+
+    @Test
+    public void testFindSummariesByOwner() {
+        List<JobSummary> summaries = jobRepo.findSummaries(0L, "nobody", null,
+                PageRequest.of(0, 10));
+        assertEquals(0, summaries.size());
+    }
+
     public void setEntityManager() {
         AbstractJob job1 = new BatchJob(1L, "griffinJobName1", "qName1",
                 "qGroup1", false);
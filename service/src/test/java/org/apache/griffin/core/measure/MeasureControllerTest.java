@@ -41,6 +41,7 @@ import org.apache.griffin.core.exception.GriffinExceptionHandler;
 import org.apache.griffin.core.exception.GriffinExceptionMessage;
 import org.apache.griffin.core.measure.entity.GriffinMeasure;
 import org.apache.griffin.core.measure.entity.Measure;
+import org.apache.griffin.core.measure.entity.MeasureSummary;
 import org.apache.griffin.core.util.JsonUtil;
 import org.apache.griffin.core.util.URLHelper;
 import org.junit.Before;
@@ -86,6 +87,20 @@ public class MeasureControllerTest {
     }
 
 
+    @Test
+    public void testGetMeasureSummaries() throws Exception {
+        MeasureSummary summary = new MeasureSummary(2L, "view_item_hourly",
+                "GriffinMeasure", null, "test", "org1", null, 0L);
+        given(service.getMeasureSummaries("", "test", null, 1L, 100))
+                .willReturn(Collections.singletonList(summary));
+
+        mvc.perform(get(URLHelper.API_VERSION_PATH + "/measures/summary")
+                .param("owner", "test").param("after", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id", is(2)))
+                .andExpect(jsonPath("$.[0].['measure.type']", is("griffin")));
+    }
+
     @Test
     public void testGetMeasuresById() throws Exception {
         Measure measure = createGriffinMeasure("view_item_hourly");
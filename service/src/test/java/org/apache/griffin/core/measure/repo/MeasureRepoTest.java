@@ -35,6 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -111,6 +112,28 @@ public class MeasureRepoTest {
         assertThat(names.size()).isEqualTo(1);
     }
 
+    @Test
+    public void testFindSummaries() {
+        List<MeasureSummary> summaries = measureRepo.findSummaries(0L, null,
+                null, PageRequest.of(0, 2));
+        assertThat(summaries.size()).isEqualTo(2);
+        assertEquals("m1", summaries.get(0).getName());
+        assertEquals("griffin", summaries.get(0).getType());
+
+        summaries = measureRepo.findSummaries(summaries.get(1).getId(), null,
+                null, PageRequest.of(0, 2));
+        assertThat(summaries.size()).isEqualTo(1);
+        assertEquals("m3", summaries.get(0).getName());
+    }
+
+    @Test
+    public void testFindSummariesByOwnerAndOrganization() {
+        List<MeasureSummary> summaries = measureRepo.findSummaries(0L,
+                "test", "org2", PageRequest.of(0, 10));
+        assertThat(summaries.size()).isEqualTo(1);
+        assertEquals("m2", summaries.get(0).getName());
+    }
+
     public void setEntityManager() throws Exception {
         Measure measure1 = createGriffinMeasure("m1");
         measure1.setOrganization("org1");
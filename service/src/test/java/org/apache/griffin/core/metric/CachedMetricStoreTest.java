@@ -0,0 +1,148 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.griffin.core.metric.model.MetricCacheStats;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(SpringRunner.class)
+public class CachedMetricStoreTest {
+
+    @InjectMocks
+    private CachedMetricStore cache;
+
+    @Mock
+    private MetricStoreImpl metricStore;
+
+    @Before
+    public void setup() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttl", 60000L);
+        ReflectionTestUtils.setField(cache, "maxValues", 5L);
+        ReflectionTestUtils.setField(cache, "refreshInterval", 0L);
+        given(metricStore.getMetricValues("m1", 0, 10, 0L))
+            .willReturn(values("m1", 1));
+        given(metricStore.getMetricValues("m2", 0, 10, 0L))
+            .willReturn(values("m2", 1));
+    }
+
+    @Test
+    public void testReadThrough() throws Exception {
+        cache.getMetricValues("m1", 0, 10, 0L);
+        List<MetricValue> values = cache.getMetricValues("m1", 0, 10, 0L);
+
+        assertEquals(values("m1", 1), values);
+        verify(metricStore, times(1)).getMetricValues("m1", 0, 10, 0L);
+        MetricCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testInvalidateWrittenMetricOnly() throws Exception {
+        cache.getMetricValues("m1", 0, 10, 0L);
+        cache.getMetricValues("m2", 0, 10, 0L);
+
+        cache.addMetricValues(values("m1", 1));
+        cache.getMetricValues("m1", 0, 10, 0L);
+        cache.getMetricValues("m2", 0, 10, 0L);
+        cache.deleteMetricValues("m2");
+        cache.getMetricValues("m2", 0, 10, 0L);
+
+        verify(metricStore, times(2)).getMetricValues("m1", 0, 10, 0L);
+        verify(metricStore, times(2)).getMetricValues("m2", 0, 10, 0L);
+    }
+
+    @Test
+    public void testNotCacheShortlyAfterWrite() throws Exception {
+        ReflectionTestUtils.setField(cache, "refreshInterval", 60000L);
+        cache.addMetricValues(values("m1", 1));
+
+        cache.getMetricValues("m1", 0, 10, 0L);
+        cache.getMetricValues("m1", 0, 10, 0L);
+
+        verify(metricStore, times(2)).getMetricValues("m1", 0, 10, 0L);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        given(metricStore.getMetricValues("m3", 0, 10, 0L))
+            .willReturn(values("m3", 2));
+        cache.getMetricValues("m1", 0, 10, 0L);
+        cache.getMetricValues("m2", 0, 10, 0L);
+        cache.getMetricValues("m1", 0, 10, 0L);
+
+        // 2 + 2 + 3 weighed values exceed 5, so m2 is evicted
+        cache.getMetricValues("m3", 0, 10, 0L);
+        assertEquals(1, cache.getStats().getEvictions());
+        cache.getMetricValues("m1", 0, 10, 0L);
+        cache.getMetricValues("m2", 0, 10, 0L);
+
+        verify(metricStore, times(1)).getMetricValues("m1", 0, 10, 0L);
+        verify(metricStore, times(2)).getMetricValues("m2", 0, 10, 0L);
+    }
+
+    @Test
+    public void testBatchLoadsMissedMetricsOnly() throws Exception {
+        Map<String, List<MetricValue>> loaded = new HashMap<>();
+        loaded.put("m2", values("m2", 1));
+        given(metricStore.getMetricValues(anyListOf(String.class), eq(0),
+            eq(10))).willReturn(Collections.singletonMap("m1",
+            values("m1", 1)), loaded);
+
+        cache.getMetricValues(Collections.singletonList("m1"), 0, 10);
+        Map<String, List<MetricValue>> result = cache.getMetricValues(
+            Arrays.asList("m1", "m2"), 0, 10);
+
+        assertEquals(values("m1", 1), result.get("m1"));
+        assertEquals(values("m2", 1), result.get("m2"));
+        verify(metricStore).getMetricValues(Collections.singletonList("m2"),
+            0, 10);
+    }
+
+    private static List<MetricValue> values(String name, int count) {
+        MetricValue[] values = new MetricValue[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = new MetricValue(name, (long) i,
+                Collections.singletonMap("total", i));
+        }
+        return Arrays.asList(values);
+    }
+}
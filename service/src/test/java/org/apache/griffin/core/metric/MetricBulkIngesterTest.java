@@ -0,0 +1,207 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricBulkIngesterTest {
+    private static final String URL = "/griffin/accuracy/_bulk";
+    private static final byte[] META = "{\"index\":{}}\n".getBytes(
+        StandardCharsets.UTF_8);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private RestClient client;
+    private ExecutorService executor;
+    /**
+     * names of values sent by every request
+     */
+    private final List<List<String>> requests = Collections
+        .synchronizedList(new ArrayList<>());
+    /**
+     * times a value is still rejected by name
+     */
+    private final Map<String, Integer> rejections = new HashMap<>();
+
+    @Before
+    public void setup() throws Exception {
+        client = mock(RestClient.class);
+        executor = Executors.newFixedThreadPool(2);
+        willAnswer(invocation -> respond((HttpEntity) invocation
+            .getArguments()[3])).given(client).performRequest(eq("POST"),
+            eq(URL), anyMap(), any(HttpEntity.class), anyVararg());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSplitByCount() throws Exception {
+        JsonNode response = ingester(2, 1 << 20, 0).ingest(values(5));
+
+        assertEquals(3, requests.size());
+        assertEquals(5, response.get("items").size());
+        assertFalse(response.get("errors").asBoolean());
+    }
+
+    @Test
+    public void testSplitByBytes() throws Exception {
+        ingester(100, 10, 0).ingest(values(3));
+
+        // a value larger than the limit is sent alone
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testRetryRejectedItemsOnly() throws Exception {
+        rejections.put("m1", 2);
+
+        JsonNode response = ingester(10, 1 << 20, 3).ingest(values(3));
+
+        assertEquals(Arrays.asList(Arrays.asList("m0", "m1", "m2"),
+            Collections.singletonList("m1"),
+            Collections.singletonList("m1")), requests);
+        assertFalse(response.get("errors").asBoolean());
+        for (JsonNode item : response.get("items")) {
+            assertEquals(201, item.path("index").path("status").asInt());
+        }
+    }
+
+    @Test
+    public void testReportItemsRejectedAfterRetries() throws Exception {
+        rejections.put("m1", 5);
+
+        JsonNode response = ingester(10, 1 << 20, 1).ingest(values(2));
+
+        assertTrue(response.get("errors").asBoolean());
+        assertEquals(429, response.get("items").get(1).path("index")
+            .path("status").asInt());
+        assertEquals(201, response.get("items").get(0).path("index")
+            .path("status").asInt());
+    }
+
+    @Test
+    public void testNotResendChunkAfterTransportError() throws Exception {
+        willAnswer(invocation -> {
+            HttpEntity entity = (HttpEntity) invocation.getArguments()[3];
+            if (EntityUtils.toString(entity).contains("\"m0\"")) {
+                throw new SocketTimeoutException("timed out");
+            }
+            return respond(entity);
+        }).given(client).performRequest(eq("POST"), eq(URL), anyMap(),
+            any(HttpEntity.class), anyVararg());
+
+        JsonNode response = ingester(2, 1 << 20, 3).ingest(values(3));
+
+        verify(client, times(2)).performRequest(eq("POST"), eq(URL),
+            anyMap(), any(HttpEntity.class), anyVararg());
+        assertTrue(response.get("errors").asBoolean());
+        assertEquals(500, response.get("items").get(1).path("index")
+            .path("status").asInt());
+        assertEquals(201, response.get("items").get(2).path("index")
+            .path("status").asInt());
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailWhenNothingIsWritten() throws Exception {
+        given(client.performRequest(eq("POST"), eq(URL), anyMap(),
+            any(HttpEntity.class), anyVararg()))
+            .willThrow(new ConnectException("refused"));
+
+        ingester(10, 1 << 20, 1).ingest(values(2));
+    }
+
+    private MetricBulkIngester ingester(int maxActions, long maxBytes,
+                                        int maxRetries) {
+        return new MetricBulkIngester(client, URL, value -> META, maxActions,
+            maxBytes, 2, maxRetries, 1, executor);
+    }
+
+    private Response respond(HttpEntity entity) throws IOException {
+        String[] lines = EntityUtils.toString(entity).split("\n");
+        List<String> names = new ArrayList<>();
+        List<String> items = new ArrayList<>();
+        for (int i = 1; i < lines.length; i += 2) {
+            String name = mapper.readTree(lines[i]).get("name").asText();
+            names.add(name);
+            int rejected;
+            synchronized (rejections) {
+                rejected = rejections.getOrDefault(name, 0);
+                rejections.put(name, rejected - 1);
+            }
+            items.add("{\"index\":{\"status\":" + (rejected > 0 ? 429 : 201)
+                + "}}");
+        }
+        requests.add(names);
+        Response response = mock(Response.class);
+        given(response.getEntity()).willReturn(new NStringEntity(
+            "{\"items\":[" + String.join(",", items) + "]}",
+            ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    private static List<MetricValue> values(int count) {
+        List<MetricValue> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(new MetricValue("m" + i, (long) i,
+                Collections.singletonMap("total", i)));
+        }
+        return values;
+    }
+}
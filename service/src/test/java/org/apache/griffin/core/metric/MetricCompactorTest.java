@@ -0,0 +1,262 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.griffin.core.metric.MetricCompactor.Rollup;
+import org.apache.griffin.core.metric.MetricCompactor.Tier;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.util.JsonUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricCompactorTest {
+    private static final String ALIAS = "griffin-metrics";
+    /**
+     * 2019-01-01T00:00:00Z
+     */
+    private static final long JAN = 1546300800000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long NOW = JAN + TimeUnit.DAYS.toMillis(100);
+
+    private RestClient client;
+    private MetricBulkIngester ingester;
+    private final List<MetricValue> written = new ArrayList<>();
+
+    @Before
+    public void setup() throws Exception {
+        client = mock(RestClient.class);
+        ingester = mock(MetricBulkIngester.class);
+        willAnswer(invocation -> {
+            written.addAll((List<MetricValue>) invocation.getArguments()[0]);
+            return new ObjectMapper().readTree("{\"errors\":false}");
+        }).given(ingester).ingest(anyListOf(MetricValue.class));
+        Response end = response("{\"_scroll_id\":\"s1\",\"hits\":"
+            + "{\"hits\":[]}}");
+        given(client.performRequest(eq("POST"), eq("/_search/scroll"),
+            anyMap(), any(HttpEntity.class), anyVararg())).willReturn(end);
+    }
+
+    @Test
+    public void testRollUpAndDropExpiredRawPartition() throws Exception {
+        indices("griffin-metrics-2019.01", "griffin-metrics-2019.04",
+            "griffin");
+        Response page = response(hits(
+            value("m1", JAN + 10, 10, "app1"),
+            value("m1", JAN + 50, 20, "app2"),
+            value("m1", JAN + HOUR + 10, 5, "app3"),
+            value("m2", JAN + 20, 1, "app4")));
+        given(client.performRequest(eq("POST"),
+            eq("/griffin-metrics-2019.01/_search"), anyMap(),
+            any(HttpEntity.class), anyVararg())).willReturn(page);
+
+        int deleted = compactor(30, 0, 0).compact(NOW);
+
+        assertEquals(1, deleted);
+        verify(client).performRequest("DELETE", "/griffin-metrics-2019.01");
+        verify(client, never()).performRequest("DELETE",
+            "/griffin-metrics-2019.04");
+        assertEquals(3, written.size());
+        MetricValue rollup = written.get(0);
+        assertEquals("m1", rollup.getName());
+        assertEquals(JAN, (long) rollup.getTmst());
+        assertEquals(15.0, rollup.getValue().get("total"));
+        assertEquals("1h", rollup.getMetadata().get(MetricCompactor.ROLLUP));
+        assertEquals(2L, rollup.getMetadata().get(
+            MetricCompactor.ROLLUP_COUNT));
+        assertNull(rollup.getMetadata().get("applicationId"));
+        assertEquals(JAN + HOUR, (long) written.get(1).getTmst());
+        assertEquals("m2", written.get(2).getName());
+    }
+
+    @Test
+    public void testWaitForPreviousTierAndDropDailyRollups()
+        throws Exception {
+        indices("griffin-metrics-2019.01", "griffin-metrics-1h-2019.01",
+            "griffin-metrics-1d-2018.01");
+
+        int deleted = compactor(0, 30, 300).compact(NOW);
+
+        // hourly rollups of january wait for its raw values
+        assertEquals(1, deleted);
+        verify(client).performRequest("DELETE", "/griffin-metrics-1d-2018.01");
+        verify(client, never()).performRequest(eq("POST"),
+            eq("/griffin-metrics-1h-2019.01/_search"), anyMap(),
+            any(HttpEntity.class), anyVararg());
+        assertEquals(0, written.size());
+    }
+
+    @Test
+    public void testMoveSingleIndexIntoPartitions() throws Exception {
+        MetricValue rollup = value("m1", JAN + 20, 2, null);
+        rollup.getMetadata().put(MetricCompactor.ROLLUP, "1h");
+        List<Map<String, Object>> hits = new ArrayList<>();
+        hits.add(hit("a1", value("m1", JAN + 10, 1, "app1")));
+        hits.add(hit("a2", rollup));
+        Map<String, Object> page = new HashMap<>();
+        page.put("_scroll_id", "s1");
+        page.put("hits", Collections.singletonMap("hits", hits));
+        Response aliased = response("{}");
+        given(client.performRequest(eq("POST"), eq("/_aliases"), anyMap(),
+            any(HttpEntity.class), anyVararg())).willReturn(aliased);
+        Response searched = response(JsonUtil.toJson(page));
+        given(client.performRequest(eq("POST"), eq("/griffin/_search"),
+            anyMap(), any(HttpEntity.class), anyVararg()))
+            .willReturn(searched);
+        willAnswer(invocation -> {
+            written.addAll((List<MetricValue>) invocation.getArguments()[0]);
+            return new ObjectMapper().readTree("{\"errors\":true,\"items\":"
+                + "[{\"index\":{\"status\":201}},"
+                + "{\"index\":{\"status\":429}}]}");
+        }).given(ingester).ingest(anyListOf(MetricValue.class));
+        List<String> deletes = new ArrayList<>();
+        Response deleted = response("{\"errors\":false}");
+        willAnswer(invocation -> {
+            deletes.add(EntityUtils.toString((HttpEntity) invocation
+                .getArguments()[3]));
+            return deleted;
+        }).given(client).performRequest(eq("POST"), eq("/_bulk"), anyMap(),
+            any(HttpEntity.class), anyVararg());
+
+        int moved = compactor(0, 0, 0).migrate("griffin");
+
+        assertEquals(1, moved);
+        assertEquals(2, written.size());
+        assertNull(written.get(1).getMetadata().get(MetricCompactor.ROLLUP));
+        // the value rejected by its partition stays in the index
+        assertEquals(1, deletes.size());
+        assertTrue(deletes.get(0).contains("\"a1\""));
+        assertFalse(deletes.get(0).contains("\"a2\""));
+    }
+
+    @Test
+    public void testRollupWeightsRollups() {
+        Rollup rollup = new Rollup("m1", JAN, Tier.DAILY);
+        MetricValue hourly = value("m1", JAN, 10, null);
+        hourly.getMetadata().put(MetricCompactor.ROLLUP_COUNT, 3);
+        rollup.add(hourly);
+        rollup.add(value("m1", JAN + HOUR, 30, null));
+
+        MetricValue daily = rollup.toValue();
+
+        assertEquals(15.0, daily.getValue().get("total"));
+        assertEquals("done", daily.getValue().get("state"));
+        assertEquals(4L, daily.getMetadata().get(
+            MetricCompactor.ROLLUP_COUNT));
+        assertEquals("1d", daily.getMetadata().get(MetricCompactor.ROLLUP));
+    }
+
+    @Test
+    public void testPartition() {
+        assertEquals("griffin-metrics-2019.01", MetricCompactor.partition(
+            ALIAS, Tier.RAW, JAN));
+        assertEquals("griffin-metrics-1h-2018.12", MetricCompactor.partition(
+            ALIAS, Tier.HOURLY, JAN - 1));
+    }
+
+    private MetricCompactor compactor(int rawDays, int hourlyDays,
+                                      int dailyDays) {
+        Map<Tier, Long> retentions = new EnumMap<>(Tier.class);
+        retentions.put(Tier.RAW, TimeUnit.DAYS.toMillis(rawDays));
+        retentions.put(Tier.HOURLY, TimeUnit.DAYS.toMillis(hourlyDays));
+        retentions.put(Tier.DAILY, TimeUnit.DAYS.toMillis(dailyDays));
+        return new MetricCompactor(client, ALIAS, retentions, 2, ingester);
+    }
+
+    private void indices(String... indices) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (String index : indices) {
+            rows.add(Collections.singletonMap("index", index));
+        }
+        Response response = response(JsonUtil.toJson(rows));
+        given(client.performRequest(eq("GET"), eq("/_cat/indices/"
+            + ALIAS + "-*"), anyMap(), anyVararg())).willReturn(response);
+    }
+
+    private static MetricValue value(String name, long tmst, int total,
+                                     String appId) {
+        Map<String, Object> metadata = new HashMap<>();
+        if (appId != null) {
+            metadata.put("applicationId", appId);
+        }
+        Map<String, Object> value = new HashMap<>();
+        value.put("total", total);
+        value.put("state", "done");
+        return new MetricValue(name, tmst, metadata, value);
+    }
+
+    private static Map<String, Object> hit(String id, MetricValue value) {
+        Map<String, Object> hit = new HashMap<>();
+        hit.put("_index", "griffin");
+        hit.put("_type", "accuracy");
+        hit.put("_id", id);
+        hit.put("_source", value);
+        return hit;
+    }
+
+    private static String hits(MetricValue... values) throws IOException {
+        List<Map<String, Object>> hits = new ArrayList<>();
+        for (MetricValue value : values) {
+            hits.add(Collections.singletonMap("_source", value));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("_scroll_id", "s1");
+        body.put("hits", Collections.singletonMap("hits", hits));
+        return JsonUtil.toJson(body);
+    }
+
+    private static Response response(String body) {
+        Response response = mock(Response.class);
+        given(response.getEntity()).willReturn(new NStringEntity(body,
+            ContentType.APPLICATION_JSON));
+        return response;
+    }
+}
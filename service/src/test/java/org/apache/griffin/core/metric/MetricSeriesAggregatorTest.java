@@ -0,0 +1,104 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric;
+
+import static org.apache.griffin.core.metric.model.SeriesAggregation.AVG;
+import static org.apache.griffin.core.metric.model.SeriesAggregation.LAST;
+import static org.apache.griffin.core.metric.model.SeriesAggregation.MAX;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.griffin.core.metric.model.MetricSeries;
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricSeriesAggregatorTest {
+    private static final long HOUR = 3600000L;
+
+    private MetricStore store;
+
+    @Before
+    public void setup() throws Exception {
+        store = mock(MetricStore.class);
+        // latest first, as the store returns them
+        List<MetricValue> values = Arrays.asList(
+            value(3 * HOUR + 10, 9),
+            value(HOUR + 20, 4),
+            value(HOUR + 10, 2),
+            new MetricValue("m", HOUR + 5, Collections.singletonMap(
+                "other", 1)),
+            value(10, 1),
+            value(-HOUR, 100));
+        given(store.getMetricValues(eq("m"), eq(0), anyInt(), anyLong()))
+            .willReturn(values);
+    }
+
+    @Test
+    public void testAggregateInRange() throws Exception {
+        MetricSeries series = MetricSeriesAggregator.aggregate(store, "m",
+            "matched", 0, 2 * HOUR, HOUR, AVG);
+
+        assertEquals(Arrays.asList(0L, HOUR), series.getTimestamps());
+        assertEquals(Arrays.asList(1.0, 3.0), series.getValues());
+    }
+
+    @Test
+    public void testAggregateLastAndMax() throws Exception {
+        assertEquals(Arrays.asList(1.0, 4.0, 9.0), MetricSeriesAggregator
+            .aggregate(store, "m", "matched", 0, 4 * HOUR, HOUR, LAST)
+            .getValues());
+        assertEquals(Arrays.asList(4.0, 9.0), MetricSeriesAggregator
+            .aggregate(store, "m", "matched", HOUR, 4 * HOUR, 2 * HOUR, MAX)
+            .getValues());
+    }
+
+    @Test
+    public void testPageThroughValues() throws Exception {
+        List<MetricValue> page = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            page.add(value(2 * HOUR - i, 1));
+        }
+        given(store.getMetricValues(eq("m"), eq(0), anyInt(), anyLong()))
+            .willReturn(page);
+        given(store.getMetricValues(eq("m"), eq(1000), anyInt(), anyLong()))
+            .willReturn(Collections.singletonList(value(HOUR, 5)));
+
+        MetricSeries series = MetricSeriesAggregator.aggregate(store, "m",
+            "matched", 0, 4 * HOUR, HOUR, MAX);
+
+        assertEquals(Arrays.asList(HOUR, 2 * HOUR), series.getTimestamps());
+        assertEquals(Arrays.asList(5.0, 1.0), series.getValues());
+    }
+
+    private static MetricValue value(long tmst, int matched) {
+        return new MetricValue("m", tmst, Collections.singletonMap("matched",
+            matched));
+    }
+}
@@ -93,13 +93,15 @@ public class MetricServiceImplTest {
                 .singletonList(job));
         given(measureRepo.findByDeleted(false)).willReturn(Collections
                 .singletonList(measure));
-        given(metricStore.getMetricValues(Matchers.anyString(),
-                Matchers.anyInt(), Matchers.anyInt(),
-                Matchers.anyLong()))
-                .willReturn(Collections.singletonList(value));
+        given(metricStore.getMetricValues(Matchers.anyListOf(String.class),
+                Matchers.anyInt(), Matchers.anyInt()))
+                .willReturn(Collections.singletonMap(job.getMetricName(),
+                        Collections.singletonList(value)));
 
         Map<String, List<Metric>> metricMap = service.getAllMetrics();
         assertEquals(metricMap.get("measureName").get(0).getName(), "jobName");
+        assertEquals(Collections.singletonList(value), metricMap
+                .get("measureName").get(0).getMetricValues());
     }
 
     @Test(expected = GriffinException.ServiceException.class)
@@ -111,9 +113,8 @@ public class MetricServiceImplTest {
                 .singletonList(job));
         given(measureRepo.findByDeleted(false)).willReturn(Collections
                 .singletonList(measure));
-        given(metricStore.getMetricValues(Matchers.anyString(),
-                Matchers.anyInt(), Matchers.anyInt(),
-                Matchers.anyLong()))
+        given(metricStore.getMetricValues(Matchers.anyListOf(String.class),
+                Matchers.anyInt(), Matchers.anyInt()))
                 .willThrow(new IOException());
 
         service.getAllMetrics();
@@ -248,4 +249,16 @@ public class MetricServiceImplTest {
     }
 
 
+
+    @Test(expected = GriffinException.BadRequestException.class)
+    public void testGetMetricSeriesFailureWithInvalidAggregation() {
+        service.getMetricSeries("metricName", "matched", 0L, 3600000L, "1m",
+                "median");
+    }
+
+    @Test(expected = GriffinException.BadRequestException.class)
+    public void testGetMetricSeriesFailureWithTooManyPoints() {
+        service.getMetricSeries("metricName", "matched", 0L, 86400000L, "1s",
+                "avg");
+    }
 }
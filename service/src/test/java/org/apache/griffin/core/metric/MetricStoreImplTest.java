@@ -19,9 +19,17 @@ under the License.
 
 package org.apache.griffin.core.metric;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.griffin.core.cluster.ClusterMembership;
+import org.apache.griffin.core.metric.model.MetricSeries;
 import org.apache.griffin.core.metric.model.MetricValue;
+import org.apache.griffin.core.metric.model.SeriesAggregation;
 import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.junit.Before;
@@ -31,17 +39,22 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.*;
 
@@ -55,6 +68,7 @@ public class MetricStoreImplTest {
 
     private static final String urlBase = String.format("/%s/%s", INDEX, TYPE);
     private static final String urlGet = urlBase.concat("/_search?filter_path=hits.hits._source");
+    private static final String urlMultiSearch = urlBase.concat("/_msearch");
 
     private RestClient restClientMock;
 
@@ -115,4 +129,122 @@ public class MetricStoreImplTest {
         assertEquals(expectedMetric, metric);
     }
 
+    @Test
+    public void testMetricValuesMultiSearch() throws IOException {
+        //given
+        List<Integer> searchCounts = new ArrayList<>();
+        willAnswer(invocation -> {
+            String body = EntityUtils.toString((HttpEntity) invocation
+                    .getArguments()[3]);
+            List<String> hits = new ArrayList<>();
+            String[] lines = body.split("\n");
+            for (int i = 1; i < lines.length; i += 2) {
+                String name = new ObjectMapper().readTree(lines[i]).path("query")
+                        .path("bool").path("filter").path("term")
+                        .path("name.keyword").asText();
+                hits.add("m3".equals(name)
+                        ? "{\"error\":{\"type\":\"index_not_found_exception\"},\"status\":404}"
+                        : "{\"hits\":{\"hits\":[{\"_source\":{\"name\":\"" + name
+                        + "\",\"tmst\":1,\"value\":{\"total\":1}}}]},\"status\":200}");
+            }
+            searchCounts.add(hits.size());
+            Response responseMock = PowerMockito.mock(Response.class);
+            given(responseMock.getEntity()).willReturn(new NStringEntity(
+                    "{\"responses\":[" + String.join(",", hits) + "]}",
+                    ContentType.APPLICATION_JSON));
+            ((ResponseListener) invocation.getArguments()[4])
+                    .onSuccess(responseMock);
+            return null;
+        }).given(restClientMock).performRequestAsync(eq("GET"),
+                eq(urlMultiSearch), anyMap(), any(HttpEntity.class),
+                any(ResponseListener.class), anyVararg());
+        MetricStoreImpl metricStore = new MetricStoreImpl("localhost", 0, "", "", "");
+        ReflectionTestUtils.setField(metricStore, "msearchSize", 2);
+
+        //when
+        Map<String, List<MetricValue>> metricValues = metricStore
+                .getMetricValues(Arrays.asList("m1", "m2", "m3", "m1"), 0, 300);
+
+        //then
+        assertEquals(Arrays.asList(2, 1), searchCounts);
+        assertEquals(3, metricValues.size());
+        assertEquals("m2", metricValues.get("m2").get(0).getName());
+        assertEquals(Collections.singletonMap("total", 1),
+                metricValues.get("m1").get(0).getValue());
+        assertTrue(metricValues.get("m3").isEmpty());
+    }
+
+    @Test
+    public void testMetricSeriesAggregatedByElasticsearch() throws IOException {
+        //given
+        Response responseMock = PowerMockito.mock(Response.class);
+        given(responseMock.getEntity()).willReturn(new NStringEntity(
+                "{\"aggregations\":{\"series\":{\"buckets\":["
+                        + "{\"key\":0,\"doc_count\":2,\"metric\":{\"hits\":{\"hits\":"
+                        + "[{\"_source\":{\"value\":{\"matched\":7}}}]}}},"
+                        + "{\"key\":3600000,\"doc_count\":1,\"metric\":{\"hits\":{\"hits\":"
+                        + "[{\"_source\":{\"value\":{\"matched\":8}}}]}}}]}}}",
+                ContentType.APPLICATION_JSON));
+        given(restClientMock.performRequest(eq("GET"),
+                eq(urlBase.concat("/_search?filter_path=aggregations.series.buckets")),
+                anyMap(), any(HttpEntity.class), anyVararg()))
+                .willReturn(responseMock);
+        MetricStoreImpl metricStore = new MetricStoreImpl("localhost", 0, "", "", "");
+
+        //when
+        MetricSeries series = metricStore.getMetricSeries("m", "matched", 0,
+                7200000, 3600000, SeriesAggregation.LAST);
+
+        //then
+        assertEquals(Arrays.asList(0L, 3600000L), series.getTimestamps());
+        assertEquals(Arrays.asList(7.0, 8.0), series.getValues());
+    }
+
+    @Test
+    public void testPostedRollupsAreRaw() throws IOException {
+        //given
+        MetricStoreImpl metricStore = new MetricStoreImpl("localhost", 0, "",
+                "", "", true);
+        List<String> bodies = new ArrayList<>();
+        willAnswer(invocation -> {
+            bodies.add(EntityUtils.toString((HttpEntity) invocation
+                    .getArguments()[3]));
+            Response response = mock(Response.class);
+            given(response.getEntity()).willReturn(new NStringEntity(
+                    "{\"items\":[{\"index\":{\"status\":201}}]}",
+                    ContentType.APPLICATION_JSON));
+            return response;
+        }).given(restClientMock).performRequest(eq("POST"), eq("/_bulk"),
+                anyMap(), any(HttpEntity.class), anyVararg());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(MetricCompactor.ROLLUP, "1d");
+        metadata.put(MetricCompactor.ROLLUP_COUNT, 10);
+
+        //when
+        metricStore.addMetricValues(Collections.singletonList(new MetricValue(
+                "m1", 1546300800000L, metadata, new HashMap<>())));
+
+        //then
+        assertEquals(1, bodies.size());
+        assertTrue(bodies.get(0).contains("\"griffin-metrics-2019.01\""));
+        assertFalse(bodies.get(0).contains(MetricCompactor.ROLLUP));
+    }
+
+    @Test
+    public void testCompactOnLeaderOnly() throws IOException {
+        //given
+        ClusterMembership cluster = PowerMockito.mock(ClusterMembership.class);
+        given(cluster.isLeader()).willReturn(false);
+        MetricStoreImpl metricStore = new MetricStoreImpl("localhost", 0, "",
+                "", "", true);
+        ReflectionTestUtils.setField(metricStore, "rawRetentionDays", 30);
+        ReflectionTestUtils.setField(metricStore, "cluster", cluster);
+
+        //when
+        metricStore.compact();
+
+        //then
+        verify(restClientMock, never()).performRequest(anyString(),
+                anyString(), anyMap(), any(HttpEntity.class), anyVararg());
+    }
 }
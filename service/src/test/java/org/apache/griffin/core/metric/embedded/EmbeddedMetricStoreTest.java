@@ -0,0 +1,295 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.metric.embedded;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.griffin.core.metric.model.MetricValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class EmbeddedMetricStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedMetricStore store;
+
+    @Before
+    public void setup() throws Exception {
+        store = open();
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void testReadLatestFirstAcrossSegments() throws Exception {
+        List<MetricValue> batch = new ArrayList<>();
+        for (long tmst = 1000; tmst > 0; tmst -= 2) {
+            batch.add(value("m1", tmst, null));
+        }
+        store.addMetricValues(batch);
+        // earlier than the latest value, so in a segment of its own
+        batch.clear();
+        for (long tmst = 1; tmst < 1000; tmst += 2) {
+            batch.add(value("m1", tmst, null));
+        }
+        store.addMetricValues(batch);
+        store.addMetricValues(Collections.singletonList(value("m2", 5L,
+            null)));
+
+        List<MetricValue> values = store.getMetricValues("m1", 0, 3, 0L);
+        assertEquals(Arrays.asList(1000L, 999L, 998L), tmsts(values));
+        values = store.getMetricValues("m1", 500, 200, 0L);
+        assertEquals(200, values.size());
+        assertEquals(500L, (long) values.get(0).getTmst());
+        assertEquals(301L, (long) values.get(199).getTmst());
+        assertEquals(Arrays.asList(2L, 1L), tmsts(store.getMetricValues(
+            "m1", 998, 10, 0L)));
+
+        Map<String, List<MetricValue>> map = store.getMetricValues(
+            Arrays.asList("m2", "m3"), 0, 10);
+        assertEquals(Collections.singletonList(5L), tmsts(map.get("m2")));
+        assertTrue(map.get("m3").isEmpty());
+    }
+
+    @Test
+    public void testGetMetricByApplicationId() throws Exception {
+        store.addMetricValues(Arrays.asList(value("m1", 1L, "app1"),
+            value("m1", 2L, "app2"), value("m2", 3L, "app3")));
+
+        MetricValue value = store.getMetric("app3");
+        assertEquals("m2", value.getName());
+        assertEquals(3L, (long) value.getTmst());
+        assertEquals("app3", value.getMetadata().get("applicationId"));
+        assertNull(store.getMetric("app4"));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        store.addMetricValues(Arrays.asList(value("m1", 1L, "app1"),
+            value("m1", 2L, "app2")));
+        store.addMetricValues(Collections.singletonList(value("m1", 0L,
+            "app0")));
+        store.close();
+        // a record torn by a crash is truncated
+        File segment = new File(new File(folder.getRoot(),
+            EmbeddedMetricStore.encode("m1")), "0" + MetricLog.SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[]{0, 0, 1, 0, 0, 0});
+        }
+
+        store = open();
+
+        assertEquals(Arrays.asList(2L, 1L, 0L), tmsts(store.getMetricValues(
+            "m1", 0, 10, 0L)));
+        assertEquals(1L, (long) store.getMetric("app1").getTmst());
+        store.addMetricValues(Collections.singletonList(value("m1", 3L,
+            null)));
+        assertEquals(Arrays.asList(3L, 2L), tmsts(store.getMetricValues(
+            "m1", 0, 2, 0L)));
+    }
+
+    @Test
+    public void testMergeOutOfOrderSegments() throws Exception {
+        store.addMetricValues(Arrays.asList(value("m1", 100L, "app100"),
+            value("m1", 200L, null)));
+        // a backfill of earlier values, one post each
+        for (long tmst = 99; tmst >= 50; tmst--) {
+            store.addMetricValues(Collections.singletonList(value("m1",
+                tmst, "app" + tmst)));
+        }
+
+        File metricDir = new File(folder.getRoot(),
+            EmbeddedMetricStore.encode("m1"));
+        assertTrue(segments(metricDir) <= 4);
+        List<MetricValue> values = store.getMetricValues("m1", 0, 100, 0L);
+        assertEquals(52, values.size());
+        assertEquals(Arrays.asList(200L, 100L, 99L), tmsts(values.subList(0,
+            3)));
+        assertEquals(50L, (long) values.get(51).getTmst());
+        assertEquals(75L, (long) store.getMetric("app75").getTmst());
+
+        store.close();
+        store = open();
+        assertEquals(52, store.getMetricValues("m1", 0, 100, 0L).size());
+        assertEquals(100L, (long) store.getMetric("app100").getTmst());
+    }
+
+    @Test
+    public void testFinishInterruptedMerge() throws Exception {
+        store.addMetricValues(Collections.singletonList(value("m1", 2L,
+            null)));
+        store.addMetricValues(Collections.singletonList(value("m1", 1L,
+            null)));
+        store.close();
+        // crashed after the merged segment was written, before the merged
+        // segments were deleted
+        File metricDir = new File(folder.getRoot(),
+            EmbeddedMetricStore.encode("m1"));
+        Files.copy(new File(metricDir, "0" + MetricLog.SUFFIX).toPath(),
+            new File(metricDir, "2" + MetricLog.SUFFIX + ".tmp").toPath());
+        Files.write(new File(metricDir, "2.merge").toPath(),
+            Arrays.asList("0", "1"), StandardCharsets.UTF_8);
+
+        store = open();
+
+        assertEquals(Collections.singletonList(2L), tmsts(
+            store.getMetricValues("m1", 0, 10, 0L)));
+        assertEquals(1, segments(metricDir));
+        assertEquals(1, metricDir.list().length);
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        store.addMetricValues(Arrays.asList(value("m1", 1L, "app1"),
+            value("m1", 2L, null)));
+
+        ResponseEntity<?> response = store.deleteMetricValues("m1");
+
+        JsonNode body = new ObjectMapper().readTree(
+            response.getBody().toString());
+        assertEquals(2, body.get("deleted").asInt());
+        assertTrue(store.getMetricValues("m1", 0, 10, 0L).isEmpty());
+        assertNull(store.getMetric("app1"));
+        assertFalse(new File(folder.getRoot(), EmbeddedMetricStore.encode(
+            "m1")).exists());
+        store.addMetricValues(Collections.singletonList(value("m1", 3L,
+            null)));
+        assertEquals(Collections.singletonList(3L), tmsts(
+            store.getMetricValues("m1", 0, 10, 0L)));
+    }
+
+    @Test
+    public void testRejectValuesWithoutNameOrTmst() throws Exception {
+        ResponseEntity<?> response = store.addMetricValues(Arrays.asList(
+            value("m1", 1L, null), value("m1", null, null)));
+
+        JsonNode body = new ObjectMapper().readTree(
+            response.getBody().toString());
+        assertTrue(body.get("errors").asBoolean());
+        assertEquals(201, body.get("items").get(0).get("index")
+            .get("status").asInt());
+        assertEquals(400, body.get("items").get(1).get("index")
+            .get("status").asInt());
+        assertEquals(1, store.getMetricValues("m1", 0, 10, 0L).size());
+    }
+
+    @Test
+    public void testEncodeMetricName() {
+        assertEquals("6d2f31", EmbeddedMetricStore.encode("m/1"));
+        assertEquals("m/1", EmbeddedMetricStore.decode("6d2f31"));
+    }
+
+    @Test
+    public void testHashLongMetricName() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append('\u00e9');
+        }
+        String name = sb.toString();
+        store.addMetricValues(Collections.singletonList(value(name, 1L,
+            null)));
+        store.close();
+
+        File metricDir = new File(folder.getRoot(),
+            EmbeddedMetricStore.encode(name));
+        assertTrue(metricDir.getName().length() <= 255);
+        assertTrue(new File(metricDir, EmbeddedMetricStore.NAME_FILE)
+            .isFile());
+        store = open();
+        assertEquals(Collections.singletonList(1L), tmsts(
+            store.getMetricValues(name, 0, 10, 0L)));
+    }
+
+    @Test
+    public void testTrimSegmentOnClose() throws Exception {
+        for (long tmst = 1; tmst <= 3; tmst++) {
+            store.addMetricValues(Collections.singletonList(value("m1",
+                tmst, null)));
+            store.getMetricValues("m1", 0, 10, 0L);
+        }
+        File segment = new File(new File(folder.getRoot(),
+            EmbeddedMetricStore.encode("m1")), "0" + MetricLog.SUFFIX);
+        long length = segment.length();
+        store.close();
+
+        assertTrue(segment.length() < length);
+        store = open();
+        assertEquals(Arrays.asList(3L, 2L, 1L), tmsts(store.getMetricValues(
+            "m1", 0, 10, 0L)));
+    }
+
+    private EmbeddedMetricStore open() throws Exception {
+        EmbeddedMetricStore store = new EmbeddedMetricStore();
+        ReflectionTestUtils.setField(store, "dir",
+            folder.getRoot().getAbsolutePath());
+        ReflectionTestUtils.setField(store, "segmentBytes", 1L << 20);
+        ReflectionTestUtils.setField(store, "maxSegments", 4);
+        store.open();
+        return store;
+    }
+
+    private static MetricValue value(String name, Long tmst, String appId) {
+        Map<String, Object> metadata = new HashMap<>();
+        if (appId != null) {
+            metadata.put("applicationId", appId);
+        }
+        return new MetricValue(name, tmst, metadata,
+            Collections.singletonMap("total", tmst));
+    }
+
+    private static int segments(File metricDir) {
+        return metricDir.list((dir, name) -> name.endsWith(
+            MetricLog.SUFFIX)).length;
+    }
+
+    private static List<Long> tmsts(List<MetricValue> values) {
+        List<Long> tmsts = new ArrayList<>();
+        for (MetricValue value : values) {
+            tmsts.add(value.getTmst());
+        }
+        return tmsts;
+    }
+}
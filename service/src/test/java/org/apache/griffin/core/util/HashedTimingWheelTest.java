@@ -0,0 +1,95 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class HashedTimingWheelTest {
+
+    private HashedTimingWheel wheel;
+
+    @Before
+    public void setup() {
+        // a small wheel so that delays span several rounds
+        wheel = new HashedTimingWheel("test-wheel", 10, 4, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testNewTimeoutFiresAfterDelay() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+
+        wheel.newTimeout(latch::countDown, 200);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 190);
+    }
+
+    @Test
+    public void testTimeoutsFireInOrder() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        StringBuilder order = new StringBuilder();
+
+        wheel.newTimeout(() -> {
+            order.append("b");
+            latch.countDown();
+        }, 150);
+        wheel.newTimeout(() -> {
+            order.append("a");
+            latch.countDown();
+        }, 20);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals("ab", order.toString());
+    }
+
+    @Test
+    public void testCancelledTimeoutNeverFires() throws Exception {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.newTimeout(() ->
+            fired.set(true), 50);
+        timeout.cancel();
+        wheel.newTimeout(latch::countDown, 100);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isCancelled());
+        assertFalse(fired.get());
+    }
+}
@@ -26,6 +26,8 @@ import static org.junit.Assert.assertNull;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -84,4 +86,18 @@ public class JsonUtilTest {
         Map map = JsonUtil.toEntity(str, type);
         assertNull(map);
     }
+
+    @Test
+    public void testWriteAndReadStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtil.write(out, new JobHealth(5, 10));
+        // the stream is left open for more content
+        out.write('\n');
+        assertEquals(JOB_HEALTH_JSON + "\n", out.toString("UTF-8"));
+
+        JobHealth jobHealth = JsonUtil.read(new ByteArrayInputStream(
+            out.toByteArray()), JobHealth.class);
+        assertEquals(jobHealth.getJobCount(), 10);
+        assertEquals(jobHealth.getHealthyJobCount(), 5);
+    }
 }
@@ -0,0 +1,96 @@
+/*
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing,
+software distributed under the License is distributed on an
+"AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+KIND, either express or implied.  See the License for the
+specific language governing permissions and limitations
+under the License.
+*/
+
+package org.apache.griffin.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+public class PartitionTemplateTest {
+    private static final TimeZone GMT8 = TimeZone.getTimeZone("GMT+8:00");
+    private static final long HOUR = 3600000L;
+    // 2018-01-17 18:17:00 GMT+8
+    private static final long TIME = 1516184220000L;
+
+    @Test
+    public void testCompileIsCached() {
+        assertSame(PartitionTemplate.compile("dt=#yyyyMMdd#"),
+            PartitionTemplate.compile("dt=#yyyyMMdd#"));
+        assertTrue(PartitionTemplate.compile("/path/_DONE").isConstant());
+        assertFalse(PartitionTemplate.compile("dt=#yyyyMMdd#").isConstant());
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("/dt=20180117/hour=18/_DONE", PartitionTemplate
+            .compile("/dt=#yyyyMMdd#/hour=#HH#/_DONE").format(TIME, GMT8));
+        assertEquals("2018-01-17 18:17", PartitionTemplate
+            .compile("#yyyy-MM-dd HH:mm#").format(TIME, GMT8));
+    }
+
+    @Test
+    public void testFormatWithSimpleDateFormatOnlyPattern() {
+        assertEquals("2018w03", PartitionTemplate
+            .compile("#yyyy'w'ww#").format(TIME, GMT8));
+    }
+
+    @Test
+    public void testExpandDeduplicatesInOrder() {
+        Long[] timestamps = new Long[48];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = TIME + i * HOUR;
+        }
+
+        List<String> partitions = PartitionTemplate.compile("dt=#yyyyMMdd#")
+            .expand(timestamps, GMT8);
+
+        assertEquals(Arrays.asList("dt=20180117", "dt=20180118",
+            "dt=20180119"), partitions);
+    }
+
+    @Test
+    public void testExpandNotMonotonicTemplate() {
+        List<String> partitions = PartitionTemplate.compile("hour=#HH#")
+            .expand(TIME, TIME + 30 * HOUR, 6 * HOUR, GMT8);
+
+        assertEquals(Arrays.asList("hour=00", "hour=06", "hour=12",
+            "hour=18"), partitions);
+    }
+
+    @Test
+    public void testExpandConstantAndEmpty() {
+        PartitionTemplate template = PartitionTemplate.compile("/_DONE");
+
+        assertEquals(Collections.singletonList("/_DONE"),
+            template.expand(new Long[]{TIME, TIME + HOUR}, GMT8));
+        assertTrue(template.expand(new Long[0], GMT8).isEmpty());
+    }
+}